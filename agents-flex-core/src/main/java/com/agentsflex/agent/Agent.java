@@ -17,8 +17,11 @@ package com.agentsflex.agent;
 
 import com.agentsflex.chain.Chain;
 import com.agentsflex.memory.ContextMemory;
+import com.agentsflex.util.Futures;
+import com.agentsflex.util.NamedThreadPools;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * an agent should have an ID, a name, a memory, and the ability to execute.
@@ -97,6 +100,14 @@ public abstract class Agent {
 
     public abstract Output execute(Map<String, Object> variables, Chain chain);
 
+    /**
+     * 异步执行，默认在 {@link NamedThreadPools#blockingExecutor()} 中调用 {@link #execute(Map, Chain)}，
+     * 取消返回的 future 时会中断执行的线程；基于异步 IO 的 Agent 应重写此方法
+     */
+    public CompletableFuture<Output> executeAsync(Map<String, Object> variables, Chain chain) {
+        return Futures.supplyInterruptibly(() -> execute(variables, chain), NamedThreadPools.blockingExecutor());
+    }
+
     @Override
     public String toString() {
         return "Agent{" +
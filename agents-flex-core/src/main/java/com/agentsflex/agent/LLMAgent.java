@@ -16,7 +16,9 @@
 package com.agentsflex.agent;
 
 import com.agentsflex.chain.Chain;
+import com.agentsflex.llm.ChatContext;
 import com.agentsflex.llm.ChatOptions;
+import com.agentsflex.llm.DeltaStreamResponseListener;
 import com.agentsflex.llm.Llm;
 import com.agentsflex.llm.response.AiMessageResponse;
 import com.agentsflex.message.AiMessage;
@@ -27,6 +29,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 public class LLMAgent extends Agent {
 
@@ -35,6 +39,9 @@ public class LLMAgent extends Agent {
     protected String prompt;
     protected TextPromptTemplate promptTemplate;
 
+    // 流式输出：每个分片都会写入执行链中输出 key 对应的 ChainStream，下游节点可以边生成边处理
+    protected boolean stream;
+
     public LLMAgent() {
     }
 
@@ -75,6 +82,23 @@ public class LLMAgent extends Agent {
     }
 
 
+    public boolean isStream() {
+        return stream;
+    }
+
+    public void setStream(boolean stream) {
+        this.stream = stream;
+    }
+
+    /**
+     * @return 流式输出时写入的 {@link com.agentsflex.chain.ChainStream} 的 key
+     */
+    public String getStreamKey() {
+        List<String> outputKeys = getOutputKeys();
+        return outputKeys != null && outputKeys.size() == 1 ? outputKeys.get(0) : Output.DEFAULT_VALUE_KEY;
+    }
+
+
     @Override
     public List<Parameter> defineInputParameter() {
         if (this.promptTemplate == null) {
@@ -98,8 +122,95 @@ public class LLMAgent extends Agent {
     @Override
     public Output execute(Map<String, Object> variables, Chain chain) {
         TextPrompt textPrompt = promptTemplate.format(variables);
+        if (stream) {
+            return executeStream(textPrompt, chain);
+        }
         AiMessageResponse response = llm.chat(textPrompt, chatOptions);
+        return onResponse(response, chain);
+    }
+
+
+    private Output executeStream(TextPrompt textPrompt, Chain chain) {
+        ChatContext[] context = new ChatContext[1];
+        CompletableFuture<Output> future = chatStream(textPrompt, chain, context);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            if (context[0] != null && context[0].getClient() != null) {
+                context[0].getClient().stop();
+            }
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        }
+    }
+
+
+    @Override
+    public CompletableFuture<Output> executeAsync(Map<String, Object> variables, Chain chain) {
+        TextPrompt textPrompt = promptTemplate.format(variables);
+        if (stream) {
+            return chatStream(textPrompt, chain, new ChatContext[1]);
+        }
+        return llm.<AiMessageResponse, AiMessage>chatAsync(textPrompt, chatOptions)
+            .thenApply(response -> onResponse(response, chain));
+    }
+
+
+    /**
+     * 流式对话，分片通过 {@link Chain#outputDelta} 输出，结束后和非流式一样处理完整的响应
+     */
+    private CompletableFuture<Output> chatStream(TextPrompt textPrompt, Chain chain, ChatContext[] contextHolder) {
+        String streamKey = getStreamKey();
+        CompletableFuture<Output> future = new CompletableFuture<>();
+        StringBuilder content = new StringBuilder();
+        llm.chatStream(textPrompt, new DeltaStreamResponseListener<AiMessageResponse, AiMessage>() {
+            @Override
+            public void onStart(ChatContext context) {
+                contextHolder[0] = context;
+            }
+
+            @Override
+            public void onDelta(ChatContext context, CharSequence delta, CharSequence fullContent) {
+                content.append(delta);
+                if (chain != null) {
+                    chain.outputDelta(LLMAgent.this, streamKey, delta);
+                }
+            }
+
+            @Override
+            public void onStop(ChatContext context) {
+                if (future.isDone()) {
+                    return;
+                }
+                AiMessage aiMessage = new AiMessage();
+                aiMessage.setContent(content.toString());
+                aiMessage.setFullContent(aiMessage.getContent());
+                try {
+                    future.complete(onResponse(new AiMessageResponse(aiMessage), chain));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+                if (chain != null) {
+                    chain.getStream(streamKey).complete();
+                }
+            }
+
+            @Override
+            public void onFailure(ChatContext context, Throwable throwable) {
+                Throwable error = throwable != null ? throwable : new IllegalStateException("Stream failed");
+                if (future.completeExceptionally(error) && chain != null) {
+                    chain.getStream(streamKey).fail(error);
+                }
+            }
+        }, chatOptions);
+        return future;
+    }
+
 
+    protected Output onResponse(AiMessageResponse response, Chain chain) {
         if (chain != null) {
             chain.output(this, response);
         }
@@ -15,7 +15,9 @@
  */
 package com.agentsflex.agent;
 
-public class Parameter {
+import java.io.Serializable;
+
+public class Parameter implements Serializable {
     private String name;
     private String type;
     private boolean required;
@@ -0,0 +1,101 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.chain;
+
+import com.agentsflex.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 异步投递执行链事件：事件放入有界队列后由单独的线程按顺序回调监听器，较慢的监听器（例如审计日志）不会增加节点的执行时间。
+ * <p>
+ * 队列满时，发布事件的线程会等待队列有空位，事件不会丢失，顺序也不会改变。
+ */
+public class AsyncChainEventDispatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncChainEventDispatcher.class);
+
+    private static volatile AsyncChainEventDispatcher defaultDispatcher;
+
+    private final BlockingQueue<Runnable> queue;
+    private final Thread thread;
+
+    public AsyncChainEventDispatcher(int capacity, String name) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = new NamedThreadFactory(name, true).newThread(this::loop);
+        this.thread.start();
+    }
+
+    public void dispatch(ChainEventListener listener, ChainEvent event, Chain chain) {
+        Runnable task = () -> listener.onEvent(event, chain);
+        // 监听器中发布的事件直接回调，避免队列满时等待自己
+        if (Thread.currentThread() == thread) {
+            task.run();
+            return;
+        }
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            // 被中断时直接回调，避免丢失事件
+            Thread.currentThread().interrupt();
+            task.run();
+        }
+    }
+
+    /**
+     * @return 队列中等待投递的事件数量
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    private void loop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Runnable task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable e) {
+                LOG.error("Chain event listener error", e);
+            }
+        }
+    }
+
+    public static AsyncChainEventDispatcher getDefault() {
+        if (defaultDispatcher == null) {
+            synchronized (AsyncChainEventDispatcher.class) {
+                if (defaultDispatcher == null) {
+                    defaultDispatcher = new AsyncChainEventDispatcher(8192, "agents-flex-chain-event");
+                }
+            }
+        }
+        return defaultDispatcher;
+    }
+
+    /**
+     * 设置默认的异步投递器，只影响之后注册的监听器
+     */
+    public static void setDefault(AsyncChainEventDispatcher dispatcher) {
+        defaultDispatcher = dispatcher;
+    }
+}
@@ -16,6 +16,7 @@
 package com.agentsflex.chain;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public abstract class BaseChain extends Chain implements ChainNode {
 
@@ -35,4 +36,9 @@ public abstract class BaseChain extends Chain implements ChainNode {
         return this.getMemory().getAll();
     }
 
+    @Override
+    public CompletableFuture<Map<String, Object>> executeAsync(Chain parent) {
+        return this.executeAsync(parent.getMemory().getAll());
+    }
+
 }
@@ -20,20 +20,31 @@ import com.agentsflex.agent.Output;
 import com.agentsflex.agent.Parameter;
 import com.agentsflex.chain.event.OnErrorEvent;
 import com.agentsflex.chain.event.OnFinishedEvent;
+import com.agentsflex.chain.event.OnNodeFinishedEvent;
+import com.agentsflex.chain.event.OnNodeStartEvent;
 import com.agentsflex.chain.event.OnStartEvent;
 import com.agentsflex.chain.event.OnStatusChangeEvent;
 import com.agentsflex.chain.node.AgentNode;
 import com.agentsflex.memory.ContextMemory;
 import com.agentsflex.memory.DefaultContextMemory;
+import com.agentsflex.memory.LayeredContextMemory;
+import com.agentsflex.memory.SpillableContextMemory;
+import com.agentsflex.util.Futures;
+import com.agentsflex.util.NamedThreadPools;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 
 
 public abstract class Chain implements Serializable {
     private Object id;
     private ContextMemory memory = new DefaultContextMemory();
-    private Map<Class<?>, List<ChainEventListener>> eventListeners = new HashMap<>(0);
+    private ChainEventBus eventBus = new ChainEventBus();
     private List<ChainInputListener> inputListeners = new ArrayList<>();
     private List<ChainOutputListener> outputListeners = new ArrayList<>();
     private List<ChainNode> nodes;
@@ -43,9 +54,18 @@ public abstract class Chain implements Serializable {
 
     private String message;
 
+    // 节点之间的流式输出，只保存在根执行链中，执行结束后清空
+    private transient Map<String, ChainStream> streams;
+
+    // 由 ChainDefinition 创建的执行链，节点和监听器与定义共享，修改前需要先复制
+    private transient boolean sharedDefinition;
+
     //理论上是线程安全的，所有有多线程写入的情况，但是只有全部写入完成后才会去通知监听器
     private List<Parameter> waitInputParameters = new ArrayList<>();
 
+    // 执行结束时不释放的 SpillableContextMemory 数据，执行结果 Output.DEFAULT_VALUE_KEY 始终保留
+    private String[] retainKeys = {Output.DEFAULT_VALUE_KEY};
+
 
     public Chain() {
         this.id = UUID.randomUUID().toString();
@@ -60,36 +80,47 @@ public abstract class Chain implements Serializable {
     }
 
 
+    public ChainEventBus getEventBus() {
+        return eventBus;
+    }
+
+    /**
+     * @return 按事件类型分组的监听器快照
+     */
     public Map<Class<?>, List<ChainEventListener>> getEventListeners() {
-        return eventListeners;
+        return eventBus.getListeners();
     }
 
     public void setEventListeners(Map<Class<?>, List<ChainEventListener>> eventListeners) {
-        this.eventListeners = eventListeners;
+        eventBus.setListeners(eventListeners);
     }
 
-    public synchronized void registerEventListener(Class<? extends ChainEvent> eventClass, ChainEventListener listener) {
-        List<ChainEventListener> chainEventListeners = eventListeners.computeIfAbsent(eventClass, k -> new ArrayList<>());
-        chainEventListeners.add(listener);
+    public void registerEventListener(Class<? extends ChainEvent> eventClass, ChainEventListener listener) {
+        eventBus.register(eventClass, listener);
     }
 
-    public synchronized void registerEventListener(ChainEventListener listener) {
-        List<ChainEventListener> chainEventListeners = eventListeners.computeIfAbsent(ChainEvent.class, k -> new ArrayList<>());
-        chainEventListeners.add(listener);
+    public void registerEventListener(ChainEventListener listener) {
+        eventBus.register(ChainEvent.class, listener);
     }
 
+    /**
+     * 注册异步监听器：事件在 {@link AsyncChainEventDispatcher#getDefault()} 的线程中按顺序回调，不会阻塞节点的执行
+     */
+    public void registerAsyncEventListener(Class<? extends ChainEvent> eventClass, ChainEventListener listener) {
+        eventBus.register(eventClass, listener, AsyncChainEventDispatcher.getDefault());
+    }
 
-    public synchronized void removeEventListener(ChainEventListener listener) {
-        for (List<ChainEventListener> list : eventListeners.values()) {
-            list.removeIf(item -> item == listener);
-        }
+    public void registerAsyncEventListener(ChainEventListener listener) {
+        eventBus.register(ChainEvent.class, listener, AsyncChainEventDispatcher.getDefault());
     }
 
-    public synchronized void removeEventListener(Class<? extends ChainEvent> eventClass, ChainEventListener listener) {
-        List<ChainEventListener> list = eventListeners.get(eventClass);
-        if (list != null && !list.isEmpty()) {
-            list.removeIf(item -> item == listener);
-        }
+
+    public void removeEventListener(ChainEventListener listener) {
+        eventBus.remove(listener);
+    }
+
+    public void removeEventListener(Class<? extends ChainEvent> eventClass, ChainEventListener listener) {
+        eventBus.remove(eventClass, listener);
     }
 
 
@@ -102,6 +133,7 @@ public abstract class Chain implements Serializable {
     }
 
     public void registerInputListener(ChainInputListener inputListener) {
+        ensureOwnDefinition();
         if (this.inputListeners == null) {
             this.inputListeners = new ArrayList<>();
         }
@@ -117,6 +149,7 @@ public abstract class Chain implements Serializable {
     }
 
     public void registerOutputListener(ChainOutputListener outputListener) {
+        ensureOwnDefinition();
         if (this.outputListeners == null) {
             this.outputListeners = new ArrayList<>();
         }
@@ -124,6 +157,165 @@ public abstract class Chain implements Serializable {
     }
 
 
+    /**
+     * 创建一个新的执行链用于一次执行：节点（嵌套的 Chain 除外）、监听器和配置与当前执行链共享，
+     * 状态、memory、等待输入的参数等执行状态都是新的，多个副本可以同时执行。
+     * <p>
+     * 通常不直接调用，而是通过 {@link ChainDefinition#newExecution()} 使用。
+     */
+    public Chain copy() {
+        Chain chain = newInstance();
+        chain.eventBus = new ChainEventBus(this.eventBus);
+        chain.inputListeners = this.inputListeners;
+        chain.outputListeners = this.outputListeners;
+        chain.sharedDefinition = true;
+        chain.retainKeys = this.retainKeys;
+
+        List<ChainNode> nodes = this.nodes;
+        if (nodes != null) {
+            List<ChainNode> copied = null;
+            for (int i = 0; i < nodes.size(); i++) {
+                ChainNode node = nodes.get(i);
+                if (node instanceof Chain) {
+                    if (copied == null) {
+                        copied = new ArrayList<>(nodes);
+                    }
+                    Chain child = ((Chain) node).copy();
+                    child.parent = chain;
+                    copied.set(i, (ChainNode) child);
+                }
+            }
+            chain.nodes = copied != null ? copied : nodes;
+        }
+
+        if (this.memory instanceof SpillableContextMemory) {
+            chain.memory = ((SpillableContextMemory) this.memory).newMemory();
+        }
+        Map<String, Object> initial = this.memory.getAll();
+        if (initial != null && !initial.isEmpty()) {
+            chain.memory.putAll(initial);
+        }
+        copyTo(chain);
+        return chain;
+    }
+
+    /**
+     * 保存执行状态的快照，通常在暂停等待输入时调用，快照可以通过 {@link com.agentsflex.chain.store.ChainStateStore} 持久化
+     */
+    public ChainCheckpoint checkpoint() {
+        ChainCheckpoint checkpoint = new ChainCheckpoint();
+        checkpoint.setChainId(id);
+        checkpoint.setStatus(status);
+        checkpoint.setMessage(message);
+        checkpoint.setMemory(new HashMap<>(memory.getAll()));
+        checkpoint.setWaitInputParameters(new ArrayList<>(waitInputParameters));
+
+        List<ChainNode> nodes = this.nodes;
+        if (nodes != null) {
+            Map<Integer, ChainCheckpoint> children = null;
+            for (int i = 0; i < nodes.size(); i++) {
+                ChainNode node = nodes.get(i);
+                if (node instanceof Chain) {
+                    if (children == null) {
+                        children = new HashMap<>();
+                    }
+                    children.put(i, ((Chain) node).checkpoint());
+                }
+            }
+            checkpoint.setChildren(children);
+        }
+        saveState(checkpoint);
+        return checkpoint;
+    }
+
+    /**
+     * 从快照中恢复执行状态，需要在与保存快照时相同定义的新执行链中调用，恢复后可以调用 {@link #resume(Map)} 继续执行
+     */
+    public void restore(ChainCheckpoint checkpoint) {
+        this.id = checkpoint.getChainId();
+        this.message = checkpoint.getMessage();
+        this.memory.clear();
+        this.memory.putAll(checkpoint.getMemory());
+        this.waitInputParameters.clear();
+        if (checkpoint.getWaitInputParameters() != null) {
+            this.waitInputParameters.addAll(checkpoint.getWaitInputParameters());
+        }
+
+        Map<Integer, ChainCheckpoint> children = checkpoint.getChildren();
+        if (children != null) {
+            children.forEach((index, child) -> ((Chain) nodes.get(index)).restore(child));
+        }
+        restoreState(checkpoint);
+        this.status = checkpoint.getStatus();
+    }
+
+    /**
+     * 子类保存执行游标等状态
+     */
+    protected void saveState(ChainCheckpoint checkpoint) {
+    }
+
+    protected void restoreState(ChainCheckpoint checkpoint) {
+    }
+
+    protected int[] indexesOf(Collection<ChainNode> chainNodes) {
+        if (chainNodes == null || chainNodes.isEmpty()) {
+            return new int[0];
+        }
+        int[] indexes = new int[chainNodes.size()];
+        int count = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            if (chainNodes.contains(nodes.get(i))) {
+                indexes[count++] = i;
+            }
+        }
+        return count == indexes.length ? indexes : Arrays.copyOf(indexes, count);
+    }
+
+    protected List<ChainNode> nodesAt(int[] indexes) {
+        if (indexes == null) {
+            return new ArrayList<>();
+        }
+        List<ChainNode> chainNodes = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            chainNodes.add(nodes.get(index));
+        }
+        return chainNodes;
+    }
+
+    /**
+     * 创建同类型的空执行链，默认通过无参构造方法创建，没有无参构造方法的子类需要重写
+     */
+    protected Chain newInstance() {
+        try {
+            return getClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can not create a new instance of " + getClass().getName()
+                + ", please override newInstance()", e);
+        }
+    }
+
+    /**
+     * 复制子类的配置，不包括执行状态；子类重写时需要调用 super.copyTo
+     */
+    protected void copyTo(Chain target) {
+    }
+
+    void ensureOwnDefinition() {
+        if (!sharedDefinition) {
+            return;
+        }
+        synchronized (this) {
+            if (!sharedDefinition) {
+                return;
+            }
+            this.inputListeners = inputListeners == null ? null : new ArrayList<>(inputListeners);
+            this.outputListeners = outputListeners == null ? null : new ArrayList<>(outputListeners);
+            this.nodes = nodes == null ? null : new ArrayList<>(nodes);
+            this.sharedDefinition = false;
+        }
+    }
+
     public List<ChainNode> getNodes() {
         return nodes;
     }
@@ -133,6 +325,7 @@ public abstract class Chain implements Serializable {
     }
 
     public void addNode(ChainNode chainNode) {
+        ensureOwnDefinition();
         if (nodes == null) {
             this.nodes = new ArrayList<>();
         }
@@ -151,6 +344,22 @@ public abstract class Chain implements Serializable {
     }
 
 
+    public String[] getRetainKeys() {
+        return retainKeys;
+    }
+
+    /**
+     * 设置执行结束后仍然需要读取的数据，其他移出堆内存（{@link SpillableContextMemory}）的数据在执行结束时释放
+     */
+    public void setRetainKeys(String... retainKeys) {
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(Output.DEFAULT_VALUE_KEY);
+        if (retainKeys != null) {
+            keys.addAll(Arrays.asList(retainKeys));
+        }
+        this.retainKeys = keys.toArray(new String[0]);
+    }
+
     public Chain getParent() {
         return parent;
     }
@@ -189,7 +398,7 @@ public abstract class Chain implements Serializable {
         ChainStatus before = this.status;
         this.status = status;
 
-        if (before != status) {
+        if (before != status && hasEventListeners(OnStatusChangeEvent.class)) {
             notifyEvent(new OnStatusChangeEvent(this.status, before));
         }
     }
@@ -203,32 +412,44 @@ public abstract class Chain implements Serializable {
     }
 
     public void notifyEvent(ChainEvent event) {
-        for (Map.Entry<Class<?>, List<ChainEventListener>> entry : eventListeners.entrySet()) {
-            if (entry.getKey().isInstance(event)) {
-                for (ChainEventListener chainEventListener : entry.getValue()) {
-                    chainEventListener.onEvent(event, this);
-                }
-            }
-        }
+        eventBus.publish(event, this);
         if (parent != null) {
             parent.notifyEvent(event);
         }
     }
 
+    /**
+     * 当前执行链或者上级执行链是否有该事件的监听器，没有时可以不创建事件对象
+     */
+    public boolean hasEventListeners(Class<? extends ChainEvent> eventClass) {
+        return eventBus.hasListeners(eventClass) || (parent != null && parent.hasEventListeners(eventClass));
+    }
+
+    protected void notifyNodeStart(ChainNode node) {
+        if (hasEventListeners(OnNodeStartEvent.class)) {
+            notifyEvent(new OnNodeStartEvent(node));
+        }
+    }
+
+    protected void notifyNodeFinished(ChainNode node, Map<String, Object> result) {
+        if (hasEventListeners(OnNodeFinishedEvent.class)) {
+            notifyEvent(new OnNodeFinishedEvent(node, result));
+        }
+    }
+
     public Object get(String key) {
         return this.memory.get(key);
     }
 
     public Object getGlobal(String key) {
-        Object object = this.memory.get(key);
-        if (object != null) {
-            return object;
-        }
+        return getGlobalMemory().get(key);
+    }
 
-        if (parent != null) {
-            return parent.getGlobal(key);
-        }
-        return null;
+    /**
+     * @return 当前执行链的 memory 叠加在所有上级执行链的 memory 之上的视图，读取时由近及远查找，写入只影响当前执行链
+     */
+    public ContextMemory getGlobalMemory() {
+        return parent == null ? memory : new LayeredContextMemory(parent.getGlobalMemory(), memory);
     }
 
     public void execute(Object variable) {
@@ -265,7 +486,92 @@ public abstract class Chain implements Serializable {
 
     protected abstract void executeInternal();
 
+
+    /**
+     * 异步执行，执行过程中不占用调用线程
+     *
+     * @return 执行完成（包括暂停等待输入）后的 memory
+     */
+    public CompletableFuture<Map<String, Object>> executeAsync(Map<String, Object> variables) {
+        return runInLifeCycleAsync(variables, this::executeInternalAsync);
+    }
+
+    public <T> CompletableFuture<T> executeForResultAsync(Object variable) {
+        return executeForResultAsync(Output.DEFAULT_VALUE_KEY, variable);
+    }
+
+    /**
+     * 异步执行，执行链未正常结束时以 {@link ChainException} 结束
+     */
+    public <T> CompletableFuture<T> executeForResultAsync(String key, Object variable) {
+        Map<String, Object> variables = new HashMap<>(1);
+        variables.put(key, variable);
+        return executeAsync(variables).thenApply(memory -> {
+            if (this.status != ChainStatus.FINISHED_NORMAL) {
+                throw new CompletionException(new ChainException(this.message));
+            }
+            //noinspection unchecked
+            return (T) this.getMemory().get(Output.DEFAULT_VALUE_KEY);
+        });
+    }
+
+    /**
+     * 异步执行的实现，默认在 {@link NamedThreadPools#blockingExecutor()} 中调用 {@link #executeInternal()}，
+     * 子类应重写此方法，通过 {@link ChainNode#executeAsync(Chain)} 异步执行节点
+     */
+    protected CompletableFuture<Void> executeInternalAsync() {
+        return CompletableFuture.runAsync(this::executeInternal, NamedThreadPools.blockingExecutor());
+    }
+
+    /**
+     * 异步执行节点，并通知节点开始和结束事件
+     *
+     * @return 节点的执行结果，执行链不是 START 状态时不执行节点，结果为 null；取消时会同时取消节点的执行
+     */
+    protected CompletableFuture<Map<String, Object>> executeNodeAsync(ChainNode node) {
+        notifyNodeStart(node);
+        if (getStatus() != ChainStatus.START) {
+            notifyNodeFinished(node, null);
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Map<String, Object>> future;
+        try {
+            future = node.executeAsync(this);
+        } catch (Exception e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        // 取消返回的 future 时同时取消节点的执行，节点结束事件仍然在节点执行结束时通知
+        CompletableFuture<Map<String, Object>> notified =
+            future.whenComplete((result, error) -> notifyNodeFinished(node, error == null ? result : null));
+        return Futures.propagateCancel(notified, future);
+    }
+
     public boolean resume(Map<String, Object> variables) {
+        if (!canResume(variables)) {
+            return false;
+        }
+
+        waitInputParameters.clear();
+        runInLifeCycle(variables, () -> resumeInternal(variables));
+        return true;
+    }
+
+    /**
+     * 异步恢复执行，无法恢复时以 {@link ChainException} 结束
+     */
+    public CompletableFuture<Map<String, Object>> resumeAsync(Map<String, Object> variables) {
+        if (!canResume(variables)) {
+            CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+            future.completeExceptionally(new ChainException("Can not resume the chain, status: " + status));
+            return future;
+        }
+
+        waitInputParameters.clear();
+        return runInLifeCycleAsync(variables, () -> resumeInternalAsync(variables));
+    }
+
+    private boolean canResume(Map<String, Object> variables) {
         if (status != ChainStatus.PAUSE_FOR_INPUT &&
             status != ChainStatus.PAUSE_FOR_WAKE_UP) {
             return false;
@@ -280,18 +586,69 @@ public abstract class Chain implements Serializable {
                 return false;
             }
         }
-
-        waitInputParameters.clear();
-        runInLifeCycle(variables, () -> resumeInternal(variables));
         return true;
     }
 
+    protected CompletableFuture<Void> resumeInternalAsync(Map<String, Object> variables) {
+        return CompletableFuture.runAsync(() -> resumeInternal(variables), NamedThreadPools.blockingExecutor());
+    }
+
+    protected CompletableFuture<Map<String, Object>> runInLifeCycleAsync(Map<String, Object> variables, Supplier<CompletableFuture<Void>> supplier) {
+        if (variables != null) {
+            this.memory.putAll(variables);
+        }
+        CompletableFuture<Void> future;
+        try {
+            if (hasEventListeners(OnStartEvent.class)) {
+                notifyEvent(new OnStartEvent());
+            }
+            setStatus(ChainStatus.START);
+            future = supplier.get();
+        } catch (Exception e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        return future.handle((v, error) -> {
+            try {
+                if (error != null) {
+                    setStatus(ChainStatus.ERROR);
+                    notifyEvent(new OnErrorEvent(toException(error)));
+                }
+                if (!waitInputParameters.isEmpty()) {
+                    notifyInput(waitInputParameters);
+                }
+                if (status == ChainStatus.START) {
+                    setStatus(ChainStatus.FINISHED_NORMAL);
+                } else if (status == ChainStatus.ERROR) {
+                    setStatus(ChainStatus.FINISHED_ABNORMAL);
+                }
+            } finally {
+                closeStreams();
+                if (hasEventListeners(OnFinishedEvent.class)) {
+                    notifyEvent(new OnFinishedEvent());
+                }
+                releaseMemoryIfFinished();
+            }
+            return this.memory.getAll();
+        });
+    }
+
+    private static Exception toException(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error instanceof Exception ? (Exception) error : new RuntimeException(error);
+    }
+
     protected void runInLifeCycle(Map<String, Object> variables, Runnable runnable) {
         if (variables != null) {
             this.memory.putAll(variables);
         }
         try {
-            notifyEvent(new OnStartEvent());
+            if (hasEventListeners(OnStartEvent.class)) {
+                notifyEvent(new OnStartEvent());
+            }
             try {
                 setStatus(ChainStatus.START);
                 runnable.run();
@@ -309,7 +666,11 @@ public abstract class Chain implements Serializable {
                 setStatus(ChainStatus.FINISHED_ABNORMAL);
             }
         } finally {
-            notifyEvent(new OnFinishedEvent());
+            closeStreams();
+            if (hasEventListeners(OnFinishedEvent.class)) {
+                notifyEvent(new OnFinishedEvent());
+            }
+            releaseMemoryIfFinished();
         }
     }
 
@@ -350,6 +711,94 @@ public abstract class Chain implements Serializable {
         }
     }
 
+    /**
+     * 获取输出 key 对应的流式内容，不存在时创建；子链中获取的是根执行链的 ChainStream
+     */
+    public ChainStream getStream(String key) {
+        if (parent != null) {
+            return parent.getStream(key);
+        }
+        if (streams == null) {
+            synchronized (this) {
+                if (streams == null) {
+                    streams = new ConcurrentHashMap<>();
+                }
+            }
+        }
+        return streams.computeIfAbsent(key, ChainStream::new);
+    }
+
+    /**
+     * 结束所有还没有完成的流式内容，避免下游节点一直等待
+     */
+    private void closeStreams() {
+        Map<String, ChainStream> streams = this.streams;
+        if (parent != null || streams == null || streams.isEmpty()) {
+            return;
+        }
+        // 暂停时保留，恢复执行后上游节点可能继续输出
+        if (status == ChainStatus.PAUSE_FOR_INPUT || status == ChainStatus.PAUSE_FOR_WAKE_UP) {
+            return;
+        }
+        for (ChainStream stream : streams.values()) {
+            stream.fail(new ChainException("Chain finished before the stream \"" + stream.getKey() + "\" completed"));
+        }
+        streams.clear();
+    }
+
+    /**
+     * 执行结束后释放当前执行链以及嵌套执行链中移出堆内存的数据，{@link #getRetainKeys()} 中的数据会被重新加载到堆内存中；
+     * 暂停时不释放，恢复执行后还需要读取
+     */
+    private void releaseMemoryIfFinished() {
+        if (parent != null || (status != ChainStatus.FINISHED_NORMAL && status != ChainStatus.FINISHED_ABNORMAL)) {
+            return;
+        }
+        releaseMemory(this, retainKeys);
+    }
+
+    /**
+     * 立即释放当前执行链以及嵌套执行链中所有移出堆内存（{@link SpillableContextMemory}）的数据，释放后这些数据不可再读取。
+     * <p>
+     * 执行结束时会自动释放 {@link #getRetainKeys()} 以外的数据；暂停后不再恢复执行的执行链需要调用此方法删除临时文件。
+     */
+    public void releaseMemory() {
+        releaseMemory(this, new String[0]);
+    }
+
+    private static void releaseMemory(Chain chain, String[] retainKeys) {
+        if (chain.memory instanceof SpillableContextMemory) {
+            ((SpillableContextMemory) chain.memory).release(retainKeys);
+        }
+        List<ChainNode> nodes = chain.nodes;
+        if (nodes != null) {
+            for (ChainNode node : nodes) {
+                if (node instanceof Chain) {
+                    releaseMemory((Chain) node, retainKeys);
+                }
+            }
+        }
+    }
+
+    /**
+     * 流式输出一个分片：通知 ChainOutputListener，并写入 key 对应的 ChainStream
+     */
+    public void outputDelta(Agent agent, String key, CharSequence delta) {
+        notifyOutputDelta(agent, delta);
+        if (key != null) {
+            getStream(key).emit(delta);
+        }
+    }
+
+    private void notifyOutputDelta(Agent agent, CharSequence delta) {
+        for (ChainOutputListener outputListener : outputListeners) {
+            outputListener.onDelta(this, agent, delta);
+        }
+        if (parent != null) {
+            parent.notifyOutputDelta(agent, delta);
+        }
+    }
+
     public void output(Agent agent, Object response) {
         notifyOutput(agent, response);
         if (parent != null) {
@@ -366,7 +815,7 @@ public abstract class Chain implements Serializable {
         return "Chain{" +
             "id=" + id +
             ", memory=" + memory +
-            ", eventListeners=" + eventListeners +
+            ", eventBus=" + eventBus +
             ", inputListeners=" + inputListeners +
             ", outputListeners=" + outputListeners +
             ", nodes=" + nodes +
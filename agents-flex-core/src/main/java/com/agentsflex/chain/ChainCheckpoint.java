@@ -0,0 +1,138 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.chain;
+
+import com.agentsflex.agent.Parameter;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * 执行链的执行状态快照，不包括节点、Agent、监听器等定义。
+ * <p>
+ * 暂停等待输入时保存快照之后，执行链对象可以被释放；之后在任意实例中通过同一个定义创建新的执行链，
+ * 调用 {@link Chain#restore(ChainCheckpoint)} 恢复状态，再调用 {@link Chain#resume(Map)} 继续执行。
+ * 节点通过在执行链中的位置引用，因此恢复时的定义需要和保存时的节点顺序一致。
+ * memory 中的值需要可以序列化。
+ */
+public class ChainCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Object chainId;
+    private ChainStatus status;
+    private String message;
+    private Map<String, Object> memory;
+    private List<Parameter> waitInputParameters;
+
+    // 子类的执行游标，例如 SequentialChain 当前执行的节点位置
+    private Map<String, Serializable> cursor;
+
+    // 暂停或者还未执行的节点在执行链中的位置
+    private int[] pendingNodes;
+
+    // 嵌套的 Chain 节点的快照，key 为节点在执行链中的位置
+    private Map<Integer, ChainCheckpoint> children;
+
+    public Object getChainId() {
+        return chainId;
+    }
+
+    public void setChainId(Object chainId) {
+        this.chainId = chainId;
+    }
+
+    public ChainStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ChainStatus status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public Map<String, Object> getMemory() {
+        return memory;
+    }
+
+    public void setMemory(Map<String, Object> memory) {
+        this.memory = memory;
+    }
+
+    public List<Parameter> getWaitInputParameters() {
+        return waitInputParameters;
+    }
+
+    public void setWaitInputParameters(List<Parameter> waitInputParameters) {
+        this.waitInputParameters = waitInputParameters;
+    }
+
+    public Map<String, Serializable> getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(Map<String, Serializable> cursor) {
+        this.cursor = cursor;
+    }
+
+    public Serializable getCursor(String key) {
+        return cursor == null ? null : cursor.get(key);
+    }
+
+    public void putCursor(String key, Serializable value) {
+        if (cursor == null) {
+            cursor = new HashMap<>();
+        }
+        cursor.put(key, value);
+    }
+
+    public int[] getPendingNodes() {
+        return pendingNodes;
+    }
+
+    public void setPendingNodes(int[] pendingNodes) {
+        this.pendingNodes = pendingNodes;
+    }
+
+    public Map<Integer, ChainCheckpoint> getChildren() {
+        return children;
+    }
+
+    public void setChildren(Map<Integer, ChainCheckpoint> children) {
+        this.children = children;
+    }
+
+    @Override
+    public String toString() {
+        return "ChainCheckpoint{" +
+            "chainId=" + chainId +
+            ", status=" + status +
+            ", message='" + message + '\'' +
+            ", memory=" + memory +
+            ", waitInputParameters=" + waitInputParameters +
+            ", cursor=" + cursor +
+            ", pendingNodes=" + Arrays.toString(pendingNodes) +
+            ", children=" + children +
+            '}';
+    }
+}
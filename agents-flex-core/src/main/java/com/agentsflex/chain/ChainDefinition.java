@@ -0,0 +1,122 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.chain;
+
+import com.agentsflex.chain.store.ChainStateStore;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 不可变、线程安全的执行链定义：启动时构建一次，每次执行通过 {@link #newExecution()} 创建一个轻量的执行链，
+ * 执行链与定义共享节点、Agent、提示词模板和监听器，只持有本次执行的状态（status、memory、等待输入的参数等），
+ * 因此同一个定义可以同时执行任意多次。
+ * <p>
+ * 创建定义时会复制传入的执行链，之后对原执行链的修改不会影响定义。节点和 Agent 会被所有执行共享，需要是无状态的；
+ * 嵌套的 Chain 节点会在每次执行时复制。
+ *
+ * <pre>{@code
+ * ChainDefinition<SequentialChain> definition = new ChainDefinition<>(chain);
+ * SequentialChain execution = definition.execute(variables);
+ * Object result = execution.get("result");
+ * }</pre>
+ */
+public final class ChainDefinition<T extends Chain> {
+
+    private final T prototype;
+
+    public ChainDefinition(T chain) {
+        //noinspection unchecked
+        this.prototype = (T) chain.copy();
+        // 不与原执行链共享节点和监听器列表
+        this.prototype.ensureOwnDefinition();
+    }
+
+    /**
+     * @return 新的执行链，可以调用 execute、resume 等方法，执行链只能被一次执行使用
+     */
+    public T newExecution() {
+        //noinspection unchecked
+        return (T) prototype.copy();
+    }
+
+    /**
+     * 创建新的执行链并执行
+     *
+     * @return 本次执行的执行链，可以获取状态和 memory，或者在暂停时恢复执行
+     */
+    public T execute(Map<String, Object> variables) {
+        T execution = newExecution();
+        execution.execute(variables);
+        return execution;
+    }
+
+    public CompletableFuture<T> executeAsync(Map<String, Object> variables) {
+        T execution = newExecution();
+        return execution.executeAsync(variables).thenApply(memory -> execution);
+    }
+
+    /**
+     * 创建新的执行链并从快照中恢复执行状态
+     */
+    public T restore(ChainCheckpoint checkpoint) {
+        T execution = newExecution();
+        execution.restore(checkpoint);
+        return execution;
+    }
+
+    /**
+     * 创建新的执行链并执行，暂停等待输入时保存快照，之后可以通过 {@link #resume(ChainStateStore, Object, Map)} 在任意实例中恢复执行
+     */
+    public T execute(Map<String, Object> variables, ChainStateStore store) {
+        T execution = execute(variables);
+        saveOrRemove(execution, store);
+        return execution;
+    }
+
+    /**
+     * 从存储中加载快照并恢复执行，再次暂停时更新快照，执行结束后删除快照
+     *
+     * @throws IllegalStateException 快照不存在时抛出
+     */
+    public T resume(ChainStateStore store, Object chainId, Map<String, Object> variables) {
+        ChainCheckpoint checkpoint = store.load(chainId);
+        if (checkpoint == null) {
+            throw new IllegalStateException("Can not find checkpoint for chain: " + chainId);
+        }
+        T execution = restore(checkpoint);
+        if (execution.resume(variables)) {
+            saveOrRemove(execution, store);
+        }
+        return execution;
+    }
+
+    private static void saveOrRemove(Chain execution, ChainStateStore store) {
+        ChainStatus status = execution.getStatus();
+        if (status == ChainStatus.PAUSE_FOR_INPUT || status == ChainStatus.PAUSE_FOR_WAKE_UP) {
+            store.save(execution.checkpoint());
+        } else {
+            store.remove(execution.getId());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ChainDefinition{" +
+            "prototype=" + prototype +
+            '}';
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.chain;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 执行链的事件总线。
+ * <p>
+ * 注册的监听器保存在不可变的快照中，注册和移除时复制一份新的快照（copy-on-write），发布事件时不需要加锁；
+ * 每种事件类型对应的监听器只计算一次，之后直接查表。
+ * 没有监听器时可以通过 {@link #hasListeners(Class)} 跳过事件对象的创建。
+ * 通过 async 注册的监听器在 {@link AsyncChainEventDispatcher} 的线程中回调。
+ */
+public class ChainEventBus implements Serializable {
+
+    private volatile State state = State.EMPTY;
+
+    public ChainEventBus() {
+    }
+
+    /**
+     * 与 other 共享当前的监听器，之后双方的注册和移除互不影响
+     */
+    public ChainEventBus(ChainEventBus other) {
+        this.state = other.state;
+    }
+
+    public void register(Class<? extends ChainEvent> eventClass, ChainEventListener listener) {
+        register(eventClass, listener, null);
+    }
+
+    /**
+     * @param dispatcher 不为 null 时异步回调监听器
+     */
+    public synchronized void register(Class<? extends ChainEvent> eventClass, ChainEventListener listener, AsyncChainEventDispatcher dispatcher) {
+        Registration[] registrations = state.registrations;
+        Registration[] newRegistrations = Arrays.copyOf(registrations, registrations.length + 1);
+        newRegistrations[registrations.length] = new Registration(eventClass, listener, dispatcher);
+        this.state = state.with(newRegistrations);
+    }
+
+    public synchronized void remove(ChainEventListener listener) {
+        remove(null, listener);
+    }
+
+    /**
+     * @param eventClass 为 null 时移除该监听器的所有注册
+     */
+    public synchronized void remove(Class<? extends ChainEvent> eventClass, ChainEventListener listener) {
+        List<Registration> list = new ArrayList<>(state.registrations.length);
+        for (Registration registration : state.registrations) {
+            if (registration.listener != listener || (eventClass != null && registration.eventClass != eventClass)) {
+                list.add(registration);
+            }
+        }
+        if (list.size() != state.registrations.length) {
+            this.state = state.with(list.toArray(new Registration[0]));
+        }
+    }
+
+    public synchronized void clear() {
+        this.state = State.EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return state.registrations.length == 0;
+    }
+
+    public boolean hasListeners(Class<? extends ChainEvent> eventClass) {
+        State s = this.state;
+        return s.registrations.length > 0 && s.lookup(eventClass).length > 0;
+    }
+
+    public void publish(ChainEvent event, Chain chain) {
+        State s = this.state;
+        if (s.registrations.length == 0) {
+            return;
+        }
+        for (Registration registration : s.lookup(event.getClass())) {
+            if (registration.dispatcher != null) {
+                registration.dispatcher.dispatch(registration.listener, event, chain);
+            } else {
+                registration.listener.onEvent(event, chain);
+            }
+        }
+    }
+
+    /**
+     * @return 按事件类型分组的监听器快照，修改返回的 Map 不会影响事件总线
+     */
+    public Map<Class<?>, List<ChainEventListener>> getListeners() {
+        Map<Class<?>, List<ChainEventListener>> map = new LinkedHashMap<>();
+        for (Registration registration : state.registrations) {
+            map.computeIfAbsent(registration.eventClass, k -> new ArrayList<>()).add(registration.listener);
+        }
+        return map;
+    }
+
+    public synchronized void setListeners(Map<Class<?>, List<ChainEventListener>> listeners) {
+        List<Registration> list = new ArrayList<>();
+        if (listeners != null) {
+            listeners.forEach((eventClass, chainEventListeners) -> {
+                for (ChainEventListener listener : chainEventListeners) {
+                    list.add(new Registration(eventClass, listener, null));
+                }
+            });
+        }
+        this.state = list.isEmpty() ? State.EMPTY : State.EMPTY.with(list.toArray(new Registration[0]));
+    }
+
+    @Override
+    public String toString() {
+        return "ChainEventBus{" +
+            "listeners=" + getListeners() +
+            '}';
+    }
+
+
+    static final class Registration implements Serializable {
+        final Class<?> eventClass;
+        final ChainEventListener listener;
+        final transient AsyncChainEventDispatcher dispatcher;
+
+        Registration(Class<?> eventClass, ChainEventListener listener, AsyncChainEventDispatcher dispatcher) {
+            this.eventClass = eventClass;
+            this.listener = listener;
+            this.dispatcher = dispatcher;
+        }
+    }
+
+    /**
+     * 不可变的监听器快照，以及按事件类型计算好的分发表
+     */
+    static final class State implements Serializable {
+        static final State EMPTY = new State(new Registration[0], null);
+        private static final Registration[] NONE = new Registration[0];
+
+        final Registration[] registrations;
+        private transient volatile Map<Class<?>, Registration[]> table;
+
+        private State(Registration[] registrations, Map<Class<?>, Registration[]> previousTable) {
+            this.registrations = registrations;
+            // 预先计算已经发布过的事件类型，注册监听器后的第一次发布不需要再计算
+            if (previousTable != null && !previousTable.isEmpty()) {
+                Map<Class<?>, Registration[]> newTable = new ConcurrentHashMap<>(previousTable.size());
+                for (Class<?> eventClass : previousTable.keySet()) {
+                    newTable.put(eventClass, match(eventClass));
+                }
+                this.table = newTable;
+            }
+        }
+
+        State with(Registration[] registrations) {
+            return new State(registrations, table);
+        }
+
+        Registration[] lookup(Class<?> eventClass) {
+            Map<Class<?>, Registration[]> t = this.table;
+            if (t == null) {
+                synchronized (this) {
+                    if ((t = this.table) == null) {
+                        this.table = t = new ConcurrentHashMap<>();
+                    }
+                }
+            }
+            Registration[] result = t.get(eventClass);
+            if (result == null) {
+                result = match(eventClass);
+                t.put(eventClass, result);
+            }
+            return result;
+        }
+
+        private Registration[] match(Class<?> eventClass) {
+            List<Registration> list = null;
+            for (Registration registration : registrations) {
+                if (registration.eventClass.isAssignableFrom(eventClass)) {
+                    if (list == null) {
+                        list = new ArrayList<>(registrations.length);
+                    }
+                    list.add(registration);
+                }
+            }
+            return list == null ? NONE : list.toArray(NONE);
+        }
+    }
+}
@@ -15,7 +15,11 @@
  */
 package com.agentsflex.chain;
 
+import com.agentsflex.util.Futures;
+import com.agentsflex.util.NamedThreadPools;
+
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface ChainNode {
 
@@ -28,4 +32,12 @@ public interface ChainNode {
     boolean isSkip();
 
     Map<String, Object> execute(Chain chain);
+
+    /**
+     * 异步执行，默认在 {@link NamedThreadPools#blockingExecutor()} 中调用 {@link #execute(Chain)}，
+     * 取消返回的 future 时会中断执行节点的线程；可以异步完成 IO 的节点应重写此方法，避免占用线程
+     */
+    default CompletableFuture<Map<String, Object>> executeAsync(Chain chain) {
+        return Futures.supplyInterruptibly(() -> execute(chain), NamedThreadPools.blockingExecutor());
+    }
 }
@@ -19,4 +19,10 @@ import com.agentsflex.agent.Agent;
 
 public interface ChainOutputListener {
     void onOutput(Chain chain, Agent agent, Object outputMessage);
+
+    /**
+     * 流式输出时，每收到一个分片回调一次，完整内容仍然会通过 onOutput 回调
+     */
+    default void onDelta(Chain chain, Agent agent, CharSequence delta) {
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.chain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 执行链中某个输出 key 的流式内容：上游节点逐段写入，下游节点订阅后在分片到达时立即处理，
+ * 订阅时会先收到已经写入的内容，因此订阅和写入的先后顺序不影响结果。
+ * <p>
+ * 通过 {@link Chain#getStream(String)} 获取，同一个执行链（包括子链）中相同 key 共享同一个 ChainStream。
+ */
+public class ChainStream {
+
+    private final String key;
+    private final StringBuilder content = new StringBuilder();
+    private final List<ChainStreamSubscriber> subscribers = new ArrayList<>();
+    private final CompletableFuture<String> completion = new CompletableFuture<>();
+
+    public ChainStream(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public synchronized void emit(CharSequence chunk) {
+        if (chunk == null || chunk.length() == 0 || completion.isDone()) {
+            return;
+        }
+        content.append(chunk);
+        for (ChainStreamSubscriber subscriber : subscribers) {
+            subscriber.onChunk(chunk);
+        }
+    }
+
+    public synchronized void complete() {
+        if (completion.isDone()) {
+            return;
+        }
+        String text = content.toString();
+        completion.complete(text);
+        for (ChainStreamSubscriber subscriber : subscribers) {
+            subscriber.onComplete(text);
+        }
+        subscribers.clear();
+    }
+
+    public synchronized void fail(Throwable throwable) {
+        if (completion.isDone()) {
+            return;
+        }
+        completion.completeExceptionally(throwable);
+        for (ChainStreamSubscriber subscriber : subscribers) {
+            subscriber.onError(throwable);
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * 订阅流式内容，已经写入的内容会作为第一个分片立即回调
+     */
+    public synchronized void subscribe(ChainStreamSubscriber subscriber) {
+        if (content.length() > 0) {
+            subscriber.onChunk(content.toString());
+        }
+        if (!completion.isDone()) {
+            subscribers.add(subscriber);
+        } else if (completion.isCompletedExceptionally()) {
+            completion.whenComplete((text, error) -> subscriber.onError(error));
+        } else {
+            subscriber.onComplete(completion.join());
+        }
+    }
+
+    /**
+     * @return 全部内容写入完成后结束的 future
+     */
+    public CompletableFuture<String> getCompletion() {
+        return completion;
+    }
+
+    public synchronized String getContent() {
+        return content.toString();
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    @Override
+    public String toString() {
+        return "ChainStream{" +
+            "key='" + key + '\'' +
+            ", done=" + completion.isDone() +
+            '}';
+    }
+}
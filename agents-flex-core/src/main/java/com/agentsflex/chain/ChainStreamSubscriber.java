@@ -0,0 +1,30 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.chain;
+
+/**
+ * 执行链中流式输出的订阅者，回调在产生分片的线程中同步执行，不应阻塞
+ */
+public interface ChainStreamSubscriber {
+
+    void onChunk(CharSequence chunk);
+
+    default void onComplete(String content) {
+    }
+
+    default void onError(Throwable throwable) {
+    }
+}
@@ -0,0 +1,668 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.chain;
+
+import com.agentsflex.agent.Agent;
+import com.agentsflex.agent.Parameter;
+import com.agentsflex.chain.node.AgentNode;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+
+/**
+ * 有向无环图执行链：根据 AgentNode 的输入参数和输出 key（包括 outputMapping）自动推导节点之间的依赖，
+ * 依赖的节点都执行完成后立即执行，没有依赖关系的节点并行执行。
+ * <p>
+ * 依赖按节点的添加顺序推导：
+ * <ul>
+ *     <li>读取 key 的节点依赖在它之前最近一个输出该 key 的节点；之前没有时依赖之后最后一个输出该 key 的节点，
+ *     如果节点自己也输出该 key，则读取执行链的初始值</li>
+ *     <li>输出同一个 key 的多个节点按添加顺序执行</li>
+ *     <li>输出 key 的节点要等待之前读取该 key 旧值的节点执行完成</li>
+ * </ul>
+ * 没有定义输入参数或输出 key 的 Agent，以及其他类型的节点，需要通过 {@link #addEdge} 指定依赖。
+ * 执行前会检查是否存在环，存在环时执行链会以错误结束。
+ */
+public class DagChain extends BaseChain {
+
+    // 同时执行的最大节点数量，小于等于 0 时不限制
+    private int maxConcurrency;
+
+    // 为 null 时使用 ParallelChain 的共享线程池
+    private transient ExecutorService threadPool;
+
+    private final Map<ChainNode, Set<ChainNode>> edges = new LinkedHashMap<>();
+    private transient volatile Graph graph;
+
+    private final Set<ChainNode> finishedNodes = Collections.synchronizedSet(new HashSet<>());
+    private final Set<ChainNode> pauseNodes = Collections.synchronizedSet(new HashSet<>());
+
+    public DagChain() {
+    }
+
+    public DagChain(Agent... agents) {
+        for (Agent agent : agents) {
+            addNode(agent);
+        }
+    }
+
+    public DagChain(ChainNode... chainNodes) {
+        for (ChainNode chainNode : chainNodes) {
+            addNode(chainNode);
+        }
+    }
+
+    @Override
+    public void setNodes(List<ChainNode> chainNodes) {
+        super.setNodes(chainNodes);
+        this.graph = null;
+    }
+
+    @Override
+    public void addNode(ChainNode chainNode) {
+        super.addNode(chainNode);
+        this.graph = null;
+    }
+
+    /**
+     * 添加显式依赖：to 在 from 执行完成之后执行
+     */
+    public DagChain addEdge(ChainNode from, ChainNode to) {
+        synchronized (edges) {
+            edges.computeIfAbsent(from, k -> new LinkedHashSet<>()).add(to);
+        }
+        this.graph = null;
+        return this;
+    }
+
+    public DagChain addEdge(Object fromId, Object toId) {
+        return addEdge(findNode(fromId), findNode(toId));
+    }
+
+    private ChainNode findNode(Object id) {
+        List<ChainNode> nodes = getNodes();
+        if (nodes != null) {
+            for (ChainNode node : nodes) {
+                if (Objects.equals(node.getId(), id)) {
+                    return node;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Can not find node by id: " + id);
+    }
+
+    /**
+     * 构建依赖图并检查是否存在环
+     *
+     * @throws IllegalStateException 存在环时抛出
+     */
+    public void validate() {
+        getGraph();
+    }
+
+    /**
+     * @return 节点依赖的所有节点
+     */
+    public Set<ChainNode> getDependencies(ChainNode node) {
+        Set<ChainNode> dependencies = getGraph().dependencies.get(node);
+        return dependencies == null ? Collections.emptySet() : Collections.unmodifiableSet(dependencies);
+    }
+
+    private Graph getGraph() {
+        Graph g = this.graph;
+        if (g == null) {
+            List<ChainNode> nodes = getNodes();
+            Map<ChainNode, Set<ChainNode>> explicitEdges;
+            synchronized (edges) {
+                explicitEdges = new LinkedHashMap<>(edges);
+            }
+            g = Graph.build(nodes == null ? Collections.emptyList() : new ArrayList<>(nodes), explicitEdges);
+            this.graph = g;
+        }
+        return g;
+    }
+
+    @Override
+    protected void executeInternal() {
+        finishedNodes.clear();
+        pauseNodes.clear();
+        List<ChainNode> nodes = getNodes();
+        if (nodes != null) {
+            executeNodes(new LinkedHashSet<>(nodes));
+        }
+    }
+
+    @Override
+    protected void resumeInternal(Map<String, Object> variables) {
+        pauseNodes.clear();
+        Set<ChainNode> pending = new LinkedHashSet<>(getNodes());
+        pending.removeAll(finishedNodes);
+        executeNodes(pending);
+    }
+
+    @Override
+    public void waitInput(List<Parameter> parameters, AgentNode agent) {
+        pauseNodes.add(agent);
+        super.waitInput(parameters, agent);
+    }
+
+    @Override
+    protected CompletableFuture<Void> executeInternalAsync() {
+        finishedNodes.clear();
+        pauseNodes.clear();
+        List<ChainNode> nodes = getNodes();
+        return nodes == null
+            ? CompletableFuture.completedFuture(null)
+            : executeNodesAsync(new LinkedHashSet<>(nodes));
+    }
+
+    @Override
+    protected CompletableFuture<Void> resumeInternalAsync(Map<String, Object> variables) {
+        pauseNodes.clear();
+        Set<ChainNode> pending = new LinkedHashSet<>(getNodes());
+        pending.removeAll(finishedNodes);
+        return executeNodesAsync(pending);
+    }
+
+    private CompletableFuture<Void> executeNodesAsync(Set<ChainNode> pending) {
+        if (pending.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Execution execution = new Execution(getGraph(), pending, new CompletableFuture<>());
+        execution.start();
+        return execution.completion;
+    }
+
+    private void executeNodes(Set<ChainNode> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Execution execution = new Execution(getGraph(), pending, null);
+        execution.start();
+        try {
+            ForkJoinPool.managedBlock(execution);
+        } catch (InterruptedException e) {
+            execution.cancel();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        Throwable failure = execution.failure;
+        if (failure != null) {
+            execution.cancel();
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw new RuntimeException(failure);
+        }
+    }
+
+    @Override
+    protected void saveState(ChainCheckpoint checkpoint) {
+        Set<ChainNode> pending = new HashSet<>(getNodes());
+        synchronized (finishedNodes) {
+            pending.removeAll(finishedNodes);
+        }
+        checkpoint.setPendingNodes(indexesOf(pending));
+    }
+
+    @Override
+    protected void restoreState(ChainCheckpoint checkpoint) {
+        Set<ChainNode> finished = new HashSet<>(getNodes());
+        nodesAt(checkpoint.getPendingNodes()).forEach(finished::remove);
+        finishedNodes.clear();
+        finishedNodes.addAll(finished);
+        pauseNodes.clear();
+    }
+
+    @Override
+    protected void copyTo(Chain target) {
+        super.copyTo(target);
+        DagChain chain = (DagChain) target;
+        chain.maxConcurrency = this.maxConcurrency;
+        chain.threadPool = this.threadPool;
+
+        List<ChainNode> nodes = getNodes();
+        List<ChainNode> targetNodes = chain.getNodes();
+        Map<ChainNode, Set<ChainNode>> explicitEdges;
+        synchronized (edges) {
+            explicitEdges = new LinkedHashMap<>(edges);
+        }
+        if (nodes == targetNodes) {
+            chain.edges.putAll(explicitEdges);
+            try {
+                // 节点相同时共享依赖图，存在环时在执行时报告
+                chain.graph = getGraph();
+            } catch (IllegalStateException ignored) {
+            }
+            return;
+        }
+
+        // 嵌套的 Chain 节点被复制时，按位置替换依赖中的节点
+        Map<ChainNode, ChainNode> mapping = new IdentityHashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            mapping.put(nodes.get(i), targetNodes.get(i));
+        }
+        explicitEdges.forEach((from, tos) -> {
+            Set<ChainNode> mapped = new LinkedHashSet<>(tos.size());
+            for (ChainNode to : tos) {
+                mapped.add(mapping.getOrDefault(to, to));
+            }
+            chain.edges.put(mapping.getOrDefault(from, from), mapped);
+        });
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public ExecutorService getThreadPool() {
+        return threadPool != null ? threadPool : ParallelChain.getDefaultThreadPool();
+    }
+
+    public void setThreadPool(ExecutorService threadPool) {
+        this.threadPool = threadPool;
+    }
+
+
+    /**
+     * 节点依赖图
+     */
+    static class Graph {
+        final Map<ChainNode, Set<ChainNode>> dependencies = new HashMap<>();
+        final Map<ChainNode, Set<ChainNode>> dependents = new HashMap<>();
+
+        static Graph build(List<ChainNode> nodes, Map<ChainNode, Set<ChainNode>> explicitEdges) {
+            Graph graph = new Graph();
+            for (ChainNode node : nodes) {
+                graph.dependencies.put(node, new LinkedHashSet<>());
+                graph.dependents.put(node, new LinkedHashSet<>());
+            }
+
+            // 每个 key 按添加顺序的输出节点
+            Map<String, List<Integer>> producers = new HashMap<>();
+            for (int i = 0; i < nodes.size(); i++) {
+                for (String key : outputKeys(nodes.get(i))) {
+                    List<Integer> list = producers.computeIfAbsent(key, k -> new ArrayList<>());
+                    if (!list.isEmpty()) {
+                        // 输出同一个 key 的节点按顺序执行
+                        graph.addEdge(nodes.get(list.get(list.size() - 1)), nodes.get(i));
+                    }
+                    list.add(i);
+                }
+            }
+
+            for (int i = 0; i < nodes.size(); i++) {
+                ChainNode node = nodes.get(i);
+                for (String key : inputKeys(node)) {
+                    List<Integer> list = producers.get(key);
+                    if (list == null) {
+                        continue;
+                    }
+                    int source = -1;
+                    for (int p : list) {
+                        if (p < i) {
+                            source = p;
+                        }
+                    }
+                    if (source == -1 && !list.contains(i)) {
+                        // 之前没有节点输出该 key，读取之后最后一个输出该 key 的节点
+                        graph.addEdge(nodes.get(list.get(list.size() - 1)), node);
+                        continue;
+                    }
+                    if (source != -1) {
+                        graph.addEdge(nodes.get(source), node);
+                    }
+                    // 之后输出该 key 的节点要等待当前节点读取旧值
+                    for (int p : list) {
+                        if (p > i) {
+                            graph.addEdge(node, nodes.get(p));
+                        }
+                    }
+                }
+            }
+
+            for (Map.Entry<ChainNode, Set<ChainNode>> entry : explicitEdges.entrySet()) {
+                for (ChainNode to : entry.getValue()) {
+                    if (!graph.dependencies.containsKey(entry.getKey()) || !graph.dependencies.containsKey(to)) {
+                        throw new IllegalStateException("Edge references a node that is not in the DagChain: "
+                            + entry.getKey().getId() + " -> " + to.getId());
+                    }
+                    graph.addEdge(entry.getKey(), to);
+                }
+            }
+
+            graph.checkCycle(nodes);
+            return graph;
+        }
+
+        private void addEdge(ChainNode from, ChainNode to) {
+            if (from == to) {
+                return;
+            }
+            dependencies.get(to).add(from);
+            dependents.get(from).add(to);
+        }
+
+        /**
+         * Kahn 算法检查是否存在环
+         */
+        private void checkCycle(List<ChainNode> nodes) {
+            Map<ChainNode, Integer> inDegrees = new HashMap<>();
+            Deque<ChainNode> queue = new ArrayDeque<>();
+            for (ChainNode node : nodes) {
+                int inDegree = dependencies.get(node).size();
+                inDegrees.put(node, inDegree);
+                if (inDegree == 0) {
+                    queue.add(node);
+                }
+            }
+            int visited = 0;
+            while (!queue.isEmpty()) {
+                ChainNode node = queue.poll();
+                visited++;
+                for (ChainNode dependent : dependents.get(node)) {
+                    if (inDegrees.merge(dependent, -1, Integer::sum) == 0) {
+                        queue.add(dependent);
+                    }
+                }
+            }
+            if (visited != nodes.size()) {
+                List<Object> cycleNodes = new ArrayList<>();
+                for (Map.Entry<ChainNode, Integer> entry : inDegrees.entrySet()) {
+                    if (entry.getValue() > 0) {
+                        cycleNodes.add(entry.getKey().getId());
+                    }
+                }
+                throw new IllegalStateException("DagChain has a cycle between nodes: " + cycleNodes);
+            }
+        }
+
+        private static Set<String> inputKeys(ChainNode node) {
+            if (!(node instanceof AgentNode) || ((AgentNode) node).getAgent() == null) {
+                return Collections.emptySet();
+            }
+            Set<String> keys = new LinkedHashSet<>();
+            for (Parameter parameter : ((AgentNode) node).getAgent().getInputParameters()) {
+                keys.add(parameter.getName());
+            }
+            return keys;
+        }
+
+        private static Set<String> outputKeys(ChainNode node) {
+            if (!(node instanceof AgentNode) || ((AgentNode) node).getAgent() == null) {
+                return Collections.emptySet();
+            }
+            AgentNode agentNode = (AgentNode) node;
+            List<String> outputKeys = agentNode.getAgent().getOutputKeys();
+            if (outputKeys == null) {
+                return Collections.emptySet();
+            }
+            Map<String, String> outputMapping = agentNode.getOutputMapping();
+            Set<String> keys = new LinkedHashSet<>();
+            for (String key : outputKeys) {
+                keys.add(outputMapping != null ? outputMapping.getOrDefault(key, key) : key);
+            }
+            return keys;
+        }
+    }
+
+
+    /**
+     * 一次执行：依赖都完成的节点进入就绪队列，在并发数量限制内提交到线程池
+     */
+    class Execution implements ForkJoinPool.ManagedBlocker {
+        private final Graph graph;
+        private final Map<ChainNode, Integer> waiting = new HashMap<>();
+        private final Deque<ChainNode> ready = new ArrayDeque<>();
+        private final Map<ChainNode, Thread> runners = new HashMap<>();
+        private final List<Future<?>> futures = new ArrayList<>();
+        // 因为执行链不是 START 状态而没有执行的节点，恢复执行时需要重新执行
+        private final Set<ChainNode> notExecuted = new HashSet<>();
+        private int running;
+        private boolean cancelled;
+        private volatile Throwable failure;
+
+        // 异步执行时不为 null：节点通过 executeNodeAsync 执行，全部完成、暂停或者出错时结束
+        private final CompletableFuture<Void> completion;
+
+        Execution(Graph graph, Set<ChainNode> pending, CompletableFuture<Void> completion) {
+            this.graph = graph;
+            this.completion = completion;
+            for (ChainNode node : pending) {
+                int count = 0;
+                for (ChainNode dependency : graph.dependencies.get(node)) {
+                    if (pending.contains(dependency)) {
+                        count++;
+                    }
+                }
+                if (count == 0) {
+                    ready.add(node);
+                } else {
+                    waiting.put(node, count);
+                }
+            }
+        }
+
+        synchronized void start() {
+            schedule();
+            complete();
+        }
+
+        private void schedule() {
+            ExecutorService pool = getThreadPool();
+            while (!ready.isEmpty() && failure == null && !cancelled && getStatus() == ChainStatus.START
+                && (maxConcurrency <= 0 || running < maxConcurrency)) {
+                ChainNode node = ready.poll();
+                running++;
+                if (completion != null) {
+                    runAsync(node);
+                    continue;
+                }
+                try {
+                    futures.add(pool.submit(() -> run(node)));
+                } catch (RuntimeException e) {
+                    running--;
+                    failure = e;
+                }
+            }
+        }
+
+        private void run(ChainNode node) {
+            Throwable error = null;
+            synchronized (this) {
+                if (cancelled) {
+                    running--;
+                    notifyAll();
+                    return;
+                }
+                runners.put(node, Thread.currentThread());
+            }
+            try {
+                // 节点通常会阻塞等待大模型的响应，在 ForkJoinPool 中执行时让线程池补充线程
+                if (ForkJoinTask.inForkJoinPool()) {
+                    ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                        boolean finished;
+
+                        @Override
+                        public boolean block() {
+                            try {
+                                execute(node);
+                            } finally {
+                                finished = true;
+                            }
+                            return true;
+                        }
+
+                        @Override
+                        public boolean isReleasable() {
+                            return finished;
+                        }
+                    });
+                } else {
+                    execute(node);
+                }
+            } catch (Throwable e) {
+                error = e;
+            }
+
+            synchronized (this) {
+                runners.remove(node);
+                if (cancelled) {
+                    // 清除取消时设置的中断状态，避免影响线程池中的下一个任务
+                    Thread.interrupted();
+                }
+                finish(node, error);
+            }
+        }
+
+        private void runAsync(ChainNode node) {
+            if (getStatus() != ChainStatus.START) {
+                notifyNodeStart(node);
+                notifyNodeFinished(node, null);
+                notExecuted.add(node);
+                finish(node, null);
+                return;
+            }
+            executeNodeAsync(node).whenComplete((result, error) -> {
+                if (error == null) {
+                    merge(node, result);
+                }
+                synchronized (this) {
+                    finish(node, error);
+                    complete();
+                }
+            });
+        }
+
+        /**
+         * 节点执行完成后释放依赖它的节点，调用时需要持有锁
+         */
+        private void finish(ChainNode node, Throwable error) {
+            running--;
+            if (cancelled) {
+                notifyAll();
+                return;
+            }
+            if (error != null) {
+                if (failure == null) {
+                    failure = error;
+                }
+            } else if (!notExecuted.remove(node) && !pauseNodes.contains(node)) {
+                finishedNodes.add(node);
+                for (ChainNode dependent : graph.dependents.get(node)) {
+                    Integer count = waiting.get(dependent);
+                    if (count == null) {
+                        continue;
+                    }
+                    if (count == 1) {
+                        waiting.remove(dependent);
+                        ready.add(dependent);
+                    } else {
+                        waiting.put(dependent, count - 1);
+                    }
+                }
+                schedule();
+            }
+            notifyAll();
+        }
+
+        /**
+         * 异步执行时，出错或者没有可以继续执行的节点时结束，调用时需要持有锁
+         */
+        private void complete() {
+            if (completion == null || completion.isDone()) {
+                return;
+            }
+            if (failure != null) {
+                cancelled = true;
+                completion.completeExceptionally(failure);
+            } else if (isReleasable()) {
+                completion.complete(null);
+            }
+        }
+
+        private void execute(ChainNode node) {
+            Map<String, Object> result = null;
+            try {
+                notifyNodeStart(node);
+                if (getStatus() != ChainStatus.START) {
+                    synchronized (this) {
+                        notExecuted.add(node);
+                    }
+                    return;
+                }
+                result = node.execute(DagChain.this);
+            } finally {
+                notifyNodeFinished(node, result);
+            }
+            merge(node, result);
+        }
+
+        /**
+         * 其他节点暂停等待输入时，已经执行完成的节点的结果也需要保存，恢复执行时不会再次执行
+         */
+        private void merge(ChainNode node, Map<String, Object> result) {
+            ChainStatus status = getStatus();
+            if (status != ChainStatus.START && status != ChainStatus.PAUSE_FOR_INPUT
+                && status != ChainStatus.PAUSE_FOR_WAKE_UP) {
+                return;
+            }
+
+            if (!node.isSkip() && result != null) {
+                getMemory().putAll(result);
+            }
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            for (Future<?> future : futures) {
+                future.cancel(false);
+            }
+            for (Thread thread : runners.values()) {
+                thread.interrupt();
+            }
+        }
+
+        @Override
+        public synchronized boolean isReleasable() {
+            if (failure != null) {
+                return true;
+            }
+            // 暂停或者结束时，等待执行中的节点完成
+            return running == 0 && (ready.isEmpty() || getStatus() != ChainStatus.START);
+        }
+
+        @Override
+        public synchronized boolean block() throws InterruptedException {
+            while (!isReleasable()) {
+                wait();
+            }
+            return true;
+        }
+    }
+}
@@ -16,22 +16,54 @@
 package com.agentsflex.chain;
 
 import com.agentsflex.agent.Agent;
-import com.agentsflex.chain.event.OnNodeFinishedEvent;
-import com.agentsflex.chain.event.OnNodeStartEvent;
 import com.agentsflex.chain.node.AgentNode;
+import com.agentsflex.util.NamedThreadFactory;
+import com.agentsflex.util.NamedThreadPools;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 循环执行连
+ * <p>
+ * 同步执行（execute）时在调用线程中循环，两轮之间等待 intervalMillis；
+ * 定时执行（{@link #schedule(Map)} 或 executeAsync）时每一轮都提交到共享的 ScheduledExecutorService 中执行，
+ * 两轮之间不占用线程，大量的 LoopChain 只需要少量线程。
+ * <p>
+ * 可以通过 maxIterations 限制执行的轮数，通过 {@link #cancel()} 停止循环；
+ * 设置 errorBackoffMillis 后，某一轮出错时会按指数退避等待后从出错的节点重试，连续出错超过 maxErrorRetries 次时以错误结束。
  */
 public class LoopChain extends BaseChain {
 
+    private static volatile ScheduledExecutorService defaultScheduler;
+
     private long intervalMillis = 0L;
+
+    // 最多执行的轮数，小于等于 0 时不限制
+    private int maxIterations = 0;
+
+    // 出错后第一次重试前等待的时间，小于等于 0 时出错直接结束
+    private long errorBackoffMillis = 0L;
+    private long maxErrorBackoffMillis = 60_000L;
+    private int maxErrorRetries = 3;
+
+    // 为 null 时使用所有 LoopChain 共享的 defaultScheduler
+    private transient ScheduledExecutorService scheduler;
+
     private int currentIndex = 0;
+    private int iterations = 0;
+    private transient int errors;
+    private transient volatile boolean cancelled;
+
+    private transient ScheduledFuture<?> pending;
+    private transient Runnable pendingTask;
 
 
     public LoopChain() {
@@ -52,46 +84,81 @@ public class LoopChain extends BaseChain {
 
     @Override
     protected void executeInternal() {
-        while (getStatus() == ChainStatus.START) {
-            List<ChainNode> nodes = getNodes();
-            for (int i = currentIndex; i < nodes.size(); i++) {
-                try {
-                    ChainNode node = nodes.get(i);
-                    Map<String, Object> result = null;
-                    try {
-                        notifyEvent(new OnNodeStartEvent(node));
-                        if (this.getStatus() != ChainStatus.START) {
-                            break;
-                        }
-                        result = node.execute(this);
-                    } finally {
-                        notifyEvent(new OnNodeFinishedEvent(node, result));
-                    }
+        reset();
+        loop();
+    }
+
+    @Override
+    protected void resumeInternal(Map<String, Object> variables) {
+        if (variables != null) {
+            this.getMemory().putAll(variables);
+        }
+        loop();
+    }
 
+    private void loop() {
+        while (isRunning()) {
+            try {
+                executeRound();
+            } catch (RuntimeException e) {
+                await(onRoundError(e));
+                continue;
+            }
+            if (!onRoundFinished()) {
+                break;
+            }
+            await(intervalMillis);
+        }
+    }
+
+    private void executeRound() {
+        List<ChainNode> nodes = getNodes();
+        for (int i = currentIndex; i < nodes.size(); i++) {
+            try {
+                ChainNode node = nodes.get(i);
+                Map<String, Object> result = null;
+                try {
+                    notifyNodeStart(node);
                     if (this.getStatus() != ChainStatus.START) {
                         break;
                     }
+                    result = node.execute(this);
+                } finally {
+                    notifyNodeFinished(node, result);
+                }
 
-                    if (node.isSkip()) {
-                        continue;
-                    }
+                if (this.getStatus() != ChainStatus.START) {
+                    break;
+                }
 
-                    if (result != null) {
-                        this.getMemory().putAll(result);
-                    }
-                } finally {
-                    this.currentIndex = i;
+                if (node.isSkip()) {
+                    continue;
                 }
-            }
 
-            if (getStatus() != ChainStatus.START) {
-                break;
+                if (result != null) {
+                    this.getMemory().putAll(result);
+                }
+            } finally {
+                this.currentIndex = i;
             }
-            if (this.intervalMillis > 0) {
+        }
+    }
+
+    /**
+     * 同步执行时等待，{@link #cancel()} 时立即返回
+     */
+    private void await(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        synchronized (this) {
+            long remaining;
+            while (!cancelled && (remaining = deadline - System.nanoTime()) > 0) {
                 try {
-                    //noinspection BusyWait
-                    Thread.sleep(intervalMillis);
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
                 } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                     throw new RuntimeException(e);
                 }
             }
@@ -99,11 +166,259 @@ public class LoopChain extends BaseChain {
     }
 
     @Override
-    protected void resumeInternal(Map<String, Object> variables) {
+    protected CompletableFuture<Void> executeInternalAsync() {
+        reset();
+        return loopAsync();
+    }
+
+    @Override
+    protected CompletableFuture<Void> resumeInternalAsync(Map<String, Object> variables) {
         if (variables != null) {
             this.getMemory().putAll(variables);
         }
-        executeInternal();
+        return loopAsync();
+    }
+
+    /**
+     * 定时执行：每一轮（包括第一轮）都在 scheduler 中开始执行，两轮之间不占用线程。
+     * 节点默认通过 {@link ChainNode#executeAsync(Chain)} 在 blockingExecutor 中执行，不会阻塞 scheduler 的线程。
+     *
+     * @return 循环结束后完成，取消返回的 future 会停止循环
+     */
+    public CompletableFuture<Map<String, Object>> schedule(Map<String, Object> variables) {
+        CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        result.whenComplete((memory, error) -> {
+            if (result.isCancelled()) {
+                cancel();
+            }
+        });
+        getScheduler().execute(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            executeAsync(variables).whenComplete((memory, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(memory);
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * 停止循环：正在执行的一轮完成后结束，正在等待下一轮时立即结束，执行链正常结束
+     */
+    public void cancel() {
+        this.cancelled = true;
+        ScheduledFuture<?> future;
+        Runnable task;
+        synchronized (this) {
+            future = this.pending;
+            task = this.pendingTask;
+            this.pending = null;
+            this.pendingTask = null;
+            notifyAll();
+        }
+        // 取消等待中的下一轮，立即执行以结束循环
+        if (future != null && future.cancel(false) && task != null) {
+            task.run();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private CompletableFuture<Void> loopAsync() {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        loopAsync(result);
+        return result;
+    }
+
+    /**
+     * 执行到需要等待（节点未完成或者等待下一轮）为止，之后由节点完成的回调或者 scheduler 重新调用，
+     * 每一轮都不会引用之前的 future，循环结束时只完成一次 result
+     */
+    private void loopAsync(CompletableFuture<Void> result) {
+        try {
+            while (isRunning()) {
+                CompletableFuture<Void> round;
+                try {
+                    round = executeRoundAsync(currentIndex);
+                } catch (RuntimeException e) {
+                    round = new CompletableFuture<>();
+                    round.completeExceptionally(e);
+                }
+                if (!round.isDone()) {
+                    round.whenComplete((v, error) -> {
+                        try {
+                            continueAfter(nextDelay(error), result);
+                        } catch (Throwable e) {
+                            result.completeExceptionally(e);
+                        }
+                    });
+                    return;
+                }
+
+                Throwable error = null;
+                try {
+                    round.join();
+                } catch (CompletionException e) {
+                    error = e.getCause() != null ? e.getCause() : e;
+                }
+                long delay = nextDelay(error);
+                if (delay != 0) {
+                    continueAfter(delay, result);
+                    return;
+                }
+            }
+            result.complete(null);
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @return 下一轮之前等待的时间，小于 0 时结束循环
+     */
+    private long nextDelay(Throwable error) {
+        if (error != null) {
+            while (error instanceof CompletionException && error.getCause() != null) {
+                error = error.getCause();
+            }
+            return onRoundError(error instanceof RuntimeException ? (RuntimeException) error : new RuntimeException(error));
+        }
+        return onRoundFinished() ? intervalMillis : -1;
+    }
+
+    private void continueAfter(long delay, CompletableFuture<Void> result) {
+        if (delay < 0 || !isRunning()) {
+            result.complete(null);
+            return;
+        }
+        if (delay == 0) {
+            loopAsync(result);
+            return;
+        }
+
+        Runnable task = () -> {
+            synchronized (this) {
+                this.pending = null;
+                this.pendingTask = null;
+            }
+            loopAsync(result);
+        };
+        synchronized (this) {
+            if (cancelled) {
+                result.complete(null);
+                return;
+            }
+            this.pendingTask = task;
+            this.pending = getScheduler().schedule(task, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 从 index 开始异步执行一轮节点，已经完成的节点直接在当前线程继续执行，避免递归过深
+     */
+    private CompletableFuture<Void> executeRoundAsync(int index) {
+        List<ChainNode> nodes = getNodes();
+        for (int i = index; i < nodes.size(); i++) {
+            this.currentIndex = i;
+            ChainNode node = nodes.get(i);
+            CompletableFuture<Map<String, Object>> future = executeNodeAsync(node);
+            if (!future.isDone()) {
+                int next = i + 1;
+                return future.thenCompose(result -> onNodeFinished(node, result)
+                    ? executeRoundAsync(next)
+                    : CompletableFuture.completedFuture(null));
+            }
+            if (!onNodeFinished(node, future.join())) {
+                break;
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private boolean onNodeFinished(ChainNode node, Map<String, Object> result) {
+        if (this.getStatus() != ChainStatus.START) {
+            return false;
+        }
+        if (!node.isSkip() && result != null) {
+            this.getMemory().putAll(result);
+        }
+        return true;
+    }
+
+    private void reset() {
+        this.iterations = 0;
+        this.errors = 0;
+        this.cancelled = false;
+    }
+
+    private boolean isRunning() {
+        return getStatus() == ChainStatus.START && !cancelled;
+    }
+
+    /**
+     * 一轮执行完成
+     *
+     * @return 是否继续执行下一轮
+     */
+    private boolean onRoundFinished() {
+        if (!isRunning()) {
+            return false;
+        }
+        // 完整执行一轮之后，下一轮从第一个节点开始
+        this.currentIndex = 0;
+        this.errors = 0;
+        this.iterations++;
+        return maxIterations <= 0 || iterations < maxIterations;
+    }
+
+    /**
+     * 一轮执行出错，下一次从出错的节点开始重试
+     *
+     * @return 重试前等待的时间
+     * @throws RuntimeException 不重试时抛出原来的错误
+     */
+    private long onRoundError(RuntimeException error) {
+        if (errorBackoffMillis <= 0 || ++errors > maxErrorRetries || !isRunning()) {
+            throw error;
+        }
+        long backoff = errorBackoffMillis;
+        for (int i = 1; i < errors && backoff < maxErrorBackoffMillis; i++) {
+            backoff *= 2;
+        }
+        return Math.max(1, Math.min(backoff, maxErrorBackoffMillis));
+    }
+
+    @Override
+    protected void saveState(ChainCheckpoint checkpoint) {
+        checkpoint.putCursor("currentIndex", currentIndex);
+        checkpoint.putCursor("iterations", iterations);
+    }
+
+    @Override
+    protected void restoreState(ChainCheckpoint checkpoint) {
+        Object index = checkpoint.getCursor("currentIndex");
+        this.currentIndex = index instanceof Integer ? (Integer) index : 0;
+        Object iterations = checkpoint.getCursor("iterations");
+        this.iterations = iterations instanceof Integer ? (Integer) iterations : 0;
+    }
+
+    @Override
+    protected void copyTo(Chain target) {
+        super.copyTo(target);
+        LoopChain chain = (LoopChain) target;
+        chain.intervalMillis = this.intervalMillis;
+        chain.maxIterations = this.maxIterations;
+        chain.errorBackoffMillis = this.errorBackoffMillis;
+        chain.maxErrorBackoffMillis = this.maxErrorBackoffMillis;
+        chain.maxErrorRetries = this.maxErrorRetries;
+        chain.scheduler = this.scheduler;
     }
 
     public long getIntervalMillis() {
@@ -114,5 +429,69 @@ public class LoopChain extends BaseChain {
         this.intervalMillis = intervalMillis;
     }
 
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public long getErrorBackoffMillis() {
+        return errorBackoffMillis;
+    }
+
+    public void setErrorBackoffMillis(long errorBackoffMillis) {
+        this.errorBackoffMillis = errorBackoffMillis;
+    }
+
+    public long getMaxErrorBackoffMillis() {
+        return maxErrorBackoffMillis;
+    }
+
+    public void setMaxErrorBackoffMillis(long maxErrorBackoffMillis) {
+        this.maxErrorBackoffMillis = maxErrorBackoffMillis;
+    }
 
+    public int getMaxErrorRetries() {
+        return maxErrorRetries;
+    }
+
+    public void setMaxErrorRetries(int maxErrorRetries) {
+        this.maxErrorRetries = maxErrorRetries;
+    }
+
+    /**
+     * @return 已经完整执行的轮数
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    public ScheduledExecutorService getScheduler() {
+        return scheduler != null ? scheduler : getDefaultScheduler();
+    }
+
+    public void setScheduler(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public static ScheduledExecutorService getDefaultScheduler() {
+        if (defaultScheduler == null) {
+            synchronized (LoopChain.class) {
+                if (defaultScheduler == null) {
+                    defaultScheduler = NamedThreadPools.newScheduledThreadPool(
+                        Math.max(2, Runtime.getRuntime().availableProcessors()), new NamedThreadFactory("LoopChain", true));
+                }
+            }
+        }
+        return defaultScheduler;
+    }
+
+    /**
+     * 设置所有 LoopChain 共享的 scheduler，原来的 scheduler 不会被关闭
+     */
+    public static void setDefaultScheduler(ScheduledExecutorService scheduler) {
+        defaultScheduler = scheduler;
+    }
 }
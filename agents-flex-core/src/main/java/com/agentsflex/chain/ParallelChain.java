@@ -17,24 +17,40 @@ package com.agentsflex.chain;
 
 import com.agentsflex.agent.Agent;
 import com.agentsflex.agent.Parameter;
-import com.agentsflex.chain.event.OnNodeFinishedEvent;
-import com.agentsflex.chain.event.OnNodeStartEvent;
 import com.agentsflex.chain.node.AgentNode;
+import com.agentsflex.memory.LayeredContextMemory;
 import com.agentsflex.util.NamedThreadPools;
+import com.agentsflex.util.VirtualThreads;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 并行执行链：并发执行，并行执行（不确定其节点的执行顺序）
+ * <p>
+ * 默认所有 ParallelChain 共享同一个线程池：Java 21 及以上使用虚拟线程，否则使用 ForkJoinPool，
+ * 节点执行和等待节点完成时都会通过 {@link ForkJoinPool#managedBlock} 让线程池补充线程，嵌套的 ParallelChain 不会耗尽线程池。
+ * 任意一个节点出错时，会取消其他还在执行的节点。
+ * <p>
+ * 执行期间各个节点的结果先保存在各自的 {@link LayeredContextMemory} 中，所有节点都读取执行前的 memory，
+ * 全部完成后再通过 {@link #mergeBranches(List, LayeredContextMemory[])} 合并。
  */
 public class ParallelChain extends BaseChain {
 
-    private ExecutorService threadPool = NamedThreadPools.newFixedThreadPool("ParallelChain");
+    private static volatile ExecutorService defaultThreadPool;
+
+    // 为 null 时使用所有 ParallelChain 共享的 defaultThreadPool
+    private transient ExecutorService threadPool;
     private volatile List<ChainNode> pauseNodes;
 
     public ParallelChain() {
@@ -66,79 +82,364 @@ public class ParallelChain extends BaseChain {
     }
 
 
+    @Override
+    protected CompletableFuture<Void> executeInternalAsync() {
+        return executeNodesAsync(getNodes());
+    }
+
+    @Override
+    protected CompletableFuture<Void> resumeInternalAsync(Map<String, Object> variables) {
+        List<ChainNode> nodes = new ArrayList<>(this.pauseNodes);
+        this.pauseNodes.clear();
+        return executeNodesAsync(nodes);
+    }
+
+    /**
+     * 异步执行所有节点，任意一个节点出错时立即以该错误结束并取消其他节点，不再合并其他节点的结果
+     */
+    private CompletableFuture<Void> executeNodesAsync(List<ChainNode> nodes) {
+        if (nodes == null || nodes.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        LayeredContextMemory[] layers = new LayeredContextMemory[nodes.size()];
+        List<CompletableFuture<?>> branches = Collections.synchronizedList(new ArrayList<>(nodes.size()));
+        AtomicInteger remaining = new AtomicInteger(nodes.size());
+        Runnable onBranchDone = () -> {
+            if (remaining.decrementAndGet() == 0 && !completion.isDone()) {
+                mergeIfNecessary(nodes, layers);
+                completion.complete(null);
+            }
+        };
+        Runnable cancelBranches = () -> {
+            synchronized (branches) {
+                for (CompletableFuture<?> branch : branches) {
+                    branch.cancel(true);
+                }
+            }
+        };
+        for (int i = 0; i < nodes.size(); i++) {
+            ChainNode node = nodes.get(i);
+            if (completion.isDone()) {
+                break;
+            }
+            if (deferIfNotStarted(node)) {
+                onBranchDone.run();
+                continue;
+            }
+            int index = i;
+            CompletableFuture<Map<String, Object>> branch = executeNodeAsync(node);
+            branches.add(branch);
+            if (completion.isCompletedExceptionally()) {
+                // 其他节点在 add 之前已经出错并取消了已经启动的节点
+                branch.cancel(true);
+            }
+            branch.whenComplete((result, error) -> {
+                if (error != null) {
+                    if (completion.completeExceptionally(error)) {
+                        cancelBranches.run();
+                    }
+                    return;
+                }
+                layers[index] = toLayer(node, result);
+                onBranchDone.run();
+            });
+        }
+        return completion;
+    }
+
     private void executeNodes(List<ChainNode> nodes) {
         if (nodes == null || nodes.isEmpty()) {
             return;
         }
-        CountDownLatch latch = new CountDownLatch(nodes.size());
+        ExecutorService pool = getThreadPool();
+        Branches branches = new Branches(nodes.size());
         for (ChainNode node : nodes) {
-            threadPool.execute(new ParalleChainRunnable(this, node, latch));
+            Branch branch = new Branch(this, node, branches);
+            branches.add(branch);
+            try {
+                branch.future = pool.submit(branch);
+            } catch (RuntimeException e) {
+                branches.done(e);
+            }
         }
+
         try {
-            latch.await();
+            ForkJoinPool.managedBlock(branches);
         } catch (InterruptedException e) {
+            branches.cancel();
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
         }
+
+        LayeredContextMemory[] layers = new LayeredContextMemory[nodes.size()];
+        for (int i = 0; i < layers.length; i++) {
+            layers[i] = branches.list.get(i).layer;
+        }
+
+        Throwable failure = branches.failure.get();
+        if (failure != null) {
+            branches.cancel();
+            // 保留已经完成的节点的结果
+            mergeIfNecessary(nodes, layers);
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw new RuntimeException(failure);
+        }
+
+        mergeIfNecessary(nodes, layers);
+    }
+
+    private LayeredContextMemory toLayer(ChainNode node, Map<String, Object> result) {
+        if (node.isSkip() || result == null) {
+            return null;
+        }
+        LayeredContextMemory layer = new LayeredContextMemory(getMemory());
+        layer.putAll(result);
+        return layer;
+    }
+
+    // 其他节点暂停等待输入时也合并结果，恢复执行时只会执行暂停的节点
+    private void mergeIfNecessary(List<ChainNode> nodes, LayeredContextMemory[] layers) {
+        if (isMergeable()) {
+            mergeBranches(nodes, layers);
+        }
+    }
+
+    /**
+     * 合并各个节点的结果，默认按照节点的定义顺序合并：多个节点输出同名的数据时，后面的节点覆盖前面的节点，
+     * 结果与节点完成的先后顺序无关
+     *
+     * @param layers 与 nodes 一一对应，跳过、暂停或者没有执行完成的节点为 null
+     */
+    protected void mergeBranches(List<ChainNode> nodes, LayeredContextMemory[] layers) {
+        for (LayeredContextMemory layer : layers) {
+            if (layer != null) {
+                layer.mergeInto(getMemory());
+            }
+        }
+    }
+
+    private boolean isMergeable() {
+        ChainStatus status = getStatus();
+        return status == ChainStatus.START || status == ChainStatus.PAUSE_FOR_INPUT
+            || status == ChainStatus.PAUSE_FOR_WAKE_UP;
     }
 
     @Override
     public void waitInput(List<Parameter> parameters, AgentNode agent) {
+        addPauseNode(agent);
+        super.waitInput(parameters, agent);
+    }
+
+    private void addPauseNode(ChainNode node) {
         if (pauseNodes == null) {
             synchronized (this) {
                 if (pauseNodes == null) {
-                    pauseNodes = new ArrayList<>();
+                    pauseNodes = Collections.synchronizedList(new ArrayList<>());
                 }
             }
         }
-        pauseNodes.add(agent);
-        super.waitInput(parameters, agent);
+        pauseNodes.add(node);
+    }
+
+    /**
+     * 其他节点暂停等待输入时还没有开始执行的节点，需要在恢复执行时执行
+     *
+     * @return 执行链不是 START 状态，节点不需要执行时返回 true
+     */
+    private boolean deferIfNotStarted(ChainNode node) {
+        ChainStatus status = getStatus();
+        if (status == ChainStatus.START) {
+            return false;
+        }
+        if (status == ChainStatus.PAUSE_FOR_INPUT || status == ChainStatus.PAUSE_FOR_WAKE_UP) {
+            addPauseNode(node);
+        }
+        return true;
+    }
+
+    @Override
+    protected void saveState(ChainCheckpoint checkpoint) {
+        List<ChainNode> nodes = this.pauseNodes;
+        checkpoint.setPendingNodes(nodes == null ? null : indexesOf(new ArrayList<>(nodes)));
+    }
+
+    @Override
+    protected void restoreState(ChainCheckpoint checkpoint) {
+        this.pauseNodes = Collections.synchronizedList(nodesAt(checkpoint.getPendingNodes()));
+    }
+
+    @Override
+    protected void copyTo(Chain target) {
+        super.copyTo(target);
+        ((ParallelChain) target).threadPool = this.threadPool;
     }
 
     public ExecutorService getThreadPool() {
-        return threadPool;
+        return threadPool != null ? threadPool : getDefaultThreadPool();
     }
 
     public void setThreadPool(ExecutorService threadPool) {
         this.threadPool = threadPool;
     }
 
-    static class ParalleChainRunnable implements Runnable {
-        ParallelChain chain;
-        ChainNode node;
-        CountDownLatch countDownLatch;
+    public static ExecutorService getDefaultThreadPool() {
+        if (defaultThreadPool == null) {
+            synchronized (ParallelChain.class) {
+                if (defaultThreadPool == null) {
+                    defaultThreadPool = VirtualThreads.isSupported()
+                        ? NamedThreadPools.newThreadPerTaskExecutor("ParallelChain")
+                        : NamedThreadPools.newForkJoinPool(Runtime.getRuntime().availableProcessors(), "ParallelChain");
+                }
+            }
+        }
+        return defaultThreadPool;
+    }
+
+    /**
+     * 设置所有 ParallelChain 共享的线程池，原来的线程池不会被关闭
+     */
+    public static void setDefaultThreadPool(ExecutorService threadPool) {
+        defaultThreadPool = threadPool;
+    }
+
+    /**
+     * 一次 executeNodes 中的所有节点：全部完成或者任意一个出错时释放等待的线程
+     */
+    static class Branches implements ForkJoinPool.ManagedBlocker {
+        final List<Branch> list;
+        final AtomicInteger remaining;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
 
-        public ParalleChainRunnable(ParallelChain chain, ChainNode node, CountDownLatch countDownLatch) {
+        Branches(int size) {
+            this.list = new ArrayList<>(size);
+            this.remaining = new AtomicInteger(size);
+        }
+
+        synchronized void add(Branch branch) {
+            list.add(branch);
+        }
+
+        void done(Throwable throwable) {
+            if (throwable != null) {
+                failure.compareAndSet(null, throwable);
+            }
+            remaining.decrementAndGet();
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+
+        synchronized void cancel() {
+            for (Branch branch : list) {
+                branch.cancel();
+            }
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return remaining.get() == 0 || failure.get() != null;
+        }
+
+        @Override
+        public synchronized boolean block() throws InterruptedException {
+            while (!isReleasable()) {
+                wait();
+            }
+            return true;
+        }
+    }
+
+    static class Branch implements Runnable, ForkJoinPool.ManagedBlocker {
+        final ParallelChain chain;
+        final ChainNode node;
+        final Branches branches;
+        volatile Future<?> future;
+        volatile LayeredContextMemory layer;
+        Thread runner;
+        volatile boolean cancelled;
+        boolean finished;
+
+        Branch(ParallelChain chain, ChainNode node, Branches branches) {
             this.chain = chain;
             this.node = node;
-            this.countDownLatch = countDownLatch;
+            this.branches = branches;
         }
 
         @Override
         public void run() {
+            Throwable failure = null;
+            synchronized (this) {
+                if (cancelled) {
+                    branches.done(null);
+                    return;
+                }
+                runner = Thread.currentThread();
+            }
             try {
-                Map<String, Object> result = null;
-                try {
-                    chain.notifyEvent(new OnNodeStartEvent(node));
-                    if (chain.getStatus() != ChainStatus.START) {
-                        return;
+                // 节点通常会阻塞等待大模型的响应，在 ForkJoinPool 中执行时让线程池补充线程
+                if (ForkJoinTask.inForkJoinPool()) {
+                    ForkJoinPool.managedBlock(this);
+                } else {
+                    execute();
+                }
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                    if (cancelled) {
+                        // 清除取消时设置的中断状态，避免影响线程池中的下一个任务
+                        Thread.interrupted();
                     }
-                    result = node.execute(chain);
-                } finally {
-                    chain.notifyEvent(new OnNodeFinishedEvent(node, result));
                 }
+                branches.done(cancelled ? null : failure);
+            }
+        }
 
-                if (chain.getStatus() != ChainStatus.START) {
+        private void execute() {
+            Map<String, Object> result = null;
+            try {
+                chain.notifyNodeStart(node);
+                if (chain.deferIfNotStarted(node)) {
                     return;
                 }
-
-                if (!node.isSkip()) {
-                    chain.getMemory().putAll(result);
-                }
+                result = node.execute(chain);
             } finally {
-                this.countDownLatch.countDown();
+                chain.notifyNodeFinished(node, result);
             }
+            layer = chain.toLayer(node, result);
         }
-    }
 
+        synchronized void cancel() {
+            cancelled = true;
+            Future<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return finished;
+        }
 
+        @Override
+        public boolean block() {
+            try {
+                execute();
+            } finally {
+                finished = true;
+            }
+            return true;
+        }
+    }
 }
@@ -16,11 +16,10 @@
 package com.agentsflex.chain;
 
 import com.agentsflex.agent.Agent;
-import com.agentsflex.chain.event.OnNodeFinishedEvent;
-import com.agentsflex.chain.event.OnNodeStartEvent;
 import com.agentsflex.chain.node.AgentNode;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 顺序执行
@@ -58,13 +57,13 @@ public class SequentialChain extends BaseChain {
                 ChainNode node = nodes.get(i);
                 Map<String, Object> result = null;
                 try {
-                    notifyEvent(new OnNodeStartEvent(node));
+                    notifyNodeStart(node);
                     if (this.getStatus() != ChainStatus.START) {
                         break;
                     }
                     result = node.execute(this);
                 } finally {
-                    notifyEvent(new OnNodeFinishedEvent(node, result));
+                    notifyNodeFinished(node, result);
                 }
 
                 if (this.getStatus() != ChainStatus.START) {
@@ -84,6 +83,17 @@ public class SequentialChain extends BaseChain {
         }
     }
 
+    @Override
+    protected void saveState(ChainCheckpoint checkpoint) {
+        checkpoint.putCursor("currentIndex", currentIndex);
+    }
+
+    @Override
+    protected void restoreState(ChainCheckpoint checkpoint) {
+        Object index = checkpoint.getCursor("currentIndex");
+        this.currentIndex = index instanceof Integer ? (Integer) index : 0;
+    }
+
     @Override
     protected void resumeInternal(Map<String, Object> variables) {
         if (variables != null) {
@@ -92,5 +102,50 @@ public class SequentialChain extends BaseChain {
         executeInternal();
     }
 
+    @Override
+    protected CompletableFuture<Void> executeInternalAsync() {
+        return executeAsyncFrom(currentIndex);
+    }
+
+    @Override
+    protected CompletableFuture<Void> resumeInternalAsync(Map<String, Object> variables) {
+        if (variables != null) {
+            this.getMemory().putAll(variables);
+        }
+        return executeInternalAsync();
+    }
+
+    /**
+     * 从 index 开始依次异步执行节点，已经完成的节点直接在当前线程继续执行，避免递归过深
+     */
+    private CompletableFuture<Void> executeAsyncFrom(int index) {
+        List<ChainNode> nodes = getNodes();
+        for (int i = index; i < nodes.size(); i++) {
+            this.currentIndex = i;
+            ChainNode node = nodes.get(i);
+            CompletableFuture<Map<String, Object>> future = executeNodeAsync(node);
+            if (!future.isDone()) {
+                int next = i + 1;
+                return future.thenCompose(result -> onNodeFinished(node, result)
+                    ? executeAsyncFrom(next)
+                    : CompletableFuture.completedFuture(null));
+            }
+            if (!onNodeFinished(node, future.join())) {
+                break;
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private boolean onNodeFinished(ChainNode node, Map<String, Object> result) {
+        if (this.getStatus() != ChainStatus.START) {
+            return false;
+        }
+        if (!node.isSkip() && result != null) {
+            this.getMemory().putAll(result);
+        }
+        return true;
+    }
+
 
 }
@@ -19,11 +19,14 @@ import com.agentsflex.agent.Agent;
 import com.agentsflex.agent.Output;
 import com.agentsflex.agent.Parameter;
 import com.agentsflex.chain.Chain;
+import com.agentsflex.memory.LayeredContextMemory;
+import com.agentsflex.util.Futures;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class AgentNode extends AbstractBaseNode {
     private Agent agent;
@@ -59,33 +62,54 @@ public class AgentNode extends AbstractBaseNode {
 
     @Override
     public Map<String, Object> execute(Chain chain) {
+        Map<String, Object> variables = resolveVariables(chain);
+        if (variables == null) {
+            return null;
+        }
 
-        Map<String, Object> variables = new HashMap<>();
-        List<Parameter> requiredParameters = null;
+        return mapOutput(agent.execute(variables, chain));
+    }
 
+    @Override
+    public CompletableFuture<Map<String, Object>> executeAsync(Chain chain) {
+        Map<String, Object> variables = resolveVariables(chain);
+        if (variables == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Output> future = agent.executeAsync(variables, chain);
+        return Futures.propagateCancel(future.thenApply(this::mapOutput), future);
+    }
+
+    /**
+     * 从执行链中获取 Agent 的输入参数，缺少必填参数时通知执行链等待输入并返回 null
+     */
+    private Map<String, Object> resolveVariables(Chain chain) {
         List<Parameter> inputParameters = agent.getInputParameters();
 
-        // Agent 未定义输入参数
+        // Agent 未定义输入参数：使用执行链 memory 的分层视图，不复制数据，Agent 对参数的修改也不会影响执行链
         if (inputParameters.isEmpty()) {
-            variables.putAll(chain.getMemory().getAll());
+            return new LayeredContextMemory(chain.getMemory()).getAll();
         }
+
+        Map<String, Object> variables = new HashMap<>();
+        List<Parameter> requiredParameters = null;
+
         // Agent 定义了固定的输入参数
-        else {
-            for (Parameter parameter : inputParameters) {
-                Object value = chain.get(parameter.getName());
+        for (Parameter parameter : inputParameters) {
+            Object value = chain.get(parameter.getName());
 
-                //当只有一个参数时，或者当前参数为默认参数时，尝试使用 default 数据库
-                if (value == null && (parameter.isDefault() || inputParameters.size() == 1)) {
-                    value = chain.get(Output.DEFAULT_VALUE_KEY);
-                }
-                if (value == null && parameter.isRequired()) {
-                    if (requiredParameters == null) {
-                        requiredParameters = new ArrayList<>();
-                    }
-                    requiredParameters.add(parameter);
-                } else {
-                    variables.put(parameter.getName(), value);
+            //当只有一个参数时，或者当前参数为默认参数时，尝试使用 default 数据库
+            if (value == null && (parameter.isDefault() || inputParameters.size() == 1)) {
+                value = chain.get(Output.DEFAULT_VALUE_KEY);
+            }
+            if (value == null && parameter.isRequired()) {
+                if (requiredParameters == null) {
+                    requiredParameters = new ArrayList<>();
                 }
+                requiredParameters.add(parameter);
+            } else {
+                variables.put(parameter.getName(), value);
             }
         }
 
@@ -93,8 +117,10 @@ public class AgentNode extends AbstractBaseNode {
             chain.waitInput(requiredParameters, this);
             return null;
         }
+        return variables;
+    }
 
-        Output output = agent.execute(variables, chain);
+    private Map<String, Object> mapOutput(Output output) {
         List<String> outputKeys = agent.getOutputKeys();
         if (outputKeys == null || outputKeys.isEmpty()
             || outputMapping == null || outputMapping.isEmpty()) {
@@ -0,0 +1,121 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.chain.node;
+
+import com.agentsflex.chain.Chain;
+import com.agentsflex.chain.ChainStream;
+import com.agentsflex.chain.ChainStreamSubscriber;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 消费上游节点流式输出的节点：订阅 streamKey 对应的 {@link ChainStream}，每收到一个分片调用一次 onChunk，
+ * 上游输出完成后调用 onComplete 并结束。
+ * <p>
+ * 需要和上游节点同时执行才能边生成边处理，例如放在 ParallelChain 或者 DagChain 中；
+ * 在 SequentialChain 中放在上游节点之后时，会一次性收到上游的全部内容。
+ */
+public abstract class StreamConsumerNode extends AbstractBaseNode {
+
+    protected String streamKey;
+
+    public StreamConsumerNode() {
+    }
+
+    public StreamConsumerNode(String streamKey) {
+        this.streamKey = streamKey;
+    }
+
+    public String getStreamKey() {
+        return streamKey;
+    }
+
+    public void setStreamKey(String streamKey) {
+        this.streamKey = streamKey;
+    }
+
+    /**
+     * 在上游产生分片的线程中调用，不应阻塞
+     */
+    protected abstract void onChunk(Chain chain, CharSequence chunk);
+
+    /**
+     * @return 节点的执行结果，会合并到执行链的 memory 中
+     */
+    protected Map<String, Object> onComplete(Chain chain, String content) {
+        return null;
+    }
+
+    @Override
+    public Map<String, Object> execute(Chain chain) {
+        try {
+            return executeAsync(chain).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> executeAsync(Chain chain) {
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        chain.getStream(streamKey).subscribe(new ChainStreamSubscriber() {
+            @Override
+            public void onChunk(CharSequence chunk) {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    StreamConsumerNode.this.onChunk(chain, chunk);
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onComplete(String content) {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(StreamConsumerNode.this.onComplete(chain, content));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamConsumerNode{" +
+            "streamKey='" + streamKey + '\'' +
+            ", id=" + id +
+            ", skip=" + skip +
+            '}';
+    }
+}
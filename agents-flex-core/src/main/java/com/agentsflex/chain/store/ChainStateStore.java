@@ -0,0 +1,33 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.chain.store;
+
+import com.agentsflex.chain.ChainCheckpoint;
+
+/**
+ * 执行链快照的存储，用于在暂停等待输入时释放执行链，并在任意实例中恢复执行
+ */
+public interface ChainStateStore {
+
+    void save(ChainCheckpoint checkpoint);
+
+    /**
+     * @return 不存在时返回 null
+     */
+    ChainCheckpoint load(Object chainId);
+
+    void remove(Object chainId);
+}
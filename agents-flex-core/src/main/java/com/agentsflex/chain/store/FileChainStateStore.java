@@ -0,0 +1,224 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.chain.store;
+
+import com.agentsflex.agent.Parameter;
+import com.agentsflex.chain.ChainCheckpoint;
+import com.agentsflex.chain.ChainStatus;
+import com.agentsflex.document.Document;
+import com.agentsflex.store.VectorData;
+import com.agentsflex.util.HashUtil;
+import com.agentsflex.util.Metadata;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 基于文件的快照存储：每个执行链一个文件，使用 gzip 压缩的 Java 序列化格式，
+ * 先写入临时文件再替换，写入过程中崩溃不会损坏已有的快照。
+ * <p>
+ * 多个实例共享同一个目录（例如网络文件系统）时，可以在任意实例中恢复执行。
+ * <p>
+ * 读取时只允许反序列化快照本身、常用的 JDK 类型（字符串、数字、集合等）以及 {@link Document}，
+ * memory 中保存了其他类型时需要通过 {@link #allowClass(String)} 添加。
+ */
+public class FileChainStateStore implements ChainStateStore {
+
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9_-]{1,128}");
+    private static final String SUFFIX = ".chain.gz";
+
+    private static final Set<String> DEFAULT_ALLOWED_CLASSES = new HashSet<>(Arrays.asList(
+        ChainCheckpoint.class.getName(), ChainStatus.class.getName(), Parameter.class.getName(),
+        Document.class.getName(), VectorData.class.getName(), Metadata.class.getName(),
+        Object.class.getName(), String.class.getName(), Number.class.getName(), Enum.class.getName(),
+        Boolean.class.getName(), Character.class.getName(), Byte.class.getName(), Short.class.getName(),
+        Integer.class.getName(), Long.class.getName(), Float.class.getName(), Double.class.getName(),
+        BigDecimal.class.getName(), BigInteger.class.getName(), Date.class.getName(),
+        ArrayList.class.getName(), LinkedList.class.getName(), HashMap.class.getName(), LinkedHashMap.class.getName(),
+        TreeMap.class.getName(), HashSet.class.getName(), LinkedHashSet.class.getName(), TreeSet.class.getName(),
+        ConcurrentHashMap.class.getName(), "java.util.concurrent.ConcurrentHashMap$Segment",
+        "java.util.Arrays$ArrayList", "java.util.Collections$EmptyList", "java.util.Collections$EmptyMap",
+        "java.util.Collections$EmptySet", "java.util.Collections$SingletonList", "java.util.Collections$SingletonMap",
+        "java.util.Collections$SingletonSet", "java.util.Collections$UnmodifiableCollection",
+        "java.util.Collections$UnmodifiableList", "java.util.Collections$UnmodifiableRandomAccessList",
+        "java.util.Collections$UnmodifiableMap", "java.util.Collections$UnmodifiableSet",
+        "java.util.Collections$SynchronizedCollection", "java.util.Collections$SynchronizedList",
+        "java.util.Collections$SynchronizedRandomAccessList", "java.util.Collections$SynchronizedMap"
+    ));
+
+    private final File directory;
+    private final Set<String> allowedClasses = ConcurrentHashMap.newKeySet();
+    private final Set<String> allowedPackages = ConcurrentHashMap.newKeySet();
+
+    public FileChainStateStore(File directory) {
+        this.directory = directory;
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IllegalArgumentException("Can not create directory: " + directory);
+        }
+    }
+
+    public FileChainStateStore(String directory) {
+        this(new File(directory));
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 允许反序列化 memory 中保存的其他类型
+     *
+     * @param name 类名，或者以 "." 结尾的包名（包括子包）
+     */
+    public FileChainStateStore allowClass(String name) {
+        if (name.endsWith(".")) {
+            allowedPackages.add(name);
+        } else {
+            allowedClasses.add(name);
+        }
+        return this;
+    }
+
+    public FileChainStateStore allowClass(Class<?> clazz) {
+        return allowClass(clazz.getName());
+    }
+
+    protected boolean isAllowed(String className) {
+        if (DEFAULT_ALLOWED_CLASSES.contains(className) || allowedClasses.contains(className)) {
+            return true;
+        }
+        for (String allowedPackage : allowedPackages) {
+            if (className.startsWith(allowedPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void save(ChainCheckpoint checkpoint) {
+        File file = getFile(checkpoint.getChainId());
+        Path temp = null;
+        try {
+            // 临时文件名由文件系统保证唯一，多个实例同时写入同一个目录时不会冲突
+            temp = Files.createTempFile(directory.toPath(), file.getName() + ".", ".tmp");
+            try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp))))) {
+                out.writeObject(checkpoint);
+            }
+            move(temp, file.toPath());
+        } catch (IOException e) {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public ChainCheckpoint load(Object chainId) {
+        File file = getFile(chainId);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (ObjectInputStream in = new AllowListObjectInputStream(new GZIPInputStream(
+            new BufferedInputStream(new FileInputStream(file))))) {
+            return (ChainCheckpoint) in.readObject();
+        } catch (FileNotFoundException e) {
+            // 已经被其他线程删除
+            return null;
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void remove(Object chainId) {
+        File file = getFile(chainId);
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    protected File getFile(Object chainId) {
+        if (chainId == null) {
+            throw new IllegalArgumentException("Chain id must not be null");
+        }
+        String id = chainId.toString();
+        String name = SAFE_NAME.matcher(id).matches() ? id : HashUtil.sha256(id);
+        return new File(directory, name + SUFFIX);
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 只允许反序列化 {@link #isAllowed(String)} 的类型，避免共享目录中被替换的文件执行任意的反序列化代码
+     */
+    private class AllowListObjectInputStream extends ObjectInputStream {
+
+        AllowListObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            String componentName = name;
+            while (componentName.startsWith("[")) {
+                componentName = componentName.substring(1);
+            }
+            // 基本类型的数组，例如 [I、[D
+            boolean primitiveArray = componentName.length() == 1 && !name.equals(componentName);
+            if (componentName.startsWith("L") && componentName.endsWith(";")) {
+                componentName = componentName.substring(1, componentName.length() - 1);
+            }
+            if (!primitiveArray && !isAllowed(componentName)) {
+                throw new InvalidClassException(name, "Class is not allowed to be deserialized from chain checkpoint");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+            throw new InvalidClassException("Proxy classes are not allowed to be deserialized from chain checkpoint");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FileChainStateStore{" +
+            "directory=" + directory +
+            '}';
+    }
+}
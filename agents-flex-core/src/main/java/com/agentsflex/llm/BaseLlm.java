@@ -15,15 +15,101 @@
  */
 package com.agentsflex.llm;
 
+import com.agentsflex.llm.client.LlmClient;
+import com.agentsflex.llm.client.LlmClientListener;
+import com.agentsflex.llm.client.impl.DirectSseClient;
+import com.agentsflex.llm.client.impl.SseClient;
+import com.agentsflex.llm.limiter.RateLimiter;
+import com.agentsflex.util.NamedThreadPools;
+import com.agentsflex.util.TokenUtil;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 public abstract class BaseLlm<T extends LlmConfig> implements Llm {
 
     protected T config;
+    protected RateLimiter rateLimiter;
 
     public BaseLlm(T config) {
         this.config = config;
+        this.rateLimiter = RateLimiter.of(config);
     }
 
     public T getConfig() {
         return config;
     }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * 创建流式请求的 SSE 客户端，开启 directSse 时使用直接读取字节的 DirectSseClient
+     */
+    protected LlmClient createSseClient() {
+        return config.isDirectSse() ? new DirectSseClient() : new SseClient();
+    }
+
+    /**
+     * 估算请求消耗的 token：请求内容的 token 加上 maxTokens
+     */
+    protected int estimateTokens(String payload, ChatOptions options) {
+        int tokens = TokenUtil.estimateTokens(payload);
+        if (options != null && options.getMaxTokens() > 0) {
+            tokens += options.getMaxTokens();
+        }
+        return tokens;
+    }
+
+    /**
+     * 阻塞等待限流器的额度，没有配置限流器时直接返回
+     */
+    protected void acquirePermit(String payload, ChatOptions options) {
+        if (rateLimiter == null) {
+            return;
+        }
+        try {
+            rateLimiter.acquire(estimateTokens(payload, options));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    protected CompletableFuture<Void> acquirePermitAsync(String payload, ChatOptions options) {
+        if (rateLimiter == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return rateLimiter.acquireAsync(estimateTokens(payload, options));
+    }
+
+    /**
+     * 获得限流器的额度之后调用 start 发起请求，不阻塞调用线程。
+     * 没有配置限流器或者额度充足时直接在当前线程执行；需要排队时在 {@link NamedThreadPools#blockingExecutor()} 中执行，
+     * 不占用限流器的调度线程。无法获得额度时，与请求失败一样依次回调 listener 的 onStart 和 onFailure
+     */
+    protected void runWhenPermitted(String payload, ChatOptions options, LlmClient client, LlmClientListener listener, Runnable start) {
+        CompletableFuture<Void> permit = acquirePermitAsync(payload, options);
+        if (permit.isDone() && !permit.isCompletedExceptionally()) {
+            start.run();
+            return;
+        }
+        permit.whenCompleteAsync((r, e) -> {
+            if (e != null) {
+                listener.onStart(client);
+                listener.onFailure(client, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                return;
+            }
+            try {
+                start.run();
+            } catch (RuntimeException ex) {
+                listener.onFailure(client, ex);
+            }
+        }, NamedThreadPools.blockingExecutor());
+    }
 }
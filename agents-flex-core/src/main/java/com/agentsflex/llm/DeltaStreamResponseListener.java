@@ -0,0 +1,36 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm;
+
+import com.agentsflex.message.AiMessage;
+
+/**
+ * 只接收增量内容的流式监听器：每个分片不会再创建 MessageResponse，也不会复制完整内容。
+ * Function Calling 的响应仍然通过 onMessage 回调。
+ */
+public interface DeltaStreamResponseListener<R extends MessageResponse<M>, M extends AiMessage> extends StreamResponseListener<R, M> {
+
+    /**
+     * @param context     上下文
+     * @param delta       本次新增的内容
+     * @param fullContent 到目前为止的完整内容，只在本次回调中有效，需要保存时请调用 toString()
+     */
+    void onDelta(ChatContext context, CharSequence delta, CharSequence fullContent);
+
+    @Override
+    default void onMessage(ChatContext context, R response) {
+    }
+}
@@ -17,9 +17,15 @@ package com.agentsflex.llm;
 
 import com.agentsflex.llm.embedding.EmbeddingModel;
 import com.agentsflex.llm.response.AiMessageResponse;
+import com.agentsflex.llm.stream.OverflowPolicy;
+import com.agentsflex.llm.stream.StreamResponsePublisher;
 import com.agentsflex.message.AiMessage;
 import com.agentsflex.prompt.Prompt;
 import com.agentsflex.prompt.TextPrompt;
+import com.agentsflex.util.NamedThreadPools;
+import org.reactivestreams.Publisher;
+
+import java.util.concurrent.CompletableFuture;
 
 public interface Llm extends EmbeddingModel {
 
@@ -39,6 +45,19 @@ public interface Llm extends EmbeddingModel {
 
     <R extends MessageResponse<M>, M extends AiMessage> R chat(Prompt<M> prompt, ChatOptions options);
 
+    //chatAsync
+    default <R extends MessageResponse<M>, M extends AiMessage> CompletableFuture<R> chatAsync(Prompt<M> prompt) {
+        return chatAsync(prompt, ChatOptions.DEFAULT);
+    }
+
+    /**
+     * 异步对话，默认实现会在 {@link NamedThreadPools#blockingExecutor()} 中调用 {@link #chat(Prompt, ChatOptions)}（Java 21 及以上为虚拟线程），
+     * 具体的 Llm 应基于 http 的异步回调重写此方法，以避免阻塞线程
+     */
+    default <R extends MessageResponse<M>, M extends AiMessage> CompletableFuture<R> chatAsync(Prompt<M> prompt, ChatOptions options) {
+        return CompletableFuture.supplyAsync(() -> chat(prompt, options), NamedThreadPools.blockingExecutor());
+    }
+
     default void chatStream(String prompt, StreamResponseListener<AiMessageResponse, AiMessage> listener) {
         this.chatStream(new TextPrompt(prompt), listener, ChatOptions.DEFAULT);
     }
@@ -54,4 +73,21 @@ public interface Llm extends EmbeddingModel {
 
     <R extends MessageResponse<M>, M extends AiMessage> void chatStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options);
 
+    //chatStreamPublisher
+    default Publisher<AiMessageResponse> chatStreamPublisher(String prompt) {
+        return chatStreamPublisher(new TextPrompt(prompt), ChatOptions.DEFAULT);
+    }
+
+    /**
+     * 以 Reactive Streams 的方式进行流式对话，按订阅方的需求推送消息，默认缓冲 256 条消息，超出时结束订阅并报错
+     */
+    default <R extends MessageResponse<M>, M extends AiMessage> StreamResponsePublisher<R, M> chatStreamPublisher(Prompt<M> prompt, ChatOptions options) {
+        return new StreamResponsePublisher<>(this, prompt, options);
+    }
+
+    default <R extends MessageResponse<M>, M extends AiMessage> StreamResponsePublisher<R, M> chatStreamPublisher(Prompt<M> prompt, ChatOptions options
+        , int bufferSize, OverflowPolicy overflowPolicy) {
+        return new StreamResponsePublisher<>(this, prompt, options, bufferSize, overflowPolicy);
+    }
+
 }
@@ -16,6 +16,8 @@
 
 package com.agentsflex.llm;
 
+import com.agentsflex.llm.client.RetryPolicy;
+
 import java.io.Serializable;
 
 public class LlmConfig implements Serializable {
@@ -30,6 +32,25 @@ public class LlmConfig implements Serializable {
 
 	private boolean debug;
 
+	// http transport，相同配置的 LlmConfig 会共享同一个连接池和 Dispatcher
+	private long connectTimeoutMillis = 180_000;
+	private long readTimeoutMillis = 180_000;
+	private int maxIdleConnections = 32;
+	private long keepAliveMillis = 300_000;
+	private int maxRequests = 256;
+	private int maxRequestsPerHost = 64;
+
+	// 请求失败时的重试策略，默认只重试 429、503 和连接失败；
+	// 对话请求重试只会多消耗 token，需要在 5xx 和读超时时也重试时可以设置 retryNonIdempotent
+	private RetryPolicy retryPolicy = new RetryPolicy();
+
+	// 客户端限流，小于等于 0 时不限制
+	private int requestsPerMinute;
+	private int tokensPerMinute;
+
+	// 流式请求直接从响应流中读取 SSE 事件的字节交给解析器，不为每个事件创建 String
+	private boolean directSse;
+
 	public boolean isDebug() {
 		return debug;
 	}
@@ -69,4 +90,84 @@ public class LlmConfig implements Serializable {
 	public void setApiSecret(String apiSecret) {
 		this.apiSecret = apiSecret;
 	}
+
+	public long getConnectTimeoutMillis() {
+		return connectTimeoutMillis;
+	}
+
+	public void setConnectTimeoutMillis(long connectTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	public long getReadTimeoutMillis() {
+		return readTimeoutMillis;
+	}
+
+	public void setReadTimeoutMillis(long readTimeoutMillis) {
+		this.readTimeoutMillis = readTimeoutMillis;
+	}
+
+	public int getMaxIdleConnections() {
+		return maxIdleConnections;
+	}
+
+	public void setMaxIdleConnections(int maxIdleConnections) {
+		this.maxIdleConnections = maxIdleConnections;
+	}
+
+	public long getKeepAliveMillis() {
+		return keepAliveMillis;
+	}
+
+	public void setKeepAliveMillis(long keepAliveMillis) {
+		this.keepAliveMillis = keepAliveMillis;
+	}
+
+	public int getMaxRequests() {
+		return maxRequests;
+	}
+
+	public void setMaxRequests(int maxRequests) {
+		this.maxRequests = maxRequests;
+	}
+
+	public int getMaxRequestsPerHost() {
+		return maxRequestsPerHost;
+	}
+
+	public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+		this.maxRequestsPerHost = maxRequestsPerHost;
+	}
+
+	public int getRequestsPerMinute() {
+		return requestsPerMinute;
+	}
+
+	public void setRequestsPerMinute(int requestsPerMinute) {
+		this.requestsPerMinute = requestsPerMinute;
+	}
+
+	public int getTokensPerMinute() {
+		return tokensPerMinute;
+	}
+
+	public void setTokensPerMinute(int tokensPerMinute) {
+		this.tokensPerMinute = tokensPerMinute;
+	}
+
+	public boolean isDirectSse() {
+		return directSse;
+	}
+
+	public void setDirectSse(boolean directSse) {
+		this.directSse = directSse;
+	}
+
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
 }
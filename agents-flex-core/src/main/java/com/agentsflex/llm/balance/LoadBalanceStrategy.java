@@ -0,0 +1,29 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.balance;
+
+public enum LoadBalanceStrategy {
+
+    /**
+     * 选择正在执行的请求最少的节点
+     */
+    LEAST_OUTSTANDING,
+
+    /**
+     * 选择 "延迟的指数加权平均值 * (正在执行的请求数 + 1)" 最小的节点
+     */
+    EWMA_LATENCY
+}
@@ -0,0 +1,428 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.balance;
+
+import com.agentsflex.document.Document;
+import com.agentsflex.llm.ChatContext;
+import com.agentsflex.llm.ChatOptions;
+import com.agentsflex.llm.Llm;
+import com.agentsflex.llm.LlmConfig;
+import com.agentsflex.llm.MessageResponse;
+import com.agentsflex.llm.StreamResponseListener;
+import com.agentsflex.llm.client.LlmClient;
+import com.agentsflex.llm.client.LlmClientListener;
+import com.agentsflex.llm.client.RetryPolicy;
+import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.llm.response.AbstractBaseMessageResponse;
+import com.agentsflex.message.AiMessage;
+import com.agentsflex.prompt.Prompt;
+import com.agentsflex.store.VectorData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 把多个相同模型的 Llm（例如不同 endpoint 或者不同 apiKey 的 OpenAiLlm）组合成一个 Llm。
+ * <p>
+ * 每次请求根据 {@link LoadBalanceStrategy} 选择节点；请求失败（异常、返回 null 或者返回错误）时自动切换到其他节点，
+ * 流式请求只在收到第一条消息之前切换。只有暂时性的失败（见 {@link #isMemberFailure(Object, Throwable)}）计入连续失败次数，
+ * 连续失败次数达到 failureThreshold 的节点会被熔断 openDurationMillis 毫秒，
+ * 之后只允许一个探测请求通过，探测成功后恢复；所有节点都被熔断时仍然会选择节点，而不是直接失败。
+ */
+public class LoadBalancedLlm implements Llm {
+
+    // 所有节点都失败时，回调 StreamResponseListener 使用的 client
+    private static final LlmClient NOOP_CLIENT = new LlmClient() {
+        @Override
+        public void start(String url, Map<String, String> headers, String payload, LlmClientListener listener, LlmConfig config) {
+        }
+
+        @Override
+        public void stop() {
+        }
+    };
+
+    // OpenAI 兼容接口中表示请求本身错误的 error type 或者 code
+    private static final String[] CLIENT_ERRORS = {"invalid_request", "authentication", "permission", "not_found"
+        , "invalid_api_key", "context_length"};
+
+    private final List<LoadBalancedMember> members;
+    private LoadBalanceStrategy strategy = LoadBalanceStrategy.LEAST_OUTSTANDING;
+    private int failureThreshold = 3;
+    private long openDurationMillis = 30_000;
+    private double ewmaDecay = 0.8;
+
+    public LoadBalancedLlm(Llm... llms) {
+        this(Arrays.asList(llms));
+    }
+
+    public LoadBalancedLlm(Collection<? extends Llm> llms) {
+        if (llms == null || llms.isEmpty()) {
+            throw new IllegalArgumentException("llms can not be empty");
+        }
+        this.members = new ArrayList<>(llms.size());
+        for (Llm llm : llms) {
+            this.members.add(new LoadBalancedMember(llm));
+        }
+    }
+
+    public LoadBalancedLlm(LoadBalanceStrategy strategy, Llm... llms) {
+        this(llms);
+        this.strategy = strategy;
+    }
+
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> R chat(Prompt<M> prompt, ChatOptions options) {
+        return execute(llm -> llm.<R, M>chat(prompt, options), LoadBalancedLlm::isFailedResponse);
+    }
+
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> CompletableFuture<R> chatAsync(Prompt<M> prompt, ChatOptions options) {
+        return executeAsync(llm -> llm.<R, M>chatAsync(prompt, options), LoadBalancedLlm::isFailedResponse, new HashSet<>(), null);
+    }
+
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> void chatStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options) {
+        new FailoverStream<>(prompt, listener, options).next(null, null);
+    }
+
+    @Override
+    public VectorData embed(Document document, EmbeddingOptions options) {
+        return execute(llm -> llm.embed(document, options), vectorData -> vectorData == null);
+    }
+
+    @Override
+    public List<VectorData> embedAll(List<Document> documents, EmbeddingOptions options) {
+        return execute(llm -> llm.embedAll(documents, options), list -> list == null || list.contains(null));
+    }
+
+    @Override
+    public CompletableFuture<VectorData> embedAsync(Document document, EmbeddingOptions options) {
+        return executeAsync(llm -> llm.embedAsync(document, options), vectorData -> vectorData == null, new HashSet<>(), null);
+    }
+
+
+    private static boolean isFailedResponse(MessageResponse<?> response) {
+        return response == null
+            || (response instanceof AbstractBaseMessageResponse && ((AbstractBaseMessageResponse<?>) response).isError());
+    }
+
+    private void onFailure(LoadBalancedMember member, Object result, Throwable error) {
+        if (isMemberFailure(result, error)) {
+            member.onFailure(failureThreshold, openDurationMillis);
+        } else {
+            member.onClientError();
+        }
+    }
+
+    /**
+     * 失败是否计入节点的连续失败次数：与 {@link RetryPolicy} 一致，只有 5xx、408、429、超时以及 IO 异常等暂时性的失败才计入；
+     * 其他 4xx 是请求本身的错误，换一个节点也不会成功，不应该导致节点被熔断
+     *
+     * @param result 失败的结果，出现异常时为 null
+     * @param error  异常，没有异常时为 null
+     */
+    protected boolean isMemberFailure(Object result, Throwable error) {
+        if (error != null) {
+            return RetryPolicy.isRetryableFailure(error);
+        }
+        if (result instanceof AbstractBaseMessageResponse) {
+            return isRetryableError((AbstractBaseMessageResponse<?>) result);
+        }
+        // 没有结果（例如网络异常时 HttpClient 返回 null）或者流式请求没有给出原因
+        return true;
+    }
+
+    private static boolean isRetryableError(AbstractBaseMessageResponse<?> response) {
+        String code = response.getErrorCode();
+        if (code != null && code.matches("\\d{3}")) {
+            return RetryPolicy.isRetryableStatus(Integer.parseInt(code));
+        }
+        String type = (response.getErrorType() + " " + code).toLowerCase();
+        for (String clientError : CLIENT_ERRORS) {
+            if (type.contains(clientError)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private <T> T execute(Function<Llm, T> action, Predicate<T> isFailure) {
+        Set<LoadBalancedMember> tried = new HashSet<>();
+        T lastResult = null;
+        RuntimeException lastException = null;
+
+        LoadBalancedMember member;
+        while ((member = select(tried)) != null) {
+            tried.add(member);
+            long start = System.currentTimeMillis();
+            member.onStart();
+            try {
+                T result = action.apply(member.getLlm());
+                if (!isFailure.test(result)) {
+                    member.onSuccess(System.currentTimeMillis() - start, ewmaDecay);
+                    return result;
+                }
+                onFailure(member, result, null);
+                lastResult = result;
+            } catch (RuntimeException e) {
+                onFailure(member, null, e);
+                lastException = e;
+            }
+        }
+
+        if (lastResult == null && lastException != null) {
+            throw lastException;
+        }
+        return lastResult;
+    }
+
+    private <T> CompletableFuture<T> executeAsync(Function<Llm, CompletableFuture<T>> action, Predicate<T> isFailure
+        , Set<LoadBalancedMember> tried, T lastResult) {
+        LoadBalancedMember member = select(tried);
+        if (member == null) {
+            return CompletableFuture.completedFuture(lastResult);
+        }
+        tried.add(member);
+        long start = System.currentTimeMillis();
+        member.onStart();
+
+        CompletableFuture<T> future;
+        try {
+            future = action.apply(member.getLlm());
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        return future.handle((result, error) -> {
+            if (error == null && !isFailure.test(result)) {
+                member.onSuccess(System.currentTimeMillis() - start, ewmaDecay);
+                return CompletableFuture.completedFuture(result);
+            }
+            onFailure(member, result, error);
+            if (error != null && tried.size() >= members.size()) {
+                CompletableFuture<T> failed = new CompletableFuture<>();
+                failed.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                return failed;
+            }
+            return executeAsync(action, isFailure, tried, error == null ? result : lastResult);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * 从未尝试过的节点中选择得分最低的节点，优先选择没有被熔断的节点
+     */
+    protected LoadBalancedMember select(Set<LoadBalancedMember> tried) {
+        long now = System.currentTimeMillis();
+        LoadBalancedMember selected;
+        while ((selected = selectFrom(tried, now, true)) != null) {
+            if (selected.tryAcquire(now)) {
+                return selected;
+            }
+            // 半开状态的探测请求已经被其他请求占用，重新选择
+        }
+        return selectFrom(tried, now, false);
+    }
+
+    private LoadBalancedMember selectFrom(Set<LoadBalancedMember> tried, long now, boolean availableOnly) {
+        LoadBalancedMember selected = null;
+        double selectedScore = Double.MAX_VALUE;
+        int ties = 0;
+        for (LoadBalancedMember member : members) {
+            if (tried.contains(member) || (availableOnly && !member.isAvailable(now))) {
+                continue;
+            }
+            double score = score(member);
+            if (score < selectedScore) {
+                selected = member;
+                selectedScore = score;
+                ties = 1;
+            } else if (score == selectedScore && ThreadLocalRandom.current().nextInt(++ties) == 0) {
+                // 得分相同时随机选择，避免请求总是集中在第一个节点上
+                selected = member;
+            }
+        }
+        return selected;
+    }
+
+    private double score(LoadBalancedMember member) {
+        if (strategy == LoadBalanceStrategy.EWMA_LATENCY) {
+            return member.getEwmaLatencyMillis() * (member.getOutstanding() + 1);
+        }
+        return member.getOutstanding();
+    }
+
+    public List<LoadBalancedMember> getMembers() {
+        return members;
+    }
+
+    public LoadBalanceStrategy getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(LoadBalanceStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public long getOpenDurationMillis() {
+        return openDurationMillis;
+    }
+
+    public void setOpenDurationMillis(long openDurationMillis) {
+        this.openDurationMillis = openDurationMillis;
+    }
+
+    public double getEwmaDecay() {
+        return ewmaDecay;
+    }
+
+    /**
+     * 延迟的衰减系数，取值范围 0 ~ 1，越大则历史延迟的权重越高
+     */
+    public void setEwmaDecay(double ewmaDecay) {
+        this.ewmaDecay = ewmaDecay;
+    }
+
+
+    /**
+     * 流式请求的故障切换：在收到第一条消息之前失败时，切换到下一个节点重新请求，
+     * onStart 只会回调一次
+     */
+    private class FailoverStream<R extends MessageResponse<M>, M extends AiMessage> {
+
+        private final Prompt<M> prompt;
+        private final StreamResponseListener<R, M> listener;
+        private final ChatOptions options;
+        private final Set<LoadBalancedMember> tried = new HashSet<>();
+        private boolean started;
+
+        FailoverStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options) {
+            this.prompt = prompt;
+            this.listener = listener;
+            this.options = options;
+        }
+
+        synchronized void fireStart(ChatContext context) {
+            if (!started) {
+                started = true;
+                listener.onStart(context);
+            }
+        }
+
+        void next(ChatContext lastContext, Throwable lastError) {
+            LoadBalancedMember member = select(tried);
+            if (member == null) {
+                // 所有节点都失败，使用最后一个节点的 context 结束
+                ChatContext context = lastContext != null && lastContext.getClient() != null
+                    ? lastContext : new ChatContext(LoadBalancedLlm.this, NOOP_CLIENT);
+                listener.onFailure(context, lastError);
+                listener.onStop(context);
+                return;
+            }
+            tried.add(member);
+            Attempt attempt = new Attempt(member);
+            member.onStart();
+            try {
+                member.getLlm().chatStream(prompt, attempt, options);
+            } catch (RuntimeException e) {
+                attempt.onFailure(new ChatContext(member.getLlm(), null), e);
+            }
+        }
+
+        private class Attempt implements StreamResponseListener<R, M> {
+            private final LoadBalancedMember member;
+            private final long startMillis = System.currentTimeMillis();
+            private boolean receivedMessage;
+            private boolean finished;
+            private boolean failedOver;
+
+            Attempt(LoadBalancedMember member) {
+                this.member = member;
+            }
+
+            @Override
+            public void onStart(ChatContext context) {
+                fireStart(context);
+            }
+
+            @Override
+            public void onMessage(ChatContext context, R response) {
+                if (!receivedMessage) {
+                    receivedMessage = true;
+                    // 流式请求以首条消息的延迟作为节点的延迟，请求结束（onStop 或者 onFailure）时才减少正在执行的请求数
+                    member.recordSuccess(System.currentTimeMillis() - startMillis, ewmaDecay);
+                }
+                listener.onMessage(context, response);
+            }
+
+            @Override
+            public void onStop(ChatContext context) {
+                if (failedOver) {
+                    return;
+                }
+                finish(true, null);
+                listener.onStop(context);
+            }
+
+            @Override
+            public void onFailure(ChatContext context, Throwable throwable) {
+                if (failedOver) {
+                    return;
+                }
+                finish(false, throwable);
+                if (!receivedMessage) {
+                    failedOver = true;
+                    next(context, throwable);
+                    return;
+                }
+                listener.onFailure(context, throwable);
+            }
+
+            private synchronized void finish(boolean success, Throwable error) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                if (receivedMessage) {
+                    member.onFinished();
+                } else if (success) {
+                    member.onSuccess(System.currentTimeMillis() - startMillis, ewmaDecay);
+                } else {
+                    LoadBalancedLlm.this.onFailure(member, null, error);
+                }
+            }
+        }
+    }
+}
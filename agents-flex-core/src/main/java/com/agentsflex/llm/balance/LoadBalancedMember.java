@@ -0,0 +1,131 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.balance;
+
+import com.agentsflex.llm.Llm;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * LoadBalancedLlm 中的一个节点，记录正在执行的请求数、延迟以及熔断状态
+ */
+public class LoadBalancedMember {
+
+    private final Llm llm;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private double ewmaLatencyMillis;
+    private int consecutiveFailures;
+    private long openUntilMillis;
+    // 熔断时间过后正在执行的探测请求
+    private boolean probing;
+
+    public LoadBalancedMember(Llm llm) {
+        this.llm = llm;
+    }
+
+    public Llm getLlm() {
+        return llm;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public synchronized double getEwmaLatencyMillis() {
+        return ewmaLatencyMillis;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * 熔断打开期间不会被选中；熔断时间过后（半开）只允许一个探测请求通过，探测成功后关闭熔断，失败时重新熔断
+     */
+    public synchronized boolean isAvailable(long now) {
+        return openUntilMillis == 0 || (now >= openUntilMillis && !probing);
+    }
+
+    /**
+     * 选中节点时调用，半开状态下只有第一个调用的请求成为探测请求
+     *
+     * @return 节点当前不可用时返回 false
+     */
+    synchronized boolean tryAcquire(long now) {
+        if (openUntilMillis == 0) {
+            return true;
+        }
+        if (now < openUntilMillis || probing) {
+            return false;
+        }
+        probing = true;
+        return true;
+    }
+
+    void onStart() {
+        outstanding.incrementAndGet();
+    }
+
+    synchronized void onSuccess(long latencyMillis, double decay) {
+        outstanding.decrementAndGet();
+        recordSuccess(latencyMillis, decay);
+    }
+
+    /**
+     * 记录成功和延迟，不减少正在执行的请求数，用于流式请求收到首条消息时
+     */
+    synchronized void recordSuccess(long latencyMillis, double decay) {
+        consecutiveFailures = 0;
+        openUntilMillis = 0;
+        probing = false;
+        ewmaLatencyMillis = ewmaLatencyMillis == 0 ? latencyMillis : ewmaLatencyMillis * decay + latencyMillis * (1 - decay);
+    }
+
+    /**
+     * 请求结束，结果已经通过 {@link #recordSuccess(long, double)} 记录
+     */
+    void onFinished() {
+        outstanding.decrementAndGet();
+    }
+
+    synchronized void onFailure(int failureThreshold, long openDurationMillis) {
+        outstanding.decrementAndGet();
+        consecutiveFailures++;
+        probing = false;
+        if (consecutiveFailures >= failureThreshold) {
+            openUntilMillis = System.currentTimeMillis() + openDurationMillis;
+        }
+    }
+
+    /**
+     * 请求因为请求本身的错误（例如 400、401）失败：节点可以正常响应，不计入连续失败次数
+     */
+    synchronized void onClientError() {
+        outstanding.decrementAndGet();
+        probing = false;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadBalancedMember{" +
+            "llm=" + llm +
+            ", outstanding=" + outstanding +
+            ", ewmaLatencyMillis=" + ewmaLatencyMillis +
+            ", consecutiveFailures=" + consecutiveFailures +
+            ", openUntilMillis=" + openUntilMillis +
+            '}';
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.cache;
+
+import com.agentsflex.llm.ChatContext;
+import com.agentsflex.llm.Llm;
+import com.agentsflex.llm.LlmConfig;
+import com.agentsflex.llm.MessageResponse;
+import com.agentsflex.llm.StreamResponseListener;
+import com.agentsflex.llm.client.LlmClient;
+import com.agentsflex.llm.client.LlmClientListener;
+import com.agentsflex.llm.response.AbstractBaseMessageResponse;
+import com.agentsflex.llm.response.AiMessageResponse;
+import com.agentsflex.llm.response.FunctionMessageResponse;
+import com.agentsflex.message.AiMessage;
+import com.agentsflex.message.FunctionMessage;
+import com.agentsflex.message.MessageStatus;
+import com.agentsflex.prompt.FunctionPrompt;
+import com.agentsflex.prompt.HistoriesPrompt;
+import com.agentsflex.prompt.Prompt;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 缓存的大模型响应内容，每次读取时都会重新构建 MessageResponse，避免调用方修改缓存的数据
+ */
+public class CachedResponse implements Serializable {
+
+    private boolean function;
+    private String content;
+    private Integer index;
+    private MessageStatus status;
+    private Integer totalTokens;
+    private String functionName;
+    private Map<String, Object> args;
+
+    /**
+     * 根据大模型的响应创建缓存内容，响应为空或者出错时返回 null
+     */
+    public static CachedResponse of(MessageResponse<?> response) {
+        if (response == null || response.getMessage() == null) {
+            return null;
+        }
+        if (response instanceof AbstractBaseMessageResponse && ((AbstractBaseMessageResponse<?>) response).isError()) {
+            return null;
+        }
+
+        AiMessage message = response.getMessage();
+        CachedResponse cachedResponse = new CachedResponse();
+        cachedResponse.index = message.getIndex();
+        cachedResponse.status = message.getStatus();
+        cachedResponse.totalTokens = message.getTotalTokens();
+        if (message instanceof FunctionMessage) {
+            cachedResponse.function = true;
+            cachedResponse.functionName = ((FunctionMessage) message).getFunctionName();
+            Map<String, Object> args = ((FunctionMessage) message).getArgs();
+            cachedResponse.args = args != null ? new HashMap<>(args) : null;
+        } else {
+            cachedResponse.content = message.getFullContent() != null ? message.getFullContent() : message.getContent();
+        }
+        return cachedResponse;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <R extends MessageResponse<M>, M extends AiMessage> R toResponse(Prompt<M> prompt) {
+        if (function) {
+            FunctionMessage functionMessage = new FunctionMessage();
+            fillMessage(functionMessage);
+            functionMessage.setFunctionName(functionName);
+            functionMessage.setArgs(args != null ? new HashMap<>(args) : null);
+            return (R) new FunctionMessageResponse(((FunctionPrompt) prompt).getFunctions(), functionMessage);
+        } else {
+            AiMessage aiMessage = new AiMessage();
+            fillMessage(aiMessage);
+            aiMessage.setContent(content);
+            aiMessage.setFullContent(content);
+            return (R) new AiMessageResponse(aiMessage);
+        }
+    }
+
+    /**
+     * 通过 StreamResponseListener 回放缓存的内容，整段内容一次性返回
+     */
+    public <R extends MessageResponse<M>, M extends AiMessage> void replay(Llm llm, Prompt<M> prompt, StreamResponseListener<R, M> listener) {
+        ChatContext context = new ChatContext(llm, ReplayClient.INSTANCE);
+        listener.onStart(context);
+        R response = toResponse(prompt);
+        listener.onMessage(context, response);
+        if (!function && prompt instanceof HistoriesPrompt) {
+            ((HistoriesPrompt) prompt).addMessage(response.getMessage());
+        }
+        listener.onStop(context);
+    }
+
+    private void fillMessage(AiMessage message) {
+        message.setIndex(index);
+        message.setStatus(status);
+        message.setTotalTokens(totalTokens);
+    }
+
+    public boolean isFunction() {
+        return function;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public String getFunctionName() {
+        return functionName;
+    }
+
+
+    /**
+     * 回放缓存内容时使用的 LlmClient，没有真实的网络请求
+     */
+    private static class ReplayClient implements LlmClient {
+
+        private static final ReplayClient INSTANCE = new ReplayClient();
+
+        @Override
+        public void start(String url, Map<String, String> headers, String payload, LlmClientListener listener, LlmConfig config) {
+        }
+
+        @Override
+        public void stop() {
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.cache;
+
+import com.agentsflex.document.Document;
+import com.agentsflex.llm.ChatOptions;
+import com.agentsflex.llm.Llm;
+import com.agentsflex.llm.MessageResponse;
+import com.agentsflex.llm.StreamResponseListener;
+import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.message.AiMessage;
+import com.agentsflex.prompt.Prompt;
+import com.agentsflex.store.VectorData;
+import com.agentsflex.util.LruCache;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对大模型的对话结果进行精确匹配缓存。
+ * <p>
+ * 默认只缓存 temperature 为 0 的请求（即结果确定的请求），出错的结果不会被缓存；
+ * 注意 {@link ChatOptions#DEFAULT} 的 temperature 为 0.5，不传 ChatOptions 的请求默认不会被缓存，
+ * 需要传入 temperature 为 0 的 ChatOptions，或者通过 {@link #setMaxTemperature(float)} 调整阈值。
+ * <p>
+ * 流式请求命中缓存时，会通过 StreamResponseListener 回放缓存的内容。
+ */
+public class CachingLlm implements Llm {
+
+    private final Llm llm;
+    private final LruCache<String, CachedResponse> cache;
+    private boolean deterministicOnly = true;
+    private float maxTemperature = 0;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public CachingLlm(Llm llm) {
+        this(llm, 1000, 0);
+    }
+
+    /**
+     * @param llm       被缓存的大模型
+     * @param maxSize   最多缓存的结果数量
+     * @param ttlMillis 缓存有效期，小于等于 0 时不过期
+     */
+    public CachingLlm(Llm llm, int maxSize, long ttlMillis) {
+        this(llm, new LruCache<>(maxSize, ttlMillis));
+    }
+
+    public CachingLlm(Llm llm, LruCache<String, CachedResponse> cache) {
+        this.llm = llm;
+        this.cache = cache;
+    }
+
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> R chat(Prompt<M> prompt, ChatOptions options) {
+        if (!isCacheable(options)) {
+            return llm.chat(prompt, options);
+        }
+
+        String key = ChatCacheKeys.of(llm, prompt, options);
+        CachedResponse cachedResponse = getCachedResponse(key);
+        if (cachedResponse != null) {
+            return cachedResponse.toResponse(prompt);
+        }
+
+        R response = llm.chat(prompt, options);
+        putCachedResponse(key, response);
+        return response;
+    }
+
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> CompletableFuture<R> chatAsync(Prompt<M> prompt, ChatOptions options) {
+        if (!isCacheable(options)) {
+            return llm.chatAsync(prompt, options);
+        }
+
+        String key = ChatCacheKeys.of(llm, prompt, options);
+        CachedResponse cachedResponse = getCachedResponse(key);
+        if (cachedResponse != null) {
+            return CompletableFuture.completedFuture(cachedResponse.toResponse(prompt));
+        }
+
+        return llm.<R, M>chatAsync(prompt, options).thenApply(response -> {
+            putCachedResponse(key, response);
+            return response;
+        });
+    }
+
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> void chatStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options) {
+        if (!isCacheable(options)) {
+            llm.chatStream(prompt, listener, options);
+            return;
+        }
+
+        String key = ChatCacheKeys.of(llm, prompt, options);
+        CachedResponse cachedResponse = getCachedResponse(key);
+        if (cachedResponse != null) {
+            cachedResponse.replay(this, prompt, listener);
+            return;
+        }
+
+        llm.chatStream(prompt, new CachingStreamResponseListener<>(listener, response -> putCachedResponse(key, response)), options);
+    }
+
+    @Override
+    public VectorData embed(Document document, EmbeddingOptions options) {
+        return llm.embed(document, options);
+    }
+
+    @Override
+    public List<VectorData> embedAll(List<Document> documents, EmbeddingOptions options) {
+        return llm.embedAll(documents, options);
+    }
+
+    @Override
+    public CompletableFuture<VectorData> embedAsync(Document document, EmbeddingOptions options) {
+        return llm.embedAsync(document, options);
+    }
+
+    protected boolean isCacheable(ChatOptions options) {
+        return !deterministicOnly || (options != null && options.getTemperature() <= maxTemperature);
+    }
+
+    private CachedResponse getCachedResponse(String key) {
+        CachedResponse cachedResponse = cache.get(key);
+        if (cachedResponse != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return cachedResponse;
+    }
+
+    private void putCachedResponse(String key, MessageResponse<?> response) {
+        CachedResponse cachedResponse = CachedResponse.of(response);
+        if (cachedResponse != null) {
+            cache.put(key, cachedResponse);
+        }
+    }
+
+    public Llm getLlm() {
+        return llm;
+    }
+
+    public boolean isDeterministicOnly() {
+        return deterministicOnly;
+    }
+
+    /**
+     * 设置为 false 时，任意 temperature 的请求都会被缓存
+     */
+    public void setDeterministicOnly(boolean deterministicOnly) {
+        this.deterministicOnly = deterministicOnly;
+    }
+
+    public float getMaxTemperature() {
+        return maxTemperature;
+    }
+
+    /**
+     * deterministicOnly 为 true 时，只缓存 temperature 不超过 maxTemperature 的请求，默认为 0
+     */
+    public void setMaxTemperature(float maxTemperature) {
+        this.maxTemperature = maxTemperature;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+}
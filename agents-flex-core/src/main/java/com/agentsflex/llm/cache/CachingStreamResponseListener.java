@@ -0,0 +1,64 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.cache;
+
+import com.agentsflex.llm.ChatContext;
+import com.agentsflex.llm.MessageResponse;
+import com.agentsflex.llm.StreamResponseListener;
+import com.agentsflex.message.AiMessage;
+
+import java.util.function.Consumer;
+
+/**
+ * 代理 StreamResponseListener，在流式输出正常结束时把最后一条响应（包含完整内容）交给 onComplete 处理
+ */
+public class CachingStreamResponseListener<R extends MessageResponse<M>, M extends AiMessage> implements StreamResponseListener<R, M> {
+
+    private final StreamResponseListener<R, M> listener;
+    private final Consumer<R> onComplete;
+    private R lastResponse;
+    private boolean failed;
+
+    public CachingStreamResponseListener(StreamResponseListener<R, M> listener, Consumer<R> onComplete) {
+        this.listener = listener;
+        this.onComplete = onComplete;
+    }
+
+    @Override
+    public void onStart(ChatContext context) {
+        listener.onStart(context);
+    }
+
+    @Override
+    public void onMessage(ChatContext context, R response) {
+        lastResponse = response;
+        listener.onMessage(context, response);
+    }
+
+    @Override
+    public void onStop(ChatContext context) {
+        if (!failed && lastResponse != null) {
+            onComplete.accept(lastResponse);
+        }
+        listener.onStop(context);
+    }
+
+    @Override
+    public void onFailure(ChatContext context, Throwable throwable) {
+        failed = true;
+        listener.onFailure(context, throwable);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.cache;
+
+import com.agentsflex.llm.BaseLlm;
+import com.agentsflex.llm.ChatOptions;
+import com.agentsflex.llm.Llm;
+import com.agentsflex.llm.LlmConfig;
+import com.agentsflex.prompt.DefaultPromptFormat;
+import com.agentsflex.prompt.Prompt;
+import com.agentsflex.prompt.PromptFormat;
+import com.agentsflex.util.HashUtil;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 根据模型、消息、functions 以及 ChatOptions 生成对话请求的规范化 hash，
+ * 相同的请求生成相同的 key
+ */
+public class ChatCacheKeys {
+
+    private static final PromptFormat promptFormat = new DefaultPromptFormat();
+
+    public static String of(Llm llm, Prompt<?> prompt, ChatOptions options) {
+        return generate(llm, prompt, options, true);
+    }
+
+    /**
+     * 不包含消息内容的 key，只区分模型、functions 以及 ChatOptions，用于语义缓存的分区
+     */
+    public static String ofContext(Llm llm, Prompt<?> prompt, ChatOptions options) {
+        return generate(llm, prompt, options, false);
+    }
+
+    private static String generate(Llm llm, Prompt<?> prompt, ChatOptions options, boolean withMessages) {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("llm", llm.getClass().getName());
+        if (llm instanceof BaseLlm) {
+            LlmConfig config = ((BaseLlm<?>) llm).getConfig();
+            if (config != null) {
+                request.put("endpoint", config.getEndpoint());
+                request.put("model", config.getModel());
+            }
+        }
+        request.put("prompt", prompt.getClass().getName());
+        if (withMessages) {
+            request.put("messages", promptFormat.toMessagesJsonObject(prompt));
+        }
+        request.put("functions", promptFormat.toFunctionsJsonObject(prompt));
+        request.put("options", options);
+
+        String json = JSON.toJSONString(request, SerializerFeature.MapSortField, SerializerFeature.SortField, SerializerFeature.WriteMapNullValue);
+        return HashUtil.sha256(json);
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.cache;
+
+import com.agentsflex.document.Document;
+import com.agentsflex.llm.ChatOptions;
+import com.agentsflex.llm.Llm;
+import com.agentsflex.llm.MessageResponse;
+import com.agentsflex.llm.StreamResponseListener;
+import com.agentsflex.llm.embedding.EmbeddingModel;
+import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.message.AiMessage;
+import com.agentsflex.message.Message;
+import com.agentsflex.message.TextMessage;
+import com.agentsflex.prompt.Prompt;
+import com.agentsflex.store.VectorData;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 语义缓存：通过 EmbeddingModel 对 prompt 进行向量化，在本地向量索引中查找相似的历史 prompt，
+ * 余弦相似度不低于 threshold 时直接返回历史结果，不再请求大模型。
+ * <p>
+ * 通过 prompt 的 metadata {@link #NAMESPACE_KEY} 隔离不同业务的缓存，每个 namespace 独立进行 LRU 淘汰；
+ * 模型、functions 或 ChatOptions 不同的请求之间也不会互相命中。
+ * 所有分区合计的缓存数量不超过 maxSize，超过时从最久没有使用的分区中淘汰。
+ */
+public class SemanticCacheLlm implements Llm {
+
+    public static final String NAMESPACE_KEY = "semanticCacheNamespace";
+    public static final String DEFAULT_NAMESPACE = "default";
+
+    private final Llm llm;
+    private final EmbeddingModel embeddingModel;
+    private final double threshold;
+    private final int maxSizePerNamespace;
+    private final int maxSize;
+    // 按访问顺序排列的分区，key 为 namespace + 模型、functions、ChatOptions 的 hash
+    private final LinkedHashMap<String, SemanticIndex> indexes = new LinkedHashMap<>(16, 0.75f, true);
+    // 所有分区合计的缓存数量，通过 indexes 加锁
+    private int size;
+    private EmbeddingOptions embeddingOptions = EmbeddingOptions.EMPTY;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public SemanticCacheLlm(Llm llm, EmbeddingModel embeddingModel) {
+        this(llm, embeddingModel, 0.95, 1000);
+    }
+
+    /**
+     * @param llm                 被缓存的大模型
+     * @param embeddingModel      用于 prompt 向量化的模型
+     * @param threshold           命中缓存的最低余弦相似度
+     * @param maxSizePerNamespace 每个 namespace 最多缓存的结果数量
+     */
+    public SemanticCacheLlm(Llm llm, EmbeddingModel embeddingModel, double threshold, int maxSizePerNamespace) {
+        this(llm, embeddingModel, threshold, maxSizePerNamespace, maxSizePerNamespace * 10);
+    }
+
+    /**
+     * @param maxSize 所有 namespace 合计最多缓存的结果数量
+     */
+    public SemanticCacheLlm(Llm llm, EmbeddingModel embeddingModel, double threshold, int maxSizePerNamespace, int maxSize) {
+        this.llm = llm;
+        this.embeddingModel = embeddingModel;
+        this.threshold = threshold;
+        this.maxSizePerNamespace = maxSizePerNamespace;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> R chat(Prompt<M> prompt, ChatOptions options) {
+        String index = indexKey(prompt, options);
+        float[] vector = normalize(embeddingModel.embed(Document.of(promptText(prompt)), embeddingOptions));
+        if (vector == null) {
+            return llm.chat(prompt, options);
+        }
+
+        CachedResponse cachedResponse = search(index, vector);
+        if (cachedResponse != null) {
+            return cachedResponse.toResponse(prompt);
+        }
+
+        R response = llm.chat(prompt, options);
+        put(index, vector, response);
+        return response;
+    }
+
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> CompletableFuture<R> chatAsync(Prompt<M> prompt, ChatOptions options) {
+        String index = indexKey(prompt, options);
+        return embeddingModel.embedAsync(Document.of(promptText(prompt)), embeddingOptions).thenCompose(vectorData -> {
+            float[] vector = normalize(vectorData);
+            if (vector == null) {
+                return llm.chatAsync(prompt, options);
+            }
+
+            CachedResponse cachedResponse = search(index, vector);
+            if (cachedResponse != null) {
+                return CompletableFuture.completedFuture(cachedResponse.<R, M>toResponse(prompt));
+            }
+
+            return llm.<R, M>chatAsync(prompt, options).thenApply(response -> {
+                put(index, vector, response);
+                return response;
+            });
+        });
+    }
+
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> void chatStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options) {
+        String index = indexKey(prompt, options);
+        float[] vector = normalize(embeddingModel.embed(Document.of(promptText(prompt)), embeddingOptions));
+        if (vector == null) {
+            llm.chatStream(prompt, listener, options);
+            return;
+        }
+
+        CachedResponse cachedResponse = search(index, vector);
+        if (cachedResponse != null) {
+            cachedResponse.replay(this, prompt, listener);
+            return;
+        }
+
+        llm.chatStream(prompt, new CachingStreamResponseListener<>(listener, response -> put(index, vector, response)), options);
+    }
+
+    @Override
+    public VectorData embed(Document document, EmbeddingOptions options) {
+        return llm.embed(document, options);
+    }
+
+    @Override
+    public List<VectorData> embedAll(List<Document> documents, EmbeddingOptions options) {
+        return llm.embedAll(documents, options);
+    }
+
+    @Override
+    public CompletableFuture<VectorData> embedAsync(Document document, EmbeddingOptions options) {
+        return llm.embedAsync(document, options);
+    }
+
+    private String indexKey(Prompt<?> prompt, ChatOptions options) {
+        Object namespace = prompt.getMetadata(NAMESPACE_KEY);
+        return (namespace != null ? namespace.toString() : DEFAULT_NAMESPACE)
+            + ":" + ChatCacheKeys.ofContext(llm, prompt, options);
+    }
+
+    private CachedResponse search(String indexKey, float[] vector) {
+        SemanticIndex index;
+        synchronized (indexes) {
+            index = indexes.get(indexKey);
+        }
+        CachedResponse cachedResponse = index != null ? index.search(vector, threshold) : null;
+        if (cachedResponse != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return cachedResponse;
+    }
+
+    /**
+     * 分区在第一次写入时创建，不会保留空的分区，分区的数量也不会超过 maxSize
+     */
+    private void put(String indexKey, float[] vector, MessageResponse<?> response) {
+        CachedResponse cachedResponse = CachedResponse.of(response);
+        if (cachedResponse == null) {
+            return;
+        }
+        synchronized (indexes) {
+            SemanticIndex index = indexes.computeIfAbsent(indexKey, k -> new SemanticIndex(maxSizePerNamespace));
+            size += index.put(vector, cachedResponse);
+
+            Iterator<SemanticIndex> iterator = indexes.values().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                SemanticIndex eldest = iterator.next();
+                while (size > maxSize && eldest.removeEldest()) {
+                    size--;
+                }
+                if (eldest.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    protected String promptText(Prompt<?> prompt) {
+        StringBuilder text = new StringBuilder();
+        List<Message> messages = prompt.toMessages();
+        if (messages != null) {
+            for (Message message : messages) {
+                String content = null;
+                if (message instanceof AiMessage) {
+                    content = ((AiMessage) message).getFullContent();
+                }
+                if (content == null && message instanceof TextMessage) {
+                    content = ((TextMessage) message).getContent();
+                }
+                if (content != null) {
+                    if (text.length() > 0) {
+                        text.append('\n');
+                    }
+                    text.append(content);
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * 归一化之后，余弦相似度即为向量点积
+     */
+    private static float[] normalize(VectorData vectorData) {
+        if (vectorData == null || vectorData.getVector() == null) {
+            return null;
+        }
+        double[] vector = vectorData.getVector();
+        double norm = 0;
+        for (double v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0) {
+            return null;
+        }
+        norm = Math.sqrt(norm);
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    public Llm getLlm() {
+        return llm;
+    }
+
+    public EmbeddingModel getEmbeddingModel() {
+        return embeddingModel;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public EmbeddingOptions getEmbeddingOptions() {
+        return embeddingOptions;
+    }
+
+    public void setEmbeddingOptions(EmbeddingOptions embeddingOptions) {
+        this.embeddingOptions = embeddingOptions;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return 所有 namespace 合计缓存的结果数量
+     */
+    public int getSize() {
+        synchronized (indexes) {
+            return size;
+        }
+    }
+
+    public void clear() {
+        synchronized (indexes) {
+            indexes.clear();
+            size = 0;
+        }
+    }
+
+    public void clear(String namespace) {
+        synchronized (indexes) {
+            Iterator<Map.Entry<String, SemanticIndex>> iterator = indexes.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, SemanticIndex> entry = iterator.next();
+                if (entry.getKey().startsWith(namespace + ":")) {
+                    size -= entry.getValue().size();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * 暴力检索的向量索引，按照访问顺序进行 LRU 淘汰
+     */
+    private static class SemanticIndex {
+
+        private final LinkedHashMap<float[], CachedResponse> entries;
+
+        SemanticIndex(int maxSize) {
+            this.entries = new LinkedHashMap<float[], CachedResponse>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<float[], CachedResponse> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized CachedResponse search(float[] vector, double threshold) {
+            float[] bestKey = null;
+            double bestScore = threshold;
+            for (float[] key : entries.keySet()) {
+                if (key.length != vector.length) {
+                    continue;
+                }
+                double score = 0;
+                for (int i = 0; i < key.length; i++) {
+                    score += key[i] * vector[i];
+                }
+                if (score >= bestScore) {
+                    bestScore = score;
+                    bestKey = key;
+                }
+            }
+            // get 会更新 LRU 的访问顺序
+            return bestKey != null ? entries.get(bestKey) : null;
+        }
+
+        /**
+         * @return 缓存数量的变化
+         */
+        synchronized int put(float[] vector, CachedResponse cachedResponse) {
+            int before = entries.size();
+            entries.put(vector, cachedResponse);
+            return entries.size() - before;
+        }
+
+        synchronized boolean removeEldest() {
+            Iterator<float[]> iterator = entries.keySet().iterator();
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            iterator.next();
+            iterator.remove();
+            return true;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized boolean isEmpty() {
+            return entries.isEmpty();
+        }
+    }
+}
@@ -17,31 +17,36 @@ package com.agentsflex.llm.client;
 
 import com.agentsflex.functions.Function;
 import com.agentsflex.llm.ChatContext;
+import com.agentsflex.llm.DeltaStreamResponseListener;
 import com.agentsflex.llm.Llm;
 import com.agentsflex.llm.StreamResponseListener;
+import com.agentsflex.llm.client.impl.DirectSseClient;
 import com.agentsflex.llm.MessageResponse;
 import com.agentsflex.llm.response.AiMessageResponse;
 import com.agentsflex.llm.response.FunctionMessageResponse;
 import com.agentsflex.message.AiMessage;
 import com.agentsflex.message.FunctionMessage;
+import com.agentsflex.message.StreamingContent;
 import com.agentsflex.parser.AiMessageParser;
 import com.agentsflex.parser.FunctionMessageParser;
 import com.agentsflex.prompt.FunctionPrompt;
 import com.agentsflex.prompt.HistoriesPrompt;
 import com.agentsflex.prompt.Prompt;
 import com.agentsflex.util.StringUtil;
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONObject;
 
 import java.util.List;
 
 public class BaseLlmClientListener implements LlmClientListener {
 
     private final StreamResponseListener streamResponseListener;
+    private final DeltaStreamResponseListener deltaListener;
     private final Prompt prompt;
     private final AiMessageParser messageParser;
     private final FunctionMessageParser functionInfoParser;
+    // 增量模式下的完整内容，只在 onDelta 回调中交给监听器
     private final StringBuilder fullMessage = new StringBuilder();
+    // 非增量模式下的完整内容，每条消息持有不可变的节点，可以交给其他线程读取
+    private StreamingContent fullContent;
     private AiMessage lastAiMessage;
     private boolean isFunctionCalling = false;
     private final ChatContext context;
@@ -54,6 +59,8 @@ public class BaseLlmClientListener implements LlmClientListener {
         , FunctionMessageParser functionInfoParser) {
 
         this.streamResponseListener = streamResponseListener;
+        this.deltaListener = streamResponseListener instanceof DeltaStreamResponseListener
+            ? (DeltaStreamResponseListener) streamResponseListener : null;
         this.prompt = prompt;
         this.messageParser = messageParser;
         this.functionInfoParser = functionInfoParser;
@@ -79,17 +86,44 @@ public class BaseLlmClientListener implements LlmClientListener {
         if (StringUtil.noText(response) || "[DONE]".equalsIgnoreCase(response.trim())) {
             return;
         }
-        JSONObject jsonObject = JSON.parseObject(response);
         if (isFunctionCalling) {
-            FunctionMessage functionInfo = functionInfoParser.parse(jsonObject);
-            List<Function> functions = ((FunctionPrompt) prompt).getFunctions();
-            MessageResponse<?> r = new FunctionMessageResponse(functions, functionInfo);
-            //noinspection unchecked
-            streamResponseListener.onMessage(context, r);
+            onFunctionMessage(functionInfoParser.parseJson(response));
         } else {
-            lastAiMessage = messageParser.parse(jsonObject);
-            fullMessage.append(lastAiMessage.getContent());
-            lastAiMessage.setFullContent(fullMessage.toString());
+            onAiMessage(messageParser.parseJson(response));
+        }
+    }
+
+    @Override
+    public void onMessage(LlmClient client, byte[] data, int offset, int length) {
+        if (DirectSseClient.isBlankOrDone(data, offset, length)) {
+            return;
+        }
+        if (isFunctionCalling) {
+            onFunctionMessage(functionInfoParser.parseJson(data, offset, length));
+        } else {
+            onAiMessage(messageParser.parseJson(data, offset, length));
+        }
+    }
+
+    private void onFunctionMessage(FunctionMessage functionInfo) {
+        List<Function> functions = ((FunctionPrompt) prompt).getFunctions();
+        MessageResponse<?> r = new FunctionMessageResponse(functions, functionInfo);
+        //noinspection unchecked
+        streamResponseListener.onMessage(context, r);
+    }
+
+    private void onAiMessage(AiMessage aiMessage) {
+        lastAiMessage = aiMessage;
+        String delta = lastAiMessage.getContent();
+        if (deltaListener != null) {
+            if (delta != null) {
+                fullMessage.append(delta);
+            }
+            deltaListener.onDelta(context, delta != null ? delta : "", fullMessage);
+        } else {
+            // 完整内容在需要时才生成，避免每个分片都复制一次缓冲区
+            fullContent = StreamingContent.append(fullContent, delta);
+            lastAiMessage.setFullContent(fullContent);
             MessageResponse<?> r = new AiMessageResponse(lastAiMessage);
             //noinspection unchecked
             streamResponseListener.onMessage(context, r);
@@ -98,6 +132,9 @@ public class BaseLlmClientListener implements LlmClientListener {
 
     @Override
     public void onStop(LlmClient client) {
+        if (lastAiMessage != null && deltaListener != null) {
+            lastAiMessage.setFullContent(fullMessage.toString());
+        }
         if (lastAiMessage != null) {
             if (this.prompt instanceof HistoriesPrompt) {
                 ((HistoriesPrompt) this.prompt).addMessage(lastAiMessage);
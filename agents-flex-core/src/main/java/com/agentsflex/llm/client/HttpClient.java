@@ -15,11 +15,14 @@
  */
 package com.agentsflex.llm.client;
 
+import com.agentsflex.llm.LlmConfig;
 import okhttp3.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 public class HttpClient {
@@ -27,12 +30,17 @@ public class HttpClient {
     private static final MediaType JSON_TYPE = MediaType.parse("application/json; charset=utf-8");
 
     private final OkHttpClient okHttpClient;
+    private RetryPolicy retryPolicy = new RetryPolicy();
 
     public HttpClient() {
-        this.okHttpClient = new OkHttpClient.Builder()
-            .connectTimeout(3, TimeUnit.MINUTES)
-            .readTimeout(3, TimeUnit.MINUTES)
-            .build();
+        this.okHttpClient = OkHttpClientUtil.getOkHttpClient();
+    }
+
+    public HttpClient(LlmConfig config) {
+        this.okHttpClient = OkHttpClientUtil.getOkHttpClient(config);
+        if (config != null && config.getRetryPolicy() != null) {
+            this.retryPolicy = config.getRetryPolicy();
+        }
     }
 
 
@@ -52,6 +60,13 @@ public class HttpClient {
         return method(url, "POST", headers, payload);
     }
 
+    /**
+     * @param idempotent 请求是否是幂等的（例如查询或者按 id 覆盖写入），幂等的请求在 5xx 或者读超时的时候也会重试
+     */
+    public String post(String url, Map<String, String> headers, String payload, boolean idempotent) {
+        return method(url, "POST", headers, payload, idempotent);
+    }
+
     public String put(String url, Map<String, String> headers, String payload) {
         return method(url, "PUT", headers, payload);
     }
@@ -60,7 +75,107 @@ public class HttpClient {
         return method(url, "DELETE", headers, payload);
     }
 
+    public CompletableFuture<String> getAsync(String url, Map<String, String> headers) {
+        return methodAsync(url, "GET", headers, null);
+    }
+
+    public CompletableFuture<String> postAsync(String url, Map<String, String> headers, String payload) {
+        return methodAsync(url, "POST", headers, payload);
+    }
+
     private String method(String url, String method, Map<String, String> headers, String payload) {
+        return method(url, method, headers, payload, RetryPolicy.isIdempotent(method));
+    }
+
+    private String method(String url, String method, Map<String, String> headers, String payload, boolean idempotent) {
+        Request request = buildRequest(url, method, headers, payload);
+        for (int attempt = 0; ; attempt++) {
+            long delayMillis;
+            try (Response response = okHttpClient.newCall(request).execute()) {
+                if (!retryPolicy.shouldRetry(attempt, response.code(), idempotent)) {
+                    return response.body().string();
+                }
+                delayMillis = retryPolicy.getDelayMillis(attempt, response.header("Retry-After"));
+                LOG.warn("Request {} failed with status {}, retry after {}ms", url, response.code(), delayMillis);
+            } catch (Exception e) {
+                if (!retryPolicy.shouldRetry(attempt, e, idempotent)) {
+                    LOG.error(e.toString(), e);
+                    return null;
+                }
+                delayMillis = retryPolicy.getDelayMillis(attempt, null);
+                LOG.warn("Request {} failed with {}, retry after {}ms", url, e.toString(), delayMillis);
+            }
+
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 基于 OkHttp 的异步回调发送请求，不会占用调用线程，重试通过定时任务完成
+     */
+    private CompletableFuture<String> methodAsync(String url, String method, Map<String, String> headers, String payload) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Request request = buildRequest(url, method, headers, payload);
+        enqueue(request, RetryPolicy.isIdempotent(method), 0, future);
+        return future;
+    }
+
+    private void enqueue(Request request, boolean idempotent, int attempt, CompletableFuture<String> future) {
+        if (future.isDone()) {
+            return;
+        }
+
+        Call call = okHttpClient.newCall(request);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (!call.isCanceled() && retryPolicy.shouldRetry(attempt, e, idempotent)) {
+                    retryLater(request, idempotent, attempt, future, retryPolicy.getDelayMillis(attempt, null));
+                } else {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (retryPolicy.shouldRetry(attempt, response.code(), idempotent)) {
+                        retryLater(request, idempotent, attempt, future, retryPolicy.getDelayMillis(attempt, response.header("Retry-After")));
+                    } else {
+                        future.complete(body != null ? body.string() : null);
+                    }
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+
+        // 取消 future 时同时取消底层的 http 请求
+        future.whenComplete((r, e) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+    }
+
+    private void retryLater(Request request, boolean idempotent, int attempt, CompletableFuture<String> future, long delayMillis) {
+        OkHttpClientUtil.getScheduler().schedule(() -> enqueue(request, idempotent, attempt + 1, future), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy != null ? retryPolicy : RetryPolicy.NONE;
+    }
+
+    private Request buildRequest(String url, String method, Map<String, String> headers, String payload) {
         Request.Builder builder = new Request.Builder()
             .url(url);
 
@@ -75,13 +190,6 @@ public class HttpClient {
             RequestBody body = RequestBody.create(payload, JSON_TYPE);
             request = builder.method(method, body).build();
         }
-
-        try {
-            Response response = okHttpClient.newCall(request).execute();
-            return response.body().string();
-        } catch (Exception e) {
-            LOG.error(e.toString(), e);
-        }
-        return null;
+        return request;
     }
 }
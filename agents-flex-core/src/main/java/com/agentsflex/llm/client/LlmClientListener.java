@@ -15,12 +15,21 @@
  */
 package com.agentsflex.llm.client;
 
+import java.nio.charset.StandardCharsets;
+
 public interface LlmClientListener {
 
     void onStart(LlmClient client);
 
     void onMessage(LlmClient client,String response);
 
+    /**
+     * 直接接收事件内容的字节，data 只在本次回调中有效
+     */
+    default void onMessage(LlmClient client, byte[] data, int offset, int length) {
+        onMessage(client, new String(data, offset, length, StandardCharsets.UTF_8));
+    }
+
     void onStop(LlmClient client);
 
     void onFailure(LlmClient client, Throwable throwable);
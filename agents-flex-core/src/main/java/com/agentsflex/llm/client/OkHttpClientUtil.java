@@ -0,0 +1,110 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.client;
+
+import com.agentsflex.llm.LlmConfig;
+import com.agentsflex.util.NamedThreadFactory;
+import com.agentsflex.util.NamedThreadPools;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 共享的 OkHttpClient，相同 transport 配置的 LlmConfig 共用同一个连接池、Dispatcher 和线程池，
+ * 避免每次请求都重新创建 OkHttpClient 导致重复的 TCP + TLS 握手和线程创建。
+ */
+public class OkHttpClientUtil {
+
+    private static final LlmConfig DEFAULT_CONFIG = new LlmConfig();
+    private static final Map<String, OkHttpClient> CLIENTS = new ConcurrentHashMap<>();
+    private static volatile ScheduledExecutorService scheduler;
+
+    private OkHttpClientUtil() {
+    }
+
+    public static OkHttpClient getOkHttpClient() {
+        return getOkHttpClient(DEFAULT_CONFIG);
+    }
+
+    public static OkHttpClient getOkHttpClient(LlmConfig config) {
+        LlmConfig transportConfig = config != null ? config : DEFAULT_CONFIG;
+        return CLIENTS.computeIfAbsent(transportKey(transportConfig), key -> buildClient(transportConfig));
+    }
+
+    /**
+     * WebSocket 需要关闭 readTimeout，与普通请求共享连接池和 Dispatcher
+     */
+    public static OkHttpClient getWebSocketClient(LlmConfig config) {
+        LlmConfig transportConfig = config != null ? config : DEFAULT_CONFIG;
+        OkHttpClient client = getOkHttpClient(transportConfig);
+        return CLIENTS.computeIfAbsent("ws:" + transportKey(transportConfig), key -> client.newBuilder()
+            .readTimeout(0, TimeUnit.MILLISECONDS)
+            .build());
+    }
+
+    /**
+     * 用于延迟重试等定时任务的共享线程池
+     */
+    public static ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            synchronized (OkHttpClientUtil.class) {
+                if (scheduler == null) {
+                    scheduler = NamedThreadPools.newScheduledThreadPool(1, new NamedThreadFactory("agents-flex-http-retry", true));
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * 关闭所有共享的 OkHttpClient，正在执行的请求会被取消
+     */
+    public static synchronized void shutdown() {
+        for (OkHttpClient client : CLIENTS.values()) {
+            client.dispatcher().cancelAll();
+            client.dispatcher().executorService().shutdown();
+            client.connectionPool().evictAll();
+        }
+        CLIENTS.clear();
+    }
+
+    private static OkHttpClient buildClient(LlmConfig config) {
+        Dispatcher dispatcher = new Dispatcher(NamedThreadPools.newCachedThreadPool(new NamedThreadFactory("agents-flex-http", true)));
+        dispatcher.setMaxRequests(config.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(config.getMaxRequestsPerHost());
+
+        return new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(new ConnectionPool(config.getMaxIdleConnections(), config.getKeepAliveMillis(), TimeUnit.MILLISECONDS))
+            .connectTimeout(config.getConnectTimeoutMillis(), TimeUnit.MILLISECONDS)
+            .readTimeout(config.getReadTimeoutMillis(), TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    private static String transportKey(LlmConfig config) {
+        return config.getConnectTimeoutMillis()
+            + ":" + config.getReadTimeoutMillis()
+            + ":" + config.getMaxIdleConnections()
+            + ":" + config.getKeepAliveMillis()
+            + ":" + config.getMaxRequests()
+            + ":" + config.getMaxRequestsPerHost();
+    }
+}
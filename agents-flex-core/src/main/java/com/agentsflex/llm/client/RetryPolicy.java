@@ -0,0 +1,209 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.client;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * http 请求的重试策略：指数退避 + 随机抖动，优先使用服务端返回的 Retry-After。
+ * <p>
+ * 408、429、503 以及连接失败（请求还没有被服务端处理）总是可以重试；
+ * 其他 5xx 和读超时只有在请求是幂等的（GET、PUT、DELETE 或者调用方声明幂等的 POST）或者设置了 retryNonIdempotent 时才重试。
+ */
+public class RetryPolicy implements Serializable {
+
+    /**
+     * 不进行任何重试
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(0) {
+        @Override
+        public void setMaxRetries(int maxRetries) {
+            throw new IllegalStateException("Can not set maxRetries to the NONE instance.");
+        }
+    };
+
+    private int maxRetries = 3;
+    private long initialDelayMillis = 500;
+    private long maxDelayMillis = 30_000;
+    private double multiplier = 2.0;
+    private double jitter = 0.2;
+    private boolean retryNonIdempotent = false;
+
+    public RetryPolicy() {
+    }
+
+    public RetryPolicy(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public boolean shouldRetry(int attempt, int statusCode, boolean idempotent) {
+        if (attempt >= maxRetries) {
+            return false;
+        }
+        if (statusCode == 408 || statusCode == 429 || statusCode == 503) {
+            return true;
+        }
+        return statusCode >= 500 && (idempotent || retryNonIdempotent);
+    }
+
+    /**
+     * 调用方需要自行排除已经取消的请求（例如 {@link okhttp3.Call#isCanceled()}），取消的请求不应该重试
+     */
+    public boolean shouldRetry(int attempt, Throwable throwable, boolean idempotent) {
+        if (attempt >= maxRetries || throwable == null) {
+            return false;
+        }
+        if (throwable instanceof HttpStatusException) {
+            return shouldRetry(attempt, ((HttpStatusException) throwable).getStatusCode(), idempotent);
+        }
+        if (throwable instanceof ConnectException
+            || throwable instanceof UnknownHostException
+            || throwable instanceof NoRouteToHostException) {
+            return true;
+        }
+        return throwable instanceof IOException && (idempotent || retryNonIdempotent);
+    }
+
+    /**
+     * @return 状态码是否表示暂时性的失败（5xx、408、429），其他 4xx 是请求本身的错误，重试或者换一个节点也不会成功
+     */
+    public static boolean isRetryableStatus(int statusCode) {
+        return statusCode == 408 || statusCode == 429 || statusCode >= 500;
+    }
+
+    /**
+     * @return 异常（包括被包装的异常）是否表示暂时性的失败：可以重试的 {@link HttpStatusException}、超时以及其他 IO 异常
+     */
+    public static boolean isRetryableFailure(Throwable throwable) {
+        for (int depth = 0; throwable != null && depth < 16; depth++) {
+            if (throwable instanceof HttpStatusException) {
+                return isRetryableStatus(((HttpStatusException) throwable).getStatusCode());
+            }
+            if (throwable instanceof IOException || throwable instanceof TimeoutException) {
+                return true;
+            }
+            throwable = throwable.getCause();
+        }
+        return false;
+    }
+
+    public static boolean isIdempotent(String method) {
+        return "GET".equalsIgnoreCase(method)
+            || "HEAD".equalsIgnoreCase(method)
+            || "PUT".equalsIgnoreCase(method)
+            || "DELETE".equalsIgnoreCase(method)
+            || "OPTIONS".equalsIgnoreCase(method);
+    }
+
+    /**
+     * 计算第 attempt 次（从 0 开始）重试前需要等待的时间
+     *
+     * @param retryAfter 服务端返回的 Retry-After，可以为 null
+     */
+    public long getDelayMillis(int attempt, String retryAfter) {
+        long retryAfterMillis = parseRetryAfter(retryAfter);
+        if (retryAfterMillis >= 0) {
+            return Math.min(retryAfterMillis, maxDelayMillis);
+        }
+
+        double delay = initialDelayMillis * Math.pow(multiplier, attempt);
+        delay = Math.min(delay, maxDelayMillis);
+        if (jitter > 0) {
+            double random = ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+            delay = delay * (1 + random);
+        }
+        return Math.max(0, (long) delay);
+    }
+
+    private static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return -1;
+        }
+        retryAfter = retryAfter.trim();
+        try {
+            return Long.parseLong(retryAfter) * 1000;
+        } catch (NumberFormatException e) {
+            // ignore, try http date
+        }
+        try {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            Date date = format.parse(retryAfter);
+            return Math.max(0, date.getTime() - System.currentTimeMillis());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    public void setInitialDelayMillis(long initialDelayMillis) {
+        this.initialDelayMillis = initialDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public void setMaxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public void setMultiplier(double multiplier) {
+        this.multiplier = multiplier;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public void setJitter(double jitter) {
+        this.jitter = jitter;
+    }
+
+    public boolean isRetryNonIdempotent() {
+        return retryNonIdempotent;
+    }
+
+    /**
+     * 大模型的对话请求虽然是 POST，但重试只会多消耗 token，不会产生副作用，可以设置为 true
+     */
+    public void setRetryNonIdempotent(boolean retryNonIdempotent) {
+        this.retryNonIdempotent = retryNonIdempotent;
+    }
+}
@@ -18,6 +18,8 @@ package com.agentsflex.llm.client.impl;
 import com.agentsflex.llm.LlmConfig;
 import com.agentsflex.llm.client.LlmClient;
 import com.agentsflex.llm.client.LlmClientListener;
+import com.agentsflex.llm.client.OkHttpClientUtil;
+import com.agentsflex.llm.client.RetryPolicy;
 import okhttp3.*;
 import org.jetbrains.annotations.NotNull;
 
@@ -28,15 +30,26 @@ import java.util.concurrent.TimeUnit;
 public class AsyncHttpClient implements LlmClient {
     private static final MediaType JSON_TYPE = MediaType.parse("application/json; charset=utf-8");
     private OkHttpClient client;
+    private volatile Call call;
+    private Request request;
+    private volatile int attempt = 0;
     private LlmClientListener listener;
     private LlmConfig config;
-    private boolean isStop = false;
+    private volatile boolean isStop = false;
+
+    public AsyncHttpClient() {
+    }
+
+    public AsyncHttpClient(OkHttpClient client) {
+        this.client = client;
+    }
 
     @Override
     public void start(String url, Map<String, String> headers, String payload, LlmClientListener listener, LlmConfig config) {
         this.listener = listener;
         this.config = config;
         this.isStop = false;
+        this.attempt = 0;
 
         Request.Builder rBuilder = new Request.Builder()
             .url(url);
@@ -48,24 +61,41 @@ public class AsyncHttpClient implements LlmClient {
         RequestBody body = RequestBody.create(payload, JSON_TYPE);
         rBuilder.post(body);
 
-        this.client = new OkHttpClient.Builder()
-            .connectTimeout(3, TimeUnit.MINUTES)
-            .readTimeout(3, TimeUnit.MINUTES)
-            .build();
+        if (this.client == null) {
+            this.client = OkHttpClientUtil.getOkHttpClient(config);
+        }
 
         if (this.config.isDebug()){
             System.out.println(">>>>send payload:" + payload);
         }
 
         this.listener.onStart(this);
-        this.client.newCall(rBuilder.build()).enqueue(new Callback() {
+        this.request = rBuilder.build();
+        enqueue();
+    }
+
+    private void enqueue() {
+        this.call = this.client.newCall(request);
+        this.call.enqueue(new Callback() {
             @Override
             public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                RetryPolicy retryPolicy = config.getRetryPolicy();
+                if (!isStop && !call.isCanceled() && retryPolicy != null && retryPolicy.shouldRetry(attempt, e, false)) {
+                    retryLater(retryPolicy.getDelayMillis(attempt, null));
+                    return;
+                }
                 AsyncHttpClient.this.listener.onFailure(AsyncHttpClient.this, e);
             }
 
             @Override
             public void onResponse(@NotNull Call call, @NotNull Response response) throws IOException {
+                RetryPolicy retryPolicy = config.getRetryPolicy();
+                if (!isStop && retryPolicy != null && retryPolicy.shouldRetry(attempt, response.code(), false)) {
+                    long delayMillis = retryPolicy.getDelayMillis(attempt, response.header("Retry-After"));
+                    response.close();
+                    retryLater(delayMillis);
+                    return;
+                }
                 if (config.isDebug()){
                     System.out.println(">>>>receive payload:" + response.message());
                 }
@@ -78,11 +108,22 @@ public class AsyncHttpClient implements LlmClient {
         });
     }
 
+    private void retryLater(long delayMillis) {
+        attempt++;
+        OkHttpClientUtil.getScheduler().schedule(() -> {
+            if (!isStop) {
+                enqueue();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
     @Override
     public void stop() {
         if (!isStop) {
             this.isStop = true;
-            client.dispatcher().executorService().shutdown();
+            if (call != null) {
+                call.cancel();
+            }
             this.listener.onStop(this);
         }
     }
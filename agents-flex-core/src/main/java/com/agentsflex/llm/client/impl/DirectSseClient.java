@@ -0,0 +1,258 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.client.impl;
+
+import com.agentsflex.llm.LlmConfig;
+import com.agentsflex.llm.client.HttpStatusException;
+import com.agentsflex.llm.client.LlmClient;
+import com.agentsflex.llm.client.LlmClientListener;
+import com.agentsflex.llm.client.OkHttpClientUtil;
+import com.agentsflex.llm.client.RetryPolicy;
+import okhttp3.*;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不依赖 okhttp-sse 的 SSE 客户端：直接从响应的 BufferedSource 中读取 data 行，
+ * 把事件内容的字节交给 {@link LlmClientListener#onMessage(LlmClient, byte[], int, int)}，不为每个事件创建 String。
+ * 事件内容的字节数组会被复用，监听器不能在回调之外持有。
+ */
+public class DirectSseClient implements LlmClient {
+
+    private static final MediaType JSON_TYPE = MediaType.parse("application/json; charset=utf-8");
+    private static final ByteString DATA = ByteString.encodeUtf8("data:");
+    private static final byte[] DONE = "[DONE]".getBytes(StandardCharsets.US_ASCII);
+
+    private OkHttpClient client;
+    private volatile Call call;
+    private Request request;
+    private LlmClientListener listener;
+    private LlmConfig config;
+    private volatile boolean isStop = false;
+    // 在 OkHttp 的回调线程中写入，在重试的定时任务中读取
+    private volatile boolean receivedEvent = false;
+    private volatile int attempt = 0;
+
+    private byte[] data = new byte[4096];
+    private int dataLength = 0;
+
+    public DirectSseClient() {
+    }
+
+    public DirectSseClient(OkHttpClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public void start(String url, Map<String, String> headers, String payload, LlmClientListener listener, LlmConfig config) {
+        this.listener = listener;
+        this.config = config;
+        this.isStop = false;
+        this.receivedEvent = false;
+        this.attempt = 0;
+
+        Request.Builder builder = new Request.Builder()
+            .url(url)
+            .header("Accept", "text/event-stream");
+
+        if (headers != null && !headers.isEmpty()) {
+            headers.forEach(builder::addHeader);
+        }
+
+        this.request = builder.post(RequestBody.create(payload, JSON_TYPE)).build();
+
+        if (this.client == null) {
+            this.client = OkHttpClientUtil.getOkHttpClient(config);
+        }
+
+        if (this.config.isDebug()) {
+            System.out.println(">>>>send payload:" + payload);
+        }
+
+        this.listener.onStart(this);
+        enqueue();
+    }
+
+    private void enqueue() {
+        this.dataLength = 0;
+        this.call = this.client.newCall(request);
+        this.call.enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                handleFailure(e, null);
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful() || body == null) {
+                        String message = body != null ? body.string() : "";
+                        handleFailure(new HttpStatusException(response.code(), "Unexpected response code " + response.code() + ": " + message), response);
+                        return;
+                    }
+                    read(body.source());
+                } catch (IOException e) {
+                    handleFailure(e, null);
+                    return;
+                }
+                if (!isStop) {
+                    isStop = true;
+                    listener.onStop(DirectSseClient.this);
+                }
+            }
+        });
+    }
+
+    private void read(BufferedSource source) throws IOException {
+        Buffer buffer = source.getBuffer();
+        while (!isStop) {
+            long newline = source.indexOf((byte) '\n');
+            if (newline == -1) {
+                // 流已结束，最后一行可能没有换行符
+                if (buffer.size() > 0) {
+                    readLine(source, buffer.size(), 0);
+                }
+                dispatch();
+                return;
+            }
+            int cr = newline > 0 && buffer.getByte(newline - 1) == '\r' ? 1 : 0;
+            readLine(source, newline - cr, cr + 1);
+        }
+    }
+
+    private void readLine(BufferedSource source, long length, int terminatorLength) throws IOException {
+        Buffer buffer = source.getBuffer();
+        if (length == 0) {
+            dispatch();
+        } else if (length >= DATA.size() && source.rangeEquals(0, DATA)) {
+            long skip = length > DATA.size() && buffer.getByte(DATA.size()) == ' ' ? DATA.size() + 1 : DATA.size();
+            buffer.skip(skip);
+            if (dataLength > 0) {
+                append(buffer, -1);
+            }
+            append(buffer, length - skip);
+        } else {
+            // event、id、retry 以及注释行都不需要
+            buffer.skip(length);
+        }
+        buffer.skip(terminatorLength);
+    }
+
+    /**
+     * 从 buffer 中读取 length 个字节追加到 data，length 为 -1 时追加换行符
+     */
+    private void append(Buffer buffer, long length) throws IOException {
+        int size = length < 0 ? 1 : (int) length;
+        if (dataLength + size > data.length) {
+            byte[] newData = new byte[Math.max(data.length * 2, dataLength + size)];
+            System.arraycopy(data, 0, newData, 0, dataLength);
+            data = newData;
+        }
+        if (length < 0) {
+            data[dataLength++] = '\n';
+            return;
+        }
+        while (size > 0) {
+            int read = buffer.read(data, dataLength, size);
+            if (read == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+            dataLength += read;
+            size -= read;
+        }
+    }
+
+    private void dispatch() {
+        int length = dataLength;
+        dataLength = 0;
+        if (length == 0 || isStop || isBlankOrDone(data, 0, length)) {
+            return;
+        }
+        receivedEvent = true;
+        if (config.isDebug()) {
+            System.out.println(">>>>receive payload:" + new String(data, 0, length, StandardCharsets.UTF_8));
+        }
+        listener.onMessage(this, data, 0, length);
+    }
+
+    private void handleFailure(IOException e, Response response) {
+        if (isStop) {
+            return;
+        }
+        RetryPolicy retryPolicy = config.getRetryPolicy();
+        // 只在收到第一条消息之前重试，避免重复输出内容
+        if (!receivedEvent && retryPolicy != null) {
+            boolean retry = response != null
+                ? retryPolicy.shouldRetry(attempt, response.code(), false)
+                : retryPolicy.shouldRetry(attempt, e, false);
+            if (retry) {
+                long delayMillis = retryPolicy.getDelayMillis(attempt, response != null ? response.header("Retry-After") : null);
+                attempt++;
+                OkHttpClientUtil.getScheduler().schedule(() -> {
+                    if (!isStop) {
+                        enqueue();
+                    }
+                }, delayMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        listener.onFailure(this, e);
+    }
+
+    @Override
+    public void stop() {
+        if (!isStop) {
+            this.isStop = true;
+            if (call != null) {
+                call.cancel();
+            }
+            this.listener.onStop(this);
+        }
+    }
+
+    /**
+     * 判断事件内容是否为空白或者 [DONE]，不创建任何对象
+     */
+    public static boolean isBlankOrDone(byte[] data, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+        while (start < end && data[start] <= ' ') {
+            start++;
+        }
+        while (end > start && data[end - 1] <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return true;
+        }
+        if (end - start != DONE.length) {
+            return false;
+        }
+        for (int i = 0; i < DONE.length; i++) {
+            if (data[start + i] != DONE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
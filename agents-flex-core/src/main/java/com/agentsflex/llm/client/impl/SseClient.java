@@ -16,8 +16,11 @@
 package com.agentsflex.llm.client.impl;
 
 import com.agentsflex.llm.LlmConfig;
+import com.agentsflex.llm.client.HttpStatusException;
 import com.agentsflex.llm.client.LlmClient;
 import com.agentsflex.llm.client.LlmClientListener;
+import com.agentsflex.llm.client.OkHttpClientUtil;
+import com.agentsflex.llm.client.RetryPolicy;
 import okhttp3.*;
 import okhttp3.sse.EventSource;
 import okhttp3.sse.EventSourceListener;
@@ -31,16 +34,30 @@ import java.util.concurrent.TimeUnit;
 public class SseClient extends EventSourceListener implements LlmClient {
 
     private OkHttpClient client;
-    private EventSource eventSource;
+    private volatile EventSource eventSource;
     private LlmClientListener listener;
     private LlmConfig config;
-    private boolean isStop = false;
+    private volatile boolean isStop = false;
+    private EventSource.Factory factory;
+    private Request request;
+    // 在 OkHttp 的回调线程中写入，在重试的定时任务中读取
+    private volatile boolean receivedEvent = false;
+    private volatile int attempt = 0;
+
+    public SseClient() {
+    }
+
+    public SseClient(OkHttpClient client) {
+        this.client = client;
+    }
 
     @Override
     public void start(String url, Map<String, String> headers, String payload, LlmClientListener listener, LlmConfig config) {
         this.listener = listener;
         this.config = config;
         this.isStop = false;
+        this.receivedEvent = false;
+        this.attempt = 0;
 
         Request.Builder builder = new Request.Builder()
             .url(url);
@@ -51,16 +68,13 @@ public class SseClient extends EventSourceListener implements LlmClient {
 
         MediaType mediaType = MediaType.parse("application/json; charset=utf-8");
         RequestBody body = RequestBody.create(payload, mediaType);
-        Request request = builder.post(body).build();
-
-
-        this.client = new OkHttpClient.Builder()
-            .connectTimeout(3, TimeUnit.MINUTES)
-            .readTimeout(3, TimeUnit.MINUTES)
-            .build();
+        this.request = builder.post(body).build();
 
+        if (this.client == null) {
+            this.client = OkHttpClientUtil.getOkHttpClient(config);
+        }
 
-        EventSource.Factory factory = EventSources.createFactory(this.client);
+        this.factory = EventSources.createFactory(this.client);
         this.eventSource = factory.newEventSource(request, this);
 
         if (this.config.isDebug()){
@@ -75,7 +89,6 @@ public class SseClient extends EventSourceListener implements LlmClient {
         if (!isStop) {
             this.isStop = true;
             eventSource.cancel();
-            client.dispatcher().executorService().shutdown();
             this.listener.onStop(this);
         }
     }
@@ -94,14 +107,48 @@ public class SseClient extends EventSourceListener implements LlmClient {
         if (this.config.isDebug()){
             System.out.println(">>>>receive payload:" + data);
         }
+        this.receivedEvent = true;
         this.listener.onMessage(this, data);
     }
 
     @Override
     public void onFailure(@NotNull EventSource eventSource, @Nullable Throwable t, @Nullable Response response) {
+        if (retryIfNecessary(t, response)) {
+            return;
+        }
+        if (response != null && !response.isSuccessful()) {
+            // 非 2xx 响应时 t 通常为 null，带上状态码以便调用方区分暂时性的失败和请求本身的错误
+            t = new HttpStatusException(response.code(), "Unexpected response code " + response.code(), t);
+        }
         this.listener.onFailure(this, t);
     }
 
+    /**
+     * 只在收到第一条消息之前重试，避免重复输出内容
+     */
+    private boolean retryIfNecessary(Throwable t, Response response) {
+        RetryPolicy retryPolicy = config.getRetryPolicy();
+        if (isStop || receivedEvent || retryPolicy == null) {
+            return false;
+        }
+
+        boolean retry = response != null
+            ? retryPolicy.shouldRetry(attempt, response.code(), false)
+            : retryPolicy.shouldRetry(attempt, t, false);
+        if (!retry) {
+            return false;
+        }
+
+        long delayMillis = retryPolicy.getDelayMillis(attempt, response != null ? response.header("Retry-After") : null);
+        attempt++;
+        OkHttpClientUtil.getScheduler().schedule(() -> {
+            if (!isStop) {
+                this.eventSource = factory.newEventSource(request, this);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
     @Override
     public void onOpen(@NotNull EventSource eventSource, @NotNull Response response) {
         //super.onOpen(eventSource, response);
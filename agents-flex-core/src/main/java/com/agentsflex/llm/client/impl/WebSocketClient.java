@@ -16,8 +16,11 @@
 package com.agentsflex.llm.client.impl;
 
 import com.agentsflex.llm.LlmConfig;
+import com.agentsflex.llm.client.HttpStatusException;
 import com.agentsflex.llm.client.LlmClient;
 import com.agentsflex.llm.client.LlmClientListener;
+import com.agentsflex.llm.client.OkHttpClientUtil;
+import com.agentsflex.llm.client.RetryPolicy;
 import okhttp3.*;
 import okio.ByteString;
 import org.jetbrains.annotations.NotNull;
@@ -27,11 +30,23 @@ import java.util.concurrent.TimeUnit;
 
 public class WebSocketClient extends WebSocketListener implements LlmClient {
 
-    private WebSocket webSocket;
+    private OkHttpClient client;
+    private volatile WebSocket webSocket;
     private LlmClientListener listener;
     private LlmConfig config;
-    private boolean isStop = false;
+    private volatile boolean isStop = false;
     private String payload;
+    private Request request;
+    // 在 OkHttp 的回调线程中写入，在重试的定时任务中读取
+    private volatile boolean opened = false;
+    private volatile int attempt = 0;
+
+    public WebSocketClient() {
+    }
+
+    public WebSocketClient(OkHttpClient client) {
+        this.client = client;
+    }
 
     @Override
     public void start(String url, Map<String, String> headers, String payload, LlmClientListener listener, LlmConfig config) {
@@ -39,14 +54,16 @@ public class WebSocketClient extends WebSocketListener implements LlmClient {
         this.payload = payload;
         this.config = config;
 
-        OkHttpClient client = new OkHttpClient.Builder()
-            .readTimeout(0, TimeUnit.MILLISECONDS)
-            .build();
+        if (this.client == null) {
+            this.client = OkHttpClientUtil.getWebSocketClient(config);
+        }
 
-        Request request = new Request.Builder()
+        this.request = new Request.Builder()
             .url(url)
             .build();
 
+        this.opened = false;
+        this.attempt = 0;
         this.webSocket = client.newWebSocket(request, this);
         this.isStop = false;
 
@@ -70,6 +87,7 @@ public class WebSocketClient extends WebSocketListener implements LlmClient {
     //webSocket events
     @Override
     public void onOpen(WebSocket webSocket, Response response) {
+        this.opened = true;
         webSocket.send(payload);
         this.listener.onStart(this);
     }
@@ -97,11 +115,17 @@ public class WebSocketClient extends WebSocketListener implements LlmClient {
 
     @Override
     public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+        if (retryIfNecessary(t, response)) {
+            return;
+        }
+        if (response != null && response.code() != 101) {
+            // 握手失败，带上状态码以便调用方区分暂时性的失败和请求本身的错误
+            t = new HttpStatusException(response.code(), t != null ? t.getMessage() : "Unexpected response code " + response.code(), t);
+        }
         if (!isStop) {
             this.isStop = true;
-            this.listener.onStop(this);
-
             this.listener.onFailure(this, t);
+            this.listener.onStop(this);
         }
     }
 
@@ -112,4 +136,30 @@ public class WebSocketClient extends WebSocketListener implements LlmClient {
             this.listener.onStop(this);
         }
     }
+
+    /**
+     * 只在连接建立之前重试，连接建立之后 payload 已经发送，不再重试
+     */
+    private boolean retryIfNecessary(Throwable t, Response response) {
+        RetryPolicy retryPolicy = config.getRetryPolicy();
+        if (isStop || opened || retryPolicy == null) {
+            return false;
+        }
+
+        boolean retry = response != null
+            ? retryPolicy.shouldRetry(attempt, response.code(), true)
+            : retryPolicy.shouldRetry(attempt, t, true);
+        if (!retry) {
+            return false;
+        }
+
+        long delayMillis = retryPolicy.getDelayMillis(attempt, response != null ? response.header("Retry-After") : null);
+        attempt++;
+        OkHttpClientUtil.getScheduler().schedule(() -> {
+            if (!isStop) {
+                this.webSocket = client.newWebSocket(request, this);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
 }
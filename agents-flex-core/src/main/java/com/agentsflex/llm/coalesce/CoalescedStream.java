@@ -0,0 +1,284 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.coalesce;
+
+import com.agentsflex.llm.ChatContext;
+import com.agentsflex.llm.Llm;
+import com.agentsflex.llm.LlmConfig;
+import com.agentsflex.llm.MessageResponse;
+import com.agentsflex.llm.StreamResponseListener;
+import com.agentsflex.llm.client.LlmClient;
+import com.agentsflex.llm.client.LlmClientListener;
+import com.agentsflex.message.AiMessage;
+import com.agentsflex.message.FunctionMessage;
+import com.agentsflex.prompt.HistoriesPrompt;
+import com.agentsflex.prompt.Prompt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 多个订阅者共享的一次流式请求。后加入的订阅者会先收到已经输出过的消息，再继续接收后续的消息；
+ * 每个订阅者都有自己的 LlmClient，调用 stop() 只会取消自己的订阅，所有订阅者都取消时才会停止上游的请求。
+ * <p>
+ * 注意：所有订阅者收到的是同一个 MessageResponse 对象，订阅者不应修改它。
+ */
+public class CoalescedStream<R extends MessageResponse<M>, M extends AiMessage> implements StreamResponseListener<R, M> {
+
+    private final Llm llm;
+    private final Consumer<CoalescedStream<R, M>> onComplete;
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final List<R> buffer = new ArrayList<>();
+    // 发起请求的 prompt，由 Llm 自己维护历史消息
+    private Prompt<M> creatorPrompt;
+    private LlmClient upstreamClient;
+    private boolean started;
+    private boolean stopped;
+    private boolean cancelled;
+    private Throwable failure;
+
+    /**
+     * @param llm        订阅者的 ChatContext 中的 Llm
+     * @param onComplete 请求结束（正常结束、失败或者所有订阅者都取消）时的回调
+     */
+    public CoalescedStream(Llm llm, Consumer<CoalescedStream<R, M>> onComplete) {
+        this.llm = llm;
+        this.onComplete = onComplete;
+    }
+
+    /**
+     * 添加订阅者，返回 false 表示该请求已经结束，需要重新发起请求
+     */
+    public boolean subscribe(Prompt<M> prompt, StreamResponseListener<R, M> listener) {
+        return subscribe(prompt, listener, false);
+    }
+
+    /**
+     * 添加订阅者，返回 false 表示该请求已经结束，需要重新发起请求
+     *
+     * @param creator 是否为发起请求的订阅者，它的 prompt 会被传给 Llm
+     */
+    public boolean subscribe(Prompt<M> prompt, StreamResponseListener<R, M> listener, boolean creator) {
+        Subscriber subscriber = new Subscriber(prompt, listener);
+        synchronized (this) {
+            if (stopped || cancelled || failure != null) {
+                return false;
+            }
+            if (creator) {
+                creatorPrompt = prompt;
+            }
+            subscribers.add(subscriber);
+            if (started) {
+                subscriber.enqueue(() -> listener.onStart(subscriber.context));
+            }
+            for (R response : buffer) {
+                subscriber.enqueue(() -> listener.onMessage(subscriber.context, response));
+            }
+        }
+        subscriber.drain();
+        return true;
+    }
+
+    @Override
+    public void onStart(ChatContext context) {
+        List<Subscriber> targets;
+        synchronized (this) {
+            this.upstreamClient = context.getClient();
+            this.started = true;
+            targets = new ArrayList<>(subscribers);
+            for (Subscriber subscriber : targets) {
+                subscriber.enqueue(() -> subscriber.listener.onStart(subscriber.context));
+            }
+        }
+        drain(targets);
+        stopUpstreamIfCancelled();
+    }
+
+    @Override
+    public void onMessage(ChatContext context, R response) {
+        List<Subscriber> targets;
+        synchronized (this) {
+            if (this.upstreamClient == null) {
+                this.upstreamClient = context.getClient();
+            }
+            buffer.add(response);
+            targets = new ArrayList<>(subscribers);
+            for (Subscriber subscriber : targets) {
+                subscriber.enqueue(() -> subscriber.listener.onMessage(subscriber.context, response));
+            }
+        }
+        drain(targets);
+        stopUpstreamIfCancelled();
+    }
+
+    @Override
+    public void onStop(ChatContext context) {
+        List<Subscriber> targets;
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+            AiMessage lastMessage = buffer.isEmpty() ? null : buffer.get(buffer.size() - 1).getMessage();
+            boolean addToHistory = failure == null && !cancelled && lastMessage != null && !(lastMessage instanceof FunctionMessage);
+            // 同一个 prompt 只添加一次，发起请求的 prompt 由 Llm 自己添加
+            Set<Prompt<M>> updatedPrompts = Collections.newSetFromMap(new IdentityHashMap<>());
+            if (creatorPrompt != null) {
+                updatedPrompts.add(creatorPrompt);
+            }
+            targets = new ArrayList<>(subscribers);
+            for (Subscriber subscriber : targets) {
+                if (addToHistory && subscriber.prompt instanceof HistoriesPrompt && updatedPrompts.add(subscriber.prompt)) {
+                    subscriber.enqueue(() -> ((HistoriesPrompt) subscriber.prompt).addMessage(lastMessage));
+                }
+                subscriber.enqueue(() -> subscriber.listener.onStop(subscriber.context));
+            }
+            subscribers.clear();
+            buffer.clear();
+        }
+        onComplete.accept(this);
+        drain(targets);
+    }
+
+    @Override
+    public void onFailure(ChatContext context, Throwable throwable) {
+        List<Subscriber> targets;
+        synchronized (this) {
+            this.failure = throwable;
+            targets = new ArrayList<>(subscribers);
+            for (Subscriber subscriber : targets) {
+                subscriber.enqueue(() -> subscriber.listener.onFailure(subscriber.context, throwable));
+            }
+        }
+        onComplete.accept(this);
+        drain(targets);
+    }
+
+    public synchronized boolean isStopped() {
+        return stopped;
+    }
+
+    public synchronized Throwable getFailure() {
+        return failure;
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        boolean cancel;
+        synchronized (this) {
+            if (!subscribers.remove(subscriber)) {
+                return;
+            }
+            subscriber.enqueue(() -> subscriber.listener.onStop(subscriber.context));
+            cancel = subscribers.isEmpty() && !stopped && !cancelled;
+            if (cancel) {
+                cancelled = true;
+            }
+        }
+        subscriber.drain();
+        if (cancel) {
+            onComplete.accept(this);
+            stopUpstreamIfCancelled();
+        }
+    }
+
+    /**
+     * 所有订阅者都取消之后停止上游的请求，上游还没有开始时，在开始后立即停止
+     */
+    private void stopUpstreamIfCancelled() {
+        LlmClient client;
+        synchronized (this) {
+            if (!cancelled || upstreamClient == null) {
+                return;
+            }
+            client = upstreamClient;
+        }
+        client.stop();
+    }
+
+    private void drain(List<Subscriber> targets) {
+        for (Subscriber subscriber : targets) {
+            subscriber.drain();
+        }
+    }
+
+
+    /**
+     * 订阅者的回调在 CoalescedStream 的锁之外执行：事件在锁内按顺序入队，再由入队的线程依次执行，
+     * 同一个订阅者同一时刻只有一个线程在执行回调。
+     */
+    private class Subscriber {
+        private final Prompt<M> prompt;
+        private final StreamResponseListener<R, M> listener;
+        private final ChatContext context;
+        private final Deque<Runnable> events = new ArrayDeque<>();
+        private boolean draining;
+
+        Subscriber(Prompt<M> prompt, StreamResponseListener<R, M> listener) {
+            this.prompt = prompt;
+            this.listener = listener;
+            this.context = new ChatContext(llm, new SubscriberClient(this));
+        }
+
+        synchronized void enqueue(Runnable event) {
+            events.add(event);
+        }
+
+        void drain() {
+            while (true) {
+                Runnable event;
+                synchronized (this) {
+                    if (draining || events.isEmpty()) {
+                        return;
+                    }
+                    draining = true;
+                    event = events.poll();
+                }
+                try {
+                    event.run();
+                } finally {
+                    synchronized (this) {
+                        draining = false;
+                    }
+                }
+            }
+        }
+    }
+
+    private class SubscriberClient implements LlmClient {
+        private final Subscriber subscriber;
+
+        SubscriberClient(Subscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void start(String url, Map<String, String> headers, String payload, LlmClientListener listener, LlmConfig config) {
+            throw new UnsupportedOperationException("Can not start a coalesced stream client.");
+        }
+
+        @Override
+        public void stop() {
+            unsubscribe(subscriber);
+        }
+    }
+}
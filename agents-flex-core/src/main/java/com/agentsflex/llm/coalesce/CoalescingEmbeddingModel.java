@@ -0,0 +1,94 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.coalesce;
+
+import com.agentsflex.document.Document;
+import com.agentsflex.llm.embedding.EmbeddingModel;
+import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.store.VectorData;
+import com.agentsflex.util.HashUtil;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 合并并发的相同向量化请求（内容以及 EmbeddingOptions 相同），同一时刻只向模型发送一次请求
+ */
+public class CoalescingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel embeddingModel;
+    private final SingleFlight<VectorData> embedFlight = new SingleFlight<>();
+    private final SingleFlight<List<VectorData>> embedAllFlight = new SingleFlight<>();
+
+    public CoalescingEmbeddingModel(EmbeddingModel embeddingModel) {
+        this.embeddingModel = embeddingModel;
+    }
+
+    @Override
+    public VectorData embed(Document document, EmbeddingOptions options) {
+        return embedFlight.execute(key(document, options), () -> embeddingModel.embed(document, options)
+            , CoalescingEmbeddingModel::copyOf);
+    }
+
+    @Override
+    public List<VectorData> embedAll(List<Document> documents, EmbeddingOptions options) {
+        StringBuilder contents = new StringBuilder();
+        for (Document document : documents) {
+            contents.append(key(document, options)).append('\n');
+        }
+        return embedAllFlight.execute(HashUtil.sha256(contents.toString()), () -> embeddingModel.embedAll(documents, options)
+            , list -> {
+                if (list == null) {
+                    return null;
+                }
+                List<VectorData> copies = new ArrayList<>(list.size());
+                for (VectorData vectorData : list) {
+                    copies.add(copyOf(vectorData));
+                }
+                return copies;
+            });
+    }
+
+    @Override
+    public CompletableFuture<VectorData> embedAsync(Document document, EmbeddingOptions options) {
+        return embedFlight.executeAsync(key(document, options), () -> embeddingModel.embedAsync(document, options)
+            , CoalescingEmbeddingModel::copyOf);
+    }
+
+    private static String key(Document document, EmbeddingOptions options) {
+        String content = document.getContent() != null ? document.getContent() : "";
+        String optionsJson = options == null ? "" : options.getClass().getName()
+            + JSON.toJSONString(options, SerializerFeature.MapSortField, SerializerFeature.SortField);
+        return HashUtil.sha256(content) + ":" + HashUtil.sha256(optionsJson);
+    }
+
+    private static VectorData copyOf(VectorData vectorData) {
+        if (vectorData == null) {
+            return null;
+        }
+        VectorData copy = new VectorData();
+        copy.setVector(vectorData.getVector() != null ? vectorData.getVector().clone() : null);
+        copy.addMetadata(vectorData.getMetadatas());
+        return copy;
+    }
+
+    public EmbeddingModel getEmbeddingModel() {
+        return embeddingModel;
+    }
+}
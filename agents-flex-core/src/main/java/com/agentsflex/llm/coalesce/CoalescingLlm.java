@@ -0,0 +1,121 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.coalesce;
+
+import com.agentsflex.document.Document;
+import com.agentsflex.llm.ChatContext;
+import com.agentsflex.llm.ChatOptions;
+import com.agentsflex.llm.Llm;
+import com.agentsflex.llm.MessageResponse;
+import com.agentsflex.llm.StreamResponseListener;
+import com.agentsflex.llm.cache.CachedResponse;
+import com.agentsflex.llm.cache.ChatCacheKeys;
+import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.message.AiMessage;
+import com.agentsflex.prompt.Prompt;
+import com.agentsflex.store.VectorData;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 合并并发的相同请求（模型、消息、functions 以及 ChatOptions 都相同）：同一时刻只向大模型发送一次请求，
+ * 所有调用方共享结果；流式请求的调用方会订阅同一个流。请求结束后不会缓存结果。
+ */
+public class CoalescingLlm implements Llm {
+
+    private final Llm llm;
+    private final SingleFlight<MessageResponse<?>> chatFlight = new SingleFlight<>();
+    private final Map<String, CoalescedStream<?, ?>> streams = new ConcurrentHashMap<>();
+    private final CoalescingEmbeddingModel embeddingModel;
+
+    public CoalescingLlm(Llm llm) {
+        this.llm = llm;
+        this.embeddingModel = new CoalescingEmbeddingModel(llm);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> R chat(Prompt<M> prompt, ChatOptions options) {
+        String key = ChatCacheKeys.of(llm, prompt, options);
+        return (R) chatFlight.execute(key, () -> llm.chat(prompt, options), response -> copyOf(prompt, response));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> CompletableFuture<R> chatAsync(Prompt<M> prompt, ChatOptions options) {
+        String key = ChatCacheKeys.of(llm, prompt, options);
+        return chatFlight.executeAsync(key
+            , () -> llm.chatAsync(prompt, options).thenApply(response -> (MessageResponse<?>) response)
+            , response -> copyOf(prompt, response))
+            .thenApply(response -> (R) response);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> void chatStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options) {
+        String key = ChatCacheKeys.of(llm, prompt, options);
+        while (true) {
+            boolean[] created = new boolean[1];
+            CoalescedStream<R, M> stream = (CoalescedStream<R, M>) streams.computeIfAbsent(key, k -> {
+                created[0] = true;
+                return new CoalescedStream<R, M>(this, s -> streams.remove(k, s));
+            });
+
+            if (!stream.subscribe(prompt, listener, created[0])) {
+                // 请求刚刚结束，移除之后重新发起
+                streams.remove(key, stream);
+                continue;
+            }
+
+            // 创建者负责发起请求，其他调用方只订阅
+            if (created[0]) {
+                try {
+                    llm.chatStream(prompt, stream, options);
+                } catch (RuntimeException e) {
+                    stream.onFailure(new ChatContext(this, null), e);
+                }
+            }
+            return;
+        }
+    }
+
+    private static MessageResponse<?> copyOf(Prompt<?> prompt, MessageResponse<?> response) {
+        CachedResponse cachedResponse = CachedResponse.of(response);
+        return cachedResponse != null ? cachedResponse.toResponse((Prompt) prompt) : response;
+    }
+
+    @Override
+    public VectorData embed(Document document, EmbeddingOptions options) {
+        return embeddingModel.embed(document, options);
+    }
+
+    @Override
+    public List<VectorData> embedAll(List<Document> documents, EmbeddingOptions options) {
+        return embeddingModel.embedAll(documents, options);
+    }
+
+    @Override
+    public CompletableFuture<VectorData> embedAsync(Document document, EmbeddingOptions options) {
+        return embeddingModel.embedAsync(document, options);
+    }
+
+    public Llm getLlm() {
+        return llm;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.coalesce;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 合并相同 key 的并发调用：同一时刻只有第一个调用会真正执行，其他调用等待并共享它的结果。
+ * 调用结束后立即移除，不会缓存结果。
+ */
+public class SingleFlight<V> {
+
+    private final Map<String, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * @param key      调用的唯一标识
+     * @param supplier 实际的调用
+     * @param copier   共享结果给其他等待者时，对结果进行复制，避免多个调用方修改同一个对象
+     */
+    public V execute(String key, Supplier<V> supplier, UnaryOperator<V> copier) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = calls.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return copier.apply(existing.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            V value = supplier.get();
+            calls.remove(key, future);
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            calls.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public CompletableFuture<V> executeAsync(String key, Supplier<CompletableFuture<V>> supplier, UnaryOperator<V> copier) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = calls.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing.thenApply(copier);
+        }
+
+        CompletableFuture<V> upstream;
+        try {
+            upstream = supplier.get();
+        } catch (Throwable e) {
+            calls.remove(key, future);
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        upstream.whenComplete((value, error) -> {
+            calls.remove(key, future);
+            if (error != null) {
+                future.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            } else {
+                future.complete(value);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 当前正在执行的调用数量
+     */
+    public int getInFlightCount() {
+        return calls.size();
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.embedding;
+
+import com.agentsflex.document.Document;
+import com.agentsflex.store.VectorData;
+import com.agentsflex.util.HashUtil;
+import com.agentsflex.util.LruCache;
+import com.agentsflex.util.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带缓存的 EmbeddingModel，使用 "模型名称 + 内容 hash" 作为 key，
+ * 内存中使用 LRU 缓存，可选配置 {@link EmbeddingDiskCache} 作为磁盘缓存
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingEmbeddingModel.class);
+
+    private final EmbeddingModel embeddingModel;
+    private final String modelName;
+    private final LruCache<String, double[]> memoryCache;
+    private EmbeddingDiskCache diskCache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public CachingEmbeddingModel(EmbeddingModel embeddingModel, String modelName) {
+        this(embeddingModel, modelName, 10000);
+    }
+
+    /**
+     * @param embeddingModel 被缓存的模型
+     * @param modelName      向量模型的名称，作为缓存 key 的一部分，不同的向量模型（或者同一个模型的不同维度）必须使用不同的名称，
+     *                       否则磁盘缓存中会读到其他模型的向量
+     * @param maxSize        内存中最多缓存的向量数量
+     */
+    public CachingEmbeddingModel(EmbeddingModel embeddingModel, String modelName, int maxSize) {
+        if (StringUtil.noText(modelName)) {
+            throw new IllegalArgumentException("modelName can not be empty");
+        }
+        this.embeddingModel = embeddingModel;
+        this.modelName = modelName;
+        this.memoryCache = new LruCache<>(maxSize);
+    }
+
+    public CachingEmbeddingModel(EmbeddingModel embeddingModel, String modelName, int maxSize, EmbeddingDiskCache diskCache) {
+        this(embeddingModel, modelName, maxSize);
+        this.diskCache = diskCache;
+    }
+
+    @Override
+    public VectorData embed(Document document, EmbeddingOptions options) {
+        String key = cacheKey(document);
+        double[] vector = getCachedVector(key);
+        if (vector != null) {
+            return toVectorData(vector);
+        }
+
+        VectorData vectorData = embeddingModel.embed(document, options);
+        putCachedVector(key, vectorData);
+        return vectorData;
+    }
+
+    @Override
+    public List<VectorData> embedAll(List<Document> documents, EmbeddingOptions options) {
+        List<VectorData> vectorDataList = new ArrayList<>(documents.size());
+
+        // 相同内容的文档只需要请求一次
+        Map<String, Document> missDocuments = new LinkedHashMap<>();
+        List<String> keys = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            String key = cacheKey(document);
+            keys.add(key);
+            double[] vector = getCachedVector(key);
+            if (vector != null) {
+                vectorDataList.add(toVectorData(vector));
+            } else {
+                vectorDataList.add(null);
+                missDocuments.putIfAbsent(key, document);
+            }
+        }
+
+        if (missDocuments.isEmpty()) {
+            return vectorDataList;
+        }
+
+        List<String> missKeys = new ArrayList<>(missDocuments.keySet());
+        List<VectorData> embedded = embeddingModel.embedAll(new ArrayList<>(missDocuments.values()), options);
+        Map<String, VectorData> embeddedMap = new LinkedHashMap<>();
+        for (int i = 0; i < missKeys.size() && i < embedded.size(); i++) {
+            VectorData vectorData = embedded.get(i);
+            if (vectorData != null) {
+                embeddedMap.put(missKeys.get(i), vectorData);
+                putCachedVector(missKeys.get(i), vectorData);
+            }
+        }
+
+        for (int i = 0; i < vectorDataList.size(); i++) {
+            if (vectorDataList.get(i) == null) {
+                vectorDataList.set(i, embeddedMap.get(keys.get(i)));
+            }
+        }
+        return vectorDataList;
+    }
+
+    @Override
+    public CompletableFuture<VectorData> embedAsync(Document document, EmbeddingOptions options) {
+        String key = cacheKey(document);
+        double[] vector = getCachedVector(key);
+        if (vector != null) {
+            return CompletableFuture.completedFuture(toVectorData(vector));
+        }
+
+        return embeddingModel.embedAsync(document, options).thenApply(vectorData -> {
+            putCachedVector(key, vectorData);
+            return vectorData;
+        });
+    }
+
+    protected String cacheKey(Document document) {
+        String content = document.getContent() != null ? document.getContent() : "";
+        return modelName + ":" + HashUtil.sha256(content);
+    }
+
+    private double[] getCachedVector(String key) {
+        double[] vector = memoryCache.get(key);
+        if (vector == null && diskCache != null) {
+            vector = diskCache.get(key);
+            if (vector != null) {
+                memoryCache.put(key, vector);
+            }
+        }
+
+        if (vector != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return vector;
+    }
+
+    private void putCachedVector(String key, VectorData vectorData) {
+        if (vectorData == null || vectorData.getVector() == null) {
+            return;
+        }
+        double[] vector = vectorData.getVector().clone();
+        memoryCache.put(key, vector);
+        if (diskCache != null) {
+            try {
+                diskCache.put(key, vector);
+            } catch (Exception e) {
+                LOG.error(e.toString(), e);
+            }
+        }
+    }
+
+    private static VectorData toVectorData(double[] vector) {
+        VectorData vectorData = new VectorData();
+        vectorData.setVector(vector.clone());
+        return vectorData;
+    }
+
+    public EmbeddingModel getEmbeddingModel() {
+        return embeddingModel;
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    public EmbeddingDiskCache getDiskCache() {
+        return diskCache;
+    }
+
+    public void setDiskCache(EmbeddingDiskCache diskCache) {
+        this.diskCache = diskCache;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public void clear() {
+        memoryCache.clear();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.embedding;
+
+import com.agentsflex.document.Document;
+import com.agentsflex.util.TokenUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 按照大模型的单次请求条数和 token 数限制，把文档拆分成多个批次
+ */
+public class EmbeddingBatches {
+
+    /**
+     * @param documents      需要向量化的文档
+     * @param maxBatchSize   每个批次最多的文档数量
+     * @param maxBatchTokens 每个批次最多的 token 数量（估算值），单个文档超出时会单独成为一个批次
+     * @return 拆分后的批次，顺序与原文档一致
+     */
+    public static List<List<Document>> split(List<Document> documents, int maxBatchSize, int maxBatchTokens) {
+        if (documents == null || documents.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<List<Document>> batches = new ArrayList<>();
+        List<Document> batch = new ArrayList<>();
+        int batchTokens = 0;
+        for (Document document : documents) {
+            int tokens = TokenUtil.estimateTokens(document.getContent());
+            if (!batch.isEmpty() && (batch.size() >= maxBatchSize || batchTokens + tokens > maxBatchTokens)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchTokens = 0;
+            }
+            batch.add(document);
+            batchTokens += tokens;
+        }
+        batches.add(batch);
+        return batches;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.embedding;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基于内存映射文件的向量磁盘缓存，只追加写入，重启后可以继续使用。
+ * <p>
+ * 每条记录的格式为：[int keyLength][key bytes][int dimension][double * dimension]，
+ * 文件尾部未写入的区域为 0，读取到 keyLength 为 0 时即结束。
+ */
+public class EmbeddingDiskCache implements Closeable {
+
+    private static final int REGION_SIZE = 16 * 1024 * 1024;
+
+    private final File file;
+    private final FileChannel channel;
+    private final Map<String, Integer> offsets = new HashMap<>();
+    private MappedByteBuffer buffer;
+    private int position;
+
+    public EmbeddingDiskCache(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Can not create directory: " + parent);
+        }
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Embedding cache file is too large: " + file);
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, REGION_SIZE));
+        load((int) size);
+    }
+
+    private void load(int size) {
+        int offset = 0;
+        while (offset + 4 <= size) {
+            int keyLength = buffer.getInt(offset);
+            if (keyLength <= 0 || offset + 4 + keyLength + 4 > size) {
+                break;
+            }
+            byte[] keyBytes = new byte[keyLength];
+            for (int i = 0; i < keyLength; i++) {
+                keyBytes[i] = buffer.get(offset + 4 + i);
+            }
+            int vectorOffset = offset + 4 + keyLength;
+            int dimension = buffer.getInt(vectorOffset);
+            long end = (long) vectorOffset + 4 + (long) dimension * 8;
+            if (dimension < 0 || end > size) {
+                break;
+            }
+            offsets.put(new String(keyBytes, StandardCharsets.UTF_8), vectorOffset);
+            offset = (int) end;
+        }
+        this.position = offset;
+    }
+
+    public synchronized double[] get(String key) {
+        Integer vectorOffset = offsets.get(key);
+        if (vectorOffset == null) {
+            return null;
+        }
+        int dimension = buffer.getInt(vectorOffset);
+        double[] vector = new double[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = buffer.getDouble(vectorOffset + 4 + i * 8);
+        }
+        return vector;
+    }
+
+    public synchronized void put(String key, double[] vector) throws IOException {
+        if (offsets.containsKey(key)) {
+            return;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long recordSize = 4L + keyBytes.length + 4 + (long) vector.length * 8;
+        ensureCapacity(recordSize);
+
+        buffer.putInt(position, keyBytes.length);
+        for (int i = 0; i < keyBytes.length; i++) {
+            buffer.put(position + 4 + i, keyBytes[i]);
+        }
+        int vectorOffset = position + 4 + keyBytes.length;
+        buffer.putInt(vectorOffset, vector.length);
+        for (int i = 0; i < vector.length; i++) {
+            buffer.putDouble(vectorOffset + 4 + i * 8, vector[i]);
+        }
+        offsets.put(key, vectorOffset);
+        position += (int) recordSize;
+    }
+
+    private void ensureCapacity(long recordSize) throws IOException {
+        long required = position + recordSize;
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        long newCapacity = ((required / REGION_SIZE) + 1) * REGION_SIZE;
+        if (newCapacity > Integer.MAX_VALUE) {
+            throw new IOException("Embedding cache file is full: " + file);
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newCapacity);
+    }
+
+    public synchronized int size() {
+        return offsets.size();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
@@ -17,9 +17,31 @@ package com.agentsflex.llm.embedding;
 
 import com.agentsflex.document.Document;
 import com.agentsflex.store.VectorData;
+import com.agentsflex.util.NamedThreadPools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface EmbeddingModel {
 
     VectorData embed(Document document, EmbeddingOptions options);
 
+    /**
+     * 批量向量化，返回结果与 documents 一一对应，失败的文档对应 null。
+     * 默认实现逐个调用 {@link #embed(Document, EmbeddingOptions)}，支持批量接口的大模型应重写此方法，
+     * 并通过 {@link EmbeddingBatches} 按照大模型的限制拆分请求
+     */
+    default List<VectorData> embedAll(List<Document> documents, EmbeddingOptions options) {
+        List<VectorData> vectorDataList = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            vectorDataList.add(embed(document, options));
+        }
+        return vectorDataList;
+    }
+
+    default CompletableFuture<VectorData> embedAsync(Document document, EmbeddingOptions options) {
+        return CompletableFuture.supplyAsync(() -> embed(document, options), NamedThreadPools.blockingExecutor());
+    }
+
 }
@@ -0,0 +1,61 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.embedding;
+
+import com.agentsflex.store.VectorData;
+import com.agentsflex.util.StringUtil;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.JSONPath;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 解析批量向量化接口的响应
+ */
+public class EmbeddingResponses {
+
+    /**
+     * @param response  接口返回的 json
+     * @param arrayPath 向量数组的 JSONPath，例如 "$.data"
+     * @param indexKey  数组中每一项与输入文本对应的序号字段，例如 "index"
+     * @param size      输入文本的数量
+     * @return 与输入文本一一对应的结果，没有返回向量的文本对应 null
+     */
+    public static List<VectorData> parse(String response, String arrayPath, String indexKey, int size) {
+        VectorData[] vectorDataArray = new VectorData[size];
+        if (StringUtil.noText(response)) {
+            return Arrays.asList(vectorDataArray);
+        }
+
+        Object items = JSONPath.eval(JSON.parseObject(response), arrayPath);
+        if (items instanceof JSONArray) {
+            JSONArray array = (JSONArray) items;
+            for (int i = 0; i < array.size(); i++) {
+                JSONObject item = array.getJSONObject(i);
+                int index = item.getIntValue(indexKey);
+                if (index >= 0 && index < size) {
+                    VectorData vectorData = new VectorData();
+                    vectorData.setVector(item.getObject("embedding", double[].class));
+                    vectorDataArray[index] = vectorData;
+                }
+            }
+        }
+        return Arrays.asList(vectorDataArray);
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.limiter;
+
+import com.agentsflex.llm.LlmConfig;
+import com.agentsflex.util.NamedThreadFactory;
+import com.agentsflex.util.NamedThreadPools;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 客户端限流器，同时限制每分钟请求数（RPM）和每分钟 token 数（TPM）。
+ * <p>
+ * 两个维度都是连续补充的令牌桶，桶容量为每分钟的额度；额度不足的请求按照先进先出的顺序排队，
+ * 可以阻塞等待 {@link #acquire(int)}，也可以异步等待 {@link #acquireAsync(int)}。
+ */
+public class RateLimiter {
+
+    private static final ScheduledExecutorService SCHEDULER = NamedThreadPools.newScheduledThreadPool(1
+        , new NamedThreadFactory("agents-flex-rate-limiter", true));
+
+    private static final Map<String, RateLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private final int requestsPerMinute;
+    private final int tokensPerMinute;
+    private final LongSupplier nanoClock;
+
+    private double availableRequests;
+    private double availableTokens;
+    private long lastRefillNanos;
+
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    private boolean drainScheduled;
+
+    private final AtomicLong acquiredCount = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+
+    /**
+     * @param requestsPerMinute 每分钟最多请求数，小于等于 0 时不限制
+     * @param tokensPerMinute   每分钟最多 token 数，小于等于 0 时不限制
+     */
+    public RateLimiter(int requestsPerMinute, int tokensPerMinute) {
+        this(requestsPerMinute, tokensPerMinute, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock 返回当前纳秒数，用于计算额度的补充以及排队时间
+     */
+    public RateLimiter(int requestsPerMinute, int tokensPerMinute, LongSupplier nanoClock) {
+        this.requestsPerMinute = requestsPerMinute;
+        this.tokensPerMinute = tokensPerMinute;
+        this.nanoClock = nanoClock;
+        this.availableRequests = requestsPerMinute;
+        this.availableTokens = tokensPerMinute;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * 根据 LlmConfig 获取限流器，endpoint、apiKey 以及额度相同的配置共享同一个限流器；没有配置额度时返回 null
+     */
+    public static RateLimiter of(LlmConfig config) {
+        if (config == null || (config.getRequestsPerMinute() <= 0 && config.getTokensPerMinute() <= 0)) {
+            return null;
+        }
+        String key = config.getEndpoint() + ":" + config.getApiKey()
+            + ":" + config.getRequestsPerMinute() + ":" + config.getTokensPerMinute();
+        return LIMITERS.computeIfAbsent(key, k -> new RateLimiter(config.getRequestsPerMinute(), config.getTokensPerMinute()));
+    }
+
+    /**
+     * 阻塞等待，直到获得 1 个请求额度和 tokens 个 token 额度
+     */
+    public void acquire(int tokens) throws InterruptedException {
+        CompletableFuture<Void> future = acquireAsync(tokens);
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            // 取消之后，排队中的请求不会再占用额度
+            future.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 异步等待额度，获得额度时 future 完成；取消 future 即可放弃排队
+     */
+    public CompletableFuture<Void> acquireAsync(int tokens) {
+        Waiter waiter = new Waiter(normalizeTokens(tokens), nanoClock.getAsLong());
+        boolean scheduleDrain;
+        synchronized (this) {
+            refill();
+            if (waiters.isEmpty() && tryTake(waiter.tokens)) {
+                recordWait(0);
+                waiter.future.complete(null);
+                return waiter.future;
+            }
+            waiters.addLast(waiter);
+            scheduleDrain = !drainScheduled;
+            if (scheduleDrain) {
+                drainScheduled = true;
+            }
+        }
+        if (scheduleDrain) {
+            scheduleDrain(delayMillisFor(waiter.tokens));
+        }
+        return waiter.future;
+    }
+
+    private void drain() {
+        List<Waiter> ready = new ArrayList<>();
+        long nextDelay = -1;
+        synchronized (this) {
+            refill();
+            while (!waiters.isEmpty()) {
+                Waiter head = waiters.peekFirst();
+                if (head.future.isDone()) {
+                    waiters.pollFirst();
+                    continue;
+                }
+                if (!tryTake(head.tokens)) {
+                    break;
+                }
+                waiters.pollFirst();
+                ready.add(head);
+            }
+            if (waiters.isEmpty()) {
+                drainScheduled = false;
+            } else {
+                nextDelay = delayMillisFor(waiters.peekFirst().tokens);
+            }
+        }
+
+        long now = nanoClock.getAsLong();
+        for (Waiter waiter : ready) {
+            // 如果 future 已经被取消，需要把额度退回
+            if (waiter.future.isDone()) {
+                release(waiter.tokens);
+                continue;
+            }
+            recordWait(TimeUnit.NANOSECONDS.toMillis(now - waiter.enqueueNanos));
+            if (!waiter.future.complete(null)) {
+                release(waiter.tokens);
+            }
+        }
+
+        if (nextDelay >= 0) {
+            scheduleDrain(nextDelay);
+        }
+    }
+
+    private void scheduleDrain(long delayMillis) {
+        SCHEDULER.schedule(this::drain, Math.max(1, delayMillis), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void release(int tokens) {
+        if (requestsPerMinute > 0) {
+            availableRequests = Math.min(requestsPerMinute, availableRequests + 1);
+        }
+        if (tokensPerMinute > 0) {
+            availableTokens = Math.min(tokensPerMinute, availableTokens + tokens);
+        }
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        double elapsedMinutes = (now - lastRefillNanos) / 60_000_000_000d;
+        lastRefillNanos = now;
+        if (requestsPerMinute > 0) {
+            availableRequests = Math.min(requestsPerMinute, availableRequests + elapsedMinutes * requestsPerMinute);
+        }
+        if (tokensPerMinute > 0) {
+            availableTokens = Math.min(tokensPerMinute, availableTokens + elapsedMinutes * tokensPerMinute);
+        }
+    }
+
+    private boolean tryTake(int tokens) {
+        if (requestsPerMinute > 0 && availableRequests < 1) {
+            return false;
+        }
+        if (tokensPerMinute > 0 && availableTokens < tokens) {
+            return false;
+        }
+        if (requestsPerMinute > 0) {
+            availableRequests -= 1;
+        }
+        if (tokensPerMinute > 0) {
+            availableTokens -= tokens;
+        }
+        return true;
+    }
+
+    /**
+     * 计算额度补充到足够 tokens 所需要的时间
+     */
+    private synchronized long delayMillisFor(int tokens) {
+        double delayMinutes = 0;
+        if (requestsPerMinute > 0 && availableRequests < 1) {
+            delayMinutes = Math.max(delayMinutes, (1 - availableRequests) / requestsPerMinute);
+        }
+        if (tokensPerMinute > 0 && availableTokens < tokens) {
+            delayMinutes = Math.max(delayMinutes, (tokens - availableTokens) / tokensPerMinute);
+        }
+        return (long) Math.ceil(delayMinutes * 60_000);
+    }
+
+    /**
+     * 单个请求的 token 数超过每分钟额度时按照每分钟额度计算，避免永远无法获得额度
+     */
+    private int normalizeTokens(int tokens) {
+        if (tokens < 0) {
+            return 0;
+        }
+        return tokensPerMinute > 0 ? Math.min(tokens, tokensPerMinute) : tokens;
+    }
+
+    private void recordWait(long waitMillis) {
+        acquiredCount.incrementAndGet();
+        totalWaitMillis.addAndGet(waitMillis);
+        maxWaitMillis.accumulateAndGet(waitMillis, Math::max);
+    }
+
+    public int getRequestsPerMinute() {
+        return requestsPerMinute;
+    }
+
+    public int getTokensPerMinute() {
+        return tokensPerMinute;
+    }
+
+    /**
+     * 当前排队中的请求数量
+     */
+    public synchronized int getQueueDepth() {
+        return waiters.size();
+    }
+
+    public long getAcquiredCount() {
+        return acquiredCount.get();
+    }
+
+    public long getTotalWaitMillis() {
+        return totalWaitMillis.get();
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = acquiredCount.get();
+        return count == 0 ? 0 : (double) totalWaitMillis.get() / count;
+    }
+
+
+    private static class Waiter {
+        private final int tokens;
+        private final long enqueueNanos;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Waiter(int tokens, long enqueueNanos) {
+            this.tokens = tokens;
+            this.enqueueNanos = enqueueNanos;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.stream;
+
+/**
+ * 订阅方消费太慢、缓冲区已满时的处理策略
+ */
+public enum OverflowPolicy {
+
+    /**
+     * 结束订阅并通知订阅方 {@link BufferOverflowException}，同时停止大模型的流式输出
+     */
+    ERROR,
+
+    /**
+     * 丢弃缓冲区中最早的消息，丢弃的内容仍然包含在后续消息的 fullContent 中
+     */
+    DROP_OLDEST,
+
+    /**
+     * 丢弃新收到的消息
+     */
+    DROP_LATEST,
+}
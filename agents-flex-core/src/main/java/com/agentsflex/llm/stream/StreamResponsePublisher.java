@@ -0,0 +1,283 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.llm.stream;
+
+import com.agentsflex.llm.ChatContext;
+import com.agentsflex.llm.ChatOptions;
+import com.agentsflex.llm.Llm;
+import com.agentsflex.llm.MessageResponse;
+import com.agentsflex.llm.StreamResponseListener;
+import com.agentsflex.llm.client.LlmClient;
+import com.agentsflex.message.AiMessage;
+import com.agentsflex.prompt.Prompt;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 以 Reactive Streams 的方式订阅 chatStream：订阅时才发起请求，只按订阅方 request 的数量推送消息，
+ * 来不及消费的消息放在有界缓冲区中，缓冲区满时按 {@link OverflowPolicy} 处理；取消订阅时会停止大模型的流式输出。
+ * <p>
+ * 每个 StreamResponsePublisher 只对应一次请求，只能被订阅一次。
+ */
+public class StreamResponsePublisher<R extends MessageResponse<M>, M extends AiMessage> implements Publisher<R> {
+
+    public static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private final Llm llm;
+    private final Prompt<M> prompt;
+    private final ChatOptions options;
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    public StreamResponsePublisher(Llm llm, Prompt<M> prompt, ChatOptions options) {
+        this(llm, prompt, options, DEFAULT_BUFFER_SIZE, OverflowPolicy.ERROR);
+    }
+
+    public StreamResponsePublisher(Llm llm, Prompt<M> prompt, ChatOptions options, int bufferSize, OverflowPolicy overflowPolicy) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be greater than 0");
+        }
+        this.llm = llm;
+        this.prompt = prompt;
+        this.options = options;
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super R> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber must not be null");
+        }
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("StreamResponsePublisher allows only a single subscriber"));
+            return;
+        }
+
+        BufferedSubscription subscription = new BufferedSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        if (subscription.cancelled) {
+            return;
+        }
+        try {
+            llm.chatStream(prompt, subscription, options);
+        } catch (RuntimeException e) {
+            subscription.onFailure(null, e);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    private class BufferedSubscription implements Subscription, StreamResponseListener<R, M> {
+
+        private final Subscriber<? super R> subscriber;
+        private final ArrayDeque<R> queue = new ArrayDeque<>();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicBoolean upstreamStopped = new AtomicBoolean();
+
+        private volatile ChatContext context;
+        private volatile boolean cancelled;
+        private volatile boolean done;
+        private volatile Throwable error;
+
+        BufferedSubscription(Subscriber<? super R> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                failAndStopUpstream(new IllegalArgumentException("request amount must be greater than 0, but was " + n));
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = requested.get();
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!requested.compareAndSet(current, next));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            stopUpstream();
+            if (wip.getAndIncrement() == 0) {
+                clear();
+            }
+        }
+
+        @Override
+        public void onStart(ChatContext context) {
+            this.context = context;
+            if (cancelled) {
+                stopUpstream();
+            }
+        }
+
+        @Override
+        public void onMessage(ChatContext context, R response) {
+            if (done || cancelled) {
+                return;
+            }
+            boolean overflow = false;
+            synchronized (queue) {
+                if (queue.size() < bufferSize) {
+                    queue.offer(response);
+                } else if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                    queue.poll();
+                    queue.offer(response);
+                } else if (overflowPolicy == OverflowPolicy.ERROR) {
+                    overflow = true;
+                }
+            }
+            if (overflow) {
+                failAndStopUpstream(new BufferOverflowException("The subscriber is too slow, buffer size: " + bufferSize));
+                return;
+            }
+            drain();
+        }
+
+        @Override
+        public void onStop(ChatContext context) {
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onFailure(ChatContext context, Throwable throwable) {
+            if (done) {
+                return;
+            }
+            error = throwable != null ? throwable : new IllegalStateException("chat stream failed");
+            done = true;
+            drain();
+        }
+
+        /**
+         * 先记录错误再停止上游：客户端的 stop() 会同步回调 onStop，不能让它把出错当成正常结束
+         */
+        private void failAndStopUpstream(Throwable throwable) {
+            onFailure(context, throwable);
+            stopUpstream();
+        }
+
+        private void stopUpstream() {
+            ChatContext ctx = this.context;
+            LlmClient client = ctx != null ? ctx.getClient() : null;
+            if (client != null && upstreamStopped.compareAndSet(false, true)) {
+                client.stop();
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                long r = requested.get();
+                long e = 0;
+                while (e != r) {
+                    if (cancelled) {
+                        clear();
+                        return;
+                    }
+                    // 出错时不再推送缓冲区中剩余的消息
+                    if (error != null) {
+                        terminate();
+                        return;
+                    }
+                    boolean d = done;
+                    R item;
+                    synchronized (queue) {
+                        item = queue.poll();
+                    }
+                    if (item == null) {
+                        if (d) {
+                            terminate();
+                            return;
+                        }
+                        break;
+                    }
+                    subscriber.onNext(item);
+                    e++;
+                }
+
+                if (cancelled) {
+                    clear();
+                    return;
+                }
+                if (error != null || (e == r && done && isEmpty())) {
+                    terminate();
+                    return;
+                }
+
+                if (e != 0 && r != Long.MAX_VALUE) {
+                    requested.addAndGet(-e);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void terminate() {
+            cancelled = true;
+            clear();
+            Throwable t = error;
+            if (t != null) {
+                subscriber.onError(t);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+
+        private boolean isEmpty() {
+            synchronized (queue) {
+                return queue.isEmpty();
+            }
+        }
+
+        private void clear() {
+            synchronized (queue) {
+                queue.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.memory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分层的 ContextMemory：读取时先读取当前层，再读取上层；写入和删除只影响当前层，不会修改上层。
+ * <p>
+ * 创建时不复制上层的数据，适合在并行分支或者 Agent 中使用执行链 memory 的视图，
+ * 分支完成后通过 {@link #mergeInto(ContextMemory)} 把当前层的修改（包括删除）合并回上层。
+ */
+public class LayeredContextMemory implements ContextMemory {
+
+    private final ContextMemory parent;
+    private final ContextMemory layer;
+
+    // 在当前层删除的上层数据
+    private final Set<String> removedKeys = ConcurrentHashMap.newKeySet();
+    private volatile boolean parentCleared;
+
+    private transient Map<String, Object> view;
+
+    public LayeredContextMemory(ContextMemory parent) {
+        this(parent, new DefaultContextMemory());
+    }
+
+    /**
+     * @param parent 上层，只读
+     * @param layer  当前层，写入的数据保存在这里
+     */
+    public LayeredContextMemory(ContextMemory parent, ContextMemory layer) {
+        this.parent = parent;
+        this.layer = layer;
+    }
+
+    @Override
+    public Object id() {
+        return layer.id();
+    }
+
+    public ContextMemory getParent() {
+        return parent;
+    }
+
+    public ContextMemory getLayer() {
+        return layer;
+    }
+
+    @Override
+    public Object get(String key) {
+        Object value = layer.get(key);
+        if (value != null || isHidden(key)) {
+            return value;
+        }
+        return parent.get(key);
+    }
+
+    /**
+     * @return 合并了当前层和上层的视图，不会复制数据；修改视图等同于修改当前层
+     */
+    @Override
+    public Map<String, Object> getAll() {
+        if (view == null) {
+            view = new LayeredMap();
+        }
+        return view;
+    }
+
+    @Override
+    public void put(String key, Object value) {
+        if (value == null) {
+            remove(key);
+        } else {
+            layer.put(key, value);
+            removedKeys.remove(key);
+        }
+    }
+
+    @Override
+    public void putAll(Map<String, Object> map) {
+        if (map == null) {
+            return;
+        }
+        map.forEach(this::put);
+    }
+
+    @Override
+    public void remove(String key) {
+        layer.remove(key);
+        if (!parentCleared) {
+            removedKeys.add(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        layer.clear();
+        parentCleared = true;
+        removedKeys.clear();
+    }
+
+    /**
+     * @return 当前层是否有修改
+     */
+    public boolean isModified() {
+        return parentCleared || !removedKeys.isEmpty() || !layer.getAll().isEmpty();
+    }
+
+    /**
+     * 把当前层的修改合并到 target（通常是上层），当前层的值覆盖 target 中的同名数据
+     */
+    public void mergeInto(ContextMemory target) {
+        if (parentCleared) {
+            target.clear();
+        } else {
+            for (String key : removedKeys) {
+                target.remove(key);
+            }
+        }
+        target.putAll(layer.getAll());
+    }
+
+    private boolean isHidden(String key) {
+        return parentCleared || removedKeys.contains(key);
+    }
+
+    @Override
+    public String toString() {
+        return "LayeredContextMemory{" +
+            "layer=" + layer +
+            ", removedKeys=" + removedKeys +
+            ", parentCleared=" + parentCleared +
+            '}';
+    }
+
+
+    private class LayeredMap extends AbstractMap<String, Object> {
+
+        @Override
+        public Object get(Object key) {
+            return key instanceof String ? LayeredContextMemory.this.get((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            Object old = get(key);
+            LayeredContextMemory.this.put(key, value);
+            return old;
+        }
+
+        @Override
+        public Object remove(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            Object old = get(key);
+            LayeredContextMemory.this.remove((String) key);
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            LayeredContextMemory.this.clear();
+        }
+
+        @Override
+        public int size() {
+            int size = layer.getAll().size();
+            if (!parentCleared) {
+                for (String key : parent.getAll().keySet()) {
+                    if (isVisibleInParent(key)) {
+                        size++;
+                    }
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            if (!layer.getAll().isEmpty()) {
+                return false;
+            }
+            if (!parentCleared) {
+                for (String key : parent.getAll().keySet()) {
+                    if (isVisibleInParent(key)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 先遍历当前层，再遍历上层中没有被当前层覆盖或者删除的数据，不会复制两层的数据；
+         * 调用 {@link Entry#getValue()} 时才读取数据，上层是 {@link SpillableContextMemory} 时不会加载所有移出堆内存的数据
+         */
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<Entry<String, Object>>() {
+                        private final Iterator<Entry<String, Object>> layerIterator = layer.getAll().entrySet().iterator();
+                        private Iterator<Entry<String, Object>> parentIterator;
+                        private Entry<String, Object> next;
+                        private Entry<String, Object> current;
+
+                        @Override
+                        public boolean hasNext() {
+                            if (next != null) {
+                                return true;
+                            }
+                            if (layerIterator.hasNext()) {
+                                next = layerIterator.next();
+                                return true;
+                            }
+                            if (parentCleared) {
+                                return false;
+                            }
+                            if (parentIterator == null) {
+                                parentIterator = parent.getAll().entrySet().iterator();
+                            }
+                            while (parentIterator.hasNext()) {
+                                Entry<String, Object> entry = parentIterator.next();
+                                if (isVisibleInParent(entry.getKey())) {
+                                    next = entry;
+                                    return true;
+                                }
+                            }
+                            return false;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            current = new LayeredEntry(next);
+                            next = null;
+                            return current;
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (current == null) {
+                                throw new IllegalStateException();
+                            }
+                            LayeredContextMemory.this.remove(current.getKey());
+                            current = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return LayeredMap.this.size();
+                }
+
+                @Override
+                public boolean isEmpty() {
+                    return LayeredMap.this.isEmpty();
+                }
+            };
+        }
+
+        // 上层的数据没有被当前层删除或者覆盖
+        private boolean isVisibleInParent(String key) {
+            return !removedKeys.contains(key) && !layer.getAll().containsKey(key);
+        }
+    }
+
+    /**
+     * 读取时委托给原来的 Entry，修改时写入当前层
+     */
+    private class LayeredEntry implements Map.Entry<String, Object> {
+        private final Map.Entry<String, Object> entry;
+        private Object value;
+        private boolean modified;
+
+        LayeredEntry(Map.Entry<String, Object> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public String getKey() {
+            return entry.getKey();
+        }
+
+        @Override
+        public Object getValue() {
+            return modified ? value : entry.getValue();
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            Object old = getValue();
+            put(getKey(), value);
+            this.value = value;
+            this.modified = true;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(getKey(), e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,446 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.memory;
+
+import com.agentsflex.document.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 可以把大数据移出堆内存的 ContextMemory：估算大小超过阈值的数据会被序列化后保存到堆外内存或者临时文件中，
+ * {@link #get(String)} 时再反序列化，处理大量文档的执行链同时运行时堆内存不会随着文档的大小增长。
+ * <p>
+ * 注意：
+ * <ul>
+ *     <li>只有实现了 {@link Serializable} 的数据才会被移出堆内存；</li>
+ *     <li>移出的数据保存的是 put 时的副本，每次 get 都会返回新的对象，修改返回的对象不会影响 memory 中的数据；</li>
+ *     <li>作为执行链的 memory 时，执行结束后只保留执行链 retainKeys 中的数据，其他移出的数据会被释放；
+ *     单独使用或者执行链暂停后不再恢复时，需要调用 {@link #close()}（或者执行链的 releaseMemory()）删除临时文件、释放堆外内存。</li>
+ * </ul>
+ */
+public class SpillableContextMemory implements ContextMemory, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SpillableContextMemory.class);
+
+    public enum Storage {
+        /**
+         * 保存在 {@link ByteBuffer#allocateDirect(int)} 分配的堆外内存中，受 -XX:MaxDirectMemorySize 限制，分配失败时使用临时文件
+         */
+        OFF_HEAP,
+        /**
+         * 保存在临时文件中
+         */
+        FILE,
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private long threshold;
+    private Storage storage;
+    private File directory;
+
+    // 值为原始数据或者 Spilled
+    private transient Map<String, Object> context = new ConcurrentHashMap<>();
+    private transient Map<String, Object> view;
+
+    public SpillableContextMemory() {
+        this(1024 * 1024, Storage.FILE, null);
+    }
+
+    public SpillableContextMemory(long threshold, Storage storage) {
+        this(threshold, storage, null);
+    }
+
+    /**
+     * @param threshold 估算大小（字节）达到该值的数据会被移出堆内存
+     * @param storage   保存的位置
+     * @param directory 临时文件所在的目录，为 null 时使用 java.io.tmpdir
+     */
+    public SpillableContextMemory(long threshold, Storage storage, File directory) {
+        this.threshold = threshold;
+        this.storage = storage;
+        this.directory = directory;
+    }
+
+    /**
+     * @return 配置相同的空 memory
+     */
+    public SpillableContextMemory newMemory() {
+        return new SpillableContextMemory(threshold, storage, directory);
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public Object get(String key) {
+        return unwrap(context.get(key));
+    }
+
+    /**
+     * @return memory 的视图，读取移出的数据时才会反序列化
+     */
+    @Override
+    public Map<String, Object> getAll() {
+        if (view == null) {
+            view = new SpillableMap();
+        }
+        return view;
+    }
+
+    @Override
+    public void put(String key, Object value) {
+        if (value == null) {
+            remove(key);
+            return;
+        }
+        releaseValue(context.put(key, spillIfNecessary(value)));
+    }
+
+    @Override
+    public void putAll(Map<String, Object> map) {
+        if (map == null) {
+            return;
+        }
+        map.forEach(this::put);
+    }
+
+    @Override
+    public void remove(String key) {
+        releaseValue(context.remove(key));
+    }
+
+    @Override
+    public void clear() {
+        for (String key : new ArrayList<>(context.keySet())) {
+            remove(key);
+        }
+    }
+
+    /**
+     * @return 该数据是否已经被移出堆内存
+     */
+    public boolean isSpilled(String key) {
+        return context.get(key) instanceof Spilled;
+    }
+
+    /**
+     * @return 移出堆内存的数据的总大小（字节）
+     */
+    public long getSpilledBytes() {
+        long bytes = 0;
+        for (Object value : context.values()) {
+            if (value instanceof Spilled) {
+                bytes += ((Spilled) value).size;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 释放所有移出堆内存的数据，释放后这些数据不可再读取
+     *
+     * @param retainKeys 需要保留的数据，会被重新加载到堆内存中
+     */
+    public void release(String... retainKeys) {
+        Set<String> retains = new HashSet<>(Arrays.asList(retainKeys));
+        for (Map.Entry<String, Object> entry : context.entrySet()) {
+            Object value = entry.getValue();
+            if (!(value instanceof Spilled)) {
+                continue;
+            }
+            if (retains.contains(entry.getKey())) {
+                Object loaded = ((Spilled) value).load();
+                if (!context.replace(entry.getKey(), value, loaded)) {
+                    continue;
+                }
+            } else if (!context.remove(entry.getKey(), value)) {
+                continue;
+            }
+            ((Spilled) value).release();
+        }
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    /**
+     * 估算数据占用的内存大小，无法估算时返回 0（不会被移出堆内存），子类可以重写以支持更多的类型
+     */
+    protected long estimateSize(Object value) {
+        if (value instanceof CharSequence) {
+            return 2L * ((CharSequence) value).length();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof char[]) {
+            return 2L * ((char[]) value).length;
+        }
+        if (value instanceof Document) {
+            Document document = (Document) value;
+            double[] vector = document.getVector();
+            return estimateSize(document.getContent()) + (vector == null ? 0 : 8L * vector.length);
+        }
+        if (value instanceof Collection) {
+            long size = 0;
+            for (Object item : (Collection<?>) value) {
+                size += estimateSize(item);
+                if (size >= threshold) {
+                    break;
+                }
+            }
+            return size;
+        }
+        if (value instanceof Map) {
+            long size = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+                if (size >= threshold) {
+                    break;
+                }
+            }
+            return size;
+        }
+        return 0;
+    }
+
+    private Object spillIfNecessary(Object value) {
+        if (!(value instanceof Serializable) || estimateSize(value) < threshold) {
+            return value;
+        }
+        try {
+            byte[] bytes = serialize(value);
+            if (storage == Storage.OFF_HEAP) {
+                try {
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+                    buffer.put(bytes).flip();
+                    return new Spilled(bytes.length, buffer, null);
+                } catch (OutOfMemoryError e) {
+                    LOG.warn("Can not allocate direct memory for {} bytes, spill to file instead", bytes.length);
+                }
+            }
+            Path file = directory == null
+                ? Files.createTempFile("agents-flex-memory-", ".bin")
+                : Files.createTempFile(directory.toPath(), "agents-flex-memory-", ".bin");
+            Files.write(file, bytes);
+            return new Spilled(bytes.length, null, file);
+        } catch (IOException e) {
+            LOG.warn("Can not spill value of " + value.getClass().getName() + ", keep it in heap", e);
+            return value;
+        }
+    }
+
+    private static Object unwrap(Object value) {
+        return value instanceof Spilled ? ((Spilled) value).load() : value;
+    }
+
+    private static void releaseValue(Object value) {
+        if (value instanceof Spilled) {
+            ((Spilled) value).release();
+        }
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    // 序列化时写入所有数据的原始值，反序列化后按照当前的配置重新移出堆内存
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        Map<String, Object> values = new HashMap<>(context.size());
+        context.forEach((key, value) -> values.put(key, unwrap(value)));
+        out.writeObject(values);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.context = new ConcurrentHashMap<>();
+        putAll((Map<String, Object>) in.readObject());
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "SpillableContextMemory{", "}");
+        context.forEach((key, value) -> joiner.add(key + "=" + value));
+        return joiner.toString();
+    }
+
+
+    /**
+     * 移出堆内存的数据
+     */
+    static final class Spilled {
+        final long size;
+        private ByteBuffer buffer;
+        private Path file;
+
+        Spilled(long size, ByteBuffer buffer, Path file) {
+            this.size = size;
+            this.buffer = buffer;
+            this.file = file;
+        }
+
+        synchronized Object load() {
+            try {
+                byte[] bytes;
+                if (buffer != null) {
+                    bytes = new byte[buffer.remaining()];
+                    buffer.duplicate().get(bytes);
+                } else if (file != null) {
+                    bytes = Files.readAllBytes(file);
+                } else {
+                    // 已经被释放
+                    return null;
+                }
+                try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return in.readObject();
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                throw new UncheckedIOException(e instanceof IOException ? (IOException) e : new IOException(e));
+            }
+        }
+
+        synchronized void release() {
+            // 堆外内存在 ByteBuffer 被回收时释放
+            buffer = null;
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    LOG.warn("Can not delete spill file: " + file, e);
+                }
+                file = null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "<spilled " + size + " bytes>";
+        }
+    }
+
+    private class SpillableMap extends AbstractMap<String, Object> {
+
+        @Override
+        public Object get(Object key) {
+            return key instanceof String ? SpillableContextMemory.this.get((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return context.containsKey(key);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            Object old = get(key);
+            SpillableContextMemory.this.put(key, value);
+            return old;
+        }
+
+        @Override
+        public Object remove(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            Object old = get(key);
+            SpillableContextMemory.this.remove((String) key);
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            SpillableContextMemory.this.clear();
+        }
+
+        @Override
+        public int size() {
+            return context.size();
+        }
+
+        /**
+         * 遍历时不会加载数据，调用 {@link Entry#getValue()} 时才加载
+         */
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    Iterator<Entry<String, Object>> iterator = context.entrySet().iterator();
+                    return new Iterator<Entry<String, Object>>() {
+                        private String current;
+
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            Entry<String, Object> entry = iterator.next();
+                            current = entry.getKey();
+                            Object value = entry.getValue();
+                            return new SimpleEntry<String, Object>(current, value) {
+                                @Override
+                                public Object getValue() {
+                                    return unwrap(super.getValue());
+                                }
+
+                                @Override
+                                public Object setValue(Object value) {
+                                    Object old = getValue();
+                                    SpillableContextMemory.this.put(getKey(), value);
+                                    super.setValue(value);
+                                    return old;
+                                }
+                            };
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (current == null) {
+                                throw new IllegalStateException();
+                            }
+                            SpillableContextMemory.this.remove(current);
+                            current = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return context.size();
+                }
+            };
+        }
+    }
+}
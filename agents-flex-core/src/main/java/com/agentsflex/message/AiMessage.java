@@ -21,7 +21,10 @@ public class AiMessage extends TextMessage {
     private Integer index;
     private MessageStatus status;
     private Integer totalTokens;
-    private String fullContent;
+    private volatile String fullContent;
+
+    // 流式输出时到目前为止的内容，只有在调用 getFullContent 时才生成字符串
+    private transient volatile StreamingContent streamingContent;
 
     public Integer getIndex() {
         return index;
@@ -48,20 +51,37 @@ public class AiMessage extends TextMessage {
     }
 
     public String getFullContent() {
-        return fullContent;
+        String content = fullContent;
+        if (content == null) {
+            StreamingContent streaming = streamingContent;
+            if (streaming != null) {
+                content = streaming.toString();
+                fullContent = content;
+            }
+        }
+        return content;
     }
 
     public void setFullContent(String fullContent) {
+        this.streamingContent = null;
         this.fullContent = fullContent;
     }
 
+    /**
+     * 设置流式输出到目前为止的内容，StreamingContent 不可变，可以在其他线程中读取
+     */
+    public void setFullContent(StreamingContent content) {
+        this.fullContent = null;
+        this.streamingContent = content;
+    }
+
     @Override
     public String toString() {
         return "AiMessage{" +
             "index=" + index +
             ", status=" + status +
             ", totalTokens=" + totalTokens +
-            ", fullContent='" + fullContent + '\'' +
+            ", fullContent='" + getFullContent() + '\'' +
             ", content='" + content + '\'' +
             ", metadatas=" + metadatas +
             '}';
@@ -0,0 +1,62 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.message;
+
+/**
+ * 流式输出到目前为止的完整内容，由不可变的分片组成的链表。
+ * <p>
+ * 追加分片时创建新的节点，已有的节点不会再被修改，因此可以把节点交给其他线程读取；
+ * 只有调用 {@link #toString()} 时才生成完整的字符串。
+ */
+public final class StreamingContent {
+
+    private final StreamingContent previous;
+    private final String chunk;
+    private final int length;
+
+    private StreamingContent(StreamingContent previous, String chunk) {
+        this.previous = previous;
+        this.chunk = chunk;
+        this.length = (previous != null ? previous.length : 0) + chunk.length();
+    }
+
+    /**
+     * @param previous 之前的内容，可以为 null
+     * @param chunk    新增的分片
+     * @return 追加分片之后的内容，previous 本身不会被修改
+     */
+    public static StreamingContent append(StreamingContent previous, String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return previous != null ? previous : new StreamingContent(null, "");
+        }
+        return new StreamingContent(previous, chunk);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[length];
+        int end = length;
+        for (StreamingContent node = this; node != null; node = node.previous) {
+            end -= node.chunk.length();
+            node.chunk.getChars(0, node.chunk.length(), chars, end);
+        }
+        return new String(chars);
+    }
+}
@@ -15,8 +15,24 @@
  */
 package com.agentsflex.parser;
 
+import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 
+import java.nio.charset.StandardCharsets;
+
 public interface JSONObjectParser<T> extends Parser<JSONObject, T> {
 
+    /**
+     * 直接解析 json 字符串，实现类可以覆盖此方法，避免构建完整的 JSONObject
+     */
+    default T parseJson(String json) {
+        return parse(JSON.parseObject(json));
+    }
+
+    /**
+     * 直接解析 utf-8 编码的 json 字节
+     */
+    default T parseJson(byte[] json, int offset, int length) {
+        return parseJson(new String(json, offset, length, StandardCharsets.UTF_8));
+    }
 }
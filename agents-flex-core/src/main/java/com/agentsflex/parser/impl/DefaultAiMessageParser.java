@@ -20,6 +20,7 @@ import com.agentsflex.message.MessageStatus;
 import com.agentsflex.parser.AiMessageParser;
 import com.agentsflex.parser.Parser;
 import com.agentsflex.util.StringUtil;
+import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.fastjson.JSONPath;
 
@@ -32,12 +33,22 @@ public class DefaultAiMessageParser implements AiMessageParser {
     private String totalTokensPath;
     private Parser<Object, MessageStatus> statusParser;
 
+    // 设置路径时预先编译，避免每个分片都重新解析路径
+    private JSONPath contentJsonPath;
+    private JSONPath indexJsonPath;
+    private JSONPath statusJsonPath;
+    private JSONPath totalTokensJsonPath;
+    private JsonPathExtractor extractor = compileExtractor();
+    private final boolean parseOverridden = isParseOverridden(getClass(), DefaultAiMessageParser.class);
+
     public String getContentPath() {
         return contentPath;
     }
 
     public void setContentPath(String contentPath) {
         this.contentPath = contentPath;
+        this.contentJsonPath = compile(contentPath);
+        this.extractor = compileExtractor();
     }
 
     public String getIndexPath() {
@@ -46,6 +57,8 @@ public class DefaultAiMessageParser implements AiMessageParser {
 
     public void setIndexPath(String indexPath) {
         this.indexPath = indexPath;
+        this.indexJsonPath = compile(indexPath);
+        this.extractor = compileExtractor();
     }
 
     public String getStatusPath() {
@@ -54,6 +67,8 @@ public class DefaultAiMessageParser implements AiMessageParser {
 
     public void setStatusPath(String statusPath) {
         this.statusPath = statusPath;
+        this.statusJsonPath = compile(statusPath);
+        this.extractor = compileExtractor();
     }
 
     public String getTotalTokensPath() {
@@ -62,6 +77,8 @@ public class DefaultAiMessageParser implements AiMessageParser {
 
     public void setTotalTokensPath(String totalTokensPath) {
         this.totalTokensPath = totalTokensPath;
+        this.totalTokensJsonPath = compile(totalTokensPath);
+        this.extractor = compileExtractor();
     }
 
     public Parser<Object, MessageStatus> getStatusParser() {
@@ -74,27 +91,71 @@ public class DefaultAiMessageParser implements AiMessageParser {
 
     @Override
     public AiMessage parse(JSONObject rootJson) {
-        AiMessage aiMessage = new AiMessage();
+        return toAiMessage(eval(rootJson, contentJsonPath)
+            , eval(rootJson, indexJsonPath)
+            , eval(rootJson, statusJsonPath)
+            , eval(rootJson, totalTokensJsonPath));
+    }
 
-        if (StringUtil.hasText(this.contentPath)) {
-            aiMessage.setContent((String) JSONPath.eval(rootJson, this.contentPath));
+    /**
+     * 路径都是简单路径时，直接从 json 字符串中读取需要的字段，不构建完整的 JSONObject
+     */
+    @Override
+    public AiMessage parseJson(String json) {
+        if (extractor == null || parseOverridden) {
+            return parse(JSON.parseObject(json));
         }
+        Object[] values = extractor.extract(json);
+        return toAiMessage(values[0], values[1], values[2], values[3]);
+    }
 
-        if (StringUtil.hasText(this.indexPath)) {
-            aiMessage.setIndex((Integer) JSONPath.eval(rootJson, this.indexPath));
+    @Override
+    public AiMessage parseJson(byte[] json, int offset, int length) {
+        if (extractor == null || parseOverridden) {
+            return AiMessageParser.super.parseJson(json, offset, length);
         }
+        Object[] values = extractor.extract(json, offset, length);
+        return toAiMessage(values[0], values[1], values[2], values[3]);
+    }
 
-        if (StringUtil.hasText(this.totalTokensPath)) {
-            aiMessage.setTotalTokens((Integer) JSONPath.eval(rootJson, this.totalTokensPath));
+    private AiMessage toAiMessage(Object content, Object index, Object status, Object totalTokens) {
+        AiMessage aiMessage = new AiMessage();
+        aiMessage.setContent((String) content);
+        aiMessage.setIndex(toInteger(index));
+        aiMessage.setTotalTokens(toInteger(totalTokens));
+        if (this.statusJsonPath != null && this.statusParser != null) {
+            aiMessage.setStatus(this.statusParser.parse(status));
         }
+        return aiMessage;
+    }
 
-        if (StringUtil.hasText(this.statusPath)) {
-            Object statusString = JSONPath.eval(rootJson, this.statusPath);
-            if (this.statusParser != null) {
-                aiMessage.setStatus(this.statusParser.parse(statusString));
-            }
+    private JsonPathExtractor compileExtractor() {
+        return JsonPathExtractor.compile(contentPath, indexPath, statusPath, totalTokensPath);
+    }
+
+    static JSONPath compile(String path) {
+        return StringUtil.hasText(path) ? JSONPath.compile(path) : null;
+    }
+
+    static Object eval(JSONObject rootJson, JSONPath path) {
+        return path != null ? path.eval(rootJson) : null;
+    }
+
+    static Integer toInteger(Object value) {
+        if (value == null || value instanceof Integer) {
+            return (Integer) value;
         }
+        return ((Number) value).intValue();
+    }
 
-        return aiMessage;
+    /**
+     * 子类覆盖了 parse(JSONObject) 时，不能跳过子类的逻辑
+     */
+    static boolean isParseOverridden(Class<?> clazz, Class<?> baseClass) {
+        try {
+            return clazz.getMethod("parse", JSONObject.class).getDeclaringClass() != baseClass;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
     }
 }
@@ -18,6 +18,7 @@ package com.agentsflex.parser.impl;
 import com.agentsflex.message.FunctionMessage;
 import com.agentsflex.parser.FunctionMessageParser;
 import com.agentsflex.parser.Parser;
+import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.fastjson.JSONPath;
 
@@ -29,12 +30,19 @@ public class DefaultFunctionMessageParser implements FunctionMessageParser {
     private String functionArgsPath;
     private Parser<String, Map<String, Object>> functionArgsParser;
 
+    private JSONPath functionNameJsonPath;
+    private JSONPath functionArgsJsonPath;
+    private JsonPathExtractor extractor = compileExtractor();
+    private final boolean parseOverridden = DefaultAiMessageParser.isParseOverridden(getClass(), DefaultFunctionMessageParser.class);
+
     public String getFunctionNamePath() {
         return functionNamePath;
     }
 
     public void setFunctionNamePath(String functionNamePath) {
         this.functionNamePath = functionNamePath;
+        this.functionNameJsonPath = DefaultAiMessageParser.compile(functionNamePath);
+        this.extractor = compileExtractor();
     }
 
     public String getFunctionArgsPath() {
@@ -43,6 +51,8 @@ public class DefaultFunctionMessageParser implements FunctionMessageParser {
 
     public void setFunctionArgsPath(String functionArgsPath) {
         this.functionArgsPath = functionArgsPath;
+        this.functionArgsJsonPath = DefaultAiMessageParser.compile(functionArgsPath);
+        this.extractor = compileExtractor();
     }
 
     public Parser<String, Map<String, Object>> getFunctionArgsParser() {
@@ -55,13 +65,39 @@ public class DefaultFunctionMessageParser implements FunctionMessageParser {
 
     @Override
     public FunctionMessage parse(JSONObject jsonObject) {
+        return toFunctionMessage(DefaultAiMessageParser.eval(jsonObject, this.functionNameJsonPath)
+            , DefaultAiMessageParser.eval(jsonObject, this.functionArgsJsonPath));
+    }
+
+    @Override
+    public FunctionMessage parseJson(String json) {
+        if (extractor == null || parseOverridden) {
+            return parse(JSON.parseObject(json));
+        }
+        Object[] values = extractor.extract(json);
+        return toFunctionMessage(values[0], values[1]);
+    }
+
+    @Override
+    public FunctionMessage parseJson(byte[] json, int offset, int length) {
+        if (extractor == null || parseOverridden) {
+            return FunctionMessageParser.super.parseJson(json, offset, length);
+        }
+        Object[] values = extractor.extract(json, offset, length);
+        return toFunctionMessage(values[0], values[1]);
+    }
+
+    private FunctionMessage toFunctionMessage(Object functionName, Object functionArgs) {
         FunctionMessage functionMessage = new FunctionMessage();
-        String functionName = (String) JSONPath.eval(jsonObject, this.functionNamePath);
-        functionMessage.setFunctionName(functionName);
-        String functionArgsString = (String) JSONPath.eval(jsonObject, this.functionArgsPath);
+        functionMessage.setFunctionName((String) functionName);
+        String functionArgsString = (String) functionArgs;
         if (functionArgsString != null) {
             functionMessage.setArgs(this.functionArgsParser.parse(functionArgsString));
         }
         return functionMessage;
     }
+
+    private JsonPathExtractor compileExtractor() {
+        return JsonPathExtractor.compile(functionNamePath, functionArgsPath);
+    }
 }
@@ -0,0 +1,171 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.parser.impl;
+
+import com.alibaba.fastjson2.JSONReader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 只支持 $.a.b[0].c 这类简单路径的取值器：一次顺序读取 json 内容，跳过无关字段，
+ * 不构建完整的 JSONObject，所有路径都取到值之后立即结束。
+ */
+class JsonPathExtractor {
+
+    private final Node root = new Node();
+    private final int size;
+    private int leafCount;
+
+    private JsonPathExtractor(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @param paths 需要提取的路径，可以为 null
+     * @return 有任意路径不是简单路径时返回 null
+     */
+    static JsonPathExtractor compile(String... paths) {
+        JsonPathExtractor extractor = new JsonPathExtractor(paths.length);
+        for (int i = 0; i < paths.length; i++) {
+            if (paths[i] == null || paths[i].trim().isEmpty()) {
+                continue;
+            }
+            if (!extractor.add(paths[i].trim(), i)) {
+                return null;
+            }
+        }
+        return extractor;
+    }
+
+    Object[] extract(String json) {
+        Object[] values = new Object[size];
+        if (leafCount > 0) {
+            try (JSONReader reader = JSONReader.of(json)) {
+                read(reader, root, values, leafCount);
+            }
+        }
+        return values;
+    }
+
+    Object[] extract(byte[] json, int offset, int length) {
+        Object[] values = new Object[size];
+        if (leafCount > 0) {
+            try (JSONReader reader = JSONReader.of(json, offset, length, StandardCharsets.UTF_8)) {
+                read(reader, root, values, leafCount);
+            }
+        }
+        return values;
+    }
+
+    private boolean add(String path, int index) {
+        if (!path.startsWith("$")) {
+            return false;
+        }
+        Node node = root;
+        int i = 1;
+        while (i < path.length()) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                int start = ++i;
+                while (i < path.length() && isNameChar(path.charAt(i))) {
+                    i++;
+                }
+                if (i == start) {
+                    return false;
+                }
+                node = node.name(path.substring(start, i));
+            } else if (c == '[') {
+                int start = ++i;
+                while (i < path.length() && Character.isDigit(path.charAt(i))) {
+                    i++;
+                }
+                if (i == start || i >= path.length() || path.charAt(i) != ']') {
+                    return false;
+                }
+                node = node.index(Integer.parseInt(path.substring(start, i)));
+                i++;
+            } else {
+                return false;
+            }
+            if (node.leaf >= 0) {
+                return false;
+            }
+        }
+        if (node == root || node.names != null || node.indexes != null) {
+            return false;
+        }
+        node.leaf = index;
+        leafCount++;
+        return true;
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-';
+    }
+
+    private static int read(JSONReader reader, Node node, Object[] values, int remaining) {
+        if (node.leaf >= 0) {
+            values[node.leaf] = reader.readAny();
+            return remaining - 1;
+        }
+        if (node.names != null && reader.nextIfObjectStart()) {
+            while (!reader.nextIfObjectEnd()) {
+                Node child = node.names.get(reader.readFieldName());
+                if (child == null) {
+                    reader.skipValue();
+                } else if ((remaining = read(reader, child, values, remaining)) == 0) {
+                    return 0;
+                }
+            }
+            return remaining;
+        }
+        if (node.indexes != null && reader.nextIfArrayStart()) {
+            for (int i = 0; !reader.nextIfArrayEnd(); i++) {
+                Node child = node.indexes.get(i);
+                if (child == null) {
+                    reader.skipValue();
+                } else if ((remaining = read(reader, child, values, remaining)) == 0) {
+                    return 0;
+                }
+            }
+            return remaining;
+        }
+        reader.skipValue();
+        return remaining;
+    }
+
+    private static class Node {
+        private Map<String, Node> names;
+        private Map<Integer, Node> indexes;
+        private int leaf = -1;
+
+        Node name(String name) {
+            if (names == null) {
+                names = new HashMap<>();
+            }
+            return names.computeIfAbsent(name, k -> new Node());
+        }
+
+        Node index(int index) {
+            if (indexes == null) {
+                indexes = new HashMap<>();
+            }
+            return indexes.computeIfAbsent(index, k -> new Node());
+        }
+    }
+}
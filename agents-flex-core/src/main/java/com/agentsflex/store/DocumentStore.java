@@ -21,6 +21,7 @@ import com.agentsflex.document.id.DocumentIdGenerator;
 import com.agentsflex.document.id.DocumentIdGeneratorFactory;
 import com.agentsflex.llm.embedding.EmbeddingModel;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -127,12 +128,23 @@ public abstract class DocumentStore extends VectorStore<Document> {
         if (embeddingModel == null) {
             return;
         }
+
+        List<Document> embedDocuments = new ArrayList<>();
         for (Document document : documents) {
             if (document.getVector() == null) {
-                VectorData vectorData = embeddingModel.embed(document, options.getEmbeddingOptions());
-                if (vectorData != null) {
-                    document.setVector(vectorData.getVector());
-                }
+                embedDocuments.add(document);
+            }
+        }
+
+        if (embedDocuments.isEmpty()) {
+            return;
+        }
+
+        List<VectorData> vectorDataList = embeddingModel.embedAll(embedDocuments, options.getEmbeddingOptions());
+        for (int i = 0; i < embedDocuments.size() && i < vectorDataList.size(); i++) {
+            VectorData vectorData = vectorDataList.get(i);
+            if (vectorData != null) {
+                embedDocuments.get(i).setVector(vectorData.getVector());
             }
         }
     }
@@ -0,0 +1,105 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * CompletableFuture 的工具方法：{@link CompletableFuture#cancel(boolean)} 不会中断正在执行的任务，
+ * 也不会传递给依赖的上游 future，需要取消阻塞任务时使用这里的方法
+ */
+public class Futures {
+
+    /**
+     * 与 {@link CompletableFuture#supplyAsync(Supplier, Executor)} 相同，但取消返回的 future 时会中断正在执行任务的线程，
+     * 还没有开始执行的任务不再执行
+     */
+    public static <T> CompletableFuture<T> supplyInterruptibly(Supplier<T> supplier, Executor executor) {
+        InterruptibleTask<T> task = new InterruptibleTask<>(supplier);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.completeExceptionally(e);
+        }
+        return task;
+    }
+
+    /**
+     * 取消 dependent 时同时取消 source，用于 thenApply、whenComplete 等方法返回的 future
+     *
+     * @return dependent
+     */
+    public static <T> CompletableFuture<T> propagateCancel(CompletableFuture<T> dependent, CompletableFuture<?> source) {
+        if (dependent != source) {
+            dependent.whenComplete((result, error) -> {
+                if (error instanceof CancellationException) {
+                    source.cancel(true);
+                }
+            });
+        }
+        return dependent;
+    }
+
+    private static class InterruptibleTask<T> extends CompletableFuture<T> implements Runnable {
+        private final Supplier<T> supplier;
+        private Thread runner;
+
+        InterruptibleTask(Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (isDone()) {
+                    return;
+                }
+                runner = Thread.currentThread();
+            }
+            try {
+                complete(supplier.get());
+            } catch (Throwable e) {
+                completeExceptionally(e instanceof CompletionException ? e : new CompletionException(e));
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                    if (isCancelled()) {
+                        // 清除取消时设置的中断状态，避免影响线程池中的下一个任务
+                        Thread.interrupted();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && mayInterruptIfRunning) {
+                synchronized (this) {
+                    if (runner != null) {
+                        runner.interrupt();
+                    }
+                }
+            }
+            return cancelled;
+        }
+    }
+}
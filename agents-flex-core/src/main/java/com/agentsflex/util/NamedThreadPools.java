@@ -16,6 +16,7 @@
 package com.agentsflex.util;
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author michael yang (fuhai999@gmail.com)
@@ -46,6 +47,38 @@ public class NamedThreadPools {
     }
 
 
+    /**
+     * 工作窃取线程池，线程为守护线程；在池内等待其他任务时应使用 {@link ForkJoinPool#managedBlock}，以便线程池补充线程
+     */
+    public static ForkJoinPool newForkJoinPool(int parallelism, String name) {
+        AtomicInteger counter = new AtomicInteger(1);
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory = pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(name + "-thread-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ForkJoinPool(parallelism, factory, null, true);
+    }
+
+
+    /**
+     * 每个任务一个线程：Java 21 及以上使用虚拟线程，否则使用 newCachedThreadPool，适合执行阻塞 IO 的任务
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String name) {
+        return VirtualThreads.isSupported() ? VirtualThreads.newThreadPerTaskExecutor(name) : newCachedThreadPool(name);
+    }
+
+
+    /**
+     * 执行阻塞任务（例如同步调用大模型）的公共线程池：Java 21 及以上使用虚拟线程，
+     * 否则使用独立的守护线程 newCachedThreadPool，不占用 JVM 共享的 ForkJoinPool.commonPool()
+     */
+    public static Executor blockingExecutor() {
+        return BlockingExecutorHolder.EXECUTOR;
+    }
+
+
     public static ScheduledExecutorService newScheduledThreadPool(int corePoolSize, String name) {
         return newScheduledThreadPool(corePoolSize, new NamedThreadFactory(name));
     }
@@ -55,4 +88,11 @@ public class NamedThreadPools {
             int corePoolSize, ThreadFactory threadFactory) {
         return new ScheduledThreadPoolExecutor(corePoolSize, threadFactory);
     }
+
+
+    private static class BlockingExecutorHolder {
+        static final Executor EXECUTOR = VirtualThreads.isSupported()
+            ? VirtualThreads.newThreadPerTaskExecutor("agents-flex-blocking")
+            : newCachedThreadPool(new NamedThreadFactory("agents-flex-blocking", true));
+    }
 }
@@ -0,0 +1,48 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程支持。此类为 Java 8 的实现，始终不支持虚拟线程，创建的线程均为普通线程；
+ * 使用 JDK 21 构建时，Multi-Release jar 中 META-INF/versions/21 下的实现会在 Java 21 及以上版本中替换此类。
+ * <p>
+ * 可以通过 -Dagentsflex.virtualThreads=false 关闭虚拟线程。
+ */
+public class VirtualThreads {
+
+    public static final String ENABLED_PROPERTY = "agentsflex.virtualThreads";
+
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * 不支持虚拟线程时，返回普通线程的 {@link NamedThreadFactory}
+     */
+    public static ThreadFactory newThreadFactory(String name) {
+        return new NamedThreadFactory(name);
+    }
+
+    /**
+     * 不支持虚拟线程时，返回普通线程的缓存线程池
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String name) {
+        return NamedThreadPools.newCachedThreadPool(name);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Java 21 及以上版本的实现，使用虚拟线程
+ */
+public class VirtualThreads {
+
+    public static final String ENABLED_PROPERTY = "agentsflex.virtualThreads";
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+
+    public static boolean isSupported() {
+        return ENABLED;
+    }
+
+    /**
+     * 通过 {@link #ENABLED_PROPERTY} 关闭虚拟线程时，返回普通线程的 {@link NamedThreadFactory}
+     */
+    public static ThreadFactory newThreadFactory(String name) {
+        if (!ENABLED) {
+            return new NamedThreadFactory(name);
+        }
+        return Thread.ofVirtual().name(name + "-virtual-", 1).factory();
+    }
+
+    public static ExecutorService newThreadPerTaskExecutor(String name) {
+        if (!ENABLED) {
+            return NamedThreadPools.newCachedThreadPool(name);
+        }
+        return Executors.newThreadPerTaskExecutor(newThreadFactory(name));
+    }
+}
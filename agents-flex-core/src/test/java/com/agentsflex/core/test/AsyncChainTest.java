@@ -0,0 +1,211 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.agent.Agent;
+import com.agentsflex.agent.Output;
+import com.agentsflex.agent.Parameter;
+import com.agentsflex.chain.*;
+import com.agentsflex.chain.event.OnErrorEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+public class AsyncChainTest {
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "async-chain-test");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 模拟异步 IO：不占用线程，延迟之后在 timer 线程中完成
+     */
+    private static class DelayAgent extends Agent {
+        private final String input;
+        private final String suffix;
+
+        DelayAgent(String id, String input, String output, String suffix) {
+            super(id);
+            this.input = input;
+            this.suffix = suffix;
+            output(output);
+        }
+
+        @Override
+        protected List<Parameter> defineInputParameter() {
+            return Collections.singletonList(new Parameter(input, true));
+        }
+
+        @Override
+        public Output execute(Map<String, Object> variables, Chain chain) {
+            throw new UnsupportedOperationException("should be executed asynchronously");
+        }
+
+        @Override
+        public CompletableFuture<Output> executeAsync(Map<String, Object> variables, Chain chain) {
+            CompletableFuture<Output> future = new CompletableFuture<>();
+            timer.schedule(() -> future.complete(Output.of(getOutputKeys().get(0), variables.get(input) + suffix)),
+                20, TimeUnit.MILLISECONDS);
+            return future;
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void testSequentialChain() throws Exception {
+        SequentialChain chain = new SequentialChain(
+            new DelayAgent("a", "x", "y", "-a"),
+            new DelayAgent("b", "y", "z", "-b"));
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("x", "x");
+        Map<String, Object> memory = chain.executeAsync(variables).get();
+
+        Assert.assertEquals("x-a-b", memory.get("z"));
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, chain.getStatus());
+    }
+
+    @Test(timeout = 10_000)
+    public void testPauseAndResume() throws Exception {
+        SequentialChain chain = new SequentialChain(
+            new DelayAgent("a", "x", "y", "-a"),
+            new DelayAgent("b", "input", "z", "-b"));
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("x", "x");
+        chain.executeAsync(variables).get();
+        Assert.assertEquals(ChainStatus.PAUSE_FOR_INPUT, chain.getStatus());
+
+        Map<String, Object> input = new HashMap<>();
+        input.put("input", "in");
+        Map<String, Object> memory = chain.resumeAsync(input).get();
+        Assert.assertEquals("in-b", memory.get("z"));
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, chain.getStatus());
+
+        try {
+            chain.resumeAsync(input).get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof ChainException);
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void testErrorFinishesAbnormally() throws Exception {
+        SequentialChain chain = new SequentialChain(new Agent("error") {
+            @Override
+            protected List<Parameter> defineInputParameter() {
+                return null;
+            }
+
+            @Override
+            public Output execute(Map<String, Object> variables, Chain chain) {
+                throw new IllegalStateException("boom");
+            }
+        });
+
+        AtomicInteger errors = new AtomicInteger();
+        chain.registerEventListener((event, c) -> {
+            if (event instanceof OnErrorEvent) {
+                errors.incrementAndGet();
+            }
+        });
+        try {
+            chain.executeForResultAsync("x").get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof ChainException);
+        }
+        Assert.assertEquals(ChainStatus.FINISHED_ABNORMAL, chain.getStatus());
+        Assert.assertEquals(1, errors.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void testLoopChainRunsEveryNode() throws Exception {
+        AtomicInteger first = new AtomicInteger();
+        AtomicInteger second = new AtomicInteger();
+        LoopChain chain = new LoopChain();
+        chain.setIntervalMillis(5);
+        chain.addNode(new CountAgent("first", first, null));
+        chain.addNode(new CountAgent("second", second, c -> {
+            if (second.get() == 3) {
+                c.stopNormal("done");
+            }
+        }));
+
+        chain.executeAsync(new HashMap<>()).get();
+        Assert.assertEquals(3, first.get());
+        Assert.assertEquals(3, second.get());
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, chain.getStatus());
+    }
+
+    @Test(timeout = 10_000)
+    public void testDagChain() throws Exception {
+        DagChain chain = new DagChain();
+        chain.addNode(new DelayAgent("b", "x", "b", "-b"));
+        chain.addNode(new DelayAgent("c", "x", "c", "-c"));
+        chain.addNode(new Agent("d") {
+            @Override
+            protected List<Parameter> defineInputParameter() {
+                return Arrays.asList(new Parameter("b", true), new Parameter("c", true));
+            }
+
+            @Override
+            public Output execute(Map<String, Object> variables, Chain chain) {
+                return Output.of("d", variables.get("b") + "+" + variables.get("c"));
+            }
+        }.output("d"));
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("x", "x");
+        Map<String, Object> memory = chain.executeAsync(variables).get();
+        Assert.assertEquals("x-b+x-c", memory.get("d"));
+    }
+
+    private static class CountAgent extends Agent {
+        private final AtomicInteger counter;
+        private final Consumer<Chain> after;
+
+        CountAgent(String id, AtomicInteger counter, Consumer<Chain> after) {
+            super(id);
+            this.counter = counter;
+            this.after = after;
+        }
+
+        @Override
+        protected List<Parameter> defineInputParameter() {
+            return null;
+        }
+
+        @Override
+        public Output execute(Map<String, Object> variables, Chain chain) {
+            counter.incrementAndGet();
+            if (after != null) {
+                after.accept(chain);
+            }
+            return null;
+        }
+    }
+}
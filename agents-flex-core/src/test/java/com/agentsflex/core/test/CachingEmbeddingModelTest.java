@@ -0,0 +1,106 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.document.Document;
+import com.agentsflex.llm.embedding.CachingEmbeddingModel;
+import com.agentsflex.llm.embedding.EmbeddingDiskCache;
+import com.agentsflex.llm.embedding.EmbeddingModel;
+import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.store.VectorData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachingEmbeddingModelTest {
+
+    private static class CountingEmbeddingModel implements EmbeddingModel {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public VectorData embed(Document document, EmbeddingOptions options) {
+            count.incrementAndGet();
+            VectorData vectorData = new VectorData();
+            vectorData.setVector(new double[]{document.getContent().length(), 1.0});
+            return vectorData;
+        }
+    }
+
+    @Test
+    public void testMemoryCache() {
+        CountingEmbeddingModel model = new CountingEmbeddingModel();
+        CachingEmbeddingModel cachingModel = new CachingEmbeddingModel(model, "test", 100);
+
+        cachingModel.embed(Document.of("hello"), EmbeddingOptions.EMPTY);
+        VectorData vectorData = cachingModel.embed(Document.of("hello"), EmbeddingOptions.EMPTY);
+
+        Assert.assertEquals(1, model.count.get());
+        Assert.assertArrayEquals(new double[]{5, 1.0}, vectorData.getVector(), 0);
+        Assert.assertEquals(1, cachingModel.getHitCount());
+        Assert.assertEquals(1, cachingModel.getMissCount());
+
+        List<VectorData> list = cachingModel.embedAll(Arrays.asList(Document.of("hello"), Document.of("agents"), Document.of("agents")), EmbeddingOptions.EMPTY);
+        Assert.assertEquals(3, list.size());
+        Assert.assertEquals(2, model.count.get());
+        Assert.assertArrayEquals(new double[]{6, 1.0}, list.get(2).getVector(), 0);
+    }
+
+    @Test
+    public void testDiskCache() throws Exception {
+        File file = File.createTempFile("embedding-cache", ".bin");
+        file.deleteOnExit();
+
+        CountingEmbeddingModel model = new CountingEmbeddingModel();
+        try (EmbeddingDiskCache diskCache = new EmbeddingDiskCache(file)) {
+            CachingEmbeddingModel cachingModel = new CachingEmbeddingModel(model, "test", 100, diskCache);
+            cachingModel.embed(Document.of("hello"), EmbeddingOptions.EMPTY);
+        }
+
+        try (EmbeddingDiskCache diskCache = new EmbeddingDiskCache(file)) {
+            Assert.assertEquals(1, diskCache.size());
+            CachingEmbeddingModel cachingModel = new CachingEmbeddingModel(model, "test", 100, diskCache);
+            VectorData vectorData = cachingModel.embed(Document.of("hello"), EmbeddingOptions.EMPTY);
+            Assert.assertArrayEquals(new double[]{5, 1.0}, vectorData.getVector(), 0);
+        }
+
+        Assert.assertEquals(1, model.count.get());
+    }
+
+    @Test
+    public void testModelNameIsolation() throws Exception {
+        File file = File.createTempFile("embedding-cache", ".bin");
+        file.deleteOnExit();
+
+        // 共享同一个磁盘缓存的两个模型不会读到对方的向量
+        CountingEmbeddingModel model = new CountingEmbeddingModel();
+        try (EmbeddingDiskCache diskCache = new EmbeddingDiskCache(file)) {
+            new CachingEmbeddingModel(model, "model-a", 100, diskCache).embed(Document.of("hello"), EmbeddingOptions.EMPTY);
+            new CachingEmbeddingModel(model, "model-b", 100, diskCache).embed(Document.of("hello"), EmbeddingOptions.EMPTY);
+            Assert.assertEquals(2, diskCache.size());
+        }
+        Assert.assertEquals(2, model.count.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testModelNameRequired() {
+        new CachingEmbeddingModel(new CountingEmbeddingModel(), null);
+    }
+
+}
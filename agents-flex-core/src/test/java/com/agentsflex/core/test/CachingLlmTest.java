@@ -0,0 +1,188 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.document.Document;
+import com.agentsflex.functions.annotation.FunctionDef;
+import com.agentsflex.functions.annotation.FunctionParam;
+import com.agentsflex.llm.ChatContext;
+import com.agentsflex.llm.ChatOptions;
+import com.agentsflex.llm.Llm;
+import com.agentsflex.llm.MessageResponse;
+import com.agentsflex.llm.StreamResponseListener;
+import com.agentsflex.llm.cache.CachedResponse;
+import com.agentsflex.llm.cache.CachingLlm;
+import com.agentsflex.llm.cache.ChatCacheKeys;
+import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.llm.response.AiMessageResponse;
+import com.agentsflex.message.AiMessage;
+import com.agentsflex.prompt.FunctionPrompt;
+import com.agentsflex.prompt.Prompt;
+import com.agentsflex.prompt.TextPrompt;
+import com.agentsflex.store.VectorData;
+import com.agentsflex.util.LruCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CachingLlmTest {
+
+    private static class CountingLlm implements Llm {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R extends MessageResponse<M>, M extends AiMessage> R chat(Prompt<M> prompt, ChatOptions options) {
+            return (R) response("reply-" + calls.incrementAndGet());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R extends MessageResponse<M>, M extends AiMessage> void chatStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options) {
+            String content = "reply-" + calls.incrementAndGet();
+            ChatContext context = new ChatContext(this, null);
+            listener.onStart(context);
+            listener.onMessage(context, (R) response(content.substring(0, 3)));
+            listener.onMessage(context, (R) response(content));
+            listener.onStop(context);
+        }
+
+        @Override
+        public VectorData embed(Document document, EmbeddingOptions options) {
+            return null;
+        }
+    }
+
+    public static class Tools {
+        @FunctionDef(name = "weather", description = "get the weather")
+        public static String weather(@FunctionParam(name = "city", description = "the city name") String city) {
+            return "sunny";
+        }
+
+        @FunctionDef(name = "time", description = "get the time")
+        public static String time(@FunctionParam(name = "city", description = "the city name") String city) {
+            return "noon";
+        }
+    }
+
+    private static AiMessageResponse response(String content) {
+        AiMessage message = new AiMessage();
+        message.setContent(content);
+        message.setFullContent(content);
+        return new AiMessageResponse(message);
+    }
+
+    private static ChatOptions deterministic() {
+        ChatOptions options = new ChatOptions();
+        options.setTemperature(0);
+        return options;
+    }
+
+    @Test
+    public void testCacheKey() {
+        CountingLlm llm = new CountingLlm();
+
+        Assert.assertEquals(ChatCacheKeys.of(llm, new TextPrompt("hello"), deterministic())
+            , ChatCacheKeys.of(llm, new TextPrompt("hello"), deterministic()));
+        Assert.assertNotEquals(ChatCacheKeys.of(llm, new TextPrompt("hello"), deterministic())
+            , ChatCacheKeys.of(llm, new TextPrompt("hello!"), deterministic()));
+        Assert.assertNotEquals(ChatCacheKeys.of(llm, new TextPrompt("hello"), deterministic())
+            , ChatCacheKeys.of(llm, new TextPrompt("hello"), ChatOptions.DEFAULT));
+
+        Assert.assertEquals(ChatCacheKeys.of(llm, new FunctionPrompt("hello", Tools.class, "weather"), deterministic())
+            , ChatCacheKeys.of(llm, new FunctionPrompt("hello", Tools.class, "weather"), deterministic()));
+        Assert.assertNotEquals(ChatCacheKeys.of(llm, new FunctionPrompt("hello", Tools.class, "weather"), deterministic())
+            , ChatCacheKeys.of(llm, new FunctionPrompt("hello", Tools.class, "time"), deterministic()));
+    }
+
+    @Test
+    public void testTemperature() {
+        CountingLlm llm = new CountingLlm();
+        CachingLlm cachingLlm = new CachingLlm(llm);
+
+        // ChatOptions.DEFAULT 的 temperature 为 0.5，默认不缓存
+        Assert.assertEquals("reply-1", cachingLlm.chat("hello"));
+        Assert.assertEquals("reply-2", cachingLlm.chat("hello"));
+
+        Assert.assertEquals("reply-3", cachingLlm.chat("hello", deterministic()));
+        Assert.assertEquals("reply-3", cachingLlm.chat("hello", deterministic()));
+
+        cachingLlm.setMaxTemperature(0.5f);
+        Assert.assertEquals("reply-4", cachingLlm.chat("hello"));
+        Assert.assertEquals("reply-4", cachingLlm.chat("hello"));
+        Assert.assertEquals(4, llm.calls.get());
+    }
+
+    @Test
+    public void testTtl() {
+        CountingLlm llm = new CountingLlm();
+        AtomicLong now = new AtomicLong(1000);
+        CachingLlm cachingLlm = new CachingLlm(llm, new LruCache<String, CachedResponse>(100, 100, now::get));
+
+        Assert.assertEquals("reply-1", cachingLlm.chat("hello", deterministic()));
+        now.addAndGet(100);
+        Assert.assertEquals("reply-1", cachingLlm.chat("hello", deterministic()));
+        now.addAndGet(1);
+        Assert.assertEquals("reply-2", cachingLlm.chat("hello", deterministic()));
+
+        Assert.assertEquals(1, cachingLlm.getHitCount());
+        Assert.assertEquals(2, cachingLlm.getMissCount());
+    }
+
+    @Test
+    public void testStreamReplay() {
+        CountingLlm llm = new CountingLlm();
+        CachingLlm cachingLlm = new CachingLlm(llm);
+
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        cachingLlm.chatStream(new TextPrompt("hello"), recorder(first), deterministic());
+        cachingLlm.chatStream(new TextPrompt("hello"), recorder(second), deterministic());
+
+        Assert.assertEquals(Arrays.asList("start", "rep", "reply-1", "stop"), first);
+        // 命中缓存时一次性回放完整内容
+        Assert.assertEquals(Arrays.asList("start", "reply-1", "stop"), second);
+        Assert.assertEquals(1, llm.calls.get());
+
+        // 同步请求与流式请求共享缓存
+        Assert.assertEquals("reply-1", cachingLlm.chat("hello", deterministic()));
+    }
+
+    private static StreamResponseListener<AiMessageResponse, AiMessage> recorder(List<String> events) {
+        return new StreamResponseListener<AiMessageResponse, AiMessage>() {
+            @Override
+            public void onStart(ChatContext context) {
+                events.add("start");
+            }
+
+            @Override
+            public void onMessage(ChatContext context, AiMessageResponse response) {
+                events.add(response.getMessage().getContent());
+            }
+
+            @Override
+            public void onStop(ChatContext context) {
+                events.add("stop");
+            }
+        };
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.agent.Agent;
+import com.agentsflex.agent.Output;
+import com.agentsflex.agent.Parameter;
+import com.agentsflex.chain.*;
+import com.agentsflex.chain.store.ChainStateStore;
+import com.agentsflex.chain.store.FileChainStateStore;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InvalidClassException;
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class ChainCheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static class AppendAgent extends Agent {
+        private final String input;
+        private final String suffix;
+        private final AtomicInteger counter;
+
+        AppendAgent(String input, String output, String suffix, AtomicInteger counter) {
+            this.input = input;
+            this.suffix = suffix;
+            this.counter = counter;
+            output(output);
+        }
+
+        @Override
+        protected List<Parameter> defineInputParameter() {
+            return Collections.singletonList(new Parameter(input, true));
+        }
+
+        @Override
+        public Output execute(Map<String, Object> variables, Chain chain) {
+            counter.incrementAndGet();
+            return Output.of(getOutputKeys().get(0), variables.get(input) + suffix);
+        }
+    }
+
+    /**
+     * 每次都重新构建定义，模拟在另一个实例中恢复
+     */
+    private void assertResumeOnAnotherInstance(Supplier<Chain> factory, AtomicInteger counter) {
+        ChainStateStore store = new FileChainStateStore(folder.getRoot());
+
+        Chain execution = new ChainDefinition<>(factory.get()).execute(Collections.singletonMap("x", "x"), store);
+        Assert.assertEquals(ChainStatus.PAUSE_FOR_INPUT, execution.getStatus());
+        Object chainId = execution.getId();
+        Assert.assertNotNull(store.load(chainId));
+
+        Chain resumed = new ChainDefinition<>(factory.get()).resume(store, chainId, Collections.singletonMap("input", "in"));
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, resumed.getStatus());
+        Assert.assertEquals(chainId, resumed.getId());
+        Assert.assertEquals("x-a", resumed.get("a"));
+        Assert.assertEquals("in-b", resumed.get("b"));
+        // 每个节点只执行一次，已经执行完成的节点不会再次执行（并行时暂停前未开始的节点在恢复时执行）
+        Assert.assertEquals(2, counter.get());
+        Assert.assertNull(store.load(chainId));
+    }
+
+    @Test
+    public void testSequentialChain() {
+        AtomicInteger counter = new AtomicInteger();
+        assertResumeOnAnotherInstance(() -> {
+            SequentialChain chain = new SequentialChain();
+            chain.addNode(new AppendAgent("x", "a", "-a", counter));
+            chain.addNode(new AppendAgent("input", "b", "-b", counter));
+            return chain;
+        }, counter);
+    }
+
+    @Test
+    public void testParallelChain() {
+        AtomicInteger counter = new AtomicInteger();
+        assertResumeOnAnotherInstance(() -> {
+            ParallelChain chain = new ParallelChain();
+            chain.addNode(new AppendAgent("x", "a", "-a", counter));
+            chain.addNode(new AppendAgent("input", "b", "-b", counter));
+            return chain;
+        }, counter);
+    }
+
+    @Test
+    public void testDagChain() {
+        AtomicInteger counter = new AtomicInteger();
+        assertResumeOnAnotherInstance(() -> {
+            DagChain chain = new DagChain();
+            chain.addNode(new AppendAgent("x", "a", "-a", counter));
+            chain.addNode(new AppendAgent("input", "b", "-b", counter));
+            return chain;
+        }, counter);
+    }
+
+    @Test
+    public void testIdsThatAreNotFileNames() {
+        FileChainStateStore store = new FileChainStateStore(folder.getRoot());
+        ChainCheckpoint checkpoint = new ChainCheckpoint();
+        checkpoint.setChainId("../user:42/conversation");
+        checkpoint.setMemory(new HashMap<>());
+        store.save(checkpoint);
+
+        Assert.assertEquals("../user:42/conversation", store.load("../user:42/conversation").getChainId());
+        store.remove("../user:42/conversation");
+        Assert.assertNull(store.load("../user:42/conversation"));
+    }
+
+    static class CustomValue implements Serializable {
+        String value = "custom";
+    }
+
+    @Test
+    public void testOnlyAllowedClassesAreDeserialized() {
+        FileChainStateStore store = new FileChainStateStore(folder.getRoot());
+        ChainCheckpoint checkpoint = new ChainCheckpoint();
+        checkpoint.setChainId("custom");
+        Map<String, Object> memory = new HashMap<>();
+        memory.put("list", new ArrayList<>(Arrays.asList(1, 2L, "3")));
+        memory.put("value", new CustomValue());
+        checkpoint.setMemory(memory);
+        store.save(checkpoint);
+        // 临时文件已经被替换
+        Assert.assertEquals(1, folder.getRoot().list().length);
+
+        try {
+            store.load("custom");
+            Assert.fail("CustomValue is not allowed");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof InvalidClassException);
+        }
+
+        store.allowClass(CustomValue.class);
+        ChainCheckpoint loaded = store.load("custom");
+        Assert.assertEquals("custom", ((CustomValue) loaded.getMemory().get("value")).value);
+        Assert.assertEquals(Arrays.asList(1, 2L, "3"), loaded.getMemory().get("list"));
+    }
+}
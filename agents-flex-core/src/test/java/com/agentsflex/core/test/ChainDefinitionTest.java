@@ -0,0 +1,130 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.agent.Agent;
+import com.agentsflex.agent.Output;
+import com.agentsflex.agent.Parameter;
+import com.agentsflex.chain.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class ChainDefinitionTest {
+
+    private static class AppendAgent extends Agent {
+        private final String input;
+        private final String suffix;
+
+        AppendAgent(String input, String output, String suffix) {
+            this.input = input;
+            this.suffix = suffix;
+            output(output);
+        }
+
+        @Override
+        protected List<Parameter> defineInputParameter() {
+            return Collections.singletonList(new Parameter(input, true));
+        }
+
+        @Override
+        public Output execute(Map<String, Object> variables, Chain chain) {
+            return Output.of(getOutputKeys().get(0), variables.get(input) + suffix);
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void testConcurrentExecutions() throws Exception {
+        ParallelChain nested = new ParallelChain();
+        nested.addNode(new AppendAgent("a", "b", "-b"));
+        nested.addNode(new AppendAgent("a", "c", "-c"));
+
+        SequentialChain chain = new SequentialChain();
+        chain.addNode(new AppendAgent("x", "a", "-a"));
+        chain.addNode(nested);
+
+        ChainDefinition<SequentialChain> definition = new ChainDefinition<>(chain);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<SequentialChain>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                Map<String, Object> variables = new HashMap<>();
+                variables.put("x", i);
+                futures.add(pool.submit(() -> definition.execute(variables)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                SequentialChain execution = futures.get(i).get();
+                Assert.assertEquals(ChainStatus.FINISHED_NORMAL, execution.getStatus());
+                Assert.assertEquals(i + "-a-b", execution.get("b"));
+                Assert.assertEquals(i + "-a-c", execution.get("c"));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // 定义本身不会被执行修改
+        Assert.assertEquals(ChainStatus.READY, chain.getStatus());
+        Assert.assertNull(chain.get("a"));
+    }
+
+    @Test
+    public void testExecutionsPauseIndependently() {
+        SequentialChain chain = new SequentialChain();
+        chain.addNode(new AppendAgent("x", "a", "-a"));
+        chain.addNode(new AppendAgent("input", "b", "-b"));
+        ChainDefinition<SequentialChain> definition = new ChainDefinition<>(chain);
+
+        SequentialChain first = definition.execute(Collections.singletonMap("x", "1"));
+        SequentialChain second = definition.execute(Collections.singletonMap("x", "2"));
+        Assert.assertEquals(ChainStatus.PAUSE_FOR_INPUT, first.getStatus());
+        Assert.assertEquals(ChainStatus.PAUSE_FOR_INPUT, second.getStatus());
+
+        second.resume(Collections.singletonMap("input", "in"));
+        Assert.assertEquals("in-b", second.get("b"));
+        Assert.assertEquals(ChainStatus.PAUSE_FOR_INPUT, first.getStatus());
+        Assert.assertNull(first.get("b"));
+    }
+
+    @Test
+    public void testListenersRegisteredOnExecutionAreNotShared() {
+        SequentialChain chain = new SequentialChain(new AppendAgent("x", "a", "-a"));
+        ChainDefinition<SequentialChain> definition = new ChainDefinition<>(chain);
+
+        List<Object> events = new ArrayList<>();
+        SequentialChain execution = definition.newExecution();
+        execution.registerEventListener((event, c) -> events.add(event));
+        execution.execute(Collections.singletonMap("x", "1"));
+        int count = events.size();
+        Assert.assertTrue(count > 0);
+
+        definition.execute(Collections.singletonMap("x", "2"));
+        Assert.assertEquals(count, events.size());
+    }
+
+    @Test
+    public void testDagChainSharesGraph() throws Exception {
+        DagChain chain = new DagChain();
+        chain.addNode(new AppendAgent("b", "c", "-c"));
+        chain.addNode(new AppendAgent("x", "b", "-b"));
+        ChainDefinition<DagChain> definition = new ChainDefinition<>(chain);
+
+        DagChain execution = definition.executeAsync(Collections.singletonMap("x", "x")).get();
+        Assert.assertEquals("x-b-c", execution.get("c"));
+    }
+}
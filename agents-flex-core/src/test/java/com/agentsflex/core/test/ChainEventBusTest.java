@@ -0,0 +1,116 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.chain.*;
+import com.agentsflex.chain.event.OnFinishedEvent;
+import com.agentsflex.chain.event.OnNodeFinishedEvent;
+import com.agentsflex.chain.event.OnNodeStartEvent;
+import com.agentsflex.chain.event.OnStartEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ChainEventBusTest {
+
+    @Test
+    public void testHasListeners() {
+        SequentialChain parent = new SequentialChain();
+        SequentialChain child = new SequentialChain();
+        child.setParent(parent);
+
+        Assert.assertFalse(child.hasEventListeners(OnNodeStartEvent.class));
+
+        parent.registerEventListener(OnNodeStartEvent.class, (event, chain) -> {
+        });
+        Assert.assertTrue(child.hasEventListeners(OnNodeStartEvent.class));
+        Assert.assertFalse(child.hasEventListeners(OnNodeFinishedEvent.class));
+
+        child.registerEventListener((event, chain) -> {
+        });
+        Assert.assertTrue(child.hasEventListeners(OnNodeFinishedEvent.class));
+    }
+
+    @Test
+    public void testRegisterWhilePublishing() {
+        ChainEventBus bus = new ChainEventBus();
+        List<String> received = new ArrayList<>();
+        ChainEventListener second = (event, chain) -> received.add("second");
+        bus.register(OnStartEvent.class, new ChainEventListener() {
+            @Override
+            public void onEvent(ChainEvent event, Chain chain) {
+                received.add("first");
+                bus.remove(this);
+                bus.register(OnStartEvent.class, second);
+            }
+        });
+
+        // 发布时使用的是快照，回调中的注册和移除只影响下一次发布
+        bus.publish(new OnStartEvent(), null);
+        Assert.assertEquals(Collections.singletonList("first"), received);
+
+        bus.publish(new OnStartEvent(), null);
+        bus.publish(new OnFinishedEvent(), null);
+        Assert.assertEquals(Arrays.asList("first", "second"), received);
+    }
+
+    @Test
+    public void testCopy() {
+        ChainEventBus bus = new ChainEventBus();
+        bus.register(ChainEvent.class, (event, chain) -> {
+        });
+
+        ChainEventBus copy = new ChainEventBus(bus);
+        copy.register(OnStartEvent.class, (event, chain) -> {
+        });
+
+        Assert.assertEquals(1, bus.getListeners().size());
+        Assert.assertEquals(2, copy.getListeners().size());
+    }
+
+    @Test(timeout = 10_000)
+    public void testAsyncListener() throws Exception {
+        AsyncChainEventDispatcher dispatcher = new AsyncChainEventDispatcher(2, "chain-event-test");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+
+        ChainEventBus bus = new ChainEventBus();
+        bus.register(ChainEvent.class, (event, chain) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(event.getClass().getSimpleName() + "@" + Thread.currentThread().getName());
+            if (event instanceof OnFinishedEvent) {
+                done.countDown();
+            }
+        }, dispatcher);
+
+        // 监听器阻塞时发布不会被阻塞（队列未满）
+        bus.publish(new OnStartEvent(), null);
+        bus.publish(new OnFinishedEvent(), null);
+        Assert.assertTrue(received.isEmpty());
+
+        release.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList("OnStartEvent@chain-event-test-thread-1", "OnFinishedEvent@chain-event-test-thread-1"), received);
+    }
+}
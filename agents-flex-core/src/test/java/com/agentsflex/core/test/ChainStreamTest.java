@@ -0,0 +1,151 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.agent.Agent;
+import com.agentsflex.agent.LLMAgent;
+import com.agentsflex.agent.Output;
+import com.agentsflex.chain.Chain;
+import com.agentsflex.chain.ChainOutputListener;
+import com.agentsflex.chain.ChainStatus;
+import com.agentsflex.chain.ParallelChain;
+import com.agentsflex.chain.node.StreamConsumerNode;
+import com.agentsflex.document.Document;
+import com.agentsflex.llm.*;
+import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.store.VectorData;
+import com.agentsflex.message.AiMessage;
+import com.agentsflex.prompt.Prompt;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ChainStreamTest {
+
+    /**
+     * 第一个分片之后，等待下游收到分片才继续输出，只有边生成边消费才能完成
+     */
+    private static class PipelineLlm implements Llm {
+        final CountDownLatch firstChunkConsumed = new CountDownLatch(1);
+
+        @Override
+        public <R extends MessageResponse<M>, M extends AiMessage> R chat(Prompt<M> prompt, ChatOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <R extends MessageResponse<M>, M extends AiMessage> void chatStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options) {
+            DeltaStreamResponseListener<R, M> deltaListener = (DeltaStreamResponseListener<R, M>) listener;
+            Thread thread = new Thread(() -> {
+                ChatContext context = new ChatContext(this, null);
+                deltaListener.onStart(context);
+                StringBuilder full = new StringBuilder();
+                String[] chunks = {"Hello", ", ", "world"};
+                for (int i = 0; i < chunks.length; i++) {
+                    full.append(chunks[i]);
+                    deltaListener.onDelta(context, chunks[i], full);
+                    if (i == 0) {
+                        try {
+                            if (!firstChunkConsumed.await(5, TimeUnit.SECONDS)) {
+                                deltaListener.onFailure(context, new IllegalStateException("chunk not consumed"));
+                                return;
+                            }
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+                deltaListener.onStop(context);
+            });
+            thread.start();
+        }
+
+        @Override
+        public VectorData embed(Document document, EmbeddingOptions options) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void testDownstreamConsumesChunksBeforeCompletion() {
+        PipelineLlm llm = new PipelineLlm();
+        LLMAgent agent = new LLMAgent(llm, "say hello");
+        agent.setStream(true);
+        agent.output("text");
+
+        List<String> consumed = Collections.synchronizedList(new ArrayList<>());
+        StreamConsumerNode consumer = new StreamConsumerNode("text") {
+            @Override
+            protected void onChunk(Chain chain, CharSequence chunk) {
+                consumed.add(chunk.toString());
+                llm.firstChunkConsumed.countDown();
+            }
+
+            @Override
+            protected Map<String, Object> onComplete(Chain chain, String content) {
+                return Collections.singletonMap("length", content.length());
+            }
+        };
+
+        List<String> deltas = Collections.synchronizedList(new ArrayList<>());
+        ParallelChain chain = new ParallelChain();
+        chain.addNode(consumer);
+        chain.addNode(agent);
+        chain.registerOutputListener(new ChainOutputListener() {
+            @Override
+            public void onOutput(Chain chain, Agent agent, Object outputMessage) {
+            }
+
+            @Override
+            public void onDelta(Chain chain, Agent agent, CharSequence delta) {
+                deltas.add(delta.toString());
+            }
+        });
+
+        chain.execute(new HashMap<>());
+
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, chain.getStatus());
+        Assert.assertEquals("Hello, world", chain.get("text"));
+        Assert.assertEquals(12, chain.get("length"));
+        Assert.assertEquals("Hello, world", String.join("", consumed));
+        Assert.assertEquals(Arrays.asList("Hello", ", ", "world"), deltas);
+    }
+
+    @Test(timeout = 10_000)
+    public void testLateSubscriberReceivesEmittedContent() throws Exception {
+        PipelineLlm llm = new PipelineLlm();
+        llm.firstChunkConsumed.countDown();
+        LLMAgent agent = new LLMAgent(llm, "say hello");
+        agent.setStream(true);
+
+        StringBuilder consumed = new StringBuilder();
+        ParallelChain chain = new ParallelChain();
+        chain.addNode(agent);
+        chain.addNode(new StreamConsumerNode(Output.DEFAULT_VALUE_KEY) {
+            @Override
+            protected void onChunk(Chain chain, CharSequence chunk) {
+                consumed.append(chunk);
+            }
+        });
+
+        chain.executeAsync(new HashMap<>()).get();
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, chain.getStatus());
+        Assert.assertEquals("Hello, world", consumed.toString());
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.document.Document;
+import com.agentsflex.llm.ChatContext;
+import com.agentsflex.llm.ChatOptions;
+import com.agentsflex.llm.Llm;
+import com.agentsflex.llm.LlmConfig;
+import com.agentsflex.llm.MessageResponse;
+import com.agentsflex.llm.StreamResponseListener;
+import com.agentsflex.llm.client.LlmClient;
+import com.agentsflex.llm.client.LlmClientListener;
+import com.agentsflex.llm.coalesce.CoalescingEmbeddingModel;
+import com.agentsflex.llm.coalesce.CoalescingLlm;
+import com.agentsflex.llm.embedding.EmbeddingModel;
+import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.llm.response.AiMessageResponse;
+import com.agentsflex.message.AiMessage;
+import com.agentsflex.message.HumanMessage;
+import com.agentsflex.prompt.HistoriesPrompt;
+import com.agentsflex.prompt.Prompt;
+import com.agentsflex.prompt.TextPrompt;
+import com.agentsflex.store.VectorData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CoalescingLlmTest {
+
+    /**
+     * 请求由测试控制何时结束的大模型
+     */
+    private static class StubLlm implements Llm {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile CompletableFuture<AiMessageResponse> future;
+        final List<StreamResponseListener<AiMessageResponse, AiMessage>> streams = new CopyOnWriteArrayList<>();
+        final AtomicInteger upstreamStops = new AtomicInteger();
+        final ChatContext upstreamContext = new ChatContext(this, new LlmClient() {
+            @Override
+            public void start(String url, Map<String, String> headers, String payload, LlmClientListener listener, LlmConfig config) {
+            }
+
+            @Override
+            public void stop() {
+                upstreamStops.incrementAndGet();
+            }
+        });
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R extends MessageResponse<M>, M extends AiMessage> R chat(Prompt<M> prompt, ChatOptions options) {
+            calls.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return (R) response("hello");
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R extends MessageResponse<M>, M extends AiMessage> CompletableFuture<R> chatAsync(Prompt<M> prompt, ChatOptions options) {
+            calls.incrementAndGet();
+            future = new CompletableFuture<>();
+            return (CompletableFuture<R>) (CompletableFuture<?>) future;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R extends MessageResponse<M>, M extends AiMessage> void chatStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options) {
+            calls.incrementAndGet();
+            streams.add((StreamResponseListener<AiMessageResponse, AiMessage>) (StreamResponseListener<?, ?>) listener);
+        }
+
+        @Override
+        public VectorData embed(Document document, EmbeddingOptions options) {
+            return null;
+        }
+
+        StreamResponseListener<AiMessageResponse, AiMessage> lastStream() {
+            return streams.get(streams.size() - 1);
+        }
+    }
+
+    private static class RecordingListener implements StreamResponseListener<AiMessageResponse, AiMessage> {
+        final List<String> events = new CopyOnWriteArrayList<>();
+        volatile ChatContext context;
+
+        @Override
+        public void onStart(ChatContext context) {
+            this.context = context;
+            events.add("start");
+        }
+
+        @Override
+        public void onMessage(ChatContext context, AiMessageResponse response) {
+            events.add(response.getMessage().getContent());
+        }
+
+        @Override
+        public void onStop(ChatContext context) {
+            events.add("stop");
+        }
+
+        @Override
+        public void onFailure(ChatContext context, Throwable throwable) {
+            events.add("failure");
+        }
+    }
+
+    private static AiMessageResponse response(String content) {
+        AiMessage message = new AiMessage();
+        message.setContent(content);
+        return new AiMessageResponse(message);
+    }
+
+    private static HistoriesPrompt historiesPrompt() {
+        HistoriesPrompt prompt = new HistoriesPrompt();
+        prompt.addMessage(new HumanMessage("hi"));
+        return prompt;
+    }
+
+    private static void awaitWaiting(List<Thread> threads) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        for (Thread thread : threads) {
+            while (thread.getState() != Thread.State.WAITING) {
+                Assert.assertTrue("thread is not waiting: " + thread.getState(), System.currentTimeMillis() < deadline);
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    @Test
+    public void testChat() throws Exception {
+        StubLlm stub = new StubLlm();
+        CoalescingLlm llm = new CoalescingLlm(stub);
+
+        String[] results = new String[3];
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            int index = i;
+            Thread thread = new Thread(() -> results[index] = llm.chat("hello"));
+            threads.add(thread);
+            thread.start();
+        }
+
+        // 第一个请求阻塞在大模型中，其他请求等待共享它的结果
+        awaitWaiting(threads);
+        stub.release.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        Assert.assertEquals(1, stub.calls.get());
+        Assert.assertEquals(Arrays.asList("hello", "hello", "hello"), Arrays.asList(results));
+    }
+
+    @Test
+    public void testEmbedAllNullResult() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CoalescingEmbeddingModel model = new CoalescingEmbeddingModel(new EmbeddingModel() {
+            @Override
+            public VectorData embed(Document document, EmbeddingOptions options) {
+                return null;
+            }
+
+            @Override
+            public List<VectorData> embedAll(List<Document> documents, EmbeddingOptions options) {
+                calls.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return null;
+            }
+        });
+
+        List<Document> documents = Arrays.asList(Document.of("a"), Document.of("b"));
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    Assert.assertNull(model.embedAll(documents, null));
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        // 共享结果的调用方在模型返回 null 时也得到 null
+        awaitWaiting(threads);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(Collections.emptyList(), errors);
+    }
+
+    @Test
+    public void testChatAsync() throws Exception {
+        StubLlm stub = new StubLlm();
+        CoalescingLlm llm = new CoalescingLlm(stub);
+
+        CompletableFuture<AiMessageResponse> first = llm.chatAsync(new TextPrompt("hello"));
+        CompletableFuture<AiMessageResponse> second = llm.chatAsync(new TextPrompt("hello"));
+        Assert.assertEquals(1, stub.calls.get());
+
+        stub.future.complete(response("hello"));
+        Assert.assertEquals("hello", first.get(5, TimeUnit.SECONDS).getMessage().getContent());
+        Assert.assertEquals("hello", second.get(5, TimeUnit.SECONDS).getMessage().getContent());
+        // 共享结果的调用方拿到的是副本
+        Assert.assertNotSame(first.get().getMessage(), second.get().getMessage());
+
+        // 请求结束之后不会缓存结果
+        llm.chatAsync(new TextPrompt("hello"));
+        Assert.assertEquals(2, stub.calls.get());
+    }
+
+    @Test
+    public void testChatAsyncFailure() {
+        StubLlm stub = new StubLlm();
+        CoalescingLlm llm = new CoalescingLlm(stub);
+
+        CompletableFuture<AiMessageResponse> first = llm.chatAsync(new TextPrompt("hello"));
+        CompletableFuture<AiMessageResponse> second = llm.chatAsync(new TextPrompt("hello"));
+        stub.future.completeExceptionally(new IllegalStateException("failed"));
+
+        for (CompletableFuture<AiMessageResponse> future : Arrays.asList(first, second)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        }
+        Assert.assertEquals(1, stub.calls.get());
+    }
+
+    @Test
+    public void testStream() {
+        StubLlm stub = new StubLlm();
+        CoalescingLlm llm = new CoalescingLlm(stub);
+
+        HistoriesPrompt creatorPrompt = historiesPrompt();
+        HistoriesPrompt joinedPrompt = historiesPrompt();
+        RecordingListener creator = new RecordingListener();
+        RecordingListener joined = new RecordingListener();
+
+        llm.chatStream(creatorPrompt, creator);
+        StreamResponseListener<AiMessageResponse, AiMessage> upstream = stub.lastStream();
+        upstream.onStart(stub.upstreamContext);
+        upstream.onMessage(stub.upstreamContext, response("a"));
+
+        // 后加入的订阅者先收到已经输出过的消息
+        llm.chatStream(joinedPrompt, joined);
+        Assert.assertEquals(1, stub.calls.get());
+        Assert.assertEquals(Arrays.asList("start", "a"), joined.events);
+
+        // 发起请求的订阅者取消之后，其他订阅者仍然需要自己添加历史消息
+        creator.context.getClient().stop();
+        upstream.onMessage(stub.upstreamContext, response("ab"));
+        upstream.onStop(stub.upstreamContext);
+
+        Assert.assertEquals(Arrays.asList("start", "a", "stop"), creator.events);
+        Assert.assertEquals(Arrays.asList("start", "a", "ab", "stop"), joined.events);
+        Assert.assertEquals(0, stub.upstreamStops.get());
+        // 发起请求的 prompt 由 Llm 自己维护历史消息
+        Assert.assertEquals(1, creatorPrompt.toMessages().size());
+        Assert.assertEquals(2, joinedPrompt.toMessages().size());
+        Assert.assertEquals("ab", ((AiMessage) joinedPrompt.toMessages().get(1)).getContent());
+    }
+
+    @Test
+    public void testStreamFailure() {
+        StubLlm stub = new StubLlm();
+        CoalescingLlm llm = new CoalescingLlm(stub);
+
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        llm.chatStream("hello", first);
+        llm.chatStream("hello", second);
+
+        StreamResponseListener<AiMessageResponse, AiMessage> upstream = stub.lastStream();
+        upstream.onStart(stub.upstreamContext);
+        upstream.onFailure(stub.upstreamContext, new IllegalStateException("failed"));
+        upstream.onStop(stub.upstreamContext);
+
+        Assert.assertEquals(Arrays.asList("start", "failure", "stop"), first.events);
+        Assert.assertEquals(Arrays.asList("start", "failure", "stop"), second.events);
+
+        // 失败的请求不再接受新的订阅者
+        llm.chatStream("hello", new RecordingListener());
+        Assert.assertEquals(2, stub.calls.get());
+    }
+
+    @Test
+    public void testUnsubscribeStopsUpstream() {
+        StubLlm stub = new StubLlm();
+        CoalescingLlm llm = new CoalescingLlm(stub);
+
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        llm.chatStream("hello", first);
+        llm.chatStream("hello", second);
+        StreamResponseListener<AiMessageResponse, AiMessage> upstream = stub.lastStream();
+        upstream.onStart(stub.upstreamContext);
+
+        first.context.getClient().stop();
+        Assert.assertEquals(0, stub.upstreamStops.get());
+        Assert.assertEquals(Arrays.asList("start", "stop"), first.events);
+
+        second.context.getClient().stop();
+        Assert.assertEquals(1, stub.upstreamStops.get());
+        Assert.assertEquals(Arrays.asList("start", "stop"), second.events);
+
+        // 已经取消的请求不再接受新的订阅者
+        llm.chatStream("hello", new RecordingListener());
+        Assert.assertEquals(2, stub.calls.get());
+    }
+
+    @Test
+    public void testUnsubscribeBeforeUpstreamStarted() {
+        StubLlm stub = new StubLlm();
+        CoalescingLlm llm = new CoalescingLlm(stub);
+
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            public void onMessage(ChatContext context, AiMessageResponse response) {
+                super.onMessage(context, response);
+                context.getClient().stop();
+            }
+        };
+        llm.chatStream("hello", listener);
+        StreamResponseListener<AiMessageResponse, AiMessage> upstream = stub.lastStream();
+        upstream.onMessage(new ChatContext(stub, null), response("a"));
+        Assert.assertEquals(Arrays.asList("a", "stop"), listener.events);
+        Assert.assertEquals(0, stub.upstreamStops.get());
+
+        // 上游开始之后立即停止
+        upstream.onStart(stub.upstreamContext);
+        Assert.assertEquals(1, stub.upstreamStops.get());
+    }
+
+    @Test
+    public void testCallbacksRunOutsideLock() throws Exception {
+        StubLlm stub = new StubLlm();
+        CoalescingLlm llm = new CoalescingLlm(stub);
+
+        RecordingListener joined = new RecordingListener();
+        CountDownLatch subscribed = new CountDownLatch(1);
+        RecordingListener first = new RecordingListener() {
+            @Override
+            public void onMessage(ChatContext context, AiMessageResponse response) {
+                super.onMessage(context, response);
+                // 在回调中由其他线程订阅同一个流，回调持有锁时会死锁
+                Thread thread = new Thread(() -> {
+                    llm.chatStream("hello", joined);
+                    subscribed.countDown();
+                });
+                thread.start();
+                try {
+                    subscribed.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        llm.chatStream("hello", first);
+        StreamResponseListener<AiMessageResponse, AiMessage> upstream = stub.lastStream();
+        upstream.onStart(stub.upstreamContext);
+        upstream.onMessage(stub.upstreamContext, response("a"));
+
+        Assert.assertEquals(0, subscribed.getCount());
+        upstream.onStop(stub.upstreamContext);
+        Assert.assertEquals(1, stub.calls.get());
+        Assert.assertEquals(Arrays.asList("start", "a", "stop"), joined.events);
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.agent.Agent;
+import com.agentsflex.agent.Output;
+import com.agentsflex.agent.Parameter;
+import com.agentsflex.chain.Chain;
+import com.agentsflex.chain.ChainStatus;
+import com.agentsflex.chain.DagChain;
+import com.agentsflex.chain.node.AgentNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class DagChainTest {
+
+    private static class FuncAgent extends Agent {
+        private final String[] inputs;
+        private final Function<Map<String, Object>, Object> function;
+
+        FuncAgent(String id, String output, Function<Map<String, Object>, Object> function, String... inputs) {
+            super(id);
+            this.inputs = inputs;
+            this.function = function;
+            output(output);
+        }
+
+        @Override
+        protected List<Parameter> defineInputParameter() {
+            List<Parameter> parameters = new ArrayList<>();
+            for (String input : inputs) {
+                parameters.add(new Parameter(input, true));
+            }
+            return parameters;
+        }
+
+        @Override
+        public Output execute(Map<String, Object> variables, Chain chain) {
+            return Output.of(getOutputKeys().get(0), function.apply(variables));
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void testFanOutRunsInParallel() {
+        // b 和 c 互相等待，只有并行执行才能完成
+        CountDownLatch barrier = new CountDownLatch(2);
+        Function<Map<String, Object>, Object> await = variables -> {
+            barrier.countDown();
+            try {
+                Assert.assertTrue(barrier.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return variables.get("x") + "!";
+        };
+
+        DagChain chain = new DagChain();
+        // 故意打乱添加顺序，依赖由输入输出推导
+        chain.addNode(new FuncAgent("d", "r", v -> v.get("y") + "+" + v.get("z"), "y", "z"));
+        chain.addNode(new FuncAgent("b", "y", await, "x"));
+        chain.addNode(new FuncAgent("c", "z", await, "x"));
+        chain.addNode(new FuncAgent("a", "x", v -> "hello", "input"));
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("input", "in");
+        chain.execute(variables);
+
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, chain.getStatus());
+        Assert.assertEquals("hello!+hello!", chain.getMemory().get("r"));
+    }
+
+    @Test
+    public void testOutputMapping() {
+        AgentNode b = new AgentNode(new FuncAgent("b", "out", v -> v.get("renamed") + "-b", "renamed"));
+        AgentNode a = new AgentNode(new FuncAgent("a", "out", v -> "a"));
+        Map<String, String> mapping = new HashMap<>();
+        mapping.put("out", "renamed");
+        a.setOutputMapping(mapping);
+
+        DagChain chain = new DagChain(b, a);
+        Assert.assertTrue(chain.getDependencies(b).contains(a));
+
+        chain.execute(new HashMap<>());
+        Assert.assertEquals("a-b", chain.getMemory().get("out"));
+    }
+
+    @Test
+    public void testCycle() {
+        AgentNode a = new AgentNode(new FuncAgent("a", "x", v -> "x", "y"));
+        AgentNode b = new AgentNode(new FuncAgent("b", "y", v -> "y", "x"));
+        DagChain chain = new DagChain(a, b);
+        try {
+            chain.validate();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("cycle"));
+        }
+
+        chain.execute(new HashMap<>());
+        Assert.assertEquals(ChainStatus.FINISHED_ABNORMAL, chain.getStatus());
+    }
+
+    @Test
+    public void testMaxConcurrency() {
+        AtomicInteger current = new AtomicInteger();
+        AtomicInteger max = new AtomicInteger();
+        Function<Map<String, Object>, Object> function = v -> {
+            max.accumulateAndGet(current.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            current.decrementAndGet();
+            return "ok";
+        };
+
+        DagChain chain = new DagChain(new FuncAgent("a", "a", function)
+            , new FuncAgent("b", "b", function)
+            , new FuncAgent("c", "c", function)
+            , new FuncAgent("d", "d", function));
+        chain.setMaxConcurrency(2);
+        chain.execute(new HashMap<>());
+
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, chain.getStatus());
+        Assert.assertEquals(2, max.get());
+        Assert.assertEquals("ok", chain.getMemory().get("d"));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.llm.LlmConfig;
+import com.agentsflex.llm.client.LlmClient;
+import com.agentsflex.llm.client.LlmClientListener;
+import com.agentsflex.llm.client.impl.DirectSseClient;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DirectSseClientTest {
+
+    @Test
+    public void testReadEvents() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/sse", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                String[] chunks = {
+                    ": comment\n",
+                    "event: message\r\ndata: {\"a\":",
+                    "\"你好\"}\r\n\r\n",
+                    "data:line1\ndata: line2\n\n",
+                    "id: 3\ndata: [DONE]\n\n",
+                    "data: last"
+                };
+                for (String chunk : chunks) {
+                    out.write(chunk.getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            }
+        });
+        server.start();
+
+        List<String> messages = new CopyOnWriteArrayList<>();
+        CountDownLatch stopped = new CountDownLatch(1);
+        try {
+            new DirectSseClient().start("http://127.0.0.1:" + server.getAddress().getPort() + "/sse", null, "{}", new LlmClientListener() {
+                @Override
+                public void onStart(LlmClient client) {
+                }
+
+                @Override
+                public void onMessage(LlmClient client, String response) {
+                    messages.add(response);
+                }
+
+                @Override
+                public void onStop(LlmClient client) {
+                    stopped.countDown();
+                }
+
+                @Override
+                public void onFailure(LlmClient client, Throwable throwable) {
+                    throwable.printStackTrace();
+                    stopped.countDown();
+                }
+            }, new LlmConfig());
+
+            Assert.assertTrue(stopped.await(10, TimeUnit.SECONDS));
+        } finally {
+            server.stop(0);
+        }
+
+        Assert.assertEquals(3, messages.size());
+        Assert.assertEquals("{\"a\":\"你好\"}", messages.get(0));
+        Assert.assertEquals("line1\nline2", messages.get(1));
+        Assert.assertEquals("last", messages.get(2));
+    }
+
+    @Test
+    public void testIsBlankOrDone() {
+        byte[] done = " [DONE]\n".getBytes(StandardCharsets.UTF_8);
+        Assert.assertTrue(DirectSseClient.isBlankOrDone(done, 0, done.length));
+        Assert.assertTrue(DirectSseClient.isBlankOrDone(done, 0, 1));
+        Assert.assertFalse(DirectSseClient.isBlankOrDone(done, 0, 5));
+    }
+}
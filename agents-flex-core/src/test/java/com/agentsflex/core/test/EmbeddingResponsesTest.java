@@ -0,0 +1,48 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.llm.embedding.EmbeddingResponses;
+import com.agentsflex.store.VectorData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class EmbeddingResponsesTest {
+
+    @Test
+    public void testParseByIndex() {
+        String response = "{\"data\":[{\"index\":1,\"embedding\":[0.2,0.3]},{\"index\":0,\"embedding\":[0.1]},{\"index\":5,\"embedding\":[1.0]}]}";
+        List<VectorData> list = EmbeddingResponses.parse(response, "$.data", "index", 3);
+
+        Assert.assertEquals(3, list.size());
+        Assert.assertArrayEquals(new double[]{0.1}, list.get(0).getVector(), 0);
+        Assert.assertArrayEquals(new double[]{0.2, 0.3}, list.get(1).getVector(), 0);
+        Assert.assertNull(list.get(2));
+    }
+
+    @Test
+    public void testParseNestedPath() {
+        String response = "{\"output\":{\"embeddings\":[{\"text_index\":0,\"embedding\":[0.5]}]}}";
+        List<VectorData> list = EmbeddingResponses.parse(response, "$.output.embeddings", "text_index", 1);
+        Assert.assertArrayEquals(new double[]{0.5}, list.get(0).getVector(), 0);
+
+        Assert.assertNull(EmbeddingResponses.parse("{\"code\":\"error\"}", "$.output.embeddings", "text_index", 1).get(0));
+        Assert.assertNull(EmbeddingResponses.parse(null, "$.data", "index", 1).get(0));
+    }
+
+}
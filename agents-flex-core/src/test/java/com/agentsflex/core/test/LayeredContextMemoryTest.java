@@ -0,0 +1,142 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.chain.SequentialChain;
+import com.agentsflex.memory.ContextMemory;
+import com.agentsflex.memory.DefaultContextMemory;
+import com.agentsflex.memory.LayeredContextMemory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+public class LayeredContextMemoryTest {
+
+    @Test
+    public void testLayer() {
+        ContextMemory parent = new DefaultContextMemory();
+        parent.put("a", "1");
+        parent.put("b", "2");
+
+        LayeredContextMemory memory = new LayeredContextMemory(parent);
+        Assert.assertFalse(memory.isModified());
+        Assert.assertEquals("1", memory.get("a"));
+
+        memory.put("a", "10");
+        memory.remove("b");
+        memory.put("c", "3");
+
+        Assert.assertEquals("10", memory.get("a"));
+        Assert.assertNull(memory.get("b"));
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("a", "10");
+        expected.put("c", "3");
+        Assert.assertEquals(expected, memory.getAll());
+
+        // 上层不受影响
+        Assert.assertEquals("1", parent.get("a"));
+        Assert.assertEquals("2", parent.get("b"));
+
+        memory.mergeInto(parent);
+        Assert.assertEquals(expected, new HashMap<>(parent.getAll()));
+    }
+
+    @Test
+    public void testGetAllView() {
+        ContextMemory parent = new DefaultContextMemory();
+        parent.put("a", "1");
+
+        LayeredContextMemory memory = new LayeredContextMemory(parent);
+        Map<String, Object> view = memory.getAll();
+        view.put("b", "2");
+        view.remove("a");
+
+        Assert.assertNull(view.get("a"));
+        Assert.assertEquals(1, view.size());
+        Assert.assertEquals("1", parent.get("a"));
+        Assert.assertNull(parent.get("b"));
+    }
+
+    @Test
+    public void testViewSizeAndIteration() {
+        ContextMemory parent = new DefaultContextMemory();
+        parent.put("a", "1");
+        parent.put("b", "2");
+        parent.put("c", "3");
+
+        LayeredContextMemory memory = new LayeredContextMemory(parent);
+        Map<String, Object> view = memory.getAll();
+        memory.put("a", "10");
+        memory.remove("b");
+        memory.put("d", "4");
+
+        Assert.assertEquals(3, view.size());
+        Assert.assertFalse(view.isEmpty());
+        Map<String, Object> iterated = new HashMap<>();
+        for (Map.Entry<String, Object> entry : view.entrySet()) {
+            Assert.assertNull(iterated.put(entry.getKey(), entry.getValue()));
+        }
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("a", "10");
+        expected.put("c", "3");
+        expected.put("d", "4");
+        Assert.assertEquals(expected, iterated);
+
+        // 视图不是快照，上层的修改可见
+        parent.put("e", "5");
+        Assert.assertEquals(4, view.size());
+        Assert.assertEquals("5", view.get("e"));
+
+        // 通过迭代器删除和修改只影响当前层
+        Iterator<Map.Entry<String, Object>> iterator = view.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Object> entry = iterator.next();
+            if ("c".equals(entry.getKey())) {
+                iterator.remove();
+            } else if ("e".equals(entry.getKey())) {
+                entry.setValue("50");
+            }
+        }
+        Assert.assertNull(view.get("c"));
+        Assert.assertEquals("50", memory.get("e"));
+        Assert.assertEquals("3", parent.get("c"));
+        Assert.assertEquals("5", parent.get("e"));
+        Assert.assertEquals(3, view.size());
+
+        memory.clear();
+        Assert.assertTrue(view.isEmpty());
+        Assert.assertEquals(0, view.size());
+        Assert.assertFalse(view.entrySet().iterator().hasNext());
+    }
+
+    @Test
+    public void testGetGlobal() {
+        SequentialChain root = new SequentialChain();
+        SequentialChain child = new SequentialChain();
+        child.setParent(root);
+        root.getMemory().put("a", "root");
+        root.getMemory().put("b", "root");
+        child.getMemory().put("b", "child");
+
+        Assert.assertEquals("root", child.getGlobal("a"));
+        Assert.assertEquals("child", child.getGlobal("b"));
+        Assert.assertNull(child.getGlobal("c"));
+        Assert.assertEquals(2, child.getGlobalMemory().getAll().size());
+    }
+}
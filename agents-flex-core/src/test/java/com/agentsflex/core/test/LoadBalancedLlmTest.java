@@ -0,0 +1,274 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.document.Document;
+import com.agentsflex.llm.ChatContext;
+import com.agentsflex.llm.ChatOptions;
+import com.agentsflex.llm.Llm;
+import com.agentsflex.llm.MessageResponse;
+import com.agentsflex.llm.StreamResponseListener;
+import com.agentsflex.llm.balance.LoadBalanceStrategy;
+import com.agentsflex.llm.balance.LoadBalancedLlm;
+import com.agentsflex.llm.balance.LoadBalancedMember;
+import com.agentsflex.llm.client.HttpStatusException;
+import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.llm.response.AiMessageResponse;
+import com.agentsflex.message.AiMessage;
+import com.agentsflex.prompt.Prompt;
+import com.agentsflex.prompt.TextPrompt;
+import com.agentsflex.store.VectorData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LoadBalancedLlmTest {
+
+    private static class FakeLlm implements Llm {
+        final String name;
+        final AtomicInteger calls = new AtomicInteger();
+        volatile boolean fail;
+        // 失败时的 http 状态码
+        volatile int failStatus = 503;
+        // 不为 null 时返回该类型的错误响应
+        volatile String errorType;
+        // 流式请求开始后不结束，由测试调用
+        final List<StreamResponseListener<?, ?>> streams = new ArrayList<>();
+
+        FakeLlm(String name) {
+            this.name = name;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R extends MessageResponse<M>, M extends AiMessage> R chat(Prompt<M> prompt, ChatOptions options) {
+            calls.incrementAndGet();
+            if (fail) {
+                throw new UncheckedIOException(failure());
+            }
+            if (errorType != null) {
+                AiMessageResponse response = new AiMessageResponse(null);
+                response.setError(true);
+                response.setErrorType(errorType);
+                return (R) response;
+            }
+            AiMessage message = new AiMessage();
+            message.setContent(name);
+            return (R) new AiMessageResponse(message);
+        }
+
+        @Override
+        public <R extends MessageResponse<M>, M extends AiMessage> void chatStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options) {
+            calls.incrementAndGet();
+            ChatContext context = new ChatContext(this, null);
+            listener.onStart(context);
+            if (fail) {
+                listener.onFailure(context, failure());
+                return;
+            }
+            streams.add(listener);
+        }
+
+        @Override
+        public VectorData embed(Document document, EmbeddingOptions options) {
+            return null;
+        }
+
+        HttpStatusException failure() {
+            return new HttpStatusException(failStatus, name + " failed");
+        }
+    }
+
+    private static String chat(Llm llm) {
+        return llm.chat("hello");
+    }
+
+    @Test
+    public void testFailover() {
+        FakeLlm first = new FakeLlm("first");
+        FakeLlm second = new FakeLlm("second");
+        first.fail = true;
+        LoadBalancedLlm llm = new LoadBalancedLlm(first, second);
+
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("second", chat(llm));
+        }
+        Assert.assertEquals(0, llm.getMembers().get(0).getOutstanding());
+        Assert.assertEquals(0, llm.getMembers().get(1).getOutstanding());
+    }
+
+    @Test
+    public void testEjectionAndSingleProbe() throws Exception {
+        FakeLlm first = new FakeLlm("first");
+        FakeLlm second = new FakeLlm("second");
+        first.fail = true;
+        LoadBalancedLlm llm = new LoadBalancedLlm(first, second);
+        llm.setFailureThreshold(2);
+        llm.setOpenDurationMillis(100);
+
+        // 连续失败两次后熔断，之后不会再被选中
+        while (llm.getMembers().get(0).getConsecutiveFailures() < 2) {
+            chat(llm);
+        }
+        int calls = first.calls.get();
+        for (int i = 0; i < 10; i++) {
+            chat(llm);
+        }
+        Assert.assertEquals(calls, first.calls.get());
+        LoadBalancedMember member = llm.getMembers().get(0);
+        Assert.assertFalse(member.isAvailable(System.currentTimeMillis()));
+
+        // 熔断时间过后只允许一个探测请求（流式请求保持执行中），其他请求仍然发送到 second
+        Thread.sleep(150);
+        first.fail = false;
+        StreamResponseListener<AiMessageResponse, AiMessage> listener = (context, response) -> {
+        };
+        while (first.streams.isEmpty()) {
+            llm.chatStream(new TextPrompt("hello"), listener, ChatOptions.DEFAULT);
+        }
+        calls = first.calls.get();
+        for (int i = 0; i < 10; i++) {
+            chat(llm);
+        }
+        Assert.assertEquals(calls, first.calls.get());
+
+        // 探测成功后恢复
+        finishStream(first);
+        Assert.assertTrue(member.isAvailable(System.currentTimeMillis()));
+        Assert.assertEquals(0, member.getConsecutiveFailures());
+    }
+
+    @Test
+    public void testClientErrorsDoNotEject() {
+        FakeLlm first = new FakeLlm("first");
+        FakeLlm second = new FakeLlm("second");
+        first.fail = true;
+        first.failStatus = 400;
+        LoadBalancedLlm llm = new LoadBalancedLlm(first, second);
+        llm.setFailureThreshold(2);
+        LoadBalancedMember member = llm.getMembers().get(0);
+
+        // 请求本身的错误仍然切换节点，但不计入连续失败次数
+        while (first.calls.get() < 5) {
+            Assert.assertEquals("second", chat(llm));
+        }
+        StreamResponseListener<AiMessageResponse, AiMessage> listener = (context, response) -> {
+        };
+        first.failStatus = 401;
+        while (first.calls.get() < 10) {
+            llm.chatStream(new TextPrompt("hello"), listener, ChatOptions.DEFAULT);
+        }
+        first.fail = false;
+        first.errorType = "invalid_request_error";
+        while (first.calls.get() < 15) {
+            Assert.assertEquals("second", chat(llm));
+        }
+        Assert.assertEquals(0, member.getConsecutiveFailures());
+        Assert.assertTrue(member.isAvailable(System.currentTimeMillis()));
+        Assert.assertEquals(0, member.getOutstanding());
+
+        // 暂时性的失败计入连续失败次数
+        first.errorType = "server_error";
+        while (first.calls.get() < 16) {
+            chat(llm);
+        }
+        first.errorType = null;
+        first.fail = true;
+        first.failStatus = 429;
+        while (first.calls.get() < 17) {
+            chat(llm);
+        }
+        Assert.assertEquals(2, member.getConsecutiveFailures());
+        Assert.assertFalse(member.isAvailable(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void testLeastOutstandingCountsStreamsInFlight() {
+        FakeLlm first = new FakeLlm("first");
+        FakeLlm second = new FakeLlm("second");
+        LoadBalancedLlm llm = new LoadBalancedLlm(LoadBalanceStrategy.LEAST_OUTSTANDING, first, second);
+        StreamResponseListener<AiMessageResponse, AiMessage> listener = (context, response) -> {
+        };
+
+        llm.chatStream(new TextPrompt("hello"), listener, ChatOptions.DEFAULT);
+        FakeLlm busy = first.streams.isEmpty() ? second : first;
+        FakeLlm idle = busy == first ? second : first;
+        // 收到首条消息后流式请求仍在执行，下一个请求发送到另外一个节点
+        sendMessage(busy);
+        llm.chatStream(new TextPrompt("hello"), listener, ChatOptions.DEFAULT);
+        Assert.assertEquals(1, idle.streams.size());
+
+        finishStream(busy);
+        finishStream(idle);
+        for (LoadBalancedMember member : llm.getMembers()) {
+            Assert.assertEquals(0, member.getOutstanding());
+        }
+    }
+
+    @Test
+    public void testStreamFailsOnAllMembers() {
+        FakeLlm first = new FakeLlm("first");
+        FakeLlm second = new FakeLlm("second");
+        first.fail = true;
+        second.fail = true;
+        LoadBalancedLlm llm = new LoadBalancedLlm(first, second);
+
+        List<String> events = new ArrayList<>();
+        llm.chatStream(new TextPrompt("hello"), new StreamResponseListener<AiMessageResponse, AiMessage>() {
+            @Override
+            public void onStart(ChatContext context) {
+                events.add("start");
+            }
+
+            @Override
+            public void onMessage(ChatContext context, AiMessageResponse response) {
+                events.add("message");
+            }
+
+            @Override
+            public void onStop(ChatContext context) {
+                Assert.assertNotNull(context.getClient());
+                context.getClient().stop();
+                events.add("stop");
+            }
+
+            @Override
+            public void onFailure(ChatContext context, Throwable throwable) {
+                events.add("failure");
+            }
+        }, ChatOptions.DEFAULT);
+
+        Assert.assertEquals(Arrays.asList("start", "failure", "stop"), events);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void sendMessage(FakeLlm llm) {
+        AiMessage message = new AiMessage();
+        message.setContent(llm.name);
+        StreamResponseListener<AiMessageResponse, AiMessage> listener = (StreamResponseListener<AiMessageResponse, AiMessage>) llm.streams.get(0);
+        listener.onMessage(new ChatContext(llm, null), new AiMessageResponse(message));
+    }
+
+    private static void finishStream(FakeLlm llm) {
+        sendMessage(llm);
+        llm.streams.remove(0).onStop(new ChatContext(llm, null));
+    }
+}
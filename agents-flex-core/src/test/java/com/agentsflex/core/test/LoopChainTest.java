@@ -0,0 +1,172 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.chain.Chain;
+import com.agentsflex.chain.ChainStatus;
+import com.agentsflex.chain.LoopChain;
+import com.agentsflex.chain.node.AbstractBaseNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LoopChainTest {
+
+    private static class CountNode extends AbstractBaseNode {
+        final AtomicInteger count = new AtomicInteger();
+        final int failures;
+
+        CountNode(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public Map<String, Object> execute(Chain chain) {
+            if (count.incrementAndGet() <= failures) {
+                throw new IllegalStateException("failure " + count.get());
+            }
+            return null;
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void testMaxIterations() throws Exception {
+        CountNode first = new CountNode(0);
+        CountNode second = new CountNode(0);
+        LoopChain chain = new LoopChain(first, second);
+        chain.setMaxIterations(3);
+
+        chain.execute(new HashMap<>());
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, chain.getStatus());
+        Assert.assertEquals(3, first.count.get());
+        Assert.assertEquals(3, second.count.get());
+
+        chain.setIntervalMillis(5);
+        chain.schedule(new HashMap<>()).get();
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, chain.getStatus());
+        Assert.assertEquals(6, first.count.get());
+        Assert.assertEquals(3, chain.getIterations());
+    }
+
+    @Test(timeout = 10_000)
+    public void testCancelWhileWaiting() throws Exception {
+        CountNode node = new CountNode(0);
+        LoopChain chain = new LoopChain(node);
+        chain.setIntervalMillis(60_000);
+
+        CompletableFuture<Map<String, Object>> future = chain.schedule(new HashMap<>());
+        while (node.count.get() == 0) {
+            Thread.sleep(5);
+        }
+        chain.cancel();
+        future.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, chain.getStatus());
+        Assert.assertEquals(1, node.count.get());
+
+        // 同步执行时，cancel 也会唤醒等待中的线程
+        LoopChain blocking = new LoopChain(new CountNode(0));
+        blocking.setIntervalMillis(60_000);
+        Thread thread = new Thread(() -> blocking.execute(new HashMap<>()));
+        thread.start();
+        while (blocking.getIterations() == 0) {
+            Thread.sleep(5);
+        }
+        blocking.cancel();
+        thread.join(5_000);
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, blocking.getStatus());
+    }
+
+    @Test(timeout = 10_000)
+    public void testErrorBackoff() throws Exception {
+        CountNode node = new CountNode(2);
+        LoopChain chain = new LoopChain(node);
+        chain.setMaxIterations(2);
+        chain.setErrorBackoffMillis(10);
+
+        long start = System.nanoTime();
+        chain.schedule(new HashMap<>()).get();
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, chain.getStatus());
+        // 两次失败分别等待 10ms 和 20ms
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+        Assert.assertEquals(4, node.count.get());
+
+        CountNode failing = new CountNode(Integer.MAX_VALUE);
+        LoopChain exhausted = new LoopChain(failing);
+        exhausted.setErrorBackoffMillis(1);
+        exhausted.setMaxErrorRetries(2);
+        exhausted.execute(new HashMap<>());
+        Assert.assertEquals(ChainStatus.FINISHED_ABNORMAL, exhausted.getStatus());
+        Assert.assertEquals(3, failing.count.get());
+    }
+
+    @Test(timeout = 30_000)
+    public void testManyLoopsShareFewThreads() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        try {
+            List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>();
+            List<CountNode> nodes = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                CountNode node = new CountNode(0) {
+                    @Override
+                    public CompletableFuture<Map<String, Object>> executeAsync(Chain chain) {
+                        // 非阻塞节点，直接在调用线程完成
+                        return CompletableFuture.completedFuture(execute(chain));
+                    }
+                };
+                LoopChain chain = new LoopChain(node);
+                chain.setScheduler(scheduler);
+                chain.setIntervalMillis(20);
+                chain.setMaxIterations(5);
+                nodes.add(node);
+                futures.add(chain.schedule(new HashMap<>()));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+            for (CountNode node : nodes) {
+                Assert.assertEquals(5, node.count.get());
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void testManyAsyncIterations() throws Exception {
+        // 节点默认在 blockingExecutor 中异步执行，每一轮都在回调中继续
+        CountNode node = new CountNode(0);
+        LoopChain chain = new LoopChain(node);
+        chain.setMaxIterations(20_000);
+        chain.executeAsync(new HashMap<>()).get(30, TimeUnit.SECONDS);
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, chain.getStatus());
+        Assert.assertEquals(20_000, node.count.get());
+
+        // 每一轮之间在 scheduler 中等待
+        chain.setMaxIterations(2_000);
+        chain.setIntervalMillis(1);
+        chain.executeAsync(new HashMap<>()).get(30, TimeUnit.SECONDS);
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, chain.getStatus());
+        Assert.assertEquals(2_000, chain.getIterations());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.message.AiMessage;
+import com.agentsflex.message.FunctionMessage;
+import com.agentsflex.message.MessageStatus;
+import com.agentsflex.parser.impl.DefaultAiMessageParser;
+import com.agentsflex.parser.impl.DefaultFunctionMessageParser;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageParserTest {
+
+    private static DefaultAiMessageParser openAiParser() {
+        DefaultAiMessageParser parser = new DefaultAiMessageParser();
+        parser.setContentPath("$.choices[0].delta.content");
+        parser.setIndexPath("$.choices[0].index");
+        parser.setStatusPath("$.choices[0].finish_reason");
+        parser.setTotalTokensPath("$.usage.total_tokens");
+        parser.setStatusParser(content -> "stop".equals(content) ? MessageStatus.END : MessageStatus.MIDDLE);
+        return parser;
+    }
+
+    @Test
+    public void testOpenAiChunk() {
+        String json = "{\"id\":\"1\",\"object\":\"chat.completion.chunk\",\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\",\"content\":\"你好\\n\"},"
+            + "\"logprobs\":null,\"finish_reason\":\"stop\"}],\"usage\":{\"prompt_tokens\":3,\"total_tokens\":12}}";
+
+        DefaultAiMessageParser parser = openAiParser();
+        AiMessage fast = parser.parseJson(json);
+        AiMessage slow = parser.parse(JSON.parseObject(json));
+
+        Assert.assertEquals("你好\n", fast.getContent());
+        Assert.assertEquals(Integer.valueOf(0), fast.getIndex());
+        Assert.assertEquals(Integer.valueOf(12), fast.getTotalTokens());
+        Assert.assertEquals(MessageStatus.END, fast.getStatus());
+
+        Assert.assertEquals(slow.getContent(), fast.getContent());
+        Assert.assertEquals(slow.getIndex(), fast.getIndex());
+        Assert.assertEquals(slow.getTotalTokens(), fast.getTotalTokens());
+        Assert.assertEquals(slow.getStatus(), fast.getStatus());
+    }
+
+    @Test
+    public void testMissingFields() {
+        String json = "{\"choices\":[{\"index\":1,\"delta\":null,\"finish_reason\":null}],\"usage\":null}";
+        AiMessage message = openAiParser().parseJson(json);
+        Assert.assertNull(message.getContent());
+        Assert.assertEquals(Integer.valueOf(1), message.getIndex());
+        Assert.assertNull(message.getTotalTokens());
+        Assert.assertEquals(MessageStatus.MIDDLE, message.getStatus());
+    }
+
+    @Test
+    public void testSparkChunk() {
+        DefaultAiMessageParser parser = new DefaultAiMessageParser();
+        parser.setContentPath("$.payload.choices.text[0].content");
+        parser.setIndexPath("$.payload.choices.text[0].index");
+        parser.setStatusPath("$.payload.choices.status");
+        parser.setStatusParser(content -> Integer.valueOf(2).equals(content) ? MessageStatus.END : MessageStatus.MIDDLE);
+
+        String json = "{\"header\":{\"code\":0,\"status\":2},\"payload\":{\"choices\":{\"status\":2,\"seq\":0,"
+            + "\"text\":[{\"content\":\"ok\",\"role\":\"assistant\",\"index\":0}]},\"usage\":{\"text\":{\"total_tokens\":5}}}}";
+        AiMessage message = parser.parseJson(json);
+        Assert.assertEquals("ok", message.getContent());
+        Assert.assertEquals(Integer.valueOf(0), message.getIndex());
+        Assert.assertEquals(MessageStatus.END, message.getStatus());
+    }
+
+    @Test
+    public void testComplexPathFallback() {
+        DefaultAiMessageParser parser = new DefaultAiMessageParser();
+        parser.setContentPath("$['choices'][0]['delta']['content']");
+        Assert.assertEquals("a", parser.parseJson("{\"choices\":[{\"delta\":{\"content\":\"a\"}}]}").getContent());
+
+        DefaultAiMessageParser overridden = new DefaultAiMessageParser() {
+            @Override
+            public AiMessage parse(JSONObject rootJson) {
+                AiMessage aiMessage = super.parse(rootJson);
+                aiMessage.setContent("overridden");
+                return aiMessage;
+            }
+        };
+        overridden.setContentPath("$.choices[0].delta.content");
+        Assert.assertEquals("overridden", overridden.parseJson("{\"choices\":[{\"delta\":{\"content\":\"a\"}}]}").getContent());
+    }
+
+    @Test
+    public void testFunctionMessage() {
+        DefaultFunctionMessageParser parser = new DefaultFunctionMessageParser();
+        parser.setFunctionNamePath("$.choices[0].message.tool_calls[0].function.name");
+        parser.setFunctionArgsPath("$.choices[0].message.tool_calls[0].function.arguments");
+        parser.setFunctionArgsParser(JSON::parseObject);
+
+        String json = "{\"choices\":[{\"message\":{\"tool_calls\":[{\"id\":\"x\",\"function\":{\"name\":\"getWeather\",\"arguments\":\"{\\\"city\\\":\\\"北京\\\"}\"}}]}}]}";
+        FunctionMessage message = parser.parseJson(json);
+        Assert.assertEquals("getWeather", message.getFunctionName());
+        Assert.assertEquals("北京", message.getArgs().get("city"));
+    }
+}
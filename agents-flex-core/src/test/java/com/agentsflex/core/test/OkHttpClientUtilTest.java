@@ -0,0 +1,88 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.llm.LlmConfig;
+import com.agentsflex.llm.client.OkHttpClientUtil;
+import okhttp3.OkHttpClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OkHttpClientUtilTest {
+
+    private static LlmConfig config(int maxRequests) {
+        LlmConfig config = new LlmConfig();
+        // 使用不常见的值，避免与其他测试共享 client
+        config.setMaxRequests(maxRequests);
+        return config;
+    }
+
+    @Test
+    public void testDefaultTimeouts() {
+        OkHttpClient client = OkHttpClientUtil.getOkHttpClient();
+        Assert.assertEquals(180_000, client.connectTimeoutMillis());
+        Assert.assertEquals(180_000, client.readTimeoutMillis());
+        Assert.assertSame(client, OkHttpClientUtil.getOkHttpClient(null));
+    }
+
+    @Test
+    public void testSameTransportSharesClient() {
+        LlmConfig config1 = config(1001);
+        LlmConfig config2 = config(1001);
+        // 与 transport 无关的配置不影响共享
+        config2.setApiKey("another-key");
+        config2.setEndpoint("https://example.com");
+
+        OkHttpClient client = OkHttpClientUtil.getOkHttpClient(config1);
+        Assert.assertSame(client, OkHttpClientUtil.getOkHttpClient(config1));
+        Assert.assertSame(client, OkHttpClientUtil.getOkHttpClient(config2));
+        Assert.assertEquals(1001, client.dispatcher().getMaxRequests());
+    }
+
+    @Test
+    public void testDifferentTransportUsesOwnClient() {
+        LlmConfig base = config(1002);
+        OkHttpClient client = OkHttpClientUtil.getOkHttpClient(base);
+
+        LlmConfig connectTimeout = config(1002);
+        connectTimeout.setConnectTimeoutMillis(5_000);
+        OkHttpClient other = OkHttpClientUtil.getOkHttpClient(connectTimeout);
+        Assert.assertNotSame(client, other);
+        Assert.assertEquals(5_000, other.connectTimeoutMillis());
+
+        LlmConfig readTimeout = config(1002);
+        readTimeout.setReadTimeoutMillis(5_000);
+        Assert.assertNotSame(client, OkHttpClientUtil.getOkHttpClient(readTimeout));
+
+        LlmConfig perHost = config(1002);
+        perHost.setMaxRequestsPerHost(7);
+        Assert.assertNotSame(client, OkHttpClientUtil.getOkHttpClient(perHost));
+        Assert.assertNotSame(client, OkHttpClientUtil.getOkHttpClient(config(1003)));
+    }
+
+    @Test
+    public void testWebSocketClientSharesPool() {
+        LlmConfig config = config(1004);
+        OkHttpClient client = OkHttpClientUtil.getOkHttpClient(config);
+        OkHttpClient webSocket = OkHttpClientUtil.getWebSocketClient(config);
+
+        Assert.assertNotSame(client, webSocket);
+        Assert.assertSame(webSocket, OkHttpClientUtil.getWebSocketClient(config(1004)));
+        Assert.assertEquals(0, webSocket.readTimeoutMillis());
+        Assert.assertSame(client.connectionPool(), webSocket.connectionPool());
+        Assert.assertSame(client.dispatcher(), webSocket.dispatcher());
+    }
+}
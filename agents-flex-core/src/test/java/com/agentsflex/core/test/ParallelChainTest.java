@@ -0,0 +1,168 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.chain.Chain;
+import com.agentsflex.chain.ChainStatus;
+import com.agentsflex.chain.ParallelChain;
+import com.agentsflex.chain.node.AbstractBaseNode;
+import com.agentsflex.util.Maps;
+import com.agentsflex.util.NamedThreadPools;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+public class ParallelChainTest {
+
+    private static class FuncNode extends AbstractBaseNode {
+        private final Function<Chain, Map<String, Object>> function;
+
+        FuncNode(Function<Chain, Map<String, Object>> function) {
+            this.function = function;
+        }
+
+        @Override
+        public Map<String, Object> execute(Chain chain) {
+            return function.apply(chain);
+        }
+    }
+
+    private static FuncNode sleepNode(String key, long millis) {
+        return new FuncNode(chain -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return Maps.of(key, (Object) key).build();
+        });
+    }
+
+    @Test(timeout = 10_000)
+    public void testNestedChainsOnSingleThreadPool() {
+        ForkJoinPool pool = NamedThreadPools.newForkJoinPool(1, "test-parallel");
+        try {
+            ParallelChain inner1 = new ParallelChain(sleepNode("a", 50), sleepNode("b", 50));
+            ParallelChain inner2 = new ParallelChain(sleepNode("c", 50), sleepNode("d", 50));
+            inner1.setThreadPool(pool);
+            inner2.setThreadPool(pool);
+
+            ParallelChain chain = new ParallelChain(inner1, inner2);
+            chain.setThreadPool(pool);
+            chain.execute(new HashMap<>());
+
+            Assert.assertEquals(ChainStatus.FINISHED_NORMAL, chain.getStatus());
+            for (String key : new String[]{"a", "b", "c", "d"}) {
+                Assert.assertEquals(key, chain.getMemory().get(key));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void testFailureCancelsSiblings() {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        FuncNode slowNode = new FuncNode(chain -> {
+            try {
+                Thread.sleep(5_000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            return null;
+        });
+        FuncNode failNode = new FuncNode(chain -> {
+            throw new IllegalStateException("fail");
+        });
+
+        long start = System.currentTimeMillis();
+        ParallelChain chain = new ParallelChain(slowNode, failNode);
+        chain.execute(new HashMap<>());
+
+        Assert.assertTrue(System.currentTimeMillis() - start < 4_000);
+        Assert.assertEquals(ChainStatus.FINISHED_ABNORMAL, chain.getStatus());
+
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (!interrupted.get() && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        Assert.assertTrue(interrupted.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void testAsyncFailureCancelsSiblings() throws Exception {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        AtomicBoolean finished = new AtomicBoolean();
+        FuncNode slowNode = new FuncNode(chain -> {
+            try {
+                Thread.sleep(5_000);
+                finished.set(true);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            return null;
+        });
+        FuncNode failNode = new FuncNode(chain -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            throw new IllegalStateException("fail");
+        });
+
+        long start = System.currentTimeMillis();
+        ParallelChain chain = new ParallelChain(slowNode, failNode);
+        chain.executeAsync(new HashMap<>()).get();
+
+        Assert.assertTrue(System.currentTimeMillis() - start < 4_000);
+        Assert.assertEquals(ChainStatus.FINISHED_ABNORMAL, chain.getStatus());
+
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (!interrupted.get() && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        Assert.assertTrue(interrupted.get());
+        Assert.assertFalse(finished.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void testMergeInDeclarationOrder() {
+        // 第一个节点最后完成，合并结果仍然按照节点的定义顺序
+        FuncNode slow = new FuncNode(chain -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return Maps.of("value", (Object) "first").put("seen", chain.get("value")).build();
+        });
+        FuncNode fast = new FuncNode(chain -> Maps.of("value", (Object) "second").build());
+
+        ParallelChain chain = new ParallelChain(slow, fast);
+        chain.execute(Maps.of("value", "initial").build());
+
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, chain.getStatus());
+        Assert.assertEquals("second", chain.get("value"));
+        // 执行期间其他节点的结果不可见
+        Assert.assertEquals("initial", chain.get("seen"));
+    }
+}
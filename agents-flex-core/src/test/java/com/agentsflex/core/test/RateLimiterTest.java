@@ -0,0 +1,230 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.document.Document;
+import com.agentsflex.llm.BaseLlm;
+import com.agentsflex.llm.ChatContext;
+import com.agentsflex.llm.ChatOptions;
+import com.agentsflex.llm.LlmConfig;
+import com.agentsflex.llm.MessageResponse;
+import com.agentsflex.llm.StreamResponseListener;
+import com.agentsflex.llm.client.LlmClient;
+import com.agentsflex.llm.client.LlmClientListener;
+import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.llm.limiter.RateLimiter;
+import com.agentsflex.message.AiMessage;
+import com.agentsflex.prompt.Prompt;
+import com.agentsflex.prompt.TextPrompt;
+import com.agentsflex.store.VectorData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RateLimiterTest {
+
+    /**
+     * 由测试控制何时获得额度的限流器
+     */
+    private static class ManualRateLimiter extends RateLimiter {
+        final CompletableFuture<Void> permit = new CompletableFuture<>();
+
+        ManualRateLimiter() {
+            super(1, 0);
+        }
+
+        @Override
+        public CompletableFuture<Void> acquireAsync(int tokens) {
+            return permit;
+        }
+    }
+
+    private static class StreamLlm extends BaseLlm<LlmConfig> {
+        volatile String startThread;
+
+        StreamLlm() {
+            super(new LlmConfig());
+        }
+
+        @Override
+        public <R extends MessageResponse<M>, M extends AiMessage> R chat(Prompt<M> prompt, ChatOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <R extends MessageResponse<M>, M extends AiMessage> void chatStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options) {
+            LlmClient llmClient = new LlmClient() {
+                @Override
+                public void start(String url, Map<String, String> headers, String payload, LlmClientListener clientListener, LlmConfig config) {
+                    startThread = Thread.currentThread().getName();
+                    clientListener.onStart(this);
+                    clientListener.onStop(this);
+                }
+
+                @Override
+                public void stop() {
+                }
+            };
+            LlmClientListener clientListener = new LlmClientListener() {
+                ChatContext context = new ChatContext(StreamLlm.this, llmClient);
+
+                @Override
+                public void onStart(LlmClient client) {
+                    listener.onStart(context);
+                }
+
+                @Override
+                public void onMessage(LlmClient client, String response) {
+                }
+
+                @Override
+                public void onStop(LlmClient client) {
+                    listener.onStop(context);
+                }
+
+                @Override
+                public void onFailure(LlmClient client, Throwable throwable) {
+                    listener.onFailure(context, throwable);
+                }
+            };
+            runWhenPermitted("hello", options, llmClient, clientListener
+                , () -> llmClient.start("http://localhost", null, "hello", clientListener, config));
+        }
+
+        @Override
+        public VectorData embed(Document document, EmbeddingOptions options) {
+            return null;
+        }
+    }
+
+    private static class RecordingListener implements StreamResponseListener<MessageResponse<AiMessage>, AiMessage> {
+        final List<String> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch finished = new CountDownLatch(1);
+
+        @Override
+        public void onStart(ChatContext context) {
+            events.add("start");
+        }
+
+        @Override
+        public void onMessage(ChatContext context, MessageResponse<AiMessage> response) {
+        }
+
+        @Override
+        public void onStop(ChatContext context) {
+            events.add("stop");
+            finished.countDown();
+        }
+
+        @Override
+        public void onFailure(ChatContext context, Throwable throwable) {
+            events.add("failure:" + throwable.getMessage());
+            finished.countDown();
+        }
+    }
+
+    @Test
+    public void testTokensPerMinute() throws Exception {
+        AtomicLong now = new AtomicLong();
+        // 每秒补充 100 个 token
+        RateLimiter rateLimiter = new RateLimiter(0, 6000, now::get);
+        rateLimiter.acquire(6000);
+
+        CompletableFuture<Void> first = rateLimiter.acquireAsync(20);
+        CompletableFuture<Void> second = rateLimiter.acquireAsync(20);
+        Assert.assertEquals(2, rateLimiter.getQueueDepth());
+        Assert.assertFalse(first.isDone());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(400));
+        second.get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(first.isDone());
+        Assert.assertEquals(0, rateLimiter.getQueueDepth());
+        Assert.assertEquals(3, rateLimiter.getAcquiredCount());
+        Assert.assertEquals(400, rateLimiter.getMaxWaitMillis());
+        Assert.assertEquals(800, rateLimiter.getTotalWaitMillis());
+    }
+
+    @Test
+    public void testCancelledWaiterReleasesQuota() throws Exception {
+        AtomicLong now = new AtomicLong();
+        RateLimiter rateLimiter = new RateLimiter(0, 6000, now::get);
+        rateLimiter.acquire(6000);
+
+        CompletableFuture<Void> cancelled = rateLimiter.acquireAsync(20);
+        CompletableFuture<Void> waiting = rateLimiter.acquireAsync(20);
+        cancelled.cancel(false);
+
+        // 只补充了一个请求的额度，由后面排队的请求获得
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+        waiting.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(2, rateLimiter.getAcquiredCount());
+        Assert.assertEquals(0, rateLimiter.getQueueDepth());
+    }
+
+    @Test
+    public void testStreamStartsOnBlockingExecutor() throws Exception {
+        StreamLlm llm = new StreamLlm();
+        ManualRateLimiter rateLimiter = new ManualRateLimiter();
+        llm.setRateLimiter(rateLimiter);
+
+        RecordingListener listener = new RecordingListener();
+        llm.chatStream(new TextPrompt("hello"), listener, ChatOptions.DEFAULT);
+        Assert.assertNull(llm.startThread);
+
+        // 获得额度的回调线程（通常为限流器的调度线程）不会用来发起请求
+        Thread scheduler = new Thread(() -> rateLimiter.permit.complete(null), "test-rate-limiter");
+        scheduler.start();
+        scheduler.join(5000);
+        Assert.assertTrue(listener.finished.await(5, TimeUnit.SECONDS));
+        Assert.assertNotNull(llm.startThread);
+        Assert.assertNotEquals("test-rate-limiter", llm.startThread);
+        Assert.assertEquals(Arrays.asList("start", "stop"), listener.events);
+    }
+
+    @Test
+    public void testStreamStartsImmediatelyWithQuota() {
+        StreamLlm llm = new StreamLlm();
+        llm.setRateLimiter(new RateLimiter(10, 0));
+
+        RecordingListener listener = new RecordingListener();
+        llm.chatStream(new TextPrompt("hello"), listener, ChatOptions.DEFAULT);
+        Assert.assertEquals(Thread.currentThread().getName(), llm.startThread);
+        Assert.assertEquals(Arrays.asList("start", "stop"), listener.events);
+    }
+
+    @Test
+    public void testPermitFailureStartsBeforeFailing() throws Exception {
+        StreamLlm llm = new StreamLlm();
+        ManualRateLimiter rateLimiter = new ManualRateLimiter();
+        llm.setRateLimiter(rateLimiter);
+
+        RecordingListener listener = new RecordingListener();
+        llm.chatStream(new TextPrompt("hello"), listener, ChatOptions.DEFAULT);
+        rateLimiter.permit.completeExceptionally(new IllegalStateException("rejected"));
+
+        Assert.assertTrue(listener.finished.await(5, TimeUnit.SECONDS));
+        Assert.assertNull(llm.startThread);
+        Assert.assertEquals(Arrays.asList("start", "failure:rejected"), listener.events);
+    }
+}
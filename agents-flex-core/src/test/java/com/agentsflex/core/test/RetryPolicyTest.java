@@ -0,0 +1,211 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.llm.LlmConfig;
+import com.agentsflex.llm.client.HttpStatusException;
+import com.agentsflex.llm.client.LlmClient;
+import com.agentsflex.llm.client.LlmClientListener;
+import com.agentsflex.llm.client.RetryPolicy;
+import com.agentsflex.llm.client.impl.SseClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void testBackoff() {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setJitter(0);
+        policy.setInitialDelayMillis(500);
+        policy.setMaxDelayMillis(1500);
+
+        Assert.assertEquals(500, policy.getDelayMillis(0, null));
+        Assert.assertEquals(1000, policy.getDelayMillis(1, null));
+        Assert.assertEquals(1500, policy.getDelayMillis(2, null));
+
+        policy.setJitter(0.2);
+        for (int i = 0; i < 100; i++) {
+            long delay = policy.getDelayMillis(1, null);
+            Assert.assertTrue(delay >= 800 && delay <= 1200);
+        }
+    }
+
+    @Test
+    public void testRetryAfter() {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setMaxDelayMillis(60_000);
+
+        Assert.assertEquals(3000, policy.getDelayMillis(0, "3"));
+        Assert.assertEquals(3000, policy.getDelayMillis(5, " 3 "));
+        // 不超过 maxDelayMillis
+        Assert.assertEquals(60_000, policy.getDelayMillis(0, "3600"));
+
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        long delay = policy.getDelayMillis(0, format.format(new Date(System.currentTimeMillis() + 10_000)));
+        Assert.assertTrue(delay > 8000 && delay <= 10_000);
+        Assert.assertEquals(0, policy.getDelayMillis(0, format.format(new Date(System.currentTimeMillis() - 10_000))));
+
+        // 无法解析时使用指数退避
+        policy.setJitter(0);
+        Assert.assertEquals(policy.getInitialDelayMillis(), policy.getDelayMillis(0, "soon"));
+    }
+
+    @Test
+    public void testShouldRetry() {
+        RetryPolicy policy = new RetryPolicy(2);
+
+        Assert.assertTrue(policy.shouldRetry(0, 429, false));
+        Assert.assertTrue(policy.shouldRetry(0, 408, false));
+        Assert.assertTrue(policy.shouldRetry(1, 503, false));
+        Assert.assertFalse(policy.shouldRetry(2, 503, false));
+        Assert.assertFalse(policy.shouldRetry(0, 500, false));
+        Assert.assertTrue(policy.shouldRetry(0, 500, true));
+        Assert.assertFalse(policy.shouldRetry(0, 400, true));
+
+        Assert.assertTrue(policy.shouldRetry(0, new ConnectException(), false));
+        Assert.assertFalse(policy.shouldRetry(0, new SocketTimeoutException(), false));
+        Assert.assertTrue(policy.shouldRetry(0, new SocketTimeoutException(), true));
+
+        policy.setRetryNonIdempotent(true);
+        Assert.assertTrue(policy.shouldRetry(0, 500, false));
+        Assert.assertTrue(policy.shouldRetry(0, new IOException(), false));
+
+        Assert.assertFalse(new LlmConfig().getRetryPolicy().isRetryNonIdempotent());
+    }
+
+    @Test
+    public void testRetryableFailure() {
+        Assert.assertTrue(RetryPolicy.isRetryableStatus(408));
+        Assert.assertTrue(RetryPolicy.isRetryableStatus(429));
+        Assert.assertTrue(RetryPolicy.isRetryableStatus(502));
+        Assert.assertFalse(RetryPolicy.isRetryableStatus(400));
+        Assert.assertFalse(RetryPolicy.isRetryableStatus(401));
+
+        Assert.assertTrue(RetryPolicy.isRetryableFailure(new SocketTimeoutException()));
+        Assert.assertTrue(RetryPolicy.isRetryableFailure(new CompletionException(new HttpStatusException(503, "unavailable"))));
+        Assert.assertTrue(RetryPolicy.isRetryableFailure(new RuntimeException(new UncheckedIOException(new IOException()))));
+        Assert.assertFalse(RetryPolicy.isRetryableFailure(new UncheckedIOException(new HttpStatusException(404, "not found"))));
+        Assert.assertFalse(RetryPolicy.isRetryableFailure(new IllegalArgumentException()));
+        Assert.assertFalse(RetryPolicy.isRetryableFailure(null));
+    }
+
+    @Test
+    public void testSseRetry() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/sse", exchange -> {
+            if (requests.incrementAndGet() == 1) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            writeEvent(exchange, 0);
+        });
+        server.start();
+        try {
+            List<String> messages = start(server, new CountDownLatch(1));
+            Assert.assertEquals(2, requests.get());
+            Assert.assertEquals(1, messages.size());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testNoRetryAfterFirstEvent() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/sse", exchange -> {
+            requests.incrementAndGet();
+            // 声明的长度大于实际写入的长度，客户端在收到第一条消息之后读取失败
+            writeEvent(exchange, 1024);
+        });
+        server.start();
+        try {
+            List<String> messages = start(server, new CountDownLatch(1));
+            Thread.sleep(200);
+            Assert.assertEquals(1, requests.get());
+            Assert.assertEquals(2, messages.size());
+            Assert.assertEquals("failure", messages.get(1));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void writeEvent(HttpExchange exchange, long contentLength) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, contentLength);
+        OutputStream out = exchange.getResponseBody();
+        out.write("data: hello\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        exchange.close();
+    }
+
+    private static List<String> start(HttpServer server, CountDownLatch finished) throws InterruptedException {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setInitialDelayMillis(10);
+        policy.setRetryNonIdempotent(true);
+        LlmConfig config = new LlmConfig();
+        config.setRetryPolicy(policy);
+
+        List<String> messages = new CopyOnWriteArrayList<>();
+        new SseClient().start("http://127.0.0.1:" + server.getAddress().getPort() + "/sse", null, "{}", new LlmClientListener() {
+            @Override
+            public void onStart(LlmClient client) {
+            }
+
+            @Override
+            public void onMessage(LlmClient client, String response) {
+                messages.add(response);
+            }
+
+            @Override
+            public void onStop(LlmClient client) {
+                finished.countDown();
+            }
+
+            @Override
+            public void onFailure(LlmClient client, Throwable throwable) {
+                messages.add("failure");
+                finished.countDown();
+            }
+        }, config);
+        Assert.assertTrue(finished.await(10, TimeUnit.SECONDS));
+        return messages;
+    }
+}
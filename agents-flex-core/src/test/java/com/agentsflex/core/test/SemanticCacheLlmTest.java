@@ -0,0 +1,168 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.document.Document;
+import com.agentsflex.llm.ChatOptions;
+import com.agentsflex.llm.Llm;
+import com.agentsflex.llm.MessageResponse;
+import com.agentsflex.llm.StreamResponseListener;
+import com.agentsflex.llm.cache.SemanticCacheLlm;
+import com.agentsflex.llm.embedding.EmbeddingModel;
+import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.llm.response.AiMessageResponse;
+import com.agentsflex.message.AiMessage;
+import com.agentsflex.prompt.Prompt;
+import com.agentsflex.prompt.TextPrompt;
+import com.agentsflex.store.VectorData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SemanticCacheLlmTest {
+
+    private static class CountingLlm implements Llm {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R extends MessageResponse<M>, M extends AiMessage> R chat(Prompt<M> prompt, ChatOptions options) {
+            AiMessage message = new AiMessage();
+            message.setContent("reply-" + calls.incrementAndGet());
+            return (R) new AiMessageResponse(message);
+        }
+
+        @Override
+        public <R extends MessageResponse<M>, M extends AiMessage> void chatStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public VectorData embed(Document document, EmbeddingOptions options) {
+            return null;
+        }
+    }
+
+    /**
+     * 按照文本返回预设的向量
+     */
+    private static class FixedEmbeddingModel implements EmbeddingModel {
+        final Map<String, double[]> vectors = new HashMap<>();
+
+        @Override
+        public VectorData embed(Document document, EmbeddingOptions options) {
+            VectorData vectorData = new VectorData();
+            vectorData.setVector(vectors.get(document.getContent()));
+            return vectorData;
+        }
+    }
+
+    private static String chat(Llm llm, String text, String namespace) {
+        TextPrompt prompt = new TextPrompt(text);
+        if (namespace != null) {
+            prompt.addMetadata(SemanticCacheLlm.NAMESPACE_KEY, namespace);
+        }
+        return llm.chat(prompt).getMessage().getContent();
+    }
+
+    @Test
+    public void testThreshold() {
+        CountingLlm llm = new CountingLlm();
+        FixedEmbeddingModel embeddingModel = new FixedEmbeddingModel();
+        embeddingModel.vectors.put("hello", new double[]{1, 0});
+        // 余弦相似度约 0.99
+        embeddingModel.vectors.put("hello!", new double[]{0.99, 0.14});
+        // 余弦相似度约 0.9
+        embeddingModel.vectors.put("hi", new double[]{0.9, 0.44});
+        SemanticCacheLlm cacheLlm = new SemanticCacheLlm(llm, embeddingModel, 0.95, 100);
+
+        Assert.assertEquals("reply-1", chat(cacheLlm, "hello", null));
+        Assert.assertEquals("reply-1", chat(cacheLlm, "hello!", null));
+        Assert.assertEquals("reply-2", chat(cacheLlm, "hi", null));
+
+        Assert.assertEquals(2, llm.calls.get());
+        Assert.assertEquals(1, cacheLlm.getHitCount());
+        Assert.assertEquals(2, cacheLlm.getMissCount());
+    }
+
+    @Test
+    public void testNamespaceIsolation() {
+        CountingLlm llm = new CountingLlm();
+        FixedEmbeddingModel embeddingModel = new FixedEmbeddingModel();
+        embeddingModel.vectors.put("hello", new double[]{1, 0});
+        SemanticCacheLlm cacheLlm = new SemanticCacheLlm(llm, embeddingModel, 0.95, 100);
+
+        Assert.assertEquals("reply-1", chat(cacheLlm, "hello", "a"));
+        Assert.assertEquals("reply-2", chat(cacheLlm, "hello", "b"));
+        Assert.assertEquals("reply-1", chat(cacheLlm, "hello", "a"));
+        Assert.assertEquals("reply-2", chat(cacheLlm, "hello", "b"));
+
+        cacheLlm.clear("a");
+        Assert.assertEquals(1, cacheLlm.getSize());
+        Assert.assertEquals("reply-3", chat(cacheLlm, "hello", "a"));
+        Assert.assertEquals("reply-2", chat(cacheLlm, "hello", "b"));
+    }
+
+    @Test
+    public void testOptionsIsolation() {
+        CountingLlm llm = new CountingLlm();
+        FixedEmbeddingModel embeddingModel = new FixedEmbeddingModel();
+        embeddingModel.vectors.put("hello", new double[]{1, 0});
+        SemanticCacheLlm cacheLlm = new SemanticCacheLlm(llm, embeddingModel, 0.95, 100);
+
+        ChatOptions options = new ChatOptions();
+        options.setTemperature(0f);
+        cacheLlm.chat(new TextPrompt("hello"), options);
+        options.setTemperature(1f);
+        cacheLlm.chat(new TextPrompt("hello"), options);
+
+        Assert.assertEquals(2, llm.calls.get());
+        Assert.assertEquals(2, cacheLlm.getSize());
+    }
+
+    @Test
+    public void testEvictionAcrossNamespaces() {
+        CountingLlm llm = new CountingLlm();
+        FixedEmbeddingModel embeddingModel = new FixedEmbeddingModel();
+        embeddingModel.vectors.put("x", new double[]{1, 0});
+        embeddingModel.vectors.put("y", new double[]{0, 1});
+        SemanticCacheLlm cacheLlm = new SemanticCacheLlm(llm, embeddingModel, 0.95, 2, 3);
+
+        // 每个 namespace 内按 LRU 淘汰
+        chat(cacheLlm, "x", "a");
+        chat(cacheLlm, "y", "a");
+        Assert.assertEquals(2, cacheLlm.getSize());
+
+        // 合计超过 3 个时，从最久没有使用的 namespace "a" 中淘汰 "x"
+        chat(cacheLlm, "x", "b");
+        chat(cacheLlm, "y", "b");
+        Assert.assertEquals(3, cacheLlm.getSize());
+        Assert.assertEquals(4, llm.calls.get());
+
+        Assert.assertEquals("reply-2", chat(cacheLlm, "y", "a"));
+        Assert.assertEquals("reply-5", chat(cacheLlm, "x", "a"));
+
+        // 大量不同的 namespace 也不会超过合计上限
+        for (int i = 0; i < 100; i++) {
+            chat(cacheLlm, "x", "ns-" + i);
+        }
+        Assert.assertEquals(3, cacheLlm.getSize());
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.agent.Output;
+import com.agentsflex.chain.Chain;
+import com.agentsflex.chain.ChainStatus;
+import com.agentsflex.chain.SequentialChain;
+import com.agentsflex.chain.node.AbstractBaseNode;
+import com.agentsflex.document.Document;
+import com.agentsflex.memory.LayeredContextMemory;
+import com.agentsflex.memory.SpillableContextMemory;
+import com.agentsflex.util.Maps;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SpillableContextMemoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String text(int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'x');
+        return new String(chars);
+    }
+
+    private String[] spillFiles() {
+        String[] files = folder.getRoot().list();
+        return files == null ? new String[0] : files;
+    }
+
+    @Test
+    public void testSpillToFile() {
+        SpillableContextMemory memory = new SpillableContextMemory(1024, SpillableContextMemory.Storage.FILE, folder.getRoot());
+        String large = text(4096);
+        memory.put("small", "small");
+        memory.put("large", large);
+
+        Assert.assertFalse(memory.isSpilled("small"));
+        Assert.assertTrue(memory.isSpilled("large"));
+        Assert.assertEquals(1, spillFiles().length);
+        Assert.assertEquals(large, memory.get("large"));
+        Assert.assertEquals(large, memory.getAll().get("large"));
+        Assert.assertEquals(2, memory.getAll().size());
+        Assert.assertFalse(memory.toString().contains(large));
+
+        // 覆盖和删除时释放原来的数据
+        memory.put("large", text(2048));
+        Assert.assertEquals(1, spillFiles().length);
+        memory.remove("large");
+        Assert.assertEquals(0, spillFiles().length);
+        Assert.assertNull(memory.get("large"));
+    }
+
+    @Test
+    public void testSpillOffHeap() {
+        SpillableContextMemory memory = new SpillableContextMemory(1024, SpillableContextMemory.Storage.OFF_HEAP);
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            documents.add(Document.of(text(100) + i));
+        }
+        memory.put("documents", documents);
+
+        Assert.assertTrue(memory.isSpilled("documents"));
+        Assert.assertTrue(memory.getSpilledBytes() > 0);
+        @SuppressWarnings("unchecked")
+        List<Document> loaded = (List<Document>) memory.get("documents");
+        Assert.assertEquals(10, loaded.size());
+        Assert.assertEquals(text(100) + 9, loaded.get(9).getContent());
+
+        memory.release();
+        Assert.assertNull(memory.get("documents"));
+        Assert.assertEquals(0, memory.getSpilledBytes());
+    }
+
+    @Test
+    public void testReleaseAfterChainFinished() {
+        String large = text(4096);
+        SequentialChain chain = new SequentialChain();
+        chain.setMemory(new SpillableContextMemory(1024, SpillableContextMemory.Storage.FILE, folder.getRoot()));
+        chain.setRetainKeys("document");
+        chain.addNode(new AbstractBaseNode() {
+            @Override
+            public Map<String, Object> execute(Chain chain) {
+                return Maps.of("document", (Object) large).put("temp", large).put(Output.DEFAULT_VALUE_KEY, large).build();
+            }
+        });
+        chain.addNode(new AbstractBaseNode() {
+            @Override
+            public Map<String, Object> execute(Chain chain) {
+                Assert.assertEquals(3, spillFiles().length);
+                return Maps.of("length", (Object) ((String) chain.get("document")).length()).build();
+            }
+        });
+
+        Map<String, Object> result = chain.executeAsync(new HashMap<>()).join();
+
+        // 执行结束后只保留执行结果和 retainKeys 中的数据，其他数据的临时文件被删除
+        Assert.assertEquals(ChainStatus.FINISHED_NORMAL, chain.getStatus());
+        Assert.assertEquals(0, spillFiles().length);
+        Assert.assertEquals(large, chain.get(Output.DEFAULT_VALUE_KEY));
+        Assert.assertEquals(large, chain.get("document"));
+        Assert.assertEquals(large, result.get("document"));
+        Assert.assertNull(chain.get("temp"));
+        Assert.assertEquals(4096, chain.get("length"));
+
+        chain.releaseMemory();
+        Assert.assertEquals(large, chain.get("document"));
+    }
+
+    @Test
+    public void testReleaseOnPause() {
+        SequentialChain chain = new SequentialChain();
+        chain.setMemory(new SpillableContextMemory(1024, SpillableContextMemory.Storage.FILE, folder.getRoot()));
+        chain.addNode(new AbstractBaseNode() {
+            @Override
+            public Map<String, Object> execute(Chain chain) {
+                return Maps.of("document", (Object) text(4096)).build();
+            }
+        });
+        chain.addNode(new AbstractBaseNode() {
+            @Override
+            public Map<String, Object> execute(Chain chain) {
+                chain.setStatus(ChainStatus.PAUSE_FOR_WAKE_UP);
+                return null;
+            }
+        });
+        chain.execute(new HashMap<>());
+
+        // 暂停时不释放，不再恢复执行时手动释放
+        Assert.assertEquals(ChainStatus.PAUSE_FOR_WAKE_UP, chain.getStatus());
+        Assert.assertEquals(1, spillFiles().length);
+        chain.releaseMemory();
+        Assert.assertEquals(0, spillFiles().length);
+        Assert.assertNull(chain.get("document"));
+    }
+
+    @Test
+    public void testLayeredViewDoesNotLoadSpilledValues() {
+        SpillableContextMemory memory = new SpillableContextMemory(1024, SpillableContextMemory.Storage.FILE, folder.getRoot()) {
+            @Override
+            protected long estimateSize(Object value) {
+                return value instanceof Payload ? 1024 : super.estimateSize(value);
+            }
+        };
+        memory.put("payload", new Payload());
+        memory.put("small", "small");
+        Assert.assertTrue(memory.isSpilled("payload"));
+
+        LayeredContextMemory layered = new LayeredContextMemory(memory);
+        layered.put("layer", "layer");
+        Map<String, Object> view = layered.getAll();
+        Assert.assertEquals(3, view.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("payload", "small", "layer")), new HashSet<>(view.keySet()));
+        Assert.assertEquals(0, Payload.LOADS.get());
+
+        Assert.assertTrue(layered.get("payload") instanceof Payload);
+        Assert.assertEquals(1, Payload.LOADS.get());
+        memory.close();
+    }
+
+    static class Payload implements Serializable {
+        static final AtomicInteger LOADS = new AtomicInteger();
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            LOADS.incrementAndGet();
+        }
+    }
+}
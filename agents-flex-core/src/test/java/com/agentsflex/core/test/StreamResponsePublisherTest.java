@@ -0,0 +1,199 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.document.Document;
+import com.agentsflex.llm.ChatContext;
+import com.agentsflex.llm.ChatOptions;
+import com.agentsflex.llm.Llm;
+import com.agentsflex.llm.LlmConfig;
+import com.agentsflex.llm.MessageResponse;
+import com.agentsflex.llm.StreamResponseListener;
+import com.agentsflex.llm.client.LlmClient;
+import com.agentsflex.llm.client.LlmClientListener;
+import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.llm.response.AiMessageResponse;
+import com.agentsflex.llm.stream.BufferOverflowException;
+import com.agentsflex.llm.stream.OverflowPolicy;
+import com.agentsflex.message.AiMessage;
+import com.agentsflex.prompt.Prompt;
+import com.agentsflex.prompt.TextPrompt;
+import com.agentsflex.store.VectorData;
+import org.junit.Assert;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class StreamResponsePublisherTest {
+
+    /**
+     * 同步输出 count 条消息的 Llm
+     */
+    private static class FakeStreamLlm implements Llm {
+        private final int count;
+        private volatile boolean stopped;
+
+        FakeStreamLlm(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public <R extends MessageResponse<M>, M extends AiMessage> R chat(Prompt<M> prompt, ChatOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <R extends MessageResponse<M>, M extends AiMessage> void chatStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options) {
+            ChatContext context = new ChatContext(this, null);
+            // 与 SseClient 等真实的客户端一样，stop() 时同步回调 onStop
+            context.setClient(new LlmClient() {
+                @Override
+                public void start(String url, Map<String, String> headers, String payload, LlmClientListener listener, LlmConfig config) {
+                }
+
+                @Override
+                public void stop() {
+                    if (!stopped) {
+                        stopped = true;
+                        listener.onStop(context);
+                    }
+                }
+            });
+            listener.onStart(context);
+            for (int i = 0; i < count && !stopped; i++) {
+                AiMessage message = new AiMessage();
+                message.setContent(String.valueOf(i));
+                listener.onMessage(context, (R) new AiMessageResponse(message));
+            }
+            if (!stopped) {
+                listener.onStop(context);
+            }
+        }
+
+        @Override
+        public VectorData embed(Document document, EmbeddingOptions options) {
+            return null;
+        }
+    }
+
+    private static class TestSubscriber implements Subscriber<AiMessageResponse> {
+        final List<String> contents = new CopyOnWriteArrayList<>();
+        final CountDownLatch terminated = new CountDownLatch(1);
+        volatile Subscription subscription;
+        volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            this.subscription = s;
+        }
+
+        @Override
+        public void onNext(AiMessageResponse response) {
+            contents.add(response.getMessage().getContent());
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            terminated.countDown();
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        FakeStreamLlm llm = new FakeStreamLlm(5);
+        Publisher<AiMessageResponse> publisher = llm.chatStreamPublisher(new TextPrompt("hi"), ChatOptions.DEFAULT);
+
+        TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+
+        Assert.assertTrue(subscriber.contents.isEmpty());
+        subscriber.subscription.request(2);
+        Assert.assertEquals(2, subscriber.contents.size());
+        Assert.assertEquals(1, subscriber.terminated.getCount());
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        Assert.assertTrue(subscriber.terminated.await(1, TimeUnit.SECONDS));
+        Assert.assertNull(subscriber.error);
+        Assert.assertEquals(5, subscriber.contents.size());
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        FakeStreamLlm llm = new FakeStreamLlm(10);
+        Publisher<AiMessageResponse> publisher = llm.chatStreamPublisher(new TextPrompt("hi"), ChatOptions.DEFAULT, 3, OverflowPolicy.DROP_OLDEST);
+
+        TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(10);
+
+        Assert.assertTrue(subscriber.terminated.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(3, subscriber.contents.size());
+        Assert.assertEquals("7", subscriber.contents.get(0));
+        Assert.assertEquals("9", subscriber.contents.get(2));
+    }
+
+    @Test
+    public void testOverflowError() throws Exception {
+        FakeStreamLlm llm = new FakeStreamLlm(10);
+        Publisher<AiMessageResponse> publisher = llm.chatStreamPublisher(new TextPrompt("hi"), ChatOptions.DEFAULT, 3, OverflowPolicy.ERROR);
+
+        TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+
+        Assert.assertTrue(subscriber.terminated.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(subscriber.error instanceof BufferOverflowException);
+        Assert.assertTrue(llm.stopped);
+    }
+
+    @Test
+    public void testCancelStopsUpstream() {
+        FakeStreamLlm llm = new FakeStreamLlm(100);
+        Publisher<AiMessageResponse> publisher = llm.chatStreamPublisher(new TextPrompt("hi"), ChatOptions.DEFAULT, 100, OverflowPolicy.ERROR);
+
+        TestSubscriber subscriber = new TestSubscriber() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                super.onSubscribe(s);
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(AiMessageResponse response) {
+                super.onNext(response);
+                subscription.cancel();
+            }
+        };
+        publisher.subscribe(subscriber);
+
+        Assert.assertEquals(1, subscriber.contents.size());
+        Assert.assertTrue(llm.stopped);
+        Assert.assertEquals(1, subscriber.terminated.getCount());
+    }
+}
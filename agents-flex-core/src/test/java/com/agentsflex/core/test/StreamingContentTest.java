@@ -0,0 +1,85 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.message.AiMessage;
+import com.agentsflex.message.StreamingContent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class StreamingContentTest {
+
+    @Test
+    public void testSnapshot() {
+        StreamingContent hello = StreamingContent.append(null, "hello");
+        StreamingContent chinese = StreamingContent.append(hello, "，你好");
+        StreamingContent empty = StreamingContent.append(chinese, "");
+
+        Assert.assertEquals("hello", hello.toString());
+        Assert.assertEquals("hello，你好", chinese.toString());
+        Assert.assertSame(chinese, empty);
+        Assert.assertEquals(8, chinese.length());
+        Assert.assertEquals("", StreamingContent.append(null, null).toString());
+
+        AiMessage message = new AiMessage();
+        message.setFullContent(hello);
+        Assert.assertEquals("hello", message.getFullContent());
+        message.setFullContent("replaced");
+        Assert.assertEquals("replaced", message.getFullContent());
+    }
+
+    @Test
+    public void testReadOnOtherThread() throws Exception {
+        BlockingQueue<AiMessage> queue = new ArrayBlockingQueue<>(16);
+        List<String> expected = new ArrayList<>();
+        List<String> actual = new ArrayList<>();
+
+        Thread reader = new Thread(() -> {
+            try {
+                for (int i = 0; i < 2000; i++) {
+                    actual.add(queue.take().getFullContent());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        reader.start();
+
+        // 写线程持续追加内容（包括中文），已经交给读线程的消息内容不受影响
+        StreamingContent content = null;
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            String chunk = i % 2 == 0 ? "a" : "中";
+            builder.append(chunk);
+            content = StreamingContent.append(content, chunk);
+            AiMessage message = new AiMessage();
+            message.setContent(chunk);
+            message.setFullContent(content);
+            expected.add(builder.toString());
+            queue.put(message);
+        }
+
+        reader.join(TimeUnit.SECONDS.toMillis(10));
+        Assert.assertEquals(expected, actual);
+    }
+
+}
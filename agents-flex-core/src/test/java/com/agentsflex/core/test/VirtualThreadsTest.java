@@ -0,0 +1,56 @@
+/*
+ *  Copyright (c) 2023-2025, Agents-Flex (fuhai999@gmail.com).
+ *  <p>
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *  <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *  <p>
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agentsflex.core.test;
+
+import com.agentsflex.util.NamedThreadPools;
+import com.agentsflex.util.VirtualThreads;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+public class VirtualThreadsTest {
+
+    @Test
+    public void testFallback() throws Exception {
+        Thread thread = VirtualThreads.newThreadFactory("test").newThread(() -> {
+        });
+        Assert.assertTrue(thread.getName().startsWith("test-"));
+
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test");
+        try {
+            String name = executor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+            Assert.assertTrue(name.startsWith("test-"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBlockingExecutorIsDedicated() throws Exception {
+        CompletableFuture<Thread> future = CompletableFuture.supplyAsync(Thread::currentThread, NamedThreadPools.blockingExecutor());
+        Thread thread = future.get(5, TimeUnit.SECONDS);
+
+        // 不使用 JVM 共享的 ForkJoinPool.commonPool()
+        Assert.assertFalse(thread instanceof ForkJoinWorkerThread);
+        Assert.assertTrue(thread.getName(), thread.getName().startsWith("agents-flex-blocking"));
+        Assert.assertTrue(thread.isDaemon());
+    }
+
+}
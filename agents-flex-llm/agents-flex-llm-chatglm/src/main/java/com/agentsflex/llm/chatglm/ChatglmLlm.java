@@ -25,7 +25,9 @@ import com.agentsflex.llm.client.HttpClient;
 import com.agentsflex.llm.client.LlmClient;
 import com.agentsflex.llm.client.LlmClientListener;
 import com.agentsflex.llm.client.impl.SseClient;
+import com.agentsflex.llm.embedding.EmbeddingBatches;
 import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.llm.embedding.EmbeddingResponses;
 import com.agentsflex.llm.response.AbstractBaseMessageResponse;
 import com.agentsflex.llm.response.AiMessageResponse;
 import com.agentsflex.llm.response.FunctionMessageResponse;
@@ -41,18 +43,22 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.fastjson.JSONPath;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class ChatglmLlm extends BaseLlm<ChatglmLlmConfig> {
 
-    private HttpClient httpClient = new HttpClient();
+    private HttpClient httpClient;
     public AiMessageParser aiMessageParser = ChatglmLlmUtil.getAiMessageParser();
     public FunctionMessageParser functionMessageParser = ChatglmLlmUtil.getFunctionMessageParser();
 
 
     public ChatglmLlm(ChatglmLlmConfig config) {
         super(config);
+        this.httpClient = new HttpClient(config);
     }
 
     /**
@@ -70,6 +76,46 @@ public class ChatglmLlm extends BaseLlm<ChatglmLlmConfig> {
         String endpoint = config.getEndpoint();
         String payload = Maps.of("model", "embedding-2").put("input", document.getContent()).toJSON();
         String response = httpClient.post(endpoint + "/api/paas/v4/embeddings", headers, payload);
+        return parseEmbeddingResponse(response);
+    }
+
+
+    @Override
+    public List<VectorData> embedAll(List<Document> documents, EmbeddingOptions options) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Authorization", ChatglmLlmUtil.createAuthorizationToken(config));
+
+        String endpoint = config.getEndpoint();
+        List<VectorData> vectorDataList = new ArrayList<>(documents.size());
+        for (List<Document> batch : EmbeddingBatches.split(documents
+            , ChatglmLlmUtil.EMBEDDING_MAX_BATCH_SIZE, ChatglmLlmUtil.EMBEDDING_MAX_BATCH_TOKENS)) {
+            List<String> input = new ArrayList<>(batch.size());
+            for (Document document : batch) {
+                input.add(document.getContent());
+            }
+            String payload = Maps.of("model", "embedding-2").put("input", input).toJSON();
+            String response = httpClient.post(endpoint + "/api/paas/v4/embeddings", headers, payload);
+            vectorDataList.addAll(parseEmbeddingsResponse(response, batch.size()));
+        }
+        return vectorDataList;
+    }
+
+
+    @Override
+    public CompletableFuture<VectorData> embedAsync(Document document, EmbeddingOptions options) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Authorization", ChatglmLlmUtil.createAuthorizationToken(config));
+
+        String endpoint = config.getEndpoint();
+        String payload = Maps.of("model", "embedding-2").put("input", document.getContent()).toJSON();
+        return httpClient.postAsync(endpoint + "/api/paas/v4/embeddings", headers, payload)
+            .thenApply(this::parseEmbeddingResponse);
+    }
+
+
+    private VectorData parseEmbeddingResponse(String response) {
         if (StringUtil.noText(response)) {
             return null;
         }
@@ -85,6 +131,14 @@ public class ChatglmLlm extends BaseLlm<ChatglmLlmConfig> {
     }
 
 
+    private List<VectorData> parseEmbeddingsResponse(String response, int size) {
+        if (config.isDebug() && StringUtil.hasText(response)) {
+            System.out.println(">>>>receive payload:" + response);
+        }
+        return EmbeddingResponses.parse(response, "$.data", "index", size);
+    }
+
+
     @Override
     public <R extends MessageResponse<M>, M extends AiMessage> R chat(Prompt<M> prompt, ChatOptions options) {
         Map<String, String> headers = new HashMap<>();
@@ -93,7 +147,27 @@ public class ChatglmLlm extends BaseLlm<ChatglmLlmConfig> {
 
         String endpoint = config.getEndpoint();
         String payload = ChatglmLlmUtil.promptToPayload(prompt, config, false);
+        acquirePermit(payload, options);
         String response = httpClient.post(endpoint + "/api/paas/v4/chat/completions", headers, payload);
+        return parseChatResponse(prompt, response);
+    }
+
+
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> CompletableFuture<R> chatAsync(Prompt<M> prompt, ChatOptions options) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Authorization", ChatglmLlmUtil.createAuthorizationToken(config));
+
+        String endpoint = config.getEndpoint();
+        String payload = ChatglmLlmUtil.promptToPayload(prompt, config, false);
+        return acquirePermitAsync(payload, options)
+            .thenCompose(v -> httpClient.postAsync(endpoint + "/api/paas/v4/chat/completions", headers, payload))
+            .thenApply(response -> parseChatResponse(prompt, response));
+    }
+
+
+    private <R extends MessageResponse<M>, M extends AiMessage> R parseChatResponse(Prompt<M> prompt, String response) {
         if (StringUtil.noText(response)) {
             return null;
         }
@@ -131,7 +205,7 @@ public class ChatglmLlm extends BaseLlm<ChatglmLlmConfig> {
 
     @Override
     public <R extends MessageResponse<M>, M extends AiMessage> void chatStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options) {
-        LlmClient llmClient = new SseClient();
+        LlmClient llmClient = createSseClient();
         Map<String, String> headers = new HashMap<>();
         headers.put("Content-Type", "application/json");
         headers.put("Authorization", ChatglmLlmUtil.createAuthorizationToken(config));
@@ -140,7 +214,8 @@ public class ChatglmLlm extends BaseLlm<ChatglmLlmConfig> {
 
         String endpoint = config.getEndpoint();
         LlmClientListener clientListener = new BaseLlmClientListener(this, llmClient, listener, prompt, aiMessageParser, functionMessageParser);
-        llmClient.start(endpoint + "/api/paas/v4/chat/completions", headers, payload, clientListener, config);
+        runWhenPermitted(payload, options, llmClient, clientListener
+            , () -> llmClient.start(endpoint + "/api/paas/v4/chat/completions", headers, payload, clientListener, config));
     }
 
 
@@ -37,6 +37,11 @@ public class ChatglmLlmUtil {
 
     private static final PromptFormat promptFormat = new DefaultPromptFormat();
 
+    // https://open.bigmodel.cn/dev/api#text_embedding
+    // input 数组最多 64 条，embedding-2 的数组总长度不能超过 8k tokens
+    public static final int EMBEDDING_MAX_BATCH_SIZE = 64;
+    public static final int EMBEDDING_MAX_BATCH_TOKENS = 8000;
+
     public static class MyJwtBuilder extends DefaultJwtBuilder {
         @Override
         protected String base64UrlEncode(Object o, String errMsg) {
@@ -39,15 +39,17 @@ import com.alibaba.fastjson.JSONObject;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class LlamaLlm extends BaseLlm<LlamaLlmConfig> {
 
-    private HttpClient httpClient = new HttpClient();
+    private HttpClient httpClient;
     public AiMessageParser aiMessageParser = LlamaLlmUtil.getAiMessageParser();
 
 
     public LlamaLlm(LlamaLlmConfig config) {
         super(config);
+        this.httpClient = new HttpClient(config);
     }
 
 
@@ -65,7 +67,27 @@ public class LlamaLlm extends BaseLlm<LlamaLlmConfig> {
 
         String endpoint = config.getEndpoint();
         String payload = LlamaLlmUtil.promptToPayload(prompt, config, false);
+        acquirePermit(payload, options);
         String response = httpClient.post(endpoint + "/v1/chat/completions", headers, payload);
+        return parseChatResponse(prompt, response);
+    }
+
+
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> CompletableFuture<R> chatAsync(Prompt<M> prompt, ChatOptions options) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Authorization", "Bearer " + config.getApiKey());
+
+        String endpoint = config.getEndpoint();
+        String payload = LlamaLlmUtil.promptToPayload(prompt, config, false);
+        return acquirePermitAsync(payload, options)
+            .thenCompose(v -> httpClient.postAsync(endpoint + "/v1/chat/completions", headers, payload))
+            .thenApply(response -> parseChatResponse(prompt, response));
+    }
+
+
+    private <R extends MessageResponse<M>, M extends AiMessage> R parseChatResponse(Prompt<M> prompt, String response) {
         if (StringUtil.noText(response)) {
             return null;
         }
@@ -100,7 +122,7 @@ public class LlamaLlm extends BaseLlm<LlamaLlmConfig> {
 
     @Override
     public <R extends MessageResponse<M>, M extends AiMessage> void chatStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options) {
-        LlmClient llmClient = new SseClient();
+        LlmClient llmClient = createSseClient();
         Map<String, String> headers = new HashMap<>();
         headers.put("Content-Type", "application/json");
         headers.put("Authorization", "Bearer " + config.getApiKey());
@@ -109,7 +131,8 @@ public class LlamaLlm extends BaseLlm<LlamaLlmConfig> {
 
         String endpoint = config.getEndpoint();
         LlmClientListener clientListener = new BaseLlmClientListener(this, llmClient, listener, prompt, aiMessageParser, null);
-        llmClient.start(endpoint + "/api/paas/v4/chat/completions", headers, payload, clientListener, config);
+        runWhenPermitted(payload, options, llmClient, clientListener
+            , () -> llmClient.start(endpoint + "/api/paas/v4/chat/completions", headers, payload, clientListener, config));
     }
 
     public HttpClient getHttpClient() {
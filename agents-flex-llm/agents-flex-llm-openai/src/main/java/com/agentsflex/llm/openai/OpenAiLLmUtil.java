@@ -28,10 +28,18 @@ import com.agentsflex.prompt.PromptFormat;
 import com.agentsflex.util.Maps;
 import com.alibaba.fastjson.JSON;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class OpenAiLLmUtil {
 
     private static final PromptFormat promptFormat = new DefaultPromptFormat();
 
+    // https://platform.openai.com/docs/api-reference/embeddings/create
+    // 单次请求最多 2048 条 input，token 总数按估算值留出余量
+    public static final int EMBEDDING_MAX_BATCH_SIZE = 2048;
+    public static final int EMBEDDING_MAX_BATCH_TOKENS = 250_000;
+
     public static AiMessageParser getAiMessageParser() {
         DefaultAiMessageParser aiMessageParser = new DefaultAiMessageParser();
         aiMessageParser.setContentPath("$.choices[0].message.content");
@@ -73,6 +81,17 @@ public class OpenAiLLmUtil {
             .toJSON();
     }
 
+    public static String promptToEmbeddingsPayload(List<Document> documents) {
+        List<String> input = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            input.add(document.getContent());
+        }
+        return Maps.of("model", "text-embedding-ada-002")
+            .put("encoding_format", "float")
+            .put("input", input)
+            .toJSON();
+    }
+
 
     public static String promptToPayload(Prompt prompt, OpenAiLlmConfig config, ChatOptions options, boolean withStream) {
         Maps.Builder builder = Maps.of("model", config.getModel())
@@ -25,7 +25,9 @@ import com.agentsflex.llm.client.HttpClient;
 import com.agentsflex.llm.client.LlmClient;
 import com.agentsflex.llm.client.LlmClientListener;
 import com.agentsflex.llm.client.impl.SseClient;
+import com.agentsflex.llm.embedding.EmbeddingBatches;
 import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.llm.embedding.EmbeddingResponses;
 import com.agentsflex.llm.response.AbstractBaseMessageResponse;
 import com.agentsflex.llm.response.AiMessageResponse;
 import com.agentsflex.llm.response.FunctionMessageResponse;
@@ -40,12 +42,15 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.fastjson.JSONPath;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class OpenAiLlm extends BaseLlm<OpenAiLlmConfig> {
 
-    private final HttpClient httpClient = new HttpClient();
+    private final HttpClient httpClient;
     public AiMessageParser aiMessageParser = OpenAiLLmUtil.getAiMessageParser();
     public AiMessageParser streamMessageParser = OpenAiLLmUtil.getStreamMessageParser();
     public FunctionMessageParser functionMessageParser = OpenAiLLmUtil.getFunctionMessageParser();
@@ -65,17 +70,30 @@ public class OpenAiLlm extends BaseLlm<OpenAiLlmConfig> {
 
     public OpenAiLlm(OpenAiLlmConfig config) {
         super(config);
+        this.httpClient = new HttpClient(config);
     }
 
     @Override
     public <R extends MessageResponse<M>, M extends AiMessage> R chat(Prompt<M> prompt, ChatOptions options) {
-        Map<String, String> headers = new HashMap<>();
-        headers.put("Content-Type", "application/json");
-        headers.put("Authorization", "Bearer " + getConfig().getApiKey());
+        String payload = OpenAiLLmUtil.promptToPayload(prompt, config, options, false);
+        String endpoint = config.getEndpoint();
+        acquirePermit(payload, options);
+        String response = httpClient.post(endpoint + "/v1/chat/completions", buildHeaders(), payload);
+        return parseChatResponse(prompt, response);
+    }
 
+
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> CompletableFuture<R> chatAsync(Prompt<M> prompt, ChatOptions options) {
         String payload = OpenAiLLmUtil.promptToPayload(prompt, config, options, false);
         String endpoint = config.getEndpoint();
-        String response = httpClient.post(endpoint + "/v1/chat/completions", headers, payload);
+        return acquirePermitAsync(payload, options)
+            .thenCompose(v -> httpClient.postAsync(endpoint + "/v1/chat/completions", buildHeaders(), payload))
+            .thenApply(response -> parseChatResponse(prompt, response));
+    }
+
+
+    private <R extends MessageResponse<M>, M extends AiMessage> R parseChatResponse(Prompt<M> prompt, String response) {
         if (StringUtil.noText(response)) {
             return null;
         }
@@ -112,28 +130,51 @@ public class OpenAiLlm extends BaseLlm<OpenAiLlmConfig> {
 
     @Override
     public <R extends MessageResponse<M>, M extends AiMessage> void chatStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options) {
-        LlmClient llmClient = new SseClient();
-        Map<String, String> headers = new HashMap<>();
-        headers.put("Content-Type", "application/json");
-        headers.put("Authorization", "Bearer " + getConfig().getApiKey());
+        LlmClient llmClient = createSseClient();
+        Map<String, String> headers = buildHeaders();
 
         String payload = OpenAiLLmUtil.promptToPayload(prompt, config, options, true);
         String endpoint = config.getEndpoint();
         LlmClientListener clientListener = new BaseLlmClientListener(this, llmClient, listener, prompt, streamMessageParser, functionMessageParser);
-        llmClient.start(endpoint + "/v1/chat/completions", headers, payload, clientListener, config);
+        runWhenPermitted(payload, options, llmClient, clientListener
+            , () -> llmClient.start(endpoint + "/v1/chat/completions", headers, payload, clientListener, config));
     }
 
 
     @Override
     public VectorData embed(Document document, EmbeddingOptions options) {
-        Map<String, String> headers = new HashMap<>();
-        headers.put("Content-Type", "application/json");
-        headers.put("Authorization", "Bearer " + getConfig().getApiKey());
-
         String payload = OpenAiLLmUtil.promptToEmbeddingsPayload(document);
         String endpoint = config.getEndpoint();
         // https://platform.openai.com/docs/api-reference/embeddings/create
-        String response = httpClient.post(endpoint + "/v1/embeddings", headers, payload);
+        String response = httpClient.post(endpoint + "/v1/embeddings", buildHeaders(), payload);
+        return parseEmbeddingResponse(response);
+    }
+
+
+    @Override
+    public List<VectorData> embedAll(List<Document> documents, EmbeddingOptions options) {
+        String endpoint = config.getEndpoint();
+        List<VectorData> vectorDataList = new ArrayList<>(documents.size());
+        for (List<Document> batch : EmbeddingBatches.split(documents
+            , OpenAiLLmUtil.EMBEDDING_MAX_BATCH_SIZE, OpenAiLLmUtil.EMBEDDING_MAX_BATCH_TOKENS)) {
+            String payload = OpenAiLLmUtil.promptToEmbeddingsPayload(batch);
+            String response = httpClient.post(endpoint + "/v1/embeddings", buildHeaders(), payload);
+            vectorDataList.addAll(parseEmbeddingsResponse(response, batch.size()));
+        }
+        return vectorDataList;
+    }
+
+
+    @Override
+    public CompletableFuture<VectorData> embedAsync(Document document, EmbeddingOptions options) {
+        String payload = OpenAiLLmUtil.promptToEmbeddingsPayload(document);
+        String endpoint = config.getEndpoint();
+        return httpClient.postAsync(endpoint + "/v1/embeddings", buildHeaders(), payload)
+            .thenApply(this::parseEmbeddingResponse);
+    }
+
+
+    private VectorData parseEmbeddingResponse(String response) {
         if (StringUtil.noText(response)) {
             return null;
         }
@@ -150,4 +191,21 @@ public class OpenAiLlm extends BaseLlm<OpenAiLlmConfig> {
     }
 
 
+    private List<VectorData> parseEmbeddingsResponse(String response, int size) {
+        if (config.isDebug() && StringUtil.hasText(response)) {
+            System.out.println(">>>>receive payload:" + response);
+        }
+        // data 中的每一项通过 index 与 input 对应
+        return EmbeddingResponses.parse(response, "$.data", "index", size);
+    }
+
+
+    private Map<String, String> buildHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Authorization", "Bearer " + getConfig().getApiKey());
+        return headers;
+    }
+
+
 }
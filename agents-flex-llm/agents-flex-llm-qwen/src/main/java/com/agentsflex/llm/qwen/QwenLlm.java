@@ -25,14 +25,15 @@ import com.agentsflex.llm.client.HttpClient;
 import com.agentsflex.llm.client.LlmClient;
 import com.agentsflex.llm.client.LlmClientListener;
 import com.agentsflex.llm.client.impl.SseClient;
+import com.agentsflex.llm.embedding.EmbeddingBatches;
 import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.llm.embedding.EmbeddingResponses;
 import com.agentsflex.llm.response.AbstractBaseMessageResponse;
 import com.agentsflex.llm.response.AiMessageResponse;
 import com.agentsflex.llm.response.FunctionMessageResponse;
 import com.agentsflex.message.AiMessage;
 import com.agentsflex.parser.AiMessageParser;
 import com.agentsflex.parser.FunctionMessageParser;
-import com.agentsflex.parser.impl.DefaultAiMessageParser;
 import com.agentsflex.prompt.FunctionPrompt;
 import com.agentsflex.prompt.Prompt;
 import com.agentsflex.store.VectorData;
@@ -40,19 +41,24 @@ import com.agentsflex.util.StringUtil;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class QwenLlm extends BaseLlm<QwenLlmConfig> {
 
 
-    HttpClient httpClient = new HttpClient();
+    HttpClient httpClient;
 
     public AiMessageParser aiMessageParser = QwenLlmUtil.getAiMessageParser();
     public FunctionMessageParser functionMessageParser = QwenLlmUtil.getFunctionMessageParser();
 
     public QwenLlm(QwenLlmConfig config) {
         super(config);
+        this.httpClient = new HttpClient(config);
     }
 
 
@@ -65,7 +71,28 @@ public class QwenLlm extends BaseLlm<QwenLlmConfig> {
 
         String payload = QwenLlmUtil.promptToPayload(prompt, config);
         String endpoint = config.getEndpoint();
+        acquirePermit(payload, options);
         String response = httpClient.post(endpoint + "/api/v1/services/aigc/text-generation/generation", headers, payload);
+        return parseChatResponse(prompt, response);
+    }
+
+
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> CompletableFuture<R> chatAsync(Prompt<M> prompt, ChatOptions options) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Authorization", "Bearer " + getConfig().getApiKey());
+
+
+        String payload = QwenLlmUtil.promptToPayload(prompt, config);
+        String endpoint = config.getEndpoint();
+        return acquirePermitAsync(payload, options)
+            .thenCompose(v -> httpClient.postAsync(endpoint + "/api/v1/services/aigc/text-generation/generation", headers, payload))
+            .thenApply(response -> parseChatResponse(prompt, response));
+    }
+
+
+    private <R extends MessageResponse<M>, M extends AiMessage> R parseChatResponse(Prompt<M> prompt, String response) {
         if (StringUtil.noText(response)) {
             return null;
         }
@@ -102,33 +129,56 @@ public class QwenLlm extends BaseLlm<QwenLlmConfig> {
 
     @Override
     public <R extends MessageResponse<M>, M extends AiMessage> void chatStream(Prompt<M> prompt, StreamResponseListener<R, M> listener, ChatOptions options) {
-        LlmClient llmClient = new SseClient();
+        LlmClient llmClient = createSseClient();
         Map<String, String> headers = new HashMap<>();
         headers.put("Content-Type", "application/json");
         headers.put("Authorization", "Bearer " + getConfig().getApiKey());
 
-        String payload = QwenLlmUtil.promptToPayload(prompt, config);
-
-        LlmClientListener clientListener = new BaseLlmClientListener(this, llmClient, listener, prompt, new DefaultAiMessageParser() {
-            int prevMessageLength = 0;
+        String payload = QwenLlmUtil.promptToPayload(prompt, config, true);
 
-            @Override
-            public AiMessage parse(JSONObject content) {
-                AiMessage aiMessage = aiMessageParser.parse(content);
-                String messageContent = aiMessage.getContent();
-                aiMessage.setContent(messageContent.substring(prevMessageLength));
-                prevMessageLength = messageContent.length();
-                return aiMessage;
-            }
-        }, functionMessageParser);
+        LlmClientListener clientListener = new BaseLlmClientListener(this, llmClient, listener, prompt, aiMessageParser, functionMessageParser);
 
         String endpoint = config.getEndpoint();
-        llmClient.start(endpoint + "/api/v1/services/aigc/text-generation/generation", headers, payload, clientListener, config);
+        runWhenPermitted(payload, options, llmClient, clientListener
+            , () -> llmClient.start(endpoint + "/api/v1/services/aigc/text-generation/generation", headers, payload, clientListener, config));
     }
 
     @Override
     public VectorData embed(Document document, EmbeddingOptions options) {
-        return null;
+        // 单个文本的向量化通常用于检索时的查询
+        List<VectorData> vectorDataList = embedAll(Collections.singletonList(document), QwenLlmUtil.TEXT_TYPE_QUERY);
+        return vectorDataList.isEmpty() ? null : vectorDataList.get(0);
+    }
+
+
+    @Override
+    public List<VectorData> embedAll(List<Document> documents, EmbeddingOptions options) {
+        return embedAll(documents, QwenLlmUtil.TEXT_TYPE_DOCUMENT);
+    }
+
+
+    private List<VectorData> embedAll(List<Document> documents, String textType) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Authorization", "Bearer " + getConfig().getApiKey());
+
+        String endpoint = config.getEndpoint();
+        List<VectorData> vectorDataList = new ArrayList<>(documents.size());
+        for (List<Document> batch : EmbeddingBatches.split(documents
+            , QwenLlmUtil.EMBEDDING_MAX_BATCH_SIZE, QwenLlmUtil.EMBEDDING_MAX_BATCH_TOKENS)) {
+            String payload = QwenLlmUtil.promptToEmbeddingsPayload(batch, textType);
+            String response = httpClient.post(endpoint + "/api/v1/services/embeddings/text-embedding/text-embedding", headers, payload);
+            vectorDataList.addAll(parseEmbeddingsResponse(response, batch.size()));
+        }
+        return vectorDataList;
+    }
+
+
+    private List<VectorData> parseEmbeddingsResponse(String response, int size) {
+        if (config.isDebug() && StringUtil.hasText(response)) {
+            System.out.println(">>>>receive payload:" + response);
+        }
+        return EmbeddingResponses.parse(response, "$.output.embeddings", "text_index", size);
     }
 
 }
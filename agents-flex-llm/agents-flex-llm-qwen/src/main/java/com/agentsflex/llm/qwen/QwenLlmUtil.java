@@ -15,6 +15,7 @@
  */
 package com.agentsflex.llm.qwen;
 
+import com.agentsflex.document.Document;
 import com.agentsflex.message.MessageStatus;
 import com.agentsflex.parser.AiMessageParser;
 import com.agentsflex.parser.FunctionMessageParser;
@@ -26,10 +27,21 @@ import com.agentsflex.prompt.PromptFormat;
 import com.agentsflex.util.Maps;
 import com.alibaba.fastjson.JSON;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class QwenLlmUtil {
 
     private static final PromptFormat promptFormat = new DefaultPromptFormat();
 
+    // https://help.aliyun.com/zh/dashscope/developer-reference/text-embedding-api-details
+    // text-embedding-v1 单次最多 25 条文本，每条不超过 2048 tokens
+    public static final int EMBEDDING_MAX_BATCH_SIZE = 25;
+    public static final int EMBEDDING_MAX_BATCH_TOKENS = 25 * 2048;
+
+    public static final String TEXT_TYPE_QUERY = "query";
+    public static final String TEXT_TYPE_DOCUMENT = "document";
+
     public static AiMessageParser getAiMessageParser() {
         DefaultAiMessageParser aiMessageParser = new DefaultAiMessageParser();
         aiMessageParser.setContentPath("$.output.text");
@@ -55,8 +67,34 @@ public class QwenLlmUtil {
 
 
     public static String promptToPayload(Prompt<?> prompt, QwenLlmConfig config) {
+        return promptToPayload(prompt, config, false);
+    }
+
+    public static String promptToPayload(Prompt<?> prompt, QwenLlmConfig config, boolean stream) {
         // https://help.aliyun.com/zh/dashscope/developer-reference/api-details?spm=a2c4g.11186623.0.0.1ff6fa70jCgGRc#b8ebf6b25eul6
         Maps.Builder root = Maps.of("model", config.getModel()).put("input", Maps.of("messages", promptFormat.toMessagesJsonObject(prompt)));
+        if (stream) {
+            // 流式输出时每次只返回增量内容，而不是到目前为止的全部内容
+            root.put("parameters", Maps.of("incremental_output", true));
+        }
         return JSON.toJSONString(root.build());
     }
+
+    public static String promptToEmbeddingsPayload(List<Document> documents) {
+        return promptToEmbeddingsPayload(documents, TEXT_TYPE_DOCUMENT);
+    }
+
+    /**
+     * @param textType 检索时用于查询的文本为 {@link #TEXT_TYPE_QUERY}，被检索的文档为 {@link #TEXT_TYPE_DOCUMENT}
+     */
+    public static String promptToEmbeddingsPayload(List<Document> documents, String textType) {
+        List<String> texts = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            texts.add(document.getContent());
+        }
+        return Maps.of("model", "text-embedding-v1")
+            .put("input", Maps.of("texts", texts))
+            .put("parameters", Maps.of("text_type", textType))
+            .toJSON();
+    }
 }
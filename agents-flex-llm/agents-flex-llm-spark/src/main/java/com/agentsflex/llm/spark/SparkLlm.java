@@ -18,10 +18,12 @@ package com.agentsflex.llm.spark;
 import com.agentsflex.document.Document;
 import com.agentsflex.llm.*;
 import com.agentsflex.llm.client.BaseLlmClientListener;
+import com.agentsflex.llm.client.HttpStatusException;
 import com.agentsflex.llm.client.LlmClient;
 import com.agentsflex.llm.client.LlmClientListener;
 import com.agentsflex.llm.client.impl.WebSocketClient;
 import com.agentsflex.llm.embedding.EmbeddingOptions;
+import com.agentsflex.llm.response.AbstractBaseMessageResponse;
 import com.agentsflex.llm.response.AiMessageResponse;
 import com.agentsflex.llm.response.FunctionMessageResponse;
 import com.agentsflex.message.AiMessage;
@@ -32,11 +34,16 @@ import com.agentsflex.parser.FunctionMessageParser;
 import com.agentsflex.prompt.FunctionPrompt;
 import com.agentsflex.prompt.Prompt;
 import com.agentsflex.store.VectorData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 public class SparkLlm extends BaseLlm<SparkLlmConfig> {
 
+    private static final Logger LOG = LoggerFactory.getLogger(SparkLlm.class);
+
     public AiMessageParser aiMessageParser = SparkLlmUtil.getAiMessageParser();
     public FunctionMessageParser functionMessageParser = SparkLlmUtil.getFunctionMessageParser();
 
@@ -51,42 +58,75 @@ public class SparkLlm extends BaseLlm<SparkLlmConfig> {
     }
 
 
-    @SuppressWarnings("unchecked")
     @Override
     public <R extends MessageResponse<M>, M extends AiMessage> R chat(Prompt<M> prompt, ChatOptions options) {
-        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            return this.<R, M>chatAsync(prompt, options).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            return failedResponse(prompt, e.getCause());
+        }
+    }
+
+
+    /**
+     * 同步请求失败时不抛出异常，与其他大模型一样返回 message 为 null 的响应
+     */
+    @SuppressWarnings("unchecked")
+    private <R extends MessageResponse<M>, M extends AiMessage> R failedResponse(Prompt<M> prompt, Throwable throwable) {
+        if (throwable != null) {
+            LOG.error(throwable.toString(), throwable);
+        }
+        AbstractBaseMessageResponse<?> response = prompt instanceof FunctionPrompt
+            ? new FunctionMessageResponse(((FunctionPrompt) prompt).getFunctions(), null)
+            : new AiMessageResponse(null);
+        response.setError(true);
+        response.setErrorMessage(throwable != null ? throwable.getMessage() : null);
+        if (throwable instanceof HttpStatusException) {
+            response.setErrorCode(String.valueOf(((HttpStatusException) throwable).getStatusCode()));
+        }
+        return (R) response;
+    }
+
+
+    /**
+     * 星火只提供 websocket 接口，在 websocket 结束时完成 future，不阻塞任何线程
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <R extends MessageResponse<M>, M extends AiMessage> CompletableFuture<R> chatAsync(Prompt<M> prompt, ChatOptions options) {
+        CompletableFuture<R> future = new CompletableFuture<>();
         Message[] messages = new Message[1];
         chatStream(prompt, new StreamResponseListener<MessageResponse<M>, M>() {
             @Override
             public void onMessage(ChatContext context, MessageResponse<M> response) {
-                if (response.getMessage() instanceof FunctionMessage) {
+                // 只保留最后一条消息，完整内容在结束时生成一次，避免每个分片都复制一次已有的内容
+                if (response.getMessage() instanceof FunctionMessage || !(messages[0] instanceof FunctionMessage)) {
                     messages[0] = response.getMessage();
+                }
+            }
+
+            @Override
+            public void onStop(ChatContext context) {
+                if (prompt instanceof FunctionPrompt) {
+                    future.complete((R) new FunctionMessageResponse(((FunctionPrompt) prompt).getFunctions(), (FunctionMessage) messages[0]));
                 } else {
-                    if (messages[0] == null) {
-                        messages[0] = response.getMessage();
-                    } else {
-                        ((AiMessage) messages[0]).setContent(response.getMessage().getFullContent());
+                    AiMessage message = (AiMessage) messages[0];
+                    if (message != null) {
+                        message.setContent(message.getFullContent());
                     }
+                    future.complete((R) new AiMessageResponse(message));
                 }
             }
 
             @Override
-            public void onStop(ChatContext context) {
-                StreamResponseListener.super.onStop(context);
-                latch.countDown();
+            public void onFailure(ChatContext context, Throwable throwable) {
+                future.completeExceptionally(throwable);
             }
         }, options);
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
-
-        if (prompt instanceof FunctionPrompt) {
-            return (R) new FunctionMessageResponse(((FunctionPrompt) prompt).getFunctions(), (FunctionMessage) messages[0]);
-        } else {
-            return (R) new AiMessageResponse((AiMessage) messages[0]);
-        }
+        return future;
     }
 
 
@@ -98,7 +138,8 @@ public class SparkLlm extends BaseLlm<SparkLlmConfig> {
         String payload = SparkLlmUtil.promptToPayload(prompt, config, options);
 
         LlmClientListener clientListener = new BaseLlmClientListener(this, llmClient, listener, prompt, aiMessageParser, functionMessageParser);
-        llmClient.start(url, null, payload, clientListener, config);
+        runWhenPermitted(payload, options, llmClient, clientListener
+            , () -> llmClient.start(url, null, payload, clientListener, config));
     }
 
 
@@ -136,7 +136,7 @@ public class AliyunVectorStore extends DocumentStore {
 
         String payload = JSON.toJSONString(payloadMap);
         String result = httpUtil.post("https://" + config.getEndpoint() + "/v1/collections/"
-            + options.getCollectionNameOrDefault(config.getDefaultCollectionName()) + "/query", headers, payload);
+            + options.getCollectionNameOrDefault(config.getDefaultCollectionName()) + "/query", headers, payload, true);
         if (StringUtil.noText(result)) {
             return null;
         }
@@ -72,7 +72,7 @@ public class QCloudVectorStore extends DocumentStore {
         payloadMap.put("documents", payloadDocs);
 
         String payload = JSON.toJSONString(payloadMap);
-        httpUtil.post(config.getHost() + "/document/upsert", headers, payload);
+        httpUtil.post(config.getHost() + "/document/upsert", headers, payload, true);
         return StoreResult.successWithIds(documents);
     }
 
@@ -93,7 +93,7 @@ public class QCloudVectorStore extends DocumentStore {
 
         String payload = JSON.toJSONString(payloadMap);
 
-        httpUtil.post(config.getHost() + "/document/delete", headers, payload);
+        httpUtil.post(config.getHost() + "/document/delete", headers, payload, true);
 
         return StoreResult.success();
     }
@@ -119,7 +119,7 @@ public class QCloudVectorStore extends DocumentStore {
             payloadMap.put("query", documentIdsObj);
             payloadMap.put("update", document.getMetadatas());
             String payload = JSON.toJSONString(payloadMap);
-            httpUtil.post(config.getHost() + "/document/update", headers, payload);
+            httpUtil.post(config.getHost() + "/document/update", headers, payload, true);
         }
 
         return StoreResult.successWithIds(documents);
@@ -147,7 +147,7 @@ public class QCloudVectorStore extends DocumentStore {
         String payload = JSON.toJSONString(payloadMap);
 
         // https://cloud.tencent.com/document/product/1709/95123
-        String response = httpUtil.post(config.getHost() + "/document/search", headers, payload);
+        String response = httpUtil.post(config.getHost() + "/document/search", headers, payload, true);
         if (StringUtil.noText(response)) {
             return null;
         }